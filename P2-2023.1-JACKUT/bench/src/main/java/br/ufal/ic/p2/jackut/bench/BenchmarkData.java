@@ -0,0 +1,64 @@
+package br.ufal.ic.p2.jackut.bench;
+
+import br.ufal.ic.p2.jackut.Batch;
+import br.ufal.ic.p2.jackut.Facade;
+import br.ufal.ic.p2.jackut.persistence.DurabilityPolicy;
+
+/**
+ * Funções auxiliares para montar os dados usados pelos benchmarks.
+ *
+ * Os usuários gerados têm login {@code u<n>} e senha {@value #PASSWORD}. A Facade usa o diretório
+ * atual, cujos dados são descartados ao montar um novo conjunto.
+ */
+final class BenchmarkData {
+    static final String PASSWORD = "senha";
+    private static final int BATCH_SIZE = 10_000;
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * Cria uma Facade vazia e cadastra usuários nela.
+     *
+     * @param users      Quantidade de usuários.
+     * @param durability Política de durabilidade, no formato de {@link DurabilityPolicy#parse}.
+     * @return A Facade populada.
+     */
+    static Facade populate(int users, String durability) {
+        Facade facade = new Facade(DurabilityPolicy.parse(durability));
+        facade.resetSystem();
+        createUsers(facade, 0, users);
+        facade.saveSnapshot();
+        return facade;
+    }
+
+    /**
+     * Cadastra os usuários {@code u<from>} até {@code u<to - 1>}.
+     */
+    static void createUsers(Facade facade, int from, int to) {
+        for (int start = from; start < to; start += BATCH_SIZE) {
+            Batch batch = new Batch();
+            for (int i = start; i < Math.min(to, start + BATCH_SIZE); i++) {
+                batch.createUser(login(i), PASSWORD, "Usuário " + i);
+            }
+            facade.executeBatch(batch);
+        }
+    }
+
+    /**
+     * Abre sessões para os usuários {@code u<from>} até {@code u<to - 1>}.
+     *
+     * @return IDs das sessões, na ordem dos usuários.
+     */
+    static String[] openSessions(Facade facade, int from, int to) {
+        String[] sessions = new String[to - from];
+        for (int i = from; i < to; i++) {
+            sessions[i - from] = facade.openSession(login(i), PASSWORD);
+        }
+        return sessions;
+    }
+
+    static String login(int index) {
+        return "u" + index;
+    }
+}
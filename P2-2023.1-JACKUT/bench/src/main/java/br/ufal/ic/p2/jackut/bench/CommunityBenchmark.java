@@ -0,0 +1,95 @@
+package br.ufal.ic.p2.jackut.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import br.ufal.ic.p2.jackut.Batch;
+import br.ufal.ic.p2.jackut.Facade;
+
+/**
+ * Benchmarks das mensagens de comunidade, em uma comunidade com a quantidade de membros indicada.
+ *
+ * A leitura de mensagens não tem estado estável, pois cada leitura consome uma mensagem; por
+ * isso ela é medida em lotes de {@value #READS} leituras, com as mensagens postadas antes de cada
+ * lote em quantidade suficiente para todas as leituras.
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx6g", "-Djackut.session.capacity=1000000"})
+public class CommunityBenchmark {
+    private static final String COMMUNITY = "benchmark";
+    private static final int READS = 10_000;
+
+    @Param({"10", "1000", "100000"})
+    public int members;
+
+    @Param({"interval:10"})
+    public String durability;
+
+    private Facade facade;
+    private String[] sessions;
+    private int nextReader;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        facade = BenchmarkData.populate(members, durability);
+        sessions = BenchmarkData.openSessions(facade, 0, members);
+
+        facade.createCommunity(sessions[0], COMMUNITY, "Comunidade dos benchmarks");
+        Batch batch = new Batch();
+        for (int i = 1; i < members; i++) {
+            batch.addUserToCommunity(sessions[i], COMMUNITY);
+        }
+        facade.executeBatch(batch);
+    }
+
+    /**
+     * Posta as mensagens que serão lidas no próximo lote. O dono da comunidade não recebe as
+     * próprias mensagens, então as leituras são distribuídas entre os demais membros.
+     */
+    @Setup(Level.Iteration)
+    public void postMessages() {
+        int readers = members - 1;
+        int messages = (READS + readers - 1) / readers;
+        Batch batch = new Batch();
+        for (int i = 0; i < messages; i++) {
+            batch.sendMessageToCommunity(sessions[0], COMMUNITY, "Mensagem " + i);
+        }
+        facade.executeBatch(batch);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        facade.closeSystem();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @Warmup(iterations = 3, time = 2)
+    @Measurement(iterations = 5, time = 2)
+    public void sendMessageToCommunity() {
+        facade.sendMessageToCommunity(sessions[0], COMMUNITY, "Mensagem de teste");
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 3, batchSize = READS)
+    @Measurement(iterations = 10, batchSize = READS)
+    public String readMessage() {
+        nextReader = nextReader % (members - 1) + 1;
+        return facade.readMessage(sessions[nextReader]);
+    }
+}
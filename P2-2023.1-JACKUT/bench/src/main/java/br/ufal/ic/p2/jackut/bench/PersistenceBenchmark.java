@@ -0,0 +1,77 @@
+package br.ufal.ic.p2.jackut.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import br.ufal.ic.p2.jackut.Facade;
+import br.ufal.ic.p2.jackut.persistence.DurabilityPolicy;
+
+/**
+ * Benchmarks da gravação e da carga do snapshot, em uma base com a quantidade de usuários
+ * indicada.
+ *
+ * A gravação mede um snapshot completo com {@link Facade#saveSnapshot()}; a carga mede a criação
+ * de uma nova Facade sobre o snapshot gravado, seguida da abertura de uma sessão para garantir
+ * que os dados estão acessíveis. Cada execução é medida isoladamente.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class PersistenceBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    public int users;
+
+    @Param({"interval:10"})
+    public String durability;
+
+    private Facade facade;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        facade = BenchmarkData.populate(users, durability);
+    }
+
+    /**
+     * Altera uma parte dos usuários antes de cada gravação, para que o snapshot tenha registros
+     * novos a codificar além dos copiados do snapshot anterior.
+     */
+    @Setup(Level.Iteration)
+    public void touchUsers() {
+        String session = facade.openSession(BenchmarkData.login(0), BenchmarkData.PASSWORD);
+        for (int i = 1; i < Math.min(users, 1000); i++) {
+            facade.sendMessage(session, BenchmarkData.login(i), "Recado de teste");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        facade.closeSystem();
+    }
+
+    @Benchmark
+    public void saveData() {
+        facade.saveSnapshot();
+    }
+
+    @Benchmark
+    public String loadData() {
+        Facade loaded = new Facade(DurabilityPolicy.parse(durability));
+        return loaded.openSession(BenchmarkData.login(users - 1), BenchmarkData.PASSWORD);
+    }
+}
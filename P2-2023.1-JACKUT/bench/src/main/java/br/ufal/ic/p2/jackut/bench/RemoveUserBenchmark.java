@@ -0,0 +1,89 @@
+package br.ufal.ic.p2.jackut.bench;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import br.ufal.ic.p2.jackut.Batch;
+import br.ufal.ic.p2.jackut.Facade;
+
+/**
+ * Benchmark da remoção de contas em uma base com a quantidade de usuários indicada.
+ *
+ * Cada remoção consome uma conta, então a operação é medida em lotes de {@value #REMOVALS}
+ * remoções. Antes de cada lote são criadas as contas a remover, cada uma com
+ * {@value #LINKS} ídolos, recados e uma comunidade própria, para que a remoção tenha
+ * relacionamentos a desfazer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, batchSize = RemoveUserBenchmark.REMOVALS)
+@Measurement(iterations = 10, batchSize = RemoveUserBenchmark.REMOVALS)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx6g", "-Djackut.session.capacity=1000000"})
+public class RemoveUserBenchmark {
+    static final int REMOVALS = 1000;
+    private static final int LINKS = 10;
+
+    @Param({"1000", "100000", "1000000"})
+    public int users;
+
+    @Param({"interval:10"})
+    public String durability;
+
+    private Facade facade;
+    private SplittableRandom random;
+    private String[] victims;
+    private int nextUser;
+    private int nextVictim;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        facade = BenchmarkData.populate(users, durability);
+        random = new SplittableRandom(42);
+        nextUser = users;
+    }
+
+    @Setup(Level.Iteration)
+    public void createVictims() {
+        BenchmarkData.createUsers(facade, nextUser, nextUser + REMOVALS);
+        victims = BenchmarkData.openSessions(facade, nextUser, nextUser + REMOVALS);
+
+        Batch batch = new Batch();
+        for (int i = 0; i < REMOVALS; i++) {
+            batch.createCommunity(victims[i], "comunidade-" + (nextUser + i), "Comunidade de teste");
+            for (int j = 0; j < LINKS; j++) {
+                String target = BenchmarkData.login(random.nextInt(users));
+                batch.addIdol(victims[i], target);
+                batch.sendMessage(victims[i], target, "Recado de teste");
+            }
+        }
+        facade.executeBatch(batch);
+
+        nextUser += REMOVALS;
+        nextVictim = 0;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        facade.closeSystem();
+    }
+
+    @Benchmark
+    public void removeUser() {
+        facade.removeUser(victims[nextVictim++]);
+    }
+}
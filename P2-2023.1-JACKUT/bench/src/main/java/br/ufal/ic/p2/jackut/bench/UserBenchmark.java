@@ -0,0 +1,98 @@
+package br.ufal.ic.p2.jackut.bench;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import br.ufal.ic.p2.jackut.Facade;
+
+/**
+ * Benchmarks das operações sobre usuários: cadastro, abertura de sessão, convites de amizade e
+ * recados, em uma base com a quantidade de usuários indicada.
+ *
+ * As operações são feitas pelas sessões dos primeiros {@value #ACTIVE_USERS} usuários
+ * e têm como alvo qualquer usuário da base.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx6g", "-Djackut.session.capacity=1000000"})
+public class UserBenchmark {
+    private static final int ACTIVE_USERS = 10_000;
+
+    @Param({"1000", "100000", "1000000"})
+    public int users;
+
+    @Param({"sync", "interval:10"})
+    public String durability;
+
+    private Facade facade;
+    private String[] sessions;
+    private SplittableRandom random;
+    private int created;
+    private long friendRequests;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        facade = BenchmarkData.populate(users, durability);
+        sessions = BenchmarkData.openSessions(facade, 0, Math.min(users, ACTIVE_USERS));
+        random = new SplittableRandom(42);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        facade.closeSystem();
+    }
+
+    @Benchmark
+    public void createUser() {
+        facade.createUser("novo" + created++, BenchmarkData.PASSWORD, "Novo usuário");
+    }
+
+    @Benchmark
+    public String openSession() {
+        return facade.openSession(BenchmarkData.login(random.nextInt(users)), BenchmarkData.PASSWORD);
+    }
+
+    /**
+     * Cada convite vai de um usuário ativo para um usuário diferente a cada volta, de forma que
+     * os convites não se repitam; os convites recusados pelas regras de amizade também são medidos.
+     */
+    @Benchmark
+    public void addFriend(Blackhole blackhole) {
+        long request = friendRequests++;
+        int sender = (int) (request % sessions.length);
+        int friend = (int) ((sender + 1 + request / sessions.length) % users);
+        try {
+            facade.addFriend(sessions[sender], BenchmarkData.login(friend));
+        } catch (RuntimeException e) {
+            blackhole.consume(e);
+        }
+    }
+
+    @Benchmark
+    public void sendMessage() {
+        int sender = random.nextInt(sessions.length);
+        int recipient = random.nextInt(users);
+        if (recipient == sender) {
+            recipient = (recipient + 1) % users;
+        }
+        facade.sendMessage(sessions[sender], BenchmarkData.login(recipient), "Recado de teste");
+    }
+}
@@ -0,0 +1,165 @@
+package br.ufal.ic.p2.jackut;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Lote de operações a ser executado pela {@link Facade} com uma única gravação em disco.
+ *
+ * As operações são acrescentadas na ordem em que devem ser executadas, com os mesmos argumentos
+ * dos métodos correspondentes da Facade. Ver {@link Facade#executeBatch(Batch)}.
+ */
+public class Batch {
+    private final List<Function<Facade, String>> operations = new ArrayList<>();
+
+    /**
+     * Acrescenta a criação de um usuário.
+     *
+     * @param login    Login do usuário.
+     * @param password Senha do usuário.
+     * @param name     Nome do usuário.
+     * @return Este lote.
+     */
+    public Batch createUser(String login, String password, String name) {
+        return add(facade -> facade.createUser(login, password, name));
+    }
+
+    /**
+     * Acrescenta a abertura de uma sessão, cujo ID é o resultado da operação.
+     *
+     * @param login    Login do usuário.
+     * @param password Senha do usuário.
+     * @return Este lote.
+     */
+    public Batch openSession(String login, String password) {
+        operations.add(facade -> facade.openSession(login, password));
+        return this;
+    }
+
+    /**
+     * Acrescenta a edição de um atributo do perfil.
+     *
+     * @param sessionId ID da sessão do usuário.
+     * @param attribute Nome do atributo.
+     * @param value     Novo valor do atributo.
+     * @return Este lote.
+     */
+    public Batch editProfile(String sessionId, String attribute, String value) {
+        return add(facade -> facade.editProfile(sessionId, attribute, value));
+    }
+
+    /**
+     * Acrescenta um convite de amizade.
+     *
+     * @param sessionId   ID da sessão do usuário.
+     * @param friendLogin Login do amigo.
+     * @return Este lote.
+     */
+    public Batch addFriend(String sessionId, String friendLogin) {
+        return add(facade -> facade.addFriend(sessionId, friendLogin));
+    }
+
+    /**
+     * Acrescenta o envio de um recado.
+     *
+     * @param sessionId      ID da sessão do remetente.
+     * @param recipientLogin Login do destinatário.
+     * @param message        Texto do recado.
+     * @return Este lote.
+     */
+    public Batch sendMessage(String sessionId, String recipientLogin, String message) {
+        return add(facade -> facade.sendMessage(sessionId, recipientLogin, message));
+    }
+
+    /**
+     * Acrescenta a criação de uma comunidade.
+     *
+     * @param sessionId   ID da sessão do dono.
+     * @param name        Nome da comunidade.
+     * @param description Descrição da comunidade.
+     * @return Este lote.
+     */
+    public Batch createCommunity(String sessionId, String name, String description) {
+        return add(facade -> facade.createCommunity(sessionId, name, description));
+    }
+
+    /**
+     * Acrescenta a entrada de um usuário em uma comunidade.
+     *
+     * @param sessionId     ID da sessão do usuário.
+     * @param communityName Nome da comunidade.
+     * @return Este lote.
+     */
+    public Batch addUserToCommunity(String sessionId, String communityName) {
+        return add(facade -> facade.addUserToCommunity(sessionId, communityName));
+    }
+
+    /**
+     * Acrescenta o envio de uma mensagem a uma comunidade.
+     *
+     * @param sessionId     ID da sessão do remetente.
+     * @param communityName Nome da comunidade.
+     * @param message       Texto da mensagem.
+     * @return Este lote.
+     */
+    public Batch sendMessageToCommunity(String sessionId, String communityName, String message) {
+        return add(facade -> facade.sendMessageToCommunity(sessionId, communityName, message));
+    }
+
+    /**
+     * Acrescenta a adição de um ídolo.
+     *
+     * @param sessionId ID da sessão do usuário.
+     * @param idolLogin Login do ídolo.
+     * @return Este lote.
+     */
+    public Batch addIdol(String sessionId, String idolLogin) {
+        return add(facade -> facade.addIdol(sessionId, idolLogin));
+    }
+
+    /**
+     * Acrescenta a adição de uma paquera.
+     *
+     * @param sessionId  ID da sessão do usuário.
+     * @param crushLogin Login da paquera.
+     * @return Este lote.
+     */
+    public Batch addCrush(String sessionId, String crushLogin) {
+        return add(facade -> facade.addCrush(sessionId, crushLogin));
+    }
+
+    /**
+     * Acrescenta a adição de um inimigo.
+     *
+     * @param sessionId  ID da sessão do usuário.
+     * @param enemyLogin Login do inimigo.
+     * @return Este lote.
+     */
+    public Batch addEnemy(String sessionId, String enemyLogin) {
+        return add(facade -> facade.addEnemy(sessionId, enemyLogin));
+    }
+
+    /**
+     * Retorna a quantidade de operações do lote.
+     *
+     * @return Quantidade de operações.
+     */
+    public int size() {
+        return operations.size();
+    }
+
+    List<Function<Facade, String>> getOperations() {
+        return Collections.unmodifiableList(operations);
+    }
+
+    private Batch add(Consumer<Facade> operation) {
+        operations.add(facade -> {
+            operation.accept(facade);
+            return null;
+        });
+        return this;
+    }
+}
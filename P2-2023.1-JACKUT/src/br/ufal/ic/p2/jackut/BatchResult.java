@@ -0,0 +1,39 @@
+package br.ufal.ic.p2.jackut;
+
+/**
+ * Resultado de uma operação executada em um {@link Batch}.
+ *
+ * Guarda o valor retornado pela operação, se houver, ou a exceção que ela lançou.
+ */
+public class BatchResult {
+    private final String value;
+    private final RuntimeException error;
+
+    /**
+     * Construtor da classe BatchResult.
+     *
+     * @param value Valor retornado pela operação, ou {@code null}.
+     * @param error Exceção lançada pela operação, ou {@code null} se ela foi executada.
+     */
+    public BatchResult(String value, RuntimeException error) {
+        this.value = value;
+        this.error = error;
+    }
+
+    /**
+     * Verifica se a operação foi executada sem erros.
+     *
+     * @return {@code true} se a operação foi executada.
+     */
+    public boolean isSuccess() {
+        return error == null;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public RuntimeException getError() {
+        return error;
+    }
+}
@@ -1,32 +1,57 @@
 package br.ufal.ic.p2.jackut;
 
 import br.ufal.ic.p2.jackut.exceptions.NoMessagesException;
+import br.ufal.ic.p2.jackut.metrics.CommunityFanoutEvent;
 
-import java.io.Serializable;
 import java.util.*;
 
 /**
  * Classe que representa uma comunidade no sistema Jackut.
  * 
  * Gerencia informações sobre membros, mensagens e o dono da comunidade.
+ *
+ * As mensagens ficam em um único {@link MessageLog} compartilhado; cada membro tem apenas um
+ * cursor com a posição da próxima mensagem que vai ler. Postar uma mensagem custa O(1) no log e
+ * os segmentos já lidos por todos os membros são descartados.
+ *
+ * A comunidade também guarda os membros que já leram todas as mensagens. Ao postar, só esses
+ * membros passam a ter mensagens não lidas, e cada membro só volta ao conjunto depois de ler
+ * tudo, de forma que o custo de avisá-los é O(1) amortizado por mensagem lida.
+ *
+ * Os membros ficam em um conjunto que mantém a ordem de entrada, de forma que verificar, adicionar
+ * e remover um membro custa O(1) mesmo nas comunidades grandes. A lista de membros publicada para
+ * as consultas é mantida à parte, pela {@link CommunityVersion}.
+ *
+ * Os observadores ficam em um array que só cresce no fim; a remoção cria um array novo, com custo
+ * O(observadores). Assim, ao postar, o array atual pode ser entregue a um
+ * {@link NotificationDispatcher} sem cópia, e as entregas pendentes não são afetadas por
+ * observadores adicionados ou removidos depois. Os membros não são observadores, já que leem as
+ * mensagens direto do log, então o array só guarda os poucos observadores registrados de fora e
+ * o custo da remoção não cresce com a comunidade.
  */
-public class Community implements Serializable {
+public final class Community {
     private String name;
     private String description;
     private String owner;
-    private List<String> members;
-    private Map<String, Queue<String>> messages;
-    private List<Observer> observers;
+    private Set<String> members;
+    private MessageLog log;
+    private Map<String, Long> cursors;
+    private TreeMap<Long, Integer> cursorCounts;
+    private Set<String> caughtUp;
+    private Observer[] observers;
+    private int observerCount;
 
     public Community(String name, String description, String owner) {
         this.name = name;
         this.description = description;
         this.owner = owner;
-        this.members = new ArrayList<>();
-        this.members.add(owner);
-        this.messages = new HashMap<>();
-        this.messages.put(owner, new LinkedList<>());
-        this.observers = new ArrayList<>();
+        this.members = new LinkedHashSet<>();
+        this.log = new MessageLog();
+        this.cursors = new HashMap<>();
+        this.cursorCounts = new TreeMap<>();
+        this.caughtUp = new HashSet<>();
+        this.observers = new Observer[4];
+        addMember(owner);
     }
 
     public String getName() {
@@ -41,45 +66,213 @@ public class Community implements Serializable {
         return owner;
     }
 
-    public List<String> getMembers() {
-        return Collections.unmodifiableList(members);
+    /**
+     * Retorna os membros da comunidade, na ordem em que entraram.
+     *
+     * @return Logins dos membros.
+     */
+    public Set<String> getMembers() {
+        return Collections.unmodifiableSet(members);
+    }
+
+    /**
+     * Verifica se um usuário é membro da comunidade.
+     *
+     * @param member Login do usuário.
+     * @return {@code true} se o usuário fizer parte da comunidade.
+     */
+    public boolean isMember(String member) {
+        return members.contains(member);
     }
 
     public void addMember(String member) {
-        if (!members.contains(member)) {
-            members.add(member);
-            messages.put(member, new LinkedList<>());
+        if (members.add(member)) {
+            moveCursor(member, log.getEnd());
         }
     }
 
     public void addObserver(Observer observer) {
-        observers.add(observer);
+        if (observerCount == observers.length) {
+            observers = Arrays.copyOf(observers, observerCount * 2);
+        }
+        observers[observerCount++] = observer;
     }
 
     public void removeObserver(Observer observer) {
-        observers.remove(observer);
+        for (int i = 0; i < observerCount; i++) {
+            if (observers[i].equals(observer)) {
+                // Um array novo, pois o atual pode estar aguardando entrega
+                Observer[] remaining = new Observer[Math.max(4, observers.length)];
+                System.arraycopy(observers, 0, remaining, 0, i);
+                System.arraycopy(observers, i + 1, remaining, i, observerCount - i - 1);
+                observers = remaining;
+                observerCount--;
+                return;
+            }
+        }
     }
 
-    public void notifyObservers(String message) {
-        for (Observer observer : observers) {
-            observer.update(message);
+    public List<Observer> getObservers() {
+        return Collections.unmodifiableList(Arrays.asList(observers).subList(0, observerCount));
+    }
+
+    public void notifyObservers(Message message) {
+        for (int i = 0; i < observerCount; i++) {
+            observers[i].update(message);
         }
     }
 
-    public void addMessage(String sender, String content) {
+    /**
+     * Posta uma mensagem na comunidade, notificando os observadores de forma síncrona.
+     *
+     * @param sender   Login do autor da mensagem.
+     * @param senderId Identificador do autor da mensagem.
+     * @param content  Conteúdo da mensagem.
+     * @return Membros que tinham lido todas as mensagens e agora têm uma mensagem não lida.
+     */
+    public List<String> addMessage(String sender, int senderId, String content) {
+        return addMessage(sender, senderId, content, null);
+    }
+
+    /**
+     * Posta uma mensagem na comunidade. Os observadores são notificados pelo dispatcher, se
+     * houver, ou de forma síncrona.
+     *
+     * @param sender     Login do autor da mensagem.
+     * @param senderId   Identificador do autor da mensagem.
+     * @param content    Conteúdo da mensagem.
+     * @param dispatcher Dispatcher que entrega a mensagem aos observadores, ou {@code null}.
+     * @return Membros que tinham lido todas as mensagens e agora têm uma mensagem não lida.
+     */
+    public List<String> addMessage(String sender, int senderId, String content, NotificationDispatcher dispatcher) {
         String message = "Mensagem de " + sender + ": " + content;
-        notifyObservers(message);
-        for (String member : members) {
-            messages.get(member).add(message);
+        CommunityFanoutEvent event = new CommunityFanoutEvent();
+        event.begin();
+        if (dispatcher == null) {
+            notifyObservers(new Message(senderId, message));
+        } else {
+            dispatcher.publish(observers, observerCount, new Message(senderId, message));
         }
+        event.community = name;
+        event.recipients = observerCount;
+        event.commit();
+
+        log.append(message);
+        trimLog();
+
+        List<String> unread = new ArrayList<>(caughtUp);
+        caughtUp.clear();
+        return unread;
     }
 
     public String readMessage(String member) {
-        Queue<String> memberMessages = messages.get(member);
-        if (memberMessages == null || memberMessages.isEmpty()) {
+        if (!hasUnread(member)) {
             throw new NoMessagesException();
         }
-        return memberMessages.poll();
+
+        long cursor = cursors.get(member);
+        String message = log.get(cursor);
+        moveCursor(member, cursor + 1);
+        trimLog();
+        return message;
+    }
+
+    /**
+     * Verifica se um membro tem mensagens não lidas na comunidade.
+     *
+     * @param member Login do membro.
+     * @return {@code true} se o membro fizer parte da comunidade e tiver mensagens não lidas.
+     */
+    public boolean hasUnread(String member) {
+        Long cursor = cursors.get(member);
+        return cursor != null && cursor < log.getEnd();
+    }
+
+    /**
+     * Retorna as mensagens ainda não lidas por um membro, na ordem de chegada.
+     *
+     * @param member Login do membro.
+     * @return Mensagens não lidas do membro, vazia se ele não fizer parte da comunidade.
+     */
+    public List<String> getMessages(String member) {
+        Long cursor = cursors.get(member);
+        if (cursor == null) {
+            return Collections.emptyList();
+        }
+
+        List<String> unread = new ArrayList<>();
+        for (long position = cursor; position < log.getEnd(); position++) {
+            unread.add(log.get(position));
+        }
+        return unread;
+    }
+
+    /**
+     * Retorna a posição, no log, da próxima mensagem que um membro vai ler.
+     *
+     * @param member Login do membro.
+     * @return Posição do cursor, ou -1 se ele não fizer parte da comunidade.
+     */
+    public long getCursor(String member) {
+        Long cursor = cursors.get(member);
+        return cursor == null ? -1 : cursor;
+    }
+
+    /**
+     * Retorna a posição da mensagem mais antiga ainda não lida por algum membro.
+     *
+     * @return Menor posição entre os cursores, ou o fim do log se não houver membros.
+     */
+    public long getOldestUnread() {
+        return cursorCounts.isEmpty() ? log.getEnd() : cursorCounts.firstKey();
+    }
+
+    /**
+     * Retorna a mensagem de uma posição do log que ainda não foi lida por todos os membros.
+     *
+     * @param position Posição da mensagem.
+     * @return A mensagem.
+     */
+    public String getLoggedMessage(long position) {
+        return log.get(position);
+    }
+
+    /**
+     * Retorna a posição que a próxima mensagem postada vai ocupar no log.
+     *
+     * @return Fim do log.
+     */
+    public long getLogEnd() {
+        return log.getEnd();
+    }
+
+    /**
+     * Recria o log de mensagens sem notificar os observadores. Usado ao restaurar a comunidade
+     * a partir de um snapshot, antes de {@link #restoreMember(String, long)}.
+     *
+     * @param start    Posição da primeira mensagem.
+     * @param messages Mensagens já formatadas, em ordem.
+     */
+    public void restoreLog(long start, List<String> messages) {
+        log = new MessageLog(start);
+        for (String message : messages) {
+            log.append(message);
+        }
+        for (String member : members) {
+            moveCursor(member, start);
+        }
+    }
+
+    /**
+     * Adiciona um membro com o cursor em uma posição do log. Usado ao restaurar a comunidade
+     * a partir de um snapshot.
+     *
+     * @param member Login do membro.
+     * @param cursor Posição da próxima mensagem que o membro vai ler.
+     */
+    public void restoreMember(String member, long cursor) {
+        members.add(member);
+        moveCursor(member, cursor);
     }
 
     /**
@@ -88,9 +281,37 @@ public class Community implements Serializable {
      * @param memberLogin Login do membro a ser removido.
      */
     public void removeMember(String memberLogin) {
-        if (members.contains(memberLogin)) {
-            members.remove(memberLogin);
-            messages.remove(memberLogin);
+        if (members.remove(memberLogin)) {
+            countCursor(cursors.remove(memberLogin), -1);
+            caughtUp.remove(memberLogin);
+            trimLog();
+        }
+    }
+
+    /**
+     * Move o cursor de um membro, mantendo a contagem de cursores por posição.
+     */
+    private void moveCursor(String member, long position) {
+        countCursor(cursors.put(member, position), -1);
+        countCursor(position, 1);
+
+        if (position == log.getEnd()) {
+            caughtUp.add(member);
+        } else {
+            caughtUp.remove(member);
+        }
+    }
+
+    private void countCursor(Long position, int delta) {
+        if (position != null) {
+            cursorCounts.merge(position, delta, (count, change) -> count + change == 0 ? null : count + change);
         }
     }
+
+    /**
+     * Descarta os segmentos do log que todos os membros já leram.
+     */
+    private void trimLog() {
+        log.trim(getOldestUnread());
+    }
 }
\ No newline at end of file
@@ -0,0 +1,71 @@
+package br.ufal.ic.p2.jackut;
+
+import java.util.Collection;
+import java.util.Set;
+
+/**
+ * Versão imutável dos dados de uma comunidade lidos pelas consultas da {@link Facade}.
+ *
+ * Os membros ficam em um {@link PersistentLinkedSet}, de forma que publicar uma versão nova a cada
+ * entrada ou saída de um membro custa O(log n) e compartilha o resto da lista com as versões
+ * anteriores, que continuam valendo para quem já as leu.
+ */
+public final class CommunityVersion {
+    private final String description;
+    private final String owner;
+    private final PersistentLinkedSet<String> members;
+
+    /**
+     * Construtor da classe CommunityVersion. Os membros recebidos são copiados.
+     *
+     * @param description Descrição da comunidade.
+     * @param owner       Login do dono.
+     * @param members     Logins dos membros, na ordem em que entraram.
+     */
+    public CommunityVersion(String description, String owner, Collection<String> members) {
+        this(description, owner, PersistentLinkedSet.of(members));
+    }
+
+    private CommunityVersion(String description, String owner, PersistentLinkedSet<String> members) {
+        this.description = description;
+        this.owner = owner;
+        this.members = members;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    /**
+     * Retorna os membros da comunidade.
+     *
+     * @return Logins dos membros, na ordem em que entraram.
+     */
+    public Set<String> getMembers() {
+        return members;
+    }
+
+    /**
+     * Retorna uma versão igual a esta, mas com um membro a mais.
+     *
+     * @param member Login do membro.
+     * @return A nova versão.
+     */
+    public CommunityVersion withMember(String member) {
+        return new CommunityVersion(description, owner, members.plus(member));
+    }
+
+    /**
+     * Retorna uma versão igual a esta, mas sem um membro.
+     *
+     * @param member Login do membro.
+     * @return A nova versão.
+     */
+    public CommunityVersion withoutMember(String member) {
+        return new CommunityVersion(description, owner, members.minus(member));
+    }
+}
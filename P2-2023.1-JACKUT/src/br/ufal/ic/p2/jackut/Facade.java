@@ -1,46 +1,330 @@
 package br.ufal.ic.p2.jackut;
 
-import java.io.*;
-import java.util.HashMap;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
 
 import br.ufal.ic.p2.jackut.exceptions.*;
+import br.ufal.ic.p2.jackut.metrics.CacheEvictionEvent;
+import br.ufal.ic.p2.jackut.metrics.FacadeMetrics;
+import br.ufal.ic.p2.jackut.metrics.FacadeMetrics.Method;
+import br.ufal.ic.p2.jackut.metrics.SnapshotWriteEvent;
+import br.ufal.ic.p2.jackut.metrics.UserRemovalEvent;
+import br.ufal.ic.p2.jackut.persistence.DurabilityPolicy;
+import br.ufal.ic.p2.jackut.persistence.DurableFiles;
+import br.ufal.ic.p2.jackut.persistence.InboxStore;
+import br.ufal.ic.p2.jackut.persistence.Journal;
+import br.ufal.ic.p2.jackut.persistence.JournalRecord;
+import br.ufal.ic.p2.jackut.persistence.LazyRecordMap;
+import br.ufal.ic.p2.jackut.persistence.MappedSnapshot;
+import br.ufal.ic.p2.jackut.persistence.Operation;
+import br.ufal.ic.p2.jackut.persistence.RecordSpill;
+import br.ufal.ic.p2.jackut.persistence.SnapshotCodec;
+import br.ufal.ic.p2.jackut.persistence.SnapshotFiles;
+import br.ufal.ic.p2.jackut.persistence.UserDirectory;
+import br.ufal.ic.p2.jackut.persistence.legacy.LegacySnapshot;
 
 /**
  * Classe Facade que gerencia as operações principais do sistema Jackut.
  * 
  * Esta classe centraliza todas as funcionalidades do sistema, como criação de usuários,
  * gerenciamento de comunidades, envio de mensagens, relacionamentos e remoção de contas.
+ *
+ * Cada mutação é registrada no journal de operações; o estado completo só é gravado em
+ * snapshot periodicamente, quando o journal é compactado. O snapshot é mapeado em memória e
+ * cada usuário ou comunidade só é decodificado na primeira vez em que é acessado. A política
+ * de durabilidade do journal pode ser escolhida pela propriedade de sistema
+ * {@code jackut.durability} ({@code sync}, {@code interval:<ms>} ou {@code batch:<ops>}).
+ *
+ * A Facade pode ser usada por várias threads ao mesmo tempo. Cada operação adquire os locks
+ * dos usuários e comunidades que toca (ver {@link LockStripes}), de forma que operações sobre
+ * usuários diferentes executam em paralelo.
+ *
+ * Internamente os relacionamentos entre usuários usam identificadores numéricos atribuídos na
+ * criação da conta; os logins só são resolvidos aqui, na entrada e na saída das operações.
+ *
+ * Cada operação pública registra a sua latência e os erros lançados em {@link #getMetrics()},
+ * quando a coleta de métricas está ligada.
+ *
+ * As mensagens de comunidade ficam apenas no log da comunidade, de onde cada membro as lê pelo
+ * seu cursor; elas não são copiadas para as caixas de entrada dos membros. Os observadores
+ * registrados em uma comunidade são notificados por um {@link NotificationDispatcher}, fora dos
+ * locks da operação, e as entregas pendentes são concluídas antes de cada snapshot, da remoção de
+ * um usuário e de {@link #flush()}.
+ *
+ * As consultas de perfil, amizades, fãs e comunidades não adquirem locks: leem uma
+ * {@link ReadView}, com versões imutáveis dos registros, que as escritas substituem de forma
+ * atômica depois de alterar o estado. Cada consulta vê o sistema em um único instante, mesmo que
+ * haja escritas em andamento. Cada escrita deriva as versões novas das anteriores, copiando
+ * O(log n) dos relacionamentos de cada registro alterado.
+ *
+ * A memória ocupada pelos registros lidos do snapshot pode ser limitada pela propriedade de
+ * sistema {@code jackut.cache} (bytes, com sufixo opcional {@code k}, {@code m} ou {@code g}) ou
+ * por {@link #setCacheBudget(long)}. Passado o limite, os usuários e comunidades acessados há mais
+ * tempo são descartados da memória e voltam a ser lidos no próximo acesso: os iguais aos do
+ * snapshot, do próprio snapshot; os alterados depois dele, do arquivo de transbordo
+ * {@code jackut.spill} (ver {@link RecordSpill}), em que cada um é gravado individualmente ao ser
+ * descartado. No pior caso, cada descarte grava os registros alterados que descarta, e o
+ * transbordo cresce com cada nova versão deles até o próximo snapshot, isto é, por no máximo
+ * {@value #SNAPSHOT_INTERVAL} operações; o descarte nunca grava um snapshot completo.
+ *
+ * Cada usuário mantém em memória no máximo {@code jackut.inbox} recados não lidos (256 por
+ * padrão); os excedentes vão para um segmento em disco no diretório {@code inboxes} (ver
+ * {@link InboxStore}) e são lidos de volta em ordem.
  */
 public class Facade {
     private static final String DATA_FILE = "users.dat";
-    private Map<String, Users> users;
-    private Map<String, String> sessions;
-    private Map<String, Community> communities;
-    private int sessionCounter;
+    private static final String LEGACY_COMMUNITIES_FILE = "communities.dat";
+    private static final String LEGACY_SUFFIX = ".legacy";
+    private static final String JOURNAL_FILE = "jackut.journal";
+    private static final String SPILL_FILE = "jackut.spill";
+    private static final int SNAPSHOT_INTERVAL = 1000;
+    private static final String DURABILITY_PROPERTY = "jackut.durability";
+    private static final String METRICS_PROPERTY = "jackut.metrics";
+    private static final String CACHE_PROPERTY = "jackut.cache";
+    private static final String INBOX_PROPERTY = "jackut.inbox";
+    private static final String INBOX_DIRECTORY = "inboxes";
+    private static final int DEFAULT_INBOX_HEAD = 256;
+    private static final String REPLICA_PASSWORD = "";
+    private static final int LOCK_STRIPES = 256;
+    private final File dataDirectory;
+    private LazyRecordMap<Users> users;
+    private final SessionManager sessions;
+    private final NotificationDispatcher notifier;
+    private final FacadeMetrics metrics;
+    private LazyRecordMap<Community> communities;
+    private UserDirectory directory;
+    private final LockStripes locks;
+    private final InboxStore inboxes;
+    private final RecordSpill spill;
+    private final AtomicReference<ReadView> view = new AtomicReference<>(ReadView.EMPTY);
+    private MappedSnapshot snapshot;
+    private long snapshotSequence;
+    private Journal journal;
+    private final ThreadLocal<Boolean> inBatch = ThreadLocal.withInitial(() -> false);
+    private volatile long cacheBudget;
 
     /**
      * Construtor da classe Facade.
-     * Inicializa os mapas de usuários, comunidades e sessões e carrega os dados persistidos.
+     * Usa a política de durabilidade definida pela propriedade {@code jackut.durability},
+     * ou gravação síncrona se ela não estiver definida.
      */
     public Facade() {
-        users = new HashMap<>();
-        sessions = new HashMap<>();
-        communities = new HashMap<>();
-        sessionCounter = 0;
-        loadData();
+        this(DurabilityPolicy.parse(System.getProperty(DURABILITY_PROPERTY)));
+    }
+
+    /**
+     * Construtor da classe Facade.
+     * Inicializa os mapas de usuários, comunidades e sessões, carrega o último snapshot
+     * e reaplica as operações registradas no journal depois dele.
+     *
+     * @param durability Política de durabilidade do journal.
+     */
+    public Facade(DurabilityPolicy durability) {
+        this(new File("."), durability);
+    }
+
+    /**
+     * Construtor da classe Facade.
+     * Igual a {@link #Facade(DurabilityPolicy)}, mas com o snapshot e o journal gravados em
+     * um diretório, criado se ainda não existir.
+     *
+     * @param dataDirectory Diretório dos arquivos de dados.
+     * @param durability    Política de durabilidade do journal.
+     */
+    public Facade(File dataDirectory, DurabilityPolicy durability) {
+        this(dataDirectory, durability, new SessionManager());
+    }
+
+    /**
+     * Construtor da classe Facade usado pelo {@link ShardedFacade}, em que todas as partições
+     * compartilham as mesmas sessões.
+     *
+     * @param dataDirectory Diretório dos arquivos de dados.
+     * @param durability    Política de durabilidade do journal.
+     * @param sessions      Sessões abertas.
+     */
+    Facade(File dataDirectory, DurabilityPolicy durability, SessionManager sessions) {
+        this.dataDirectory = dataDirectory;
+        dataDirectory.mkdirs();
+        metrics = new FacadeMetrics(Boolean.getBoolean(METRICS_PROPERTY));
+        cacheBudget = parseCacheBudget(System.getProperty(CACHE_PROPERTY));
+        int inboxHead = Integer.getInteger(INBOX_PROPERTY, DEFAULT_INBOX_HEAD);
+        inboxes = new InboxStore(new File(dataDirectory, INBOX_DIRECTORY), inboxHead > 0 ? inboxHead : Integer.MAX_VALUE);
+        spill = new RecordSpill(new File(dataDirectory, SPILL_FILE), null);
+        this.sessions = sessions;
+        notifier = new NotificationDispatcher();
+        locks = new LockStripes(LOCK_STRIPES);
+
+        // A carga inclui a reaplicação do journal, que é a parte que cresce com o uso
+        long start = metrics.start();
+        LegacySnapshot legacy = loadData();
+        openJournal(durability);
+        if (legacy != null) {
+            importLegacy(legacy);
+        }
+        metrics.finish(Method.LOAD_DATA, start);
+    }
+
+    /**
+     * Retorna as métricas das operações desta Facade. A coleta começa ligada se a propriedade de
+     * sistema {@code jackut.metrics} for {@code true}, e pode ser ligada a qualquer momento com
+     * {@link FacadeMetrics#setEnabled(boolean)}.
+     *
+     * @return As métricas.
+     */
+    public FacadeMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Define o limite de memória dos usuários e comunidades lidos do snapshot, medido pelo tamanho
+     * que ocupam no snapshot. Os registros alterados depois do último snapshot são gravados
+     * individualmente no arquivo de transbordo ao serem descartados; limites muito pequenos fazem
+     * esse arquivo crescer mais rápido, mas não fazem o snapshot ser gravado com mais frequência.
+     *
+     * @param bytes Limite em bytes, ou {@code 0} para manter todos os registros em memória.
+     */
+    public void setCacheBudget(long bytes) {
+        cacheBudget = Math.max(0, bytes);
+    }
+
+    public long getCacheBudget() {
+        return cacheBudget;
     }
 
     /**
      * Reseta o sistema, limpando todos os dados de usuários, comunidades e sessões.
      */
     public void resetSystem() {
-        users.clear();
-        sessions.clear();
-        communities.clear();
-        sessionCounter = 0;
-        saveData();
+        long start = metrics.start();
+        try {
+            LockStripes.Guard guard = locks.exclusive();
+            try (guard) {
+                notifier.flush();
+                applyResetSystem();
+                sessions.clear();
+                record(Operation.RESET_SYSTEM);
+                if (checkpoint()) {
+                    // Só depois do snapshot vazio nenhum arquivo ainda aponta para os segmentos
+                    inboxes.clear();
+                }
+            }
+        } catch (RuntimeException e) {
+            metrics.failed(Method.RESET_SYSTEM, e);
+            throw e;
+        } finally {
+            metrics.finish(Method.RESET_SYSTEM, start);
+        }
+    }
+
+    /**
+     * Encerra o sistema, garantindo que todas as operações realizadas estejam gravadas em disco.
+     *
+     * @throws UncheckedIOException Se alguma operação não puder ser gravada no journal.
+     */
+    public void closeSystem() {
+        long start = metrics.start();
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            metrics.failed(Method.CLOSE_SYSTEM, e);
+            throw e;
+        } finally {
+            metrics.finish(Method.CLOSE_SYSTEM, start);
+        }
+    }
+
+    /**
+     * Espera até que todas as operações realizadas até o momento estejam gravadas em disco e
+     * que as mensagens de comunidade já postadas tenham sido entregues aos observadores.
+     * No modo de durabilidade síncrono só sincroniza o que ainda não foi sincronizado por um lote.
+     *
+     * @throws UncheckedIOException Se alguma operação não puder ser gravada no journal. O journal
+     *                              volta a aceitar operações depois do próximo snapshot.
+     */
+    public void flush() {
+        long start = metrics.start();
+        try {
+            notifier.flush();
+            try {
+                journal.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Erro ao salvar os dados: " + e.getMessage(), e);
+            }
+        } catch (RuntimeException e) {
+            metrics.failed(Method.FLUSH, e);
+            throw e;
+        } finally {
+            metrics.finish(Method.FLUSH, start);
+        }
+    }
+
+    /**
+     * Grava imediatamente um snapshot completo do sistema e compacta o journal, sem esperar que
+     * ele atinja o tamanho limite.
+     */
+    public void saveSnapshot() {
+        long start = metrics.start();
+        try {
+            LockStripes.Guard guard = locks.exclusive();
+            try (guard) {
+                checkpoint();
+            }
+        } catch (RuntimeException e) {
+            metrics.failed(Method.SAVE_SNAPSHOT, e);
+            throw e;
+        } finally {
+            metrics.finish(Method.SAVE_SNAPSHOT, start);
+        }
+    }
+
+    /**
+     * Executa um lote de operações, na ordem em que foram acrescentadas, e grava o lote inteiro
+     * em disco uma única vez ao final.
+     *
+     * Cada operação é validada e aplicada como se fosse chamada diretamente; uma operação que
+     * falha não interrompe as seguintes nem desfaz as anteriores. A compactação do journal, se
+     * necessária, também só é feita ao final do lote.
+     *
+     * @param batch Lote de operações.
+     * @return O resultado de cada operação, na mesma ordem do lote.
+     * @throws UncheckedIOException Se o lote não puder ser gravado no journal.
+     */
+    public List<BatchResult> executeBatch(Batch batch) {
+        long start = metrics.start();
+        try {
+            List<BatchResult> results = new ArrayList<>(batch.size());
+            inBatch.set(true);
+            try {
+                for (Function<Facade, String> operation : batch.getOperations()) {
+                    try {
+                        results.add(new BatchResult(operation.apply(this), null));
+                    } catch (RuntimeException e) {
+                        results.add(new BatchResult(null, e));
+                    }
+                }
+            } finally {
+                inBatch.set(false);
+            }
+
+            flush();
+            checkpointIfDue();
+            return results;
+        } catch (RuntimeException e) {
+            metrics.failed(Method.EXECUTE_BATCH, e);
+            throw e;
+        } finally {
+            metrics.finish(Method.EXECUTE_BATCH, start);
+        }
     }
 
     /**
@@ -53,16 +337,28 @@ public class Facade {
      * @throws InvalidPasswordException Se a senha for inválida.
      */
     public void createUser(String login, String password, String name) {
-        validateLogin(login);
-        validatePassword(password);
+        long start = metrics.start();
+        try {
+            validateLogin(login);
+            validatePassword(password);
 
-        if (users.containsKey(login)) {
-            throw new InvalidLoginException("Uma conta com este login já existe.");
-        }
+            LockStripes.Guard guard = locks.lock(login);
+            try (guard) {
+                if (users.containsKey(login)) {
+                    throw new InvalidLoginException("Uma conta com este login já existe.");
+                }
 
-        Users newUser = UserFactory.createUser(login, password, name);
-        users.put(login, newUser);
-        saveData();
+                int id = directory.register(login);
+                applyCreateUser(id, login, password, name);
+                record(Operation.CREATE_USER, login, password, name, Integer.toString(id));
+            }
+            checkpointIfDue();
+        } catch (RuntimeException e) {
+            metrics.failed(Method.CREATE_USER, e);
+            throw e;
+        } finally {
+            metrics.finish(Method.CREATE_USER, start);
+        }
     }
 
     /**
@@ -98,16 +394,24 @@ public class Facade {
      * @throws InvalidLoginException Se o login ou senha forem inválidos.
      */
     public String openSession(String login, String password) {
-        if (login == null || login.trim().isEmpty() ||
-                password == null || password.trim().isEmpty() ||
-                !users.containsKey(login) ||
-                !users.get(login).getPassword().equals(password)) {
-            throw new InvalidLoginException("Login ou senha inválidos.");
-        }
+        long start = metrics.start();
+        try {
+            if (login == null || login.trim().isEmpty() ||
+                    password == null || password.trim().isEmpty() ||
+                    !users.containsKey(login) ||
+                    !users.get(login).getPassword().equals(password)) {
+                throw new InvalidLoginException("Login ou senha inválidos.");
+            }
 
-        String sessionId = "session" + (++sessionCounter);
-        sessions.put(sessionId, login);
-        return sessionId;
+            String session = sessions.open(login);
+            checkpointIfDue();
+            return session;
+        } catch (RuntimeException e) {
+            metrics.failed(Method.OPEN_SESSION, e);
+            throw e;
+        } finally {
+            metrics.finish(Method.OPEN_SESSION, start);
+        }
     }
 
     /**
@@ -120,38 +424,43 @@ public class Facade {
      *                               aguardando aceitação.
      */
     public void addFriend(String sessionId, String friendLogin) {
-        if (!users.containsKey(friendLogin)) {
-            throw new UserNotFoundException("Usuário não cadastrado.");
-        }
-        if (!sessions.containsKey(sessionId)) {
-            throw new UserNotFoundException("Usuário não cadastrado.");
-        }
-
-        String login = sessions.get(sessionId);
-        Users user = users.get(login);
+        long start = metrics.start();
+        try {
+            if (!users.containsKey(friendLogin)) {
+                throw new UserNotFoundException("Usuário não cadastrado.");
+            }
+            String login = sessions.get(sessionId);
+            if (login == null) {
+                throw new UserNotFoundException("Usuário não cadastrado.");
+            }
 
-        if (login.equals(friendLogin)) {
-            throw new FriendshipException("Usuário não pode adicionar a si mesmo como amigo.");
-        }
+            if (login.equals(friendLogin)) {
+                throw new FriendshipException("Usuário não pode adicionar a si mesmo como amigo.");
+            }
 
-        Users friend = users.get(friendLogin);
+            LockStripes.Guard guard = locks.lock(login, friendLogin);
+            try (guard) {
+                Users user = users.get(login);
+                int friendId = users.get(friendLogin).getId();
 
-        if (user.isFriend(friendLogin)) {
-            throw new FriendshipException("Usuário já está adicionado como amigo.");
-        }
+                if (user.isFriend(friendId)) {
+                    throw new FriendshipException("Usuário já está adicionado como amigo.");
+                }
 
-        if (user.hasPendingRequest(friendLogin)) {
-            throw new FriendshipException("Usuário já está adicionado como amigo, esperando aceitação do convite.");
-        }
+                if (user.hasPendingRequest(friendId)) {
+                    throw new FriendshipException("Usuário já está adicionado como amigo, esperando aceitação do convite.");
+                }
 
-        if (friend.hasPendingRequest(login)) {
-            friend.acceptFriendRequest(login);
-            user.addFriend(friendLogin);
-        } else {
-            friend.addFriendRequest(login);
+                applyAddFriend(login, friendLogin);
+                record(Operation.ADD_FRIEND, login, friendLogin);
+            }
+            checkpointIfDue();
+        } catch (RuntimeException e) {
+            metrics.failed(Method.ADD_FRIEND, e);
+            throw e;
+        } finally {
+            metrics.finish(Method.ADD_FRIEND, start);
         }
-
-        saveData();
     }
 
     /**
@@ -163,12 +472,15 @@ public class Facade {
      * @throws UserNotFoundException Se o usuário não for encontrado.
      */
     public boolean isFriend(String login, String friendLogin) {
-        if (!users.containsKey(login)) {
-            throw new UserNotFoundException("Usuário não cadastrado.");
+        long start = metrics.start();
+        try {
+            return readUser(login).isFriend(friendLogin);
+        } catch (RuntimeException e) {
+            metrics.failed(Method.IS_FRIEND, e);
+            throw e;
+        } finally {
+            metrics.finish(Method.IS_FRIEND, start);
         }
-
-        Users user = users.get(login);
-        return user.isFriend(friendLogin);
     }
 
     /**
@@ -179,12 +491,15 @@ public class Facade {
      * @throws UserNotFoundException Se o usuário não for encontrado.
      */
     public String getFriends(String login) {
-        if (!users.containsKey(login)) {
-            throw new UserNotFoundException("Usuário não cadastrado.");
+        long start = metrics.start();
+        try {
+            return String.join(",", readUser(login).getFriends());
+        } catch (RuntimeException e) {
+            metrics.failed(Method.GET_FRIENDS, e);
+            throw e;
+        } finally {
+            metrics.finish(Method.GET_FRIENDS, start);
         }
-
-        Users user = users.get(login);
-        return String.join(",", user.getFriends());
     }
 
     /**
@@ -197,20 +512,20 @@ public class Facade {
      * @throws AttributeNotFilledException Se o atributo não estiver preenchido.
      */
     public String getUserAttribute(String login, String attribute) {
-        if (!users.containsKey(login)) {
-            throw new UserNotFoundException("Usuário não cadastrado.");
-        }
-
-        Users user = users.get(login);
+        long start = metrics.start();
+        try {
+            UserVersion user = readUser(login);
 
-        if (attribute.equalsIgnoreCase("name")) {
-            throw new AttributeNotFilledException("Atributo não preenchido.");
-        }
+            if (attribute.equalsIgnoreCase("name")) {
+                throw new AttributeNotFilledException("Atributo não preenchido.");
+            }
 
-        try {
             return user.getAttribute(attribute);
-        } catch (AttributeNotFilledException e) {
-            throw new AttributeNotFilledException("Atributo não preenchido.");
+        } catch (RuntimeException e) {
+            metrics.failed(Method.GET_USER_ATTRIBUTE, e);
+            throw e;
+        } finally {
+            metrics.finish(Method.GET_USER_ATTRIBUTE, start);
         }
     }
 
@@ -223,19 +538,24 @@ public class Facade {
      * @throws UserNotFoundException Se a sessão não for encontrada.
      */
     public void editProfile(String sessionId, String attribute, String value) {
-        if (!sessions.containsKey(sessionId)) {
-            throw new UserNotFoundException("Sessão inválida.");
-        }
-
-        String login = sessions.get(sessionId);
-        Users user = users.get(login);
-
-        if (attribute.equalsIgnoreCase("name")) {
-            user.setName(value);
-        } else {
-            user.setAttribute(attribute, value);
+        long start = metrics.start();
+        try {
+            String login = sessions.get(sessionId);
+            if (login == null) {
+                throw new UserNotFoundException("Sessão inválida.");
+            }
+            LockStripes.Guard guard = locks.lock(login);
+            try (guard) {
+                applyEditProfile(login, attribute, value);
+                record(Operation.EDIT_PROFILE, login, attribute, value);
+            }
+            checkpointIfDue();
+        } catch (RuntimeException e) {
+            metrics.failed(Method.EDIT_PROFILE, e);
+            throw e;
+        } finally {
+            metrics.finish(Method.EDIT_PROFILE, start);
         }
-        saveData();
     }
 
     /**
@@ -250,23 +570,33 @@ public class Facade {
      *                               si mesmo.
      */
     public void sendMessage(String sessionId, String recipientLogin, String message) {
-        if (!sessions.containsKey(sessionId)) {
-            throw new UserNotFoundException("Usuário não cadastrado.");
-        }
+        long start = metrics.start();
+        try {
+            String senderLogin = sessions.get(sessionId);
+            if (senderLogin == null) {
+                throw new UserNotFoundException("Usuário não cadastrado.");
+            }
 
-        String senderLogin = sessions.get(sessionId);
+            if (senderLogin.equals(recipientLogin)) {
+                throw new MessageException("Usuário não pode enviar recado para si mesmo.");
+            }
 
-        if (senderLogin.equals(recipientLogin)) {
-            throw new MessageException("Usuário não pode enviar recado para si mesmo.");
-        }
+            LockStripes.Guard guard = locks.lock(recipientLogin);
+            try (guard) {
+                if (!users.containsKey(recipientLogin)) {
+                    throw new UserNotFoundException("Usuário não cadastrado.");
+                }
 
-        if (!users.containsKey(recipientLogin)) {
-            throw new UserNotFoundException("Usuário não cadastrado.");
+                applySendMessage(senderLogin, recipientLogin, message);
+                record(Operation.SEND_MESSAGE, senderLogin, recipientLogin, message);
+            }
+            checkpointIfDue();
+        } catch (RuntimeException e) {
+            metrics.failed(Method.SEND_MESSAGE, e);
+            throw e;
+        } finally {
+            metrics.finish(Method.SEND_MESSAGE, start);
         }
-
-        Users recipient = users.get(recipientLogin);
-        recipient.addMessage(message);
-        saveData();
     }
 
     /**
@@ -279,19 +609,31 @@ public class Facade {
      * @throws UserNotInCommunityException    Se o usuário não for membro da comunidade.
      */
     public void sendMessageToCommunity(String sessionId, String communityName, String message) {
-        if (!sessions.containsKey(sessionId)) {
-            throw new UserNotFoundException("Usuário não cadastrado.");
-        }
+        long start = metrics.start();
+        try {
+            String sender = sessions.get(sessionId);
+            if (sender == null) {
+                throw new UserNotFoundException("Usuário não cadastrado.");
+            }
 
-        String sender = sessions.get(sessionId);
-        Community community = getCommunity(communityName);
+            LockStripes.Guard guard = locks.lock(communityName);
+            try (guard) {
+                Community community = getCommunity(communityName);
 
-        if (!community.getMembers().contains(sender)) {
-            throw new UserNotInCommunityException();
-        }
+                if (!community.isMember(sender)) {
+                    throw new UserNotInCommunityException();
+                }
 
-        community.addMessage(sender, message);
-        saveData();
+                applySendCommunityMessage(sender, communityName, message);
+                record(Operation.SEND_COMMUNITY_MESSAGE, sender, communityName, message);
+            }
+            checkpointIfDue();
+        } catch (RuntimeException e) {
+            metrics.failed(Method.SEND_MESSAGE_TO_COMMUNITY, e);
+            throw e;
+        } finally {
+            metrics.finish(Method.SEND_MESSAGE_TO_COMMUNITY, start);
+        }
     }
 
     /**
@@ -299,25 +641,94 @@ public class Facade {
      *
      * @param sessionId ID da sessão do usuário.
      * @return Conteúdo da mensagem.
-     * @throws UserNotFoundException Se a sessão não for encontrada.
+     * @throws UserNotFoundException Se a sessão não for encontrada ou a conta tiver sido removida.
      * @throws NoMessagesException   Se não houver mensagens para o usuário.
      */
     public String readMessage(String sessionId) {
-        if (!sessions.containsKey(sessionId)) {
-            throw new UserNotFoundException("Usuário não cadastrado.");
+        long start = metrics.start();
+        try {
+            String login = sessions.get(sessionId);
+            if (login == null) {
+                throw new UserNotFoundException("Usuário não cadastrado.");
+            }
+            String message = null;
+
+            // O índice do usuário aponta as comunidades com mensagens não lidas, na ordem em que chegaram.
+            // O usuário é procurado a cada volta, pois pode ser descartado da memória entre elas, e a
+            // conta pode ter sido removida por outra sessão aberta
+            while (message == null) {
+                Users user = users.get(login);
+                if (user == null) {
+                    throw new UserNotFoundException("Usuário não cadastrado.");
+                }
+                String communityName = user.nextUnreadCommunity();
+                if (communityName == null) {
+                    break;
+                }
+
+                LockStripes.Guard guard = locks.lock(communityName);
+                try (guard) {
+                    if (!users.containsKey(login)) {
+                        throw new UserNotFoundException("Usuário não cadastrado.");
+                    }
+                    Community community = communities.get(communityName);
+                    if (community != null && community.hasUnread(login)) {
+                        message = applyReadMessage(login, communityName);
+                        record(Operation.READ_MESSAGE, login, communityName);
+                    } else {
+                        users.get(login).markRead(communityName);
+                    }
+                }
+            }
+
+            if (message == null) {
+                throw new NoMessagesException();
+            }
+            checkpointIfDue();
+            return message;
+        } catch (RuntimeException e) {
+            metrics.failed(Method.READ_MESSAGE, e);
+            throw e;
+        } finally {
+            metrics.finish(Method.READ_MESSAGE, start);
         }
+    }
+
+    /**
+     * Lê o próximo recado recebido pelo usuário, na ordem de chegada. Os recados mais antigos
+     * que a caixa de entrada gravou em disco são lidos de volta dos segmentos.
+     *
+     * @param sessionId ID da sessão do usuário.
+     * @return Conteúdo do recado.
+     * @throws UserNotFoundException Se a sessão não for encontrada.
+     * @throws MessageException      Se não houver recados para o usuário.
+     */
+    public String readDirectMessage(String sessionId) {
+        long start = metrics.start();
+        try {
+            String login = sessions.get(sessionId);
+            if (login == null) {
+                throw new UserNotFoundException("Usuário não cadastrado.");
+            }
 
-        String user = sessions.get(sessionId);
-        for (Community community : communities.values()) {
-            if (community.getMembers().contains(user)) {
-                try {
-                    return community.readMessage(user);
-                } catch (NoMessagesException ignored) {
-                    // Continue procurando em outras comunidades
+            String message;
+            LockStripes.Guard guard = locks.lock(login);
+            try (guard) {
+                if (!users.containsKey(login)) {
+                    throw new UserNotFoundException("Usuário não cadastrado.");
                 }
+
+                message = applyReadDirectMessage(login);
+                record(Operation.READ_DIRECT_MESSAGE, login);
             }
+            checkpointIfDue();
+            return message;
+        } catch (RuntimeException e) {
+            metrics.failed(Method.READ_DIRECT_MESSAGE, e);
+            throw e;
+        } finally {
+            metrics.finish(Method.READ_DIRECT_MESSAGE, start);
         }
-        throw new NoMessagesException();
     }
 
     /**
@@ -329,14 +740,25 @@ public class Facade {
      * @throws CommunityAlreadyExistsException Se a comunidade já existir.
      */
     public void createCommunity(String sessionId, String name, String description) {
-        if (communities.containsKey(name)) {
-            throw new CommunityAlreadyExistsException();
-        }
+        long start = metrics.start();
+        try {
+            LockStripes.Guard guard = locks.lock(sessions.get(sessionId), name);
+            try (guard) {
+                if (communities.containsKey(name)) {
+                    throw new CommunityAlreadyExistsException();
+                }
 
-        String owner = getSessionUser(sessionId);
-        Community community = CommunityFactory.createCommunity(name, description, owner);
-        communities.put(name, community);
-        saveData();
+                String owner = getSessionUser(sessionId);
+                applyCreateCommunity(owner, name, description);
+                record(Operation.CREATE_COMMUNITY, owner, name, description);
+            }
+            checkpointIfDue();
+        } catch (RuntimeException e) {
+            metrics.failed(Method.CREATE_COMMUNITY, e);
+            throw e;
+        } finally {
+            metrics.finish(Method.CREATE_COMMUNITY, start);
+        }
     }
 
     /**
@@ -349,22 +771,50 @@ public class Facade {
      * @throws UserAlreadyInCommunityException Se o usuário já estiver na comunidade.
      */
     public void addUserToCommunity(String sessionId, String communityName) {
-        if (!sessions.containsKey(sessionId)) {
-            throw new UserNotFoundException("Usuário não cadastrado.");
-        }
+        long start = metrics.start();
+        try {
+            String userLogin = sessions.get(sessionId);
+            if (userLogin == null) {
+                throw new UserNotFoundException("Usuário não cadastrado.");
+            }
+
+            LockStripes.Guard guard = locks.lock(userLogin, communityName);
+            try (guard) {
+                Community community = getCommunity(communityName);
 
-        String userLogin = sessions.get(sessionId);
-        Community community = getCommunity(communityName);
+                if (community.isMember(userLogin)) {
+                    throw new UserAlreadyInCommunityException();
+                }
 
-        if (community.getMembers().contains(userLogin)) {
-            throw new UserAlreadyInCommunityException();
+                applyJoinCommunity(userLogin, communityName);
+                record(Operation.JOIN_COMMUNITY, userLogin, communityName);
+            }
+            checkpointIfDue();
+        } catch (RuntimeException e) {
+            metrics.failed(Method.ADD_USER_TO_COMMUNITY, e);
+            throw e;
+        } finally {
+            metrics.finish(Method.ADD_USER_TO_COMMUNITY, start);
         }
+    }
 
-        Users user = users.get(userLogin);
-        community.addMember(userLogin);
-        community.addObserver(user);
-        user.addCommunity(communityName);
-        saveData();
+    /**
+     * Obtém os fãs de um usuário, isto é, os usuários que o adicionaram como ídolo.
+     *
+     * @param login Login do usuário.
+     * @return Logins dos fãs no formato {@code {fa1,fa2}}.
+     * @throws UserNotFoundException Se o usuário não existir.
+     */
+    public String getFans(String login) {
+        long start = metrics.start();
+        try {
+            return "{" + String.join(",", readUser(login).getFans()) + "}";
+        } catch (RuntimeException e) {
+            metrics.failed(Method.GET_FANS, e);
+            throw e;
+        } finally {
+            metrics.finish(Method.GET_FANS, start);
+        }
     }
 
     /**
@@ -375,17 +825,15 @@ public class Facade {
      * @throws UserNotFoundException Se o usuário não for encontrado.
      */
     public String getUserCommunities(String login) {
-        if (!users.containsKey(login)) {
-            throw new UserNotFoundException("Usuário não cadastrado.");
-        }
-
-        Users user = users.get(login);
-        List<String> userCommunities = user.getCommunities();
-
-        if (userCommunities.isEmpty()) {
-            return "{}";
+        long start = metrics.start();
+        try {
+            return "{" + String.join(",", readUser(login).getCommunities()) + "}";
+        } catch (RuntimeException e) {
+            metrics.failed(Method.GET_USER_COMMUNITIES, e);
+            throw e;
+        } finally {
+            metrics.finish(Method.GET_USER_COMMUNITIES, start);
         }
-        return "{" + String.join(",", userCommunities) + "}";
     }
 
     /**
@@ -396,8 +844,15 @@ public class Facade {
      * @throws CommunityNotFoundException Se a comunidade não for encontrada.
      */
     public String getCommunityDescription(String name) {
-        Community community = getCommunity(name);
-        return community.getDescription();
+        long start = metrics.start();
+        try {
+            return readCommunity(name).getDescription();
+        } catch (RuntimeException e) {
+            metrics.failed(Method.GET_COMMUNITY_DESCRIPTION, e);
+            throw e;
+        } finally {
+            metrics.finish(Method.GET_COMMUNITY_DESCRIPTION, start);
+        }
     }
 
     /**
@@ -408,8 +863,15 @@ public class Facade {
      * @throws CommunityNotFoundException Se a comunidade não for encontrada.
      */
     public String getCommunityOwner(String name) {
-        Community community = getCommunity(name);
-        return community.getOwner();
+        long start = metrics.start();
+        try {
+            return readCommunity(name).getOwner();
+        } catch (RuntimeException e) {
+            metrics.failed(Method.GET_COMMUNITY_OWNER, e);
+            throw e;
+        } finally {
+            metrics.finish(Method.GET_COMMUNITY_OWNER, start);
+        }
     }
 
     /**
@@ -420,8 +882,112 @@ public class Facade {
      * @throws CommunityNotFoundException Se a comunidade não for encontrada.
      */
     public String getCommunityMembers(String name) {
-        Community community = getCommunity(name);
-        return "{" + String.join(",", community.getMembers()) + "}";
+        long start = metrics.start();
+        try {
+            return "{" + String.join(",", readCommunity(name).getMembers()) + "}";
+        } catch (RuntimeException e) {
+            metrics.failed(Method.GET_COMMUNITY_MEMBERS, e);
+            throw e;
+        } finally {
+            metrics.finish(Method.GET_COMMUNITY_MEMBERS, start);
+        }
+    }
+
+    /**
+     * Converte identificadores de usuários nos seus logins.
+     *
+     * @param ids Identificadores dos usuários.
+     * @return Logins, na mesma ordem.
+     */
+    private List<String> logins(int[] ids) {
+        List<String> logins = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            logins.add(directory.login(id));
+        }
+        return logins;
+    }
+
+    /**
+     * Retorna a versão de leitura de um usuário, sem adquirir locks. Um usuário que ainda não
+     * tem versão, por não ter sido acessado desde a carga do snapshot, ganha uma com o seu lock
+     * adquirido.
+     *
+     * @param login Login do usuário.
+     * @return A versão do usuário.
+     * @throws UserNotFoundException Se o usuário não existir.
+     */
+    private UserVersion readUser(String login) {
+        UserVersion version = view.get().getUser(login);
+        if (version != null) {
+            return version;
+        }
+        if (!users.containsKey(login)) {
+            throw new UserNotFoundException("Usuário não cadastrado.");
+        }
+
+        UserVersion created;
+        LockStripes.Guard guard = locks.lock(login);
+        try (guard) {
+            Users user = users.get(login);
+            if (user == null) {
+                throw new UserNotFoundException("Usuário não cadastrado.");
+            }
+            created = userVersion(user);
+            view.updateAndGet(current -> current.withUser(login, created));
+        }
+        // O usuário pode ter sido lido do snapshot agora
+        checkpointIfDue();
+        return created;
+    }
+
+    /**
+     * Retorna a versão de leitura de uma comunidade, sem adquirir locks, como
+     * {@link #readUser(String)}.
+     *
+     * @param name Nome da comunidade.
+     * @return A versão da comunidade.
+     * @throws CommunityNotFoundException Se a comunidade não existir.
+     */
+    private CommunityVersion readCommunity(String name) {
+        CommunityVersion version = view.get().getCommunity(name);
+        if (version != null) {
+            return version;
+        }
+
+        CommunityVersion created;
+        LockStripes.Guard guard = locks.lock(name);
+        try (guard) {
+            created = communityVersion(getCommunity(name));
+            view.updateAndGet(current -> current.withCommunity(name, created));
+        }
+        checkpointIfDue();
+        return created;
+    }
+
+    /**
+     * Cria a primeira versão de leitura de um usuário a partir do registro. As versões seguintes
+     * são derivadas desta por {@link #publish(UnaryOperator)}, sem percorrer os relacionamentos.
+     */
+    private UserVersion userVersion(Users user) {
+        return new UserVersion(user.getAttributes(), logins(user.getFriends()), user.getCommunities(),
+                logins(user.getFans()));
+    }
+
+    private CommunityVersion communityVersion(Community community) {
+        return new CommunityVersion(community.getDescription(), community.getOwner(), community.getMembers());
+    }
+
+    /**
+     * Publica uma visão de leitura com as alterações de uma escrita. Deve ser chamado com os locks
+     * dos registros alterados adquiridos, para que as versões de cada registro sejam derivadas na
+     * ordem das alterações. Registros que ainda não têm versão continuam sem ela; a versão é
+     * criada a partir do registro, já alterado, quando ele for lido.
+     *
+     * @param change Função que aplica as alterações a uma visão. Pode ser chamada mais de uma vez,
+     *               se outra escrita publicar antes, então não deve ter efeitos colaterais.
+     */
+    private void publish(UnaryOperator<ReadView> change) {
+        view.updateAndGet(change);
     }
 
     /**
@@ -445,49 +1011,224 @@ public class Facade {
      * @return Login do usuário.
      */
     private String getSessionUser(String sessionId) {
-        if (!sessions.containsKey(sessionId)) {
+        String login = sessions.get(sessionId);
+        if (login == null) {
             throw new UserNotFoundException("Sessão inválida.");
         }
-        return sessions.get(sessionId);
+        return login;
     }
 
     /**
-     * Salva os dados do sistema em um arquivo.
+     * Salva um snapshot dos dados do sistema em um arquivo.
+     *
+     * Usuários e comunidades são gravados no mesmo arquivo, no formato de {@link SnapshotCodec},
+     * junto com a sequência do journal. O arquivo só substitui o snapshot anterior, com uma
+     * renomeação atômica, depois de completamente escrito e sincronizado com o disco, junto com
+     * os segmentos das caixas de entrada a que ele se refere; a renomeação também é sincronizada
+     * antes de retornar, de forma que o journal já pode ser descartado.
+     *
+     * @return {@code true} se o snapshot foi salvo, {@code false} caso contrário.
      */
-    private void saveData() {
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(DATA_FILE))) {
-            oos.writeObject(users);
+    private boolean saveData() {
+        File tempFile = new File(dataDirectory, DATA_FILE + ".tmp");
+        File dataFile = new File(dataDirectory, DATA_FILE);
+
+        long start = metrics.start();
+        SnapshotWriteEvent event = new SnapshotWriteEvent();
+        event.begin();
+        event.sequence = snapshotSequence;
+        try {
+            SnapshotCodec.write(tempFile, snapshotSequence, users, communities, directory, snapshot);
+            inboxes.sync();
+            event.success = true;
         } catch (IOException e) {
+            metrics.failed(Method.SAVE_DATA, e);
             System.err.println("Erro ao salvar os dados: " + e.getMessage());
+            return false;
+        } finally {
+            metrics.finish(Method.SAVE_DATA, start);
+            event.bytes = tempFile.length();
+            event.commit();
         }
 
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream("communities.dat"))) {
-            oos.writeObject(communities);
+        try {
+            DurableFiles.replace(tempFile, dataFile);
         } catch (IOException e) {
-            System.err.println("Erro ao salvar os dados: " + e.getMessage());
+            System.err.println("Erro ao salvar os dados: não foi possível substituir " + DATA_FILE + ": "
+                    + e.getMessage());
+            return false;
         }
-    }
 
-    /**
-     * Carrega os dados do sistema de um arquivo.
-     */
-    @SuppressWarnings("unchecked")
-    private void loadData() {
-        File file = new File(DATA_FILE);
-        if (!file.exists()) {
-            return;
+        // Registros ainda não acessados passam a ser lidos do novo snapshot
+        try {
+            snapshot = MappedSnapshot.open(dataFile);
+            users.rebase(snapshot.getUsers());
+            communities.rebase(snapshot.getCommunities());
+            directory.rebase(snapshot);
+            spill.reset(snapshot);
+        } catch (IOException e) {
+            System.err.println("Erro ao carregar os dados: " + e.getMessage());
         }
+        return true;
+    }
 
-        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(DATA_FILE))) {
-            users = (Map<String, Users>) ois.readObject();
-        } catch (IOException | ClassNotFoundException e) {
-            System.err.println("Erro ao carregar os dados: " + e.getMessage());
+    /**
+     * Mapeia o último snapshot dos dados do sistema. Os registros são decodificados sob demanda.
+     *
+     * Um arquivo de dados gravado por uma versão anterior ao formato binário é lido por inteiro e
+     * devolvido, para ser importado depois de aberto o journal; até lá o sistema fica vazio.
+     *
+     * @return Os dados no formato antigo, ou {@code null} se não houver dados nesse formato.
+     * @throws UncheckedIOException Se o arquivo de dados não puder ser lido ou estiver em um
+     *                              formato não suportado. O sistema não é iniciado, para que o
+     *                              arquivo não seja substituído por um snapshot vazio.
+     */
+    private LegacySnapshot loadData() {
+        File file = new File(dataDirectory, DATA_FILE);
+        LegacySnapshot legacy = null;
+        if (file.exists()) {
+            try {
+                if (LegacySnapshot.isLegacy(file)) {
+                    legacy = LegacySnapshot.read(file, new File(dataDirectory, LEGACY_COMMUNITIES_FILE));
+                } else {
+                    snapshot = MappedSnapshot.open(file);
+                    snapshotSequence = snapshot.getSequence();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Erro ao carregar os dados de " + file.getPath() + ": "
+                        + e.getMessage(), e);
+            }
+        }
+
+        directory = new UserDirectory(snapshot);
+        spill.reset(snapshot);
+        users = SnapshotCodec.users(snapshot, inboxes, spill);
+        communities = SnapshotCodec.communities(snapshot, spill);
+        view.set(ReadView.EMPTY);
+        return legacy;
+    }
+
+    /**
+     * Importa os dados gravados por uma versão anterior ao formato binário e os grava em um
+     * snapshot no formato atual. Os arquivos antigos são mantidos com o sufixo {@code .legacy},
+     * e a importação não se repete nas próximas inicializações.
+     *
+     * Os recados diretos do formato antigo não guardam o remetente, então são importados como
+     * recados do sistema. As mensagens de comunidade não lidas por cada membro formam o log da
+     * comunidade, e o cursor de cada membro aponta para a primeira delas.
+     *
+     * @param legacy Dados no formato antigo.
+     * @throws UncheckedIOException Se o snapshot no formato atual não puder ser gravado.
+     */
+    private void importLegacy(LegacySnapshot legacy) {
+        LockStripes.Guard guard = locks.exclusive();
+        try (guard) {
+            for (br.ufal.ic.p2.jackut.persistence.legacy.Users old : legacy.getUsers()) {
+                applyCreateUser(directory.register(old.getLogin()), old.getLogin(), old.getPassword(), old.getName());
+                Users user = users.get(old.getLogin());
+                old.getAttributes().forEach(user::setAttribute);
+                for (String message : old.getMessages()) {
+                    user.addMessage(new Message(Message.SYSTEM_SENDER, message));
+                }
+            }
+
+            for (br.ufal.ic.p2.jackut.persistence.legacy.Users old : legacy.getUsers()) {
+                Users user = users.get(old.getLogin());
+                int id = user.getId();
+                for (String login : old.getFriends()) {
+                    forLegacyUser(login, friend -> user.addFriend(friend.getId()));
+                }
+                for (String login : old.getPendingFriendRequests()) {
+                    forLegacyUser(login, requester -> {
+                        user.addFriendRequest(requester.getId());
+                        requester.addSentFriendRequest(id);
+                    });
+                }
+                for (String login : old.getIdols()) {
+                    forLegacyUser(login, idol -> {
+                        user.addIdol(idol.getId());
+                        idol.addFan(id);
+                    });
+                }
+                for (String login : old.getCrushes()) {
+                    forLegacyUser(login, crush -> {
+                        user.addCrush(crush.getId());
+                        crush.addCrushedBy(id);
+                    });
+                }
+                for (String login : old.getEnemies()) {
+                    forLegacyUser(login, enemy -> {
+                        user.addEnemy(enemy.getId());
+                        enemy.addEnemyOf(id);
+                    });
+                }
+            }
+
+            for (br.ufal.ic.p2.jackut.persistence.legacy.Community old : legacy.getCommunities()) {
+                importLegacyCommunity(old);
+            }
+
+            // As versões de leitura são criadas de novo no primeiro acesso
+            view.set(ReadView.EMPTY);
+
+            File dataFile = new File(dataDirectory, DATA_FILE);
+            File communitiesFile = new File(dataDirectory, LEGACY_COMMUNITIES_FILE);
+            try {
+                // O snapshot substitui users.dat, então a cópia é feita antes dele
+                Files.copy(dataFile.toPath(), new File(dataDirectory, DATA_FILE + LEGACY_SUFFIX).toPath(),
+                        StandardCopyOption.REPLACE_EXISTING);
+                if (!checkpoint()) {
+                    throw new IOException("não foi possível salvar o snapshot.");
+                }
+                if (communitiesFile.exists()) {
+                    Files.move(communitiesFile.toPath(),
+                            new File(dataDirectory, LEGACY_COMMUNITIES_FILE + LEGACY_SUFFIX).toPath(),
+                            StandardCopyOption.REPLACE_EXISTING);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Erro ao importar os dados: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    private void importLegacyCommunity(br.ufal.ic.p2.jackut.persistence.legacy.Community old) {
+        Users owner = users.get(old.getOwner());
+        if (owner == null || communities.containsKey(old.getName())) {
+            return;
+        }
+
+        // A fila de cada membro tem as mensagens postadas desde a sua entrada, menos as já lidas,
+        // então a mais longa contém todas as outras no seu fim
+        List<String> log = new ArrayList<>();
+        for (String member : old.getMembers()) {
+            if (old.getMessages(member).size() > log.size()) {
+                log = new ArrayList<>(old.getMessages(member));
+            }
+        }
+
+        Community community = CommunityFactory.createCommunity(old.getName(), old.getDescription(), old.getOwner());
+        community.restoreLog(0, log);
+        for (String member : old.getMembers()) {
+            Users user = users.get(member);
+            if (user == null) {
+                continue;
+            }
+            community.restoreMember(member, log.size() - old.getMessages(member).size());
+            if (!member.equals(old.getOwner())) {
+                user.addCommunity(old.getName());
+            }
+            if (community.hasUnread(member)) {
+                user.markUnread(old.getName());
+            }
         }
+        communities.put(old.getName(), community);
+        owner.addOwnedCommunity(old.getName());
+    }
 
-        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream("communities.dat"))) {
-            communities = (Map<String, Community>) ois.readObject();
-        } catch (IOException | ClassNotFoundException e) {
-            communities = new HashMap<>();
+    private void forLegacyUser(String login, Consumer<Users> action) {
+        Users user = login == null ? null : users.get(login);
+        if (user != null) {
+            action.accept(user);
         }
     }
 
@@ -501,24 +1242,37 @@ public class Facade {
      * @throws InteractionWithEnemyException Se o ídolo for inimigo do usuário.
      */
     public void addIdol(String sessionId, String idolLogin) {
-        String userLogin = getSessionUser(sessionId);
-        Users user = users.get(userLogin);
-        Users idol = users.get(idolLogin);
+        long start = metrics.start();
+        try {
+            String userLogin = getSessionUser(sessionId);
 
-        if (userLogin.equals(idolLogin)) {
-            throw new AutoIdolException();
-        }
+            if (userLogin.equals(idolLogin)) {
+                throw new AutoIdolException();
+            }
 
-        if (user.isEnemy(idolLogin) || idol.isEnemy(userLogin)) {
-            throw new InteractionWithEnemyException(idol.getName());
-        }
+            LockStripes.Guard guard = locks.lock(userLogin, idolLogin);
+            try (guard) {
+                Users user = users.get(userLogin);
+                Users idol = users.get(idolLogin);
 
-        if (user.isIdol(idolLogin)) {
-            throw new IdolAlreadyExistsException();
-        }
+                if (user.isEnemy(idol.getId()) || idol.isEnemy(user.getId())) {
+                    throw new InteractionWithEnemyException(idol.getName());
+                }
+
+                if (user.isIdol(idol.getId())) {
+                    throw new IdolAlreadyExistsException();
+                }
 
-        user.addIdol(idolLogin);
-        saveData();
+                applyAddIdol(userLogin, idolLogin);
+                record(Operation.ADD_IDOL, userLogin, idolLogin);
+            }
+            checkpointIfDue();
+        } catch (RuntimeException e) {
+            metrics.failed(Method.ADD_IDOL, e);
+            throw e;
+        } finally {
+            metrics.finish(Method.ADD_IDOL, start);
+        }
     }
 
     /**
@@ -531,30 +1285,47 @@ public class Facade {
      * @throws InteractionWithEnemyException Se a paquera for inimiga do usuário.
      */
     public void addCrush(String sessionId, String crushLogin) {
-        String userLogin = getSessionUser(sessionId);
-        Users user = users.get(userLogin);
-        Users crush = users.get(crushLogin);
+        long start = metrics.start();
+        try {
+            String userLogin = getSessionUser(sessionId);
 
-        if (userLogin.equals(crushLogin)) {
-            throw new AutoCrushException();
-        }
+            if (userLogin.equals(crushLogin)) {
+                throw new AutoCrushException();
+            }
 
-        if (user.isEnemy(crushLogin) || crush.isEnemy(userLogin)) {
-            throw new InteractionWithEnemyException(crush.getName());
-        }
+            Users user;
+            Users crush;
+            boolean mutual;
 
-        if (user.isCrush(crushLogin)) {
-            throw new CrushAlreadyExistsException();
-        }
+            LockStripes.Guard guard = locks.lock(userLogin, crushLogin);
+            try (guard) {
+                user = users.get(userLogin);
+                crush = users.get(crushLogin);
+
+                if (user.isEnemy(crush.getId()) || crush.isEnemy(user.getId())) {
+                    throw new InteractionWithEnemyException(crush.getName());
+                }
 
-        user.addCrush(crushLogin);
+                if (user.isCrush(crush.getId())) {
+                    throw new CrushAlreadyExistsException();
+                }
 
-        if (crush.isCrush(userLogin)) {
-            sendMessage("Jackut", crushLogin, user.getName() + " é seu paquera - Recado do Jackut.");
-            sendMessage("Jackut", userLogin, crush.getName() + " é seu paquera - Recado do Jackut.");
-        }
+                applyAddCrush(userLogin, crushLogin);
+                record(Operation.ADD_CRUSH, userLogin, crushLogin);
+                mutual = crush.isCrush(user.getId());
+            }
+            checkpointIfDue();
 
-        saveData();
+            if (mutual) {
+                sendMessage("Jackut", crushLogin, user.getName() + " é seu paquera - Recado do Jackut.");
+                sendMessage("Jackut", userLogin, crush.getName() + " é seu paquera - Recado do Jackut.");
+            }
+        } catch (RuntimeException e) {
+            metrics.failed(Method.ADD_CRUSH, e);
+            throw e;
+        } finally {
+            metrics.finish(Method.ADD_CRUSH, start);
+        }
     }
 
     /**
@@ -566,20 +1337,37 @@ public class Facade {
      * @throws EnemyAlreadyExistsException Se o inimigo já estiver adicionado.
      */
     public void addEnemy(String sessionId, String enemyLogin) {
-        String userLogin = getSessionUser(sessionId);
-        Users user = users.get(userLogin);
-        
+        long start = metrics.start();
+        try {
+            String userLogin = getSessionUser(sessionId);
 
-        if (userLogin.equals(enemyLogin)) {
-            throw new AutoEnemyException();
-        }
+            if (userLogin.equals(enemyLogin)) {
+                throw new AutoEnemyException();
+            }
 
-        if (user.isEnemy(enemyLogin)) {
-            throw new EnemyAlreadyExistsException();
-        }
+            LockStripes.Guard guard = locks.lock(userLogin, enemyLogin);
+            try (guard) {
+                Users user = users.get(userLogin);
+                Users enemy = users.get(enemyLogin);
+
+                if (enemy == null) {
+                    throw new UserNotFoundException("Usuário não cadastrado.");
+                }
+
+                if (user.isEnemy(enemy.getId())) {
+                    throw new EnemyAlreadyExistsException();
+                }
 
-        user.addEnemy(enemyLogin);
-        saveData();
+                applyAddEnemy(userLogin, enemyLogin);
+                record(Operation.ADD_ENEMY, userLogin, enemyLogin);
+            }
+            checkpointIfDue();
+        } catch (RuntimeException e) {
+            metrics.failed(Method.ADD_ENEMY, e);
+            throw e;
+        } finally {
+            metrics.finish(Method.ADD_ENEMY, start);
+        }
     }
 
     /**
@@ -589,31 +1377,630 @@ public class Facade {
      * @throws UserNotFoundException Se o usuário não for encontrado.
      */
     public void removeUser(String sessionId) {
-        if (!sessions.containsKey(sessionId)) {
-            throw new UserNotFoundException("Usuário não cadastrado.");
+        long start = metrics.start();
+        try {
+            String userLogin = sessions.get(sessionId);
+            if (userLogin == null) {
+                throw new UserNotFoundException("Usuário não cadastrado.");
+            }
+
+            // A remoção percorre todas as comunidades e usuários, então exclui qualquer outra operação
+            LockStripes.Guard guard = locks.exclusive();
+            try (guard) {
+                // As entregas pendentes aos observadores terminam antes da remoção
+                notifier.flush();
+                applyRemoveUser(userLogin);
+                sessions.remove(sessionId);
+                record(Operation.REMOVE_USER, userLogin);
+            }
+            checkpointIfDue();
+        } catch (RuntimeException e) {
+            metrics.failed(Method.REMOVE_USER, e);
+            throw e;
+        } finally {
+            metrics.finish(Method.REMOVE_USER, start);
+        }
+    }
+
+    /**
+     * Retorna o nome de um usuário, ou {@code null} se ele não existir nesta Facade. Usado pelo
+     * {@link ShardedFacade} para consultar usuários de outras partições.
+     *
+     * @param login Login do usuário.
+     * @return Nome do usuário.
+     */
+    String getUserName(String login) {
+        Users user = login == null ? null : users.get(login);
+        return user == null ? null : user.getName();
+    }
+
+    /**
+     * Cria a réplica de um usuário de outra partição, se ela ainda não existir. A réplica guarda
+     * o nome e os relacionamentos do usuário com os desta partição, e não abre sessões, pois
+     * não tem senha.
+     *
+     * @param login Login do usuário.
+     * @param name  Nome do usuário.
+     */
+    void addReplica(String login, String name) {
+        LockStripes.Guard guard = locks.lock(login);
+        try (guard) {
+            if (users.containsKey(login)) {
+                return;
+            }
+
+            int id = directory.register(login);
+            applyCreateUser(id, login, REPLICA_PASSWORD, name);
+            record(Operation.CREATE_USER, login, REPLICA_PASSWORD, name, Integer.toString(id));
+        }
+        checkpointIfDue();
+    }
+
+    /**
+     * Aplica e registra uma operação já validada e aplicada em outra partição ou no processo
+     * primário da replicação, sem repetir as validações. A remoção de um usuário que não existe
+     * nesta Facade é ignorada.
+     *
+     * @param operation Operação.
+     * @param args      Argumentos da operação, como gravados no journal.
+     */
+    public void replicate(Operation operation, String... args) {
+        if (operation == Operation.RESET_SYSTEM) {
+            LockStripes.Guard guard = locks.exclusive();
+            try (guard) {
+                notifier.flush();
+                applyResetSystem();
+                record(operation);
+                checkpoint();
+            }
+            return;
+        }
+        if (operation == Operation.REMOVE_USER) {
+            LockStripes.Guard guard = locks.exclusive();
+            try (guard) {
+                if (!users.containsKey(args[0])) {
+                    return;
+                }
+                notifier.flush();
+                applyRemoveUser(args[0]);
+                record(operation, args);
+            }
+        } else {
+            LockStripes.Guard guard = locks.lock(args[0], args[1]);
+            try (guard) {
+                apply(new JournalRecord(0, operation, args));
+                record(operation, args);
+            }
+        }
+        checkpointIfDue();
+    }
+
+    /**
+     * Retorna a sequência da última operação registrada no journal.
+     *
+     * @return Número de sequência.
+     */
+    public long getLastSequence() {
+        return journal.getLastSequence();
+    }
+
+    /**
+     * Salva um snapshot e passa a enviar a um ouvinte cada operação registrada depois dele, para
+     * que outro processo reproduza o sistema a partir do snapshot. Nenhuma operação é registrada
+     * entre o snapshot e o registro do ouvinte.
+     *
+     * @param listener Ouvinte que recebe as operações, chamado com o journal bloqueado.
+     * @return Snapshot salvo e segmentos das caixas de entrada, que devem ser fechados por quem
+     *         chamar.
+     * @throws IOException Se o snapshot não puder ser salvo ou aberto.
+     */
+    public SnapshotFiles subscribe(Consumer<JournalRecord> listener) throws IOException {
+        LockStripes.Guard guard = locks.exclusive();
+        try (guard) {
+            if (!checkpoint()) {
+                throw new IOException("Não foi possível salvar o snapshot.");
+            }
+
+            SnapshotFiles files = new SnapshotFiles(new File(dataDirectory, DATA_FILE), inboxes);
+            journal.addListener(listener);
+            return files;
+        }
+    }
+
+    /**
+     * Deixa de enviar operações a um ouvinte registrado com {@link #subscribe(Consumer)}.
+     *
+     * @param listener Ouvinte.
+     */
+    public void unsubscribe(Consumer<JournalRecord> listener) {
+        journal.removeListener(listener);
+    }
+
+    /**
+     * Substitui todo o estado do sistema pelo de um snapshot recebido de outro processo. As
+     * sessões abertas são encerradas e os registros antigos do journal são descartados.
+     *
+     * @param snapshotFile     Arquivo do snapshot, movido para o diretório de dados.
+     * @param segmentDirectory Diretório com os segmentos das caixas de entrada recebidos junto
+     *                         com o snapshot, movidos para o diretório de segmentos.
+     * @return Sequência do journal do outro processo contida no snapshot.
+     * @throws IOException Se o snapshot ou os segmentos não puderem ser movidos, ou se o
+     *                     snapshot não puder ser lido.
+     */
+    public long restoreSnapshot(File snapshotFile, File segmentDirectory) throws IOException {
+        LockStripes.Guard guard = locks.exclusive();
+        try (guard) {
+            notifier.flush();
+            Files.move(snapshotFile.toPath(), new File(dataDirectory, DATA_FILE).toPath(),
+                    StandardCopyOption.REPLACE_EXISTING);
+            inboxes.clear();
+            File[] segments = segmentDirectory.listFiles();
+            if (segments != null) {
+                inboxes.getDirectory().mkdirs();
+                for (File segment : segments) {
+                    Files.move(segment.toPath(), new File(inboxes.getDirectory(), segment.getName()).toPath(),
+                            StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+            sessions.clear();
+            snapshot = null;
+            try {
+                loadData();
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            if (snapshot == null) {
+                throw new IOException("Snapshot inválido.");
+            }
+            long sequence = snapshotSequence;
+
+            // O snapshot recebido tem a sequência do outro processo; um novo snapshot passa a
+            // usar a sequência deste journal, descartando os registros anteriores
+            checkpoint();
+            return sequence;
+        }
+    }
+
+    /**
+     * Aplica uma operação lida do journal ao estado em memória.
+     *
+     * @param record Registro da operação.
+     */
+    private void apply(JournalRecord record) {
+        switch (record.getOperation()) {
+            case CREATE_USER -> applyCreateUser(Integer.parseInt(record.arg(3)), record.arg(0), record.arg(1),
+                    record.arg(2));
+            case EDIT_PROFILE -> applyEditProfile(record.arg(0), record.arg(1), record.arg(2));
+            case ADD_FRIEND -> applyAddFriend(record.arg(0), record.arg(1));
+            case SEND_MESSAGE -> applySendMessage(record.arg(0), record.arg(1), record.arg(2));
+            case SEND_COMMUNITY_MESSAGE -> applySendCommunityMessage(record.arg(0), record.arg(1), record.arg(2));
+            case READ_MESSAGE -> applyReadMessage(record.arg(0), record.arg(1));
+            case READ_DIRECT_MESSAGE -> applyReadDirectMessage(record.arg(0));
+            case CREATE_COMMUNITY -> applyCreateCommunity(record.arg(0), record.arg(1), record.arg(2));
+            case JOIN_COMMUNITY -> applyJoinCommunity(record.arg(0), record.arg(1));
+            case ADD_IDOL -> applyAddIdol(record.arg(0), record.arg(1));
+            case ADD_CRUSH -> applyAddCrush(record.arg(0), record.arg(1));
+            case ADD_ENEMY -> applyAddEnemy(record.arg(0), record.arg(1));
+            case REMOVE_USER -> applyRemoveUser(record.arg(0));
+            case RESET_SYSTEM -> applyResetSystem();
+        }
+    }
+
+    private void applyResetSystem() {
+        users.clear();
+        communities.clear();
+        directory.clear();
+        inboxes.discardRetired();
+        snapshot = null;
+        spill.reset(null);
+        view.set(ReadView.EMPTY);
+    }
+
+    private void applyCreateUser(int id, String login, String password, String name) {
+        directory.register(id, login);
+        Users newUser = UserFactory.createUser(id, login, password, name);
+        newUser.attachInbox(inboxes);
+        users.put(login, newUser);
+        publish(current -> current.withUser(login, UserVersion.EMPTY));
+    }
+
+    private void applyEditProfile(String login, String attribute, String value) {
+        Users user = users.get(login);
+
+        if (attribute.equalsIgnoreCase("name")) {
+            user.setName(value);
+        } else {
+            user.setAttribute(attribute, value);
+            publish(current -> current.updateUser(login, version -> version.withAttribute(attribute, value)));
+        }
+    }
+
+    private void applyAddFriend(String login, String friendLogin) {
+        Users user = users.get(login);
+        Users friend = users.get(friendLogin);
+
+        if (friend.hasPendingRequest(user.getId())) {
+            friend.acceptFriendRequest(user.getId());
+            user.removeSentFriendRequest(friend.getId());
+            user.addFriend(friend.getId());
+            publish(current -> current
+                    .updateUser(login, version -> version.withFriend(friendLogin))
+                    .updateUser(friendLogin, version -> version.withFriend(login)));
+        } else {
+            // Pedidos pendentes não aparecem nas consultas
+            friend.addFriendRequest(user.getId());
+            user.addSentFriendRequest(friend.getId());
+        }
+    }
+
+    private void applySendMessage(String senderLogin, String recipientLogin, String message) {
+        Users sender = users.get(senderLogin);
+        Users recipient = users.get(recipientLogin);
+        if (sender == null) {
+            recipient.addMessage(new Message(Message.SYSTEM_SENDER, message));
+            return;
+        }
+
+        recipient.addMessage(new Message(sender.getId(), message));
+        sender.addMessagedUser(recipient.getId());
+    }
+
+    private void applySendCommunityMessage(String sender, String communityName, String message) {
+        Community community = communities.get(communityName);
+        Users author = users.get(sender);
+        List<String> unread = community.addMessage(sender, author.getId(), message, notifier);
+
+        for (String member : unread) {
+            Users user = users.get(member);
+            if (user != null) {
+                user.markUnread(communityName);
+            }
+        }
+    }
+
+    private String applyReadMessage(String login, String communityName) {
+        Community community = communities.get(communityName);
+        String message = community.readMessage(login);
+        if (!community.hasUnread(login)) {
+            users.get(login).markRead(communityName);
+        }
+        return message;
+    }
+
+    private String applyReadDirectMessage(String login) {
+        return users.get(login).readMessage();
+    }
+
+    private void applyCreateCommunity(String owner, String name, String description) {
+        Community community = CommunityFactory.createCommunity(name, description, owner);
+        communities.put(name, community);
+        users.get(owner).addOwnedCommunity(name);
+        CommunityVersion version = communityVersion(community);
+        publish(current -> current.withCommunity(name, version));
+    }
+
+    private void applyJoinCommunity(String login, String communityName) {
+        Users user = users.get(login);
+        Community community = communities.get(communityName);
+        community.addMember(login);
+        user.addCommunity(communityName);
+        publish(current -> current
+                .updateUser(login, version -> version.withCommunity(communityName))
+                .updateCommunity(communityName, version -> version.withMember(login)));
+    }
+
+    private void applyAddIdol(String login, String idolLogin) {
+        Users user = users.get(login);
+        Users idol = users.get(idolLogin);
+        user.addIdol(idol.getId());
+        idol.addFan(user.getId());
+        publish(current -> current.updateUser(idolLogin, version -> version.withFan(login)));
+    }
+
+    private void applyAddCrush(String login, String crushLogin) {
+        Users user = users.get(login);
+        Users crush = users.get(crushLogin);
+        user.addCrush(crush.getId());
+        crush.addCrushedBy(user.getId());
+    }
+
+    private void applyAddEnemy(String login, String enemyLogin) {
+        Users user = users.get(login);
+        Users enemy = users.get(enemyLogin);
+        user.addEnemy(enemy.getId());
+        enemy.addEnemyOf(user.getId());
+    }
+
+    /**
+     * Remove um usuário e tudo o que aponta para ele. Os índices inversos de cada relacionamento
+     * indicam exatamente quais registros precisam ser alterados.
+     *
+     * @param login Login do usuário.
+     */
+    private void applyRemoveUser(String login) {
+        UserRemovalEvent event = new UserRemovalEvent();
+        event.begin();
+        Users user = users.get(login);
+        int id = user.getId();
+        user.retireInbox();
+        List<UnaryOperator<ReadView>> changes = new ArrayList<>();
+
+        // Comunidades criadas pelo usuário deixam de existir para todos os membros
+        for (String name : user.getOwnedCommunities()) {
+            Community community = communities.remove(name);
+            if (community != null) {
+                for (String member : community.getMembers()) {
+                    Users memberUser = users.get(member);
+                    if (memberUser != null) {
+                        memberUser.removeCommunity(name);
+                        // Sem isso a marca ficaria no índice até uma leitura descartá-la, o que não vai para o journal
+                        memberUser.markRead(name);
+                        changes.add(current -> current.updateUser(member, version -> version.withoutCommunity(name)));
+                    }
+                }
+                changes.add(current -> current.withCommunity(name, null));
+            }
+        }
+        for (String name : user.getCommunities()) {
+            Community community = communities.get(name);
+            if (community != null) {
+                community.removeMember(login);
+                changes.add(current -> current.updateCommunity(name, version -> version.withoutMember(login)));
+            }
+        }
+
+        for (int friend : user.getFriends()) {
+            forUser(friend, other -> {
+                other.removeFriend(id);
+                changes.add(current -> current.updateUser(other.getLogin(), version -> version.withoutFriend(login)));
+            });
+        }
+        for (int requester : user.getPendingFriendRequests()) {
+            forUser(requester, other -> other.removeSentFriendRequest(id));
+        }
+        for (int requested : user.getSentFriendRequests()) {
+            forUser(requested, other -> other.removeFriendRequest(id));
+        }
+        for (int idol : user.getIdols()) {
+            forUser(idol, other -> {
+                other.removeFan(id);
+                changes.add(current -> current.updateUser(other.getLogin(), version -> version.withoutFan(login)));
+            });
+        }
+        for (int fan : user.getFans()) {
+            forUser(fan, other -> other.removeIdol(id));
+        }
+        for (int crush : user.getCrushes()) {
+            forUser(crush, other -> other.removeCrushedBy(id));
+        }
+        for (int admirer : user.getCrushedBy()) {
+            forUser(admirer, other -> other.removeCrush(id));
+        }
+        for (int enemy : user.getEnemies()) {
+            forUser(enemy, other -> other.removeEnemyOf(id));
+        }
+        for (int rival : user.getEnemyOf()) {
+            forUser(rival, other -> other.removeEnemy(id));
         }
 
-        String userLogin = sessions.get(sessionId);
-        Users user = users.get(userLogin);
+        // Remover mensagens enviadas pelo usuário, só nas caixas de entrada que as receberam
+        int[] recipients = user.getMessagedUsers();
+        for (int recipient : recipients) {
+            forUser(recipient, other -> other.removeMessagesFrom(id));
+        }
 
-        // Remover o usuário de todas as comunidades
-        for (Community community : communities.values()) {
-            if (community.getOwner().equals(userLogin)) {
-                communities.remove(community.getName());
+        users.remove(login);
+        directory.release(id);
+        changes.add(current -> current.withUser(login, null));
+        publish(current -> {
+            ReadView next = current;
+            for (UnaryOperator<ReadView> change : changes) {
+                next = change.apply(next);
+            }
+            return next;
+        });
+
+        if (event.shouldCommit()) {
+            event.login = login;
+            event.ownedCommunities = user.getOwnedCommunities().size();
+            event.communities = user.getCommunities().size();
+            event.relationships = user.getFriends().length + user.getPendingFriendRequests().length
+                    + user.getSentFriendRequests().length + user.getIdols().length + user.getFans().length
+                    + user.getCrushes().length + user.getCrushedBy().length + user.getEnemies().length
+                    + user.getEnemyOf().length;
+            event.inboxes = recipients.length;
+            event.commit();
+        }
+    }
+
+    /**
+     * Aplica uma ação ao usuário de um identificador, se a conta ainda existir.
+     */
+    private void forUser(int id, Consumer<Users> action) {
+        String login = directory.login(id);
+        Users user = login == null ? null : users.get(login);
+        if (user != null && user.getId() == id) {
+            action.accept(user);
+        }
+    }
+
+    /**
+     * Registra uma mutação no journal. Deve ser chamado com os locks da operação adquiridos,
+     * para que o journal tenha as operações sobre cada registro na ordem em que foram aplicadas.
+     *
+     * @param operation Operação realizada.
+     * @param args      Argumentos da operação.
+     * @throws UncheckedIOException Se a operação não puder ser gravada no journal.
+     */
+    private void record(Operation operation, String... args) {
+        try {
+            if (inBatch.get()) {
+                journal.appendDeferred(operation, args);
             } else {
-                community.removeMember(userLogin);
+                journal.append(operation, args);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Erro ao salvar os dados: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Compacta o journal quando ele atinge o tamanho limite, e descarta registros da memória
+     * quando eles passam do limite de {@link #setCacheBudget(long)}. Deve ser chamado sem locks
+     * adquiridos, pois o snapshot exige acesso exclusivo. Durante um lote a compactação fica
+     * para o final dele.
+     */
+    private void checkpointIfDue() {
+        if (inBatch.get() || (journal.getPendingRecords() < SNAPSHOT_INTERVAL && !isOverCacheBudget())) {
+            return;
+        }
+
+        LockStripes.Guard guard = locks.exclusive();
+        try (guard) {
+            if (journal.getPendingRecords() >= SNAPSHOT_INTERVAL) {
+                checkpoint();
+            } else if (isOverCacheBudget()) {
+                evictIfOverBudget();
+            }
+        }
+    }
+
+    /**
+     * Verifica se os registros em memória passaram do limite com uma folga de 25%, para que o
+     * descarte não seja disparado a cada registro lido.
+     */
+    private boolean isOverCacheBudget() {
+        long budget = cacheBudget;
+        return budget > 0 && loadedBytes() > budget + budget / 4;
+    }
+
+    private long loadedBytes() {
+        return users.getLoadedBytes() + communities.getLoadedBytes();
+    }
+
+    /**
+     * Descarta da memória os usuários e comunidades acessados há mais tempo até que os restantes
+     * caibam no limite de {@link #setCacheBudget(long)}. Os registros descartados saem também da
+     * visão de leitura e são lidos de novo no próximo acesso, do snapshot ou, se foram alterados
+     * depois dele, do arquivo de transbordo. Deve ser chamado com o lock exclusivo adquirido.
+     */
+    private void evictIfOverBudget() {
+        long budget = cacheBudget;
+        if (budget <= 0 || loadedBytes() <= budget) {
+            return;
+        }
+
+        notifier.flush();
+        CacheEvictionEvent event = new CacheEvictionEvent();
+        event.begin();
+        event.budget = budget;
+        event.bytesBefore = loadedBytes();
+
+        List<String> evictedUsers = new ArrayList<>();
+        List<String> evictedCommunities = new ArrayList<>();
+        try {
+            LazyRecordMap.evict(budget, List.of(users, communities),
+                    (map, key) -> (map == users ? evictedUsers : evictedCommunities).add(key));
+        } catch (UncheckedIOException e) {
+            // Os registros que não puderam ser transbordados continuam em memória
+            System.err.println("Erro ao descartar registros da memória: " + e.getCause().getMessage());
+        }
+        view.updateAndGet(current -> {
+            ReadView updated = current;
+            for (String login : evictedUsers) {
+                updated = updated.withUser(login, null);
+            }
+            for (String name : evictedCommunities) {
+                updated = updated.withCommunity(name, null);
             }
+            return updated;
+        });
+
+        event.bytesAfter = loadedBytes();
+        event.users = evictedUsers.size();
+        event.communities = evictedCommunities.size();
+        event.spilledBytes = spill.size();
+        event.commit();
+    }
+
+    /**
+     * Interpreta o limite de memória da propriedade {@code jackut.cache}.
+     *
+     * @param spec Limite em bytes, com sufixo opcional {@code k}, {@code m} ou {@code g}.
+     * @return O limite, ou {@code 0} se não houver limite.
+     * @throws IllegalArgumentException Se o limite for inválido.
+     */
+    private static long parseCacheBudget(String spec) {
+        if (spec == null || spec.trim().isEmpty()) {
+            return 0;
         }
 
-        // Remover mensagens enviadas pelo usuário
-        for (Users otherUser : users.values()) {
-            otherUser.removeMessagesFrom(userLogin);
+        String value = spec.trim().toLowerCase();
+        long unit;
+        switch (value.charAt(value.length() - 1)) {
+            case 'k':
+                unit = 1L << 10;
+                break;
+            case 'm':
+                unit = 1L << 20;
+                break;
+            case 'g':
+                unit = 1L << 30;
+                break;
+            default:
+                unit = 1;
         }
+        try {
+            long bytes = Long.parseLong(unit == 1 ? value : value.substring(0, value.length() - 1)) * unit;
+            if (bytes < 0) {
+                throw new IllegalArgumentException("Limite de memória inválido: " + spec);
+            }
+            return bytes;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Limite de memória inválido: " + spec);
+        }
+    }
 
-        // Remover o usuário do sistema
-        users.remove(userLogin);
-        sessions.remove(sessionId);
+    /**
+     * Salva um snapshot completo do sistema e descarta os registros do journal já contidos nele.
+     * O journal só é truncado depois que o snapshot está em disco, pois até lá é a única cópia
+     * durável das operações confirmadas. Deve ser chamado com o lock exclusivo adquirido.
+     *
+     * @return {@code true} se o snapshot foi salvo, {@code false} caso contrário.
+     */
+    private boolean checkpoint() {
+        notifier.flush();
+        snapshotSequence = journal.getLastSequence();
+        if (!saveData()) {
+            return false;
+        }
+        inboxes.deleteRetired();
+
+        try {
+            journal.truncate();
+        } catch (IOException e) {
+            System.err.println("Erro ao compactar o journal: " + e.getMessage());
+        }
+        evictIfOverBudget();
+        return true;
+    }
 
-        saveData();
+    /**
+     * Abre o journal e reaplica as operações registradas após o último snapshot.
+     *
+     * @param durability Política de durabilidade do journal.
+     * @throws UncheckedIOException Se o journal não puder ser lido ou reaberto para escrita. O
+     *                              sistema não é iniciado, pois as próximas operações não seriam
+     *                              registradas.
+     */
+    private void openJournal(DurabilityPolicy durability) {
+        File file = new File(dataDirectory, JOURNAL_FILE);
+        journal = new Journal(file, durability);
+        try {
+            journal.replay(snapshotSequence, this::apply);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Erro ao carregar os dados de " + file.getPath() + ": "
+                    + e.getMessage(), e);
+        }
     }
 }
@@ -0,0 +1,219 @@
+package br.ufal.ic.p2.jackut;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import br.ufal.ic.p2.jackut.persistence.InboxStore;
+
+/**
+ * Caixa de entrada de um usuário: fila de recados não lidos, na ordem de chegada.
+ *
+ * Sem um {@link InboxStore} todos os recados ficam em memória. Com ele, no máximo
+ * {@link InboxStore#getHeadLimit()} recados ficam na cauda, onde chegam os novos; ao passar
+ * disso, a cauda é acrescentada ao segmento do usuário em disco. A leitura consome a cabeça, que
+ * é recarregada do segmento em blocos do mesmo tamanho, e só depois que o segmento se esgota
+ * passa para a cauda. A fila é, portanto, cabeça, trecho não lido do segmento e cauda.
+ *
+ * Recados de um remetente removido que já estão no segmento não são apagados do arquivo: o
+ * remetente é anotado e os seus recados são pulados na leitura. Os identificadores de usuários
+ * removidos não são reaproveitados, de forma que nenhum recado novo é pulado por engano.
+ *
+ * A classe não é sincronizada; o {@link Users} dono da caixa serializa o acesso.
+ */
+public class Inbox {
+    private final ArrayDeque<Message> head = new ArrayDeque<>();
+    private final ArrayDeque<Message> tail = new ArrayDeque<>();
+    private InboxStore store;
+    private int owner;
+    private int generation;
+    private long readOffset;
+    private long spilledEnd;
+    private IntSet purgedSenders = new IntSet();
+
+    /**
+     * Passa a transferir os recados excedentes para um segmento em disco.
+     *
+     * @param store Segmentos das caixas de entrada.
+     * @param owner Identificador do dono da caixa, que nomeia o segmento.
+     */
+    public void attach(InboxStore store, int owner) {
+        this.store = store;
+        this.owner = owner;
+    }
+
+    /**
+     * Restaura a caixa gravada em um snapshot.
+     *
+     * @param head          Recados já lidos do segmento, que vêm antes do trecho não lido.
+     * @param generation    Geração do segmento.
+     * @param readOffset    Posição do próximo recado não lido do segmento.
+     * @param spilledEnd    Fim do trecho gravado.
+     * @param purgedSenders Remetentes removidos cujos recados no segmento devem ser pulados.
+     * @param tail          Recados que chegaram depois do trecho gravado.
+     */
+    public void restore(List<Message> head, int generation, long readOffset, long spilledEnd,
+                        int[] purgedSenders, List<Message> tail) {
+        this.head.addAll(head);
+        this.tail.addAll(tail);
+        this.generation = generation;
+        this.readOffset = readOffset;
+        this.spilledEnd = spilledEnd;
+        this.purgedSenders = new IntSet();
+        for (int sender : purgedSenders) {
+            this.purgedSenders.add(sender);
+        }
+    }
+
+    /**
+     * Acrescenta um recado ao fim da fila.
+     *
+     * @param message Recado recebido.
+     */
+    public void add(Message message) {
+        tail.add(message);
+        spillIfFull();
+    }
+
+    /**
+     * Remove o recado mais antigo da fila, lendo do segmento se necessário.
+     *
+     * @return O recado, ou {@code null} se a fila estiver vazia.
+     * @throws UncheckedIOException Se o segmento não puder ser lido.
+     */
+    public Message poll() {
+        while (head.isEmpty() && readOffset < spilledEnd) {
+            refill();
+        }
+        return head.isEmpty() ? tail.poll() : head.poll();
+    }
+
+    /**
+     * Remove da fila os recados de um remetente.
+     *
+     * @param senderId Identificador do remetente.
+     */
+    public void removeFrom(int senderId) {
+        head.removeIf(message -> message.getSenderId() == senderId);
+        tail.removeIf(message -> message.getSenderId() == senderId);
+        if (readOffset < spilledEnd) {
+            purgedSenders.add(senderId);
+        }
+    }
+
+    /**
+     * Retorna todos os recados da fila, sem consumi-los. Lê o trecho não lido do segmento
+     * inteiro, e por isso não deve ser usado em caixas grandes.
+     *
+     * @return Recados, na ordem de chegada.
+     * @throws UncheckedIOException Se o segmento não puder ser lido.
+     */
+    public List<Message> toList() {
+        List<Message> messages = new ArrayList<>(head);
+        if (readOffset < spilledEnd) {
+            readSegment(readOffset, Integer.MAX_VALUE, messages);
+        }
+        messages.addAll(tail);
+        return messages;
+    }
+
+    /**
+     * Retorna os recados já lidos do segmento e ainda não consumidos, que vêm antes do trecho
+     * não lido.
+     *
+     * @return Recados da cabeça, na ordem de chegada.
+     */
+    public List<Message> getHead() {
+        return new ArrayList<>(head);
+    }
+
+    /**
+     * Retorna os recados que chegaram depois do trecho gravado no segmento.
+     *
+     * @return Recados da cauda, na ordem de chegada.
+     */
+    public List<Message> getTail() {
+        return new ArrayList<>(tail);
+    }
+
+    public int getGeneration() {
+        return generation;
+    }
+
+    public long getReadOffset() {
+        return readOffset;
+    }
+
+    public long getSpilledEnd() {
+        return spilledEnd;
+    }
+
+    public int[] getPurgedSenders() {
+        return purgedSenders.toArray();
+    }
+
+    /**
+     * Aposenta o segmento atual, se houver um, para que seja apagado depois do próximo snapshot.
+     * Chamado quando o dono da caixa é removido.
+     */
+    public void retire() {
+        if (store != null && spilledEnd > 0) {
+            store.retire(owner, generation);
+            nextGeneration();
+        }
+    }
+
+    /**
+     * Acrescenta a cauda ao segmento quando ela passa do limite. Se a gravação falhar, os
+     * recados continuam em memória e a gravação é tentada de novo no próximo recado.
+     */
+    private void spillIfFull() {
+        if (store == null || tail.size() <= store.getHeadLimit()) {
+            return;
+        }
+
+        try {
+            spilledEnd = store.append(owner, generation, spilledEnd, tail);
+            tail.clear();
+        } catch (IOException e) {
+            System.err.println("Erro ao gravar os recados: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Carrega na cabeça o próximo bloco do segmento. Quando o segmento se esgota, ele é
+     * aposentado e o próximo acréscimo começa uma nova geração.
+     */
+    private void refill() {
+        readOffset = readSegment(readOffset, store == null ? 1 : store.getHeadLimit(), head);
+        if (readOffset >= spilledEnd) {
+            store.retire(owner, generation);
+            nextGeneration();
+        }
+    }
+
+    private long readSegment(long offset, int max, Collection<Message> messages) {
+        if (store == null) {
+            throw new UncheckedIOException(new IOException("Erro ao ler os recados: caixa sem segmentos."));
+        }
+        try {
+            return store.read(owner, generation, offset, spilledEnd, Math.max(1, max), message -> {
+                if (!purgedSenders.contains(message.getSenderId())) {
+                    messages.add(message);
+                }
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException("Erro ao ler os recados: " + e.getMessage(), e);
+        }
+    }
+
+    private void nextGeneration() {
+        generation++;
+        readOffset = 0;
+        spilledEnd = 0;
+        purgedSenders = new IntSet();
+    }
+}
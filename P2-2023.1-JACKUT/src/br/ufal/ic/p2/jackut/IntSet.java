@@ -0,0 +1,176 @@
+package br.ufal.ic.p2.jackut;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Conjunto de inteiros não negativos que preserva a ordem de inserção, sem boxing.
+ *
+ * Os elementos ficam em um array na ordem em que foram inseridos e uma tabela hash de
+ * endereçamento aberto guarda, para cada elemento, a sua posição nesse array. Remover um elemento
+ * apenas marca a sua posição como vazia; o array é compactado quando metade das posições estiver
+ * vazia. Consultas, inserções e remoções custam O(1) amortizado.
+ */
+public class IntSet {
+    private static final int EMPTY = -1;
+    private static final int REMOVED = -1;
+
+    private int[] elements;
+    private int[] slots;
+    private int used;
+    private int size;
+
+    /**
+     * Construtor da classe IntSet.
+     */
+    public IntSet() {
+        elements = new int[4];
+        slots = new int[8];
+        Arrays.fill(slots, EMPTY);
+    }
+
+    /**
+     * Adiciona um elemento ao final do conjunto, se ele ainda não estiver presente.
+     *
+     * @param value Elemento a ser adicionado.
+     * @return {@code true} se o elemento foi adicionado.
+     */
+    public boolean add(int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Elemento negativo: " + value);
+        }
+
+        int slot = find(value);
+        if (slots[slot] != EMPTY) {
+            return false;
+        }
+
+        if (used == elements.length) {
+            elements = Arrays.copyOf(elements, used * 2);
+        }
+        elements[used] = value;
+        slots[slot] = used;
+        used++;
+        size++;
+
+        // Mantém a tabela com ocupação de no máximo 50%, contando as posições removidas
+        if (used * 2 > slots.length) {
+            rehash(slots.length * 2);
+        }
+        return true;
+    }
+
+    /**
+     * Verifica se um elemento está no conjunto.
+     *
+     * @param value Elemento a ser verificado.
+     * @return {@code true} se o elemento estiver presente.
+     */
+    public boolean contains(int value) {
+        return value >= 0 && slots[find(value)] != EMPTY;
+    }
+
+    /**
+     * Remove um elemento do conjunto, mantendo a ordem dos demais.
+     *
+     * @param value Elemento a ser removido.
+     * @return {@code true} se o elemento estava presente.
+     */
+    public boolean remove(int value) {
+        if (!contains(value)) {
+            return false;
+        }
+
+        // A posição continua na tabela hash, para não interromper as sequências de sondagem
+        elements[slots[find(value)]] = REMOVED;
+        size--;
+
+        if (size * 2 < used) {
+            compact();
+        }
+        return true;
+    }
+
+    /**
+     * Retorna a quantidade de elementos do conjunto.
+     *
+     * @return Quantidade de elementos.
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Percorre os elementos na ordem de inserção.
+     *
+     * @param action Ação aplicada a cada elemento.
+     */
+    public void forEach(IntConsumer action) {
+        for (int i = 0; i < used; i++) {
+            if (elements[i] != REMOVED) {
+                action.accept(elements[i]);
+            }
+        }
+    }
+
+    /**
+     * Retorna uma cópia dos elementos na ordem de inserção.
+     *
+     * @return Array com os elementos.
+     */
+    public int[] toArray() {
+        if (size == used) {
+            return Arrays.copyOf(elements, size);
+        }
+
+        int[] values = new int[size];
+        int count = 0;
+        for (int i = 0; i < used; i++) {
+            if (elements[i] != REMOVED) {
+                values[count++] = elements[i];
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Procura a posição da tabela hash que contém o elemento, ou a posição vazia onde ele
+     * deveria ser inserido.
+     */
+    private int find(int value) {
+        int mask = slots.length - 1;
+        int slot = mix(value) & mask;
+        while (slots[slot] != EMPTY && elements[slots[slot]] != value) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Descarta as posições removidas do array, preservando a ordem dos elementos.
+     */
+    private void compact() {
+        elements = Arrays.copyOf(toArray(), Math.max(4, size * 2));
+        used = size;
+        rehash(slots.length);
+    }
+
+    private void rehash(int capacity) {
+        slots = new int[capacity];
+        Arrays.fill(slots, EMPTY);
+        for (int i = 0; i < used; i++) {
+            if (elements[i] != REMOVED) {
+                slots[find(elements[i])] = i;
+            }
+        }
+    }
+
+    private static int mix(int value) {
+        int hash = value * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+}
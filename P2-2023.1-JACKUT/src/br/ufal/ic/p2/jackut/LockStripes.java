@@ -0,0 +1,105 @@
+package br.ufal.ic.p2.jackut;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Conjunto de locks da Facade, distribuídos em faixas pela chave (login ou nome de comunidade).
+ *
+ * Operações comuns adquirem o lock global em modo compartilhado e depois as faixas das chaves
+ * que tocam, sempre em ordem crescente de faixa, o que evita deadlocks entre operações que
+ * envolvem vários usuários. Operações que alteram o sistema inteiro (remoção de conta, reset e
+ * snapshot) adquirem o lock global em modo exclusivo.
+ */
+public class LockStripes {
+    private final ReentrantLock[] stripes;
+    private final ReadWriteLock global = new ReentrantReadWriteLock();
+
+    /**
+     * Construtor da classe LockStripes.
+     *
+     * @param count Quantidade de faixas, arredondada para a próxima potência de dois.
+     */
+    public LockStripes(int count) {
+        int size = Integer.highestOneBit(Math.max(1, count - 1)) << 1;
+        stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Adquire as faixas das chaves informadas, em ordem crescente de faixa.
+     *
+     * @param keys Logins ou nomes de comunidades envolvidos na operação.
+     * @return Guarda que libera os locks ao ser fechada.
+     */
+    public Guard lock(String... keys) {
+        int[] indexes = new int[keys.length];
+        int count = 0;
+        for (String key : keys) {
+            if (key != null) {
+                indexes[count++] = stripeFor(key);
+            }
+        }
+        Arrays.sort(indexes, 0, count);
+
+        // Remove faixas repetidas, para que cada lock seja adquirido uma única vez
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            if (distinct == 0 || indexes[distinct - 1] != indexes[i]) {
+                indexes[distinct++] = indexes[i];
+            }
+        }
+
+        global.readLock().lock();
+        for (int i = 0; i < distinct; i++) {
+            stripes[indexes[i]].lock();
+        }
+        return new Guard(Arrays.copyOf(indexes, distinct), false);
+    }
+
+    /**
+     * Adquire o lock global em modo exclusivo, esperando todas as operações em andamento.
+     *
+     * @return Guarda que libera o lock ao ser fechada.
+     */
+    public Guard exclusive() {
+        global.writeLock().lock();
+        return new Guard(new int[0], true);
+    }
+
+    private int stripeFor(String key) {
+        int hash = key.hashCode();
+        return (hash ^ (hash >>> 16)) & (stripes.length - 1);
+    }
+
+    /**
+     * Locks adquiridos por uma operação, liberados em ordem inversa ao fechar. A guarda é
+     * declarada antes do bloco que protege e fechada por ele, com {@code try (guard)}, já que o
+     * bloco não a usa.
+     */
+    public class Guard implements AutoCloseable {
+        private final int[] indexes;
+        private final boolean exclusive;
+
+        private Guard(int[] indexes, boolean exclusive) {
+            this.indexes = indexes;
+            this.exclusive = exclusive;
+        }
+
+        @Override
+        public void close() {
+            for (int i = indexes.length - 1; i >= 0; i--) {
+                stripes[indexes[i]].unlock();
+            }
+            if (exclusive) {
+                global.writeLock().unlock();
+            } else {
+                global.readLock().unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package br.ufal.ic.p2.jackut;
+
+/**
+ * Mensagem guardada na caixa de entrada de um usuário.
+ *
+ * Além do texto entregue ao destinatário, guarda o identificador do remetente, usado para
+ * apagar as mensagens de um usuário quando a conta dele é removida.
+ */
+public class Message {
+    /**
+     * Identificador de remetente usado em mensagens enviadas pelo próprio sistema.
+     */
+    public static final int SYSTEM_SENDER = -1;
+
+    private final int senderId;
+    private final String body;
+
+    /**
+     * Construtor da classe Message.
+     *
+     * @param senderId Identificador do remetente, ou {@link #SYSTEM_SENDER}.
+     * @param body     Texto da mensagem.
+     */
+    public Message(int senderId, String body) {
+        this.senderId = senderId;
+        this.body = body;
+    }
+
+    public int getSenderId() {
+        return senderId;
+    }
+
+    public String getBody() {
+        return body;
+    }
+}
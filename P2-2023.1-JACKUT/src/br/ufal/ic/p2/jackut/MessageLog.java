@@ -0,0 +1,97 @@
+package br.ufal.ic.p2.jackut;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Log de mensagens de uma comunidade, somente de acréscimo.
+ *
+ * Cada mensagem recebe uma posição crescente no log. As mensagens ficam em segmentos de
+ * {@value #SEGMENT_SIZE} posições; os segmentos do início são descartados quando todos os
+ * leitores já passaram por eles.
+ */
+public class MessageLog {
+    static final int SEGMENT_SIZE = 256;
+
+    private final List<String[]> segments = new ArrayList<>();
+    private long start;
+    private long end;
+
+    /**
+     * Construtor da classe MessageLog.
+     */
+    public MessageLog() {
+        this(0);
+    }
+
+    /**
+     * Construtor da classe MessageLog.
+     *
+     * @param start Posição da primeira mensagem que será acrescentada.
+     */
+    public MessageLog(long start) {
+        this.start = start;
+        this.end = start;
+    }
+
+    /**
+     * Acrescenta uma mensagem ao final do log.
+     *
+     * @param message Mensagem já formatada.
+     * @return Posição da mensagem no log.
+     */
+    public long append(String message) {
+        long index = end - start;
+        int segment = (int) (index / SEGMENT_SIZE);
+        if (segment == segments.size()) {
+            segments.add(new String[SEGMENT_SIZE]);
+        }
+        segments.get(segment)[(int) (index % SEGMENT_SIZE)] = message;
+        return end++;
+    }
+
+    /**
+     * Retorna a mensagem de uma posição ainda mantida no log.
+     *
+     * @param position Posição da mensagem.
+     * @return A mensagem.
+     * @throws IndexOutOfBoundsException Se a posição já tiver sido descartada ou não existir.
+     */
+    public String get(long position) {
+        if (position < start || position >= end) {
+            throw new IndexOutOfBoundsException("Posição fora do log: " + position);
+        }
+        long index = position - start;
+        return segments.get((int) (index / SEGMENT_SIZE))[(int) (index % SEGMENT_SIZE)];
+    }
+
+    /**
+     * Descarta os segmentos cujas mensagens estão todas antes de uma posição.
+     *
+     * @param position Menor posição que ainda pode ser lida.
+     */
+    public void trim(long position) {
+        while (!segments.isEmpty() && start + SEGMENT_SIZE <= position) {
+            segments.remove(0);
+            start += SEGMENT_SIZE;
+        }
+    }
+
+    /**
+     * Retorna a posição da primeira mensagem mantida no log.
+     *
+     * @return Posição inicial.
+     */
+    public long getStart() {
+        return start;
+    }
+
+    /**
+     * Retorna a posição que a próxima mensagem acrescentada vai ocupar.
+     *
+     * @return Posição final, exclusiva.
+     */
+    public long getEnd() {
+        return end;
+    }
+}
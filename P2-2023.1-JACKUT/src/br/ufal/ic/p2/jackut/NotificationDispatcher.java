@@ -0,0 +1,241 @@
+package br.ufal.ic.p2.jackut;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Entrega assíncrona das mensagens de comunidade aos observadores.
+ *
+ * Quem posta apenas publica a mensagem, junto com o array de observadores da comunidade, em um
+ * buffer circular de capacidade fixa; a entrega a cada observador é feita por threads dedicadas.
+ * Todas as threads leem todas as posições do buffer, mas cada uma entrega apenas aos observadores
+ * da sua partição, de forma que cada observador recebe as mensagens sempre pela mesma thread e
+ * na ordem em que foram postadas. Cada thread agrupa as mensagens de várias posições por
+ * destinatário e as entrega de uma só vez.
+ *
+ * Quando o buffer está cheio, quem posta espera até que a thread mais lenta libere uma posição.
+ * Com zero threads a entrega é feita de forma síncrona, por quem posta.
+ */
+public class NotificationDispatcher implements Closeable {
+    private static final int DEFAULT_THREADS = 2;
+    private static final int DEFAULT_CAPACITY = 4096;
+    private static final int MAX_BATCH = 256;
+
+    /**
+     * Mensagem publicada e os observadores que devem recebê-la.
+     */
+    private static final class Notification {
+        final Observer[] recipients;
+        final int count;
+        final Message message;
+
+        Notification(Observer[] recipients, int count, Message message) {
+            this.recipients = recipients;
+            this.count = count;
+            this.message = message;
+        }
+    }
+
+    private final Notification[] ring;
+    private final int mask;
+    private final long[] consumed;
+    private final Thread[] threads;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition progress = lock.newCondition();
+    private long published;
+    private boolean running = true;
+
+    /**
+     * Construtor da classe NotificationDispatcher.
+     * Usa a quantidade de threads e a capacidade definidas pelas propriedades de sistema
+     * {@code jackut.notify.threads} e {@code jackut.notify.capacity}, ou os valores padrão se
+     * elas não estiverem definidas.
+     */
+    public NotificationDispatcher() {
+        this(Integer.getInteger("jackut.notify.threads", DEFAULT_THREADS),
+                Integer.getInteger("jackut.notify.capacity", DEFAULT_CAPACITY));
+    }
+
+    /**
+     * Construtor da classe NotificationDispatcher.
+     *
+     * @param threadCount Quantidade de threads de entrega, ou zero para entrega síncrona.
+     * @param capacity    Quantidade de mensagens que podem aguardar entrega; arredondada para
+     *                    uma potência de dois.
+     */
+    public NotificationDispatcher(int threadCount, int capacity) {
+        if (threadCount < 0 || capacity <= 0) {
+            throw new IllegalArgumentException("Configuração de notificações inválida.");
+        }
+
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        this.ring = new Notification[size];
+        this.mask = size - 1;
+        this.consumed = new long[threadCount];
+        this.threads = new Thread[threadCount];
+        for (int i = 0; i < threadCount; i++) {
+            int partition = i;
+            threads[i] = new Thread(() -> dispatchLoop(partition), "jackut-notifier-" + i);
+            threads[i].setDaemon(true);
+            threads[i].start();
+        }
+    }
+
+    /**
+     * Publica uma mensagem para os primeiros {@code count} observadores de um array. O array não
+     * pode ser alterado nessas posições até a entrega; para remover observadores, quem publica
+     * deve substituir o array por uma cópia.
+     *
+     * @param recipients Observadores.
+     * @param count      Quantidade de observadores válidos no array.
+     * @param message    Mensagem a ser entregue.
+     */
+    public void publish(Observer[] recipients, int count, Message message) {
+        if (count == 0) {
+            return;
+        }
+        if (threads.length == 0) {
+            for (int i = 0; i < count; i++) {
+                deliver(recipients[i], List.of(message));
+            }
+            return;
+        }
+
+        lock.lock();
+        try {
+            while (published - slowestConsumer() >= ring.length) {
+                progress.awaitUninterruptibly();
+            }
+            ring[(int) (published & mask)] = new Notification(recipients, count, message);
+            published++;
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Espera até que todas as mensagens publicadas até o momento tenham sido entregues.
+     */
+    public void flush() {
+        lock.lock();
+        try {
+            long target = published;
+            while (slowestConsumer() < target) {
+                progress.awaitUninterruptibly();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Entrega as mensagens pendentes e encerra as threads de entrega.
+     */
+    @Override
+    public void close() {
+        flush();
+        lock.lock();
+        try {
+            running = false;
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Retorna a quantidade de mensagens publicadas que ainda não foram entregues a todos.
+     *
+     * @return Quantidade de mensagens pendentes.
+     */
+    public int getPending() {
+        lock.lock();
+        try {
+            return threads.length == 0 ? 0 : (int) (published - slowestConsumer());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private long slowestConsumer() {
+        long slowest = published;
+        for (long position : consumed) {
+            slowest = Math.min(slowest, position);
+        }
+        return slowest;
+    }
+
+    /**
+     * Laço de uma thread de entrega: espera novas posições, agrupa as mensagens destinadas aos
+     * observadores da sua partição e as entrega.
+     */
+    private void dispatchLoop(int partition) {
+        while (true) {
+            long from;
+            long to;
+            List<Notification> batch = new ArrayList<>();
+
+            lock.lock();
+            try {
+                while (running && consumed[partition] == published) {
+                    notEmpty.awaitUninterruptibly();
+                }
+                if (consumed[partition] == published) {
+                    return;
+                }
+                from = consumed[partition];
+                to = Math.min(published, from + MAX_BATCH);
+                for (long sequence = from; sequence < to; sequence++) {
+                    batch.add(ring[(int) (sequence & mask)]);
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            Map<Observer, List<Message>> byRecipient = new LinkedHashMap<>();
+            for (Notification notification : batch) {
+                for (int i = 0; i < notification.count; i++) {
+                    Observer recipient = notification.recipients[i];
+                    if (partition(recipient) == partition) {
+                        byRecipient.computeIfAbsent(recipient, key -> new ArrayList<>()).add(notification.message);
+                    }
+                }
+            }
+            byRecipient.forEach(this::deliver);
+
+            lock.lock();
+            try {
+                consumed[partition] = to;
+                progress.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private int partition(Observer observer) {
+        return (observer.hashCode() & Integer.MAX_VALUE) % threads.length;
+    }
+
+    private void deliver(Observer recipient, List<Message> messages) {
+        try {
+            recipient.update(messages);
+        } catch (RuntimeException e) {
+            System.err.println("Erro ao entregar notificação: " + e.getMessage());
+        }
+    }
+}
@@ -1,8 +1,21 @@
 package br.ufal.ic.p2.jackut;
 
+import java.util.List;
+
 /**
  * Interface para observadores que serão notificados de eventos.
  */
 public interface Observer {
-    void update(String message);
-}
\ No newline at end of file
+    void update(Message message);
+
+    /**
+     * Notifica o observador de várias mensagens, na ordem em que foram postadas.
+     *
+     * @param messages Mensagens recebidas.
+     */
+    default void update(List<Message> messages) {
+        for (Message message : messages) {
+            update(message);
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package br.ufal.ic.p2.jackut;
+
+import java.util.AbstractSet;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Conjunto imutável e persistente que mantém a ordem de inserção.
+ *
+ * Cada elemento incluído recebe um número de ordem crescente. Os elementos ficam em uma árvore
+ * AVL ordenada por esse número, e um {@link PersistentMap} associa cada elemento ao seu número,
+ * para que a pertinência e a remoção não dependam de percorrer a árvore. Incluir ou remover um
+ * elemento copia apenas os nós do caminho até ele, O(log n), e devolve um novo conjunto que
+ * compartilha todo o resto com o anterior. Assim, como no {@link PersistentMap}, cada versão pode
+ * ser lida por várias threads sem locks enquanto outras threads criam versões novas.
+ *
+ * Os métodos de alteração de {@link java.util.Set} lançam {@link UnsupportedOperationException};
+ * use {@link #plus(Object)} e {@link #minus(Object)}.
+ *
+ * @param <E> Tipo dos elementos.
+ */
+public final class PersistentLinkedSet<E> extends AbstractSet<E> {
+    private static final PersistentLinkedSet<?> EMPTY = new PersistentLinkedSet<>(null, PersistentMap.empty(), 0, 0);
+
+    /**
+     * Nó da árvore, ordenado pelo número de ordem do elemento.
+     */
+    private static final class Node {
+        final long order;
+        final Object element;
+        final Node left;
+        final Node right;
+        final int height;
+
+        Node(long order, Object element, Node left, Node right) {
+            this.order = order;
+            this.element = element;
+            this.left = left;
+            this.right = right;
+            this.height = 1 + Math.max(height(left), height(right));
+        }
+    }
+
+    private final Node root;
+    private final PersistentMap<Object, Long> orders;
+    private final long nextOrder;
+    private final int size;
+
+    private PersistentLinkedSet(Node root, PersistentMap<Object, Long> orders, long nextOrder, int size) {
+        this.root = root;
+        this.orders = orders;
+        this.nextOrder = nextOrder;
+        this.size = size;
+    }
+
+    /**
+     * Retorna o conjunto vazio.
+     *
+     * @param <E> Tipo dos elementos.
+     * @return Conjunto sem elementos.
+     */
+    @SuppressWarnings("unchecked")
+    public static <E> PersistentLinkedSet<E> empty() {
+        return (PersistentLinkedSet<E>) EMPTY;
+    }
+
+    /**
+     * Cria um conjunto com os elementos de uma coleção, na ordem em que ela os percorre.
+     *
+     * @param elements Elementos do conjunto.
+     * @param <E>      Tipo dos elementos.
+     * @return O conjunto.
+     */
+    public static <E> PersistentLinkedSet<E> of(Iterable<? extends E> elements) {
+        PersistentLinkedSet<E> set = empty();
+        for (E element : elements) {
+            set = set.plus(element);
+        }
+        return set;
+    }
+
+    /**
+     * Retorna um conjunto igual a este, mas com um elemento incluído no fim da ordem.
+     *
+     * @param element Elemento a ser incluído.
+     * @return O novo conjunto, ou este mesmo se o elemento já estiver nele.
+     */
+    public PersistentLinkedSet<E> plus(E element) {
+        if (contains(element)) {
+            return this;
+        }
+        return new PersistentLinkedSet<>(insert(root, nextOrder, element), orders.plus(element, nextOrder),
+                nextOrder + 1, size + 1);
+    }
+
+    /**
+     * Retorna um conjunto igual a este, mas sem um elemento.
+     *
+     * @param element Elemento a ser removido.
+     * @return O novo conjunto, ou este mesmo se o elemento não estiver nele.
+     */
+    public PersistentLinkedSet<E> minus(Object element) {
+        Long order = orders.get(element);
+        if (order == null) {
+            return this;
+        }
+        return new PersistentLinkedSet<>(remove(root, order), orders.minus(element), nextOrder, size - 1);
+    }
+
+    @Override
+    public boolean contains(Object element) {
+        return orders.get(element) != null;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new Iterator<>() {
+            private final Deque<Node> path = new ArrayDeque<>();
+
+            {
+                descend(root);
+            }
+
+            @Override
+            public boolean hasNext() {
+                return !path.isEmpty();
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public E next() {
+                if (path.isEmpty()) {
+                    throw new NoSuchElementException();
+                }
+                Node node = path.pop();
+                descend(node.right);
+                return (E) node.element;
+            }
+
+            private void descend(Node node) {
+                for (; node != null; node = node.left) {
+                    path.push(node);
+                }
+            }
+        };
+    }
+
+    private static Node insert(Node node, long order, Object element) {
+        if (node == null) {
+            return new Node(order, element, null, null);
+        }
+        if (order < node.order) {
+            return balance(node.order, node.element, insert(node.left, order, element), node.right);
+        }
+        return balance(node.order, node.element, node.left, insert(node.right, order, element));
+    }
+
+    private static Node remove(Node node, long order) {
+        if (order < node.order) {
+            return balance(node.order, node.element, remove(node.left, order), node.right);
+        }
+        if (order > node.order) {
+            return balance(node.order, node.element, node.left, remove(node.right, order));
+        }
+        if (node.left == null) {
+            return node.right;
+        }
+        if (node.right == null) {
+            return node.left;
+        }
+
+        // O sucessor ocupa o lugar do nó removido
+        Node successor = node.right;
+        while (successor.left != null) {
+            successor = successor.left;
+        }
+        return balance(successor.order, successor.element, node.left, removeFirst(node.right));
+    }
+
+    private static Node removeFirst(Node node) {
+        if (node.left == null) {
+            return node.right;
+        }
+        return balance(node.order, node.element, removeFirst(node.left), node.right);
+    }
+
+    /**
+     * Cria um nó a partir de duas subárvores cujas alturas diferem em no máximo dois, fazendo as
+     * rotações necessárias para que voltem a diferir em no máximo um.
+     */
+    private static Node balance(long order, Object element, Node left, Node right) {
+        int difference = height(left) - height(right);
+        if (difference > 1) {
+            if (height(left.left) < height(left.right)) {
+                left = rotateLeft(left.order, left.element, left.left, left.right);
+            }
+            return rotateRight(order, element, left, right);
+        }
+        if (difference < -1) {
+            if (height(right.right) < height(right.left)) {
+                right = rotateRight(right.order, right.element, right.left, right.right);
+            }
+            return rotateLeft(order, element, left, right);
+        }
+        return new Node(order, element, left, right);
+    }
+
+    private static Node rotateRight(long order, Object element, Node left, Node right) {
+        return new Node(left.order, left.element, left.left, new Node(order, element, left.right, right));
+    }
+
+    private static Node rotateLeft(long order, Object element, Node left, Node right) {
+        return new Node(right.order, right.element, new Node(order, element, left, right.left), right.right);
+    }
+
+    private static int height(Node node) {
+        return node == null ? 0 : node.height;
+    }
+}
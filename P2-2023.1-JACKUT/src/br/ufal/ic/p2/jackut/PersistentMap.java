@@ -0,0 +1,275 @@
+package br.ufal.ic.p2.jackut;
+
+/**
+ * Mapa imutável e persistente, no formato de uma hash array mapped trie (HAMT).
+ *
+ * Cada nível da árvore consome 5 bits do hash da chave; os nós guardam um bitmap das posições
+ * ocupadas e um array compacto só com essas posições. Incluir ou remover uma chave copia apenas
+ * os nós do caminho até ela, no máximo 7, e devolve um novo mapa que compartilha todo o resto com
+ * o anterior. Assim cada versão pode ser lida por várias threads sem locks, enquanto outras
+ * threads criam versões novas.
+ *
+ * Chaves com o mesmo hash completo ficam juntas em um nó de colisão, no último nível.
+ *
+ * @param <K> Tipo das chaves.
+ * @param <V> Tipo dos valores.
+ */
+public final class PersistentMap<K, V> {
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+    private static final PersistentMap<?, ?> EMPTY = new PersistentMap<>(new Branch(0, new Object[0]));
+
+    /**
+     * Par chave-valor, com o hash da chave já calculado.
+     */
+    private static final class Entry {
+        final int hash;
+        final Object key;
+        final Object value;
+
+        Entry(int hash, Object key, Object value) {
+            this.hash = hash;
+            this.key = key;
+            this.value = value;
+        }
+
+        boolean matches(int hash, Object key) {
+            return this.hash == hash && this.key.equals(key);
+        }
+    }
+
+    /**
+     * Nó interno: cada filho é um {@link Entry}, outro {@code Branch} ou um {@link Collision}.
+     */
+    private static final class Branch {
+        final int bitmap;
+        final Object[] children;
+
+        Branch(int bitmap, Object[] children) {
+            this.bitmap = bitmap;
+            this.children = children;
+        }
+
+        int index(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+    }
+
+    /**
+     * Chaves diferentes com o mesmo hash.
+     */
+    private static final class Collision {
+        final Entry[] entries;
+
+        Collision(Entry[] entries) {
+            this.entries = entries;
+        }
+    }
+
+    private final Branch root;
+
+    private PersistentMap(Branch root) {
+        this.root = root;
+    }
+
+    /**
+     * Retorna o mapa vazio.
+     *
+     * @param <K> Tipo das chaves.
+     * @param <V> Tipo dos valores.
+     * @return Mapa sem chaves.
+     */
+    @SuppressWarnings("unchecked")
+    public static <K, V> PersistentMap<K, V> empty() {
+        return (PersistentMap<K, V>) EMPTY;
+    }
+
+    /**
+     * Retorna o valor associado a uma chave.
+     *
+     * @param key Chave procurada.
+     * @return Valor da chave, ou {@code null} se ela não estiver no mapa ou for {@code null}.
+     */
+    @SuppressWarnings("unchecked")
+    public V get(K key) {
+        if (key == null) {
+            return null;
+        }
+
+        int hash = hash(key);
+        Object node = root;
+        for (int shift = 0; ; shift += BITS) {
+            if (node instanceof Branch) {
+                Branch branch = (Branch) node;
+                int bit = bit(hash, shift);
+                if ((branch.bitmap & bit) == 0) {
+                    return null;
+                }
+                node = branch.children[branch.index(bit)];
+            } else if (node instanceof Entry) {
+                Entry entry = (Entry) node;
+                return entry.matches(hash, key) ? (V) entry.value : null;
+            } else {
+                for (Entry entry : ((Collision) node).entries) {
+                    if (entry.matches(hash, key)) {
+                        return (V) entry.value;
+                    }
+                }
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Retorna um mapa igual a este, mas com uma chave associada a um valor.
+     *
+     * @param key   Chave.
+     * @param value Valor da chave.
+     * @return O novo mapa.
+     */
+    public PersistentMap<K, V> plus(K key, V value) {
+        Entry entry = new Entry(hash(key), key, value);
+        return new PersistentMap<>((Branch) put(root, 0, entry));
+    }
+
+    /**
+     * Retorna um mapa igual a este, mas sem uma chave.
+     *
+     * @param key Chave a ser removida.
+     * @return O novo mapa, ou este mesmo se a chave não estiver nele.
+     */
+    public PersistentMap<K, V> minus(K key) {
+        Object removed = remove(root, 0, hash(key), key);
+        if (removed == root) {
+            return this;
+        }
+        return removed == null ? empty() : new PersistentMap<>((Branch) removed);
+    }
+
+    private static Object put(Object node, int shift, Entry entry) {
+        if (node instanceof Entry) {
+            Entry existing = (Entry) node;
+            return existing.matches(entry.hash, entry.key) ? entry : merge(existing, entry, shift);
+        }
+
+        if (node instanceof Collision) {
+            Entry[] entries = ((Collision) node).entries;
+            for (int i = 0; i < entries.length; i++) {
+                if (entries[i].matches(entry.hash, entry.key)) {
+                    Entry[] replaced = entries.clone();
+                    replaced[i] = entry;
+                    return new Collision(replaced);
+                }
+            }
+            Entry[] grown = new Entry[entries.length + 1];
+            System.arraycopy(entries, 0, grown, 0, entries.length);
+            grown[entries.length] = entry;
+            return new Collision(grown);
+        }
+
+        Branch branch = (Branch) node;
+        int bit = bit(entry.hash, shift);
+        int index = branch.index(bit);
+        if ((branch.bitmap & bit) == 0) {
+            Object[] children = new Object[branch.children.length + 1];
+            System.arraycopy(branch.children, 0, children, 0, index);
+            children[index] = entry;
+            System.arraycopy(branch.children, index, children, index + 1, branch.children.length - index);
+            return new Branch(branch.bitmap | bit, children);
+        }
+
+        Object[] children = branch.children.clone();
+        children[index] = put(children[index], shift + BITS, entry);
+        return new Branch(branch.bitmap, children);
+    }
+
+    /**
+     * Cria o menor nó que contém duas entradas de chaves diferentes, a partir de um nível.
+     */
+    private static Object merge(Entry first, Entry second, int shift) {
+        if (shift >= Integer.SIZE) {
+            return new Collision(new Entry[] {first, second});
+        }
+
+        int firstBit = bit(first.hash, shift);
+        int secondBit = bit(second.hash, shift);
+        if (firstBit == secondBit) {
+            return new Branch(firstBit, new Object[] {merge(first, second, shift + BITS)});
+        }
+        Object[] children = Integer.compareUnsigned(firstBit, secondBit) < 0
+                ? new Object[] {first, second}
+                : new Object[] {second, first};
+        return new Branch(firstBit | secondBit, children);
+    }
+
+    /**
+     * Remove uma chave de um nó.
+     *
+     * @return O próprio nó se a chave não estiver nele, {@code null} se ele ficar vazio, ou o
+     *         novo nó.
+     */
+    private static Object remove(Object node, int shift, int hash, Object key) {
+        if (node instanceof Entry) {
+            return ((Entry) node).matches(hash, key) ? null : node;
+        }
+
+        if (node instanceof Collision) {
+            Entry[] entries = ((Collision) node).entries;
+            for (int i = 0; i < entries.length; i++) {
+                if (entries[i].matches(hash, key)) {
+                    if (entries.length == 2) {
+                        return entries[1 - i];
+                    }
+                    Entry[] shrunk = new Entry[entries.length - 1];
+                    System.arraycopy(entries, 0, shrunk, 0, i);
+                    System.arraycopy(entries, i + 1, shrunk, i, entries.length - i - 1);
+                    return new Collision(shrunk);
+                }
+            }
+            return node;
+        }
+
+        Branch branch = (Branch) node;
+        int bit = bit(hash, shift);
+        if ((branch.bitmap & bit) == 0) {
+            return node;
+        }
+
+        int index = branch.index(bit);
+        Object child = branch.children[index];
+        Object updated = remove(child, shift + BITS, hash, key);
+        if (updated == child) {
+            return node;
+        }
+
+        if (updated == null) {
+            if (branch.children.length == 1) {
+                return null;
+            }
+            Object[] children = new Object[branch.children.length - 1];
+            System.arraycopy(branch.children, 0, children, 0, index);
+            System.arraycopy(branch.children, index + 1, children, index, children.length - index);
+            // Um nó com uma única entrada é substituído por ela, exceto na raiz
+            if (shift > 0 && children.length == 1 && children[0] instanceof Entry) {
+                return children[0];
+            }
+            return new Branch(branch.bitmap & ~bit, children);
+        }
+
+        if (shift > 0 && branch.children.length == 1 && updated instanceof Entry) {
+            return updated;
+        }
+        Object[] children = branch.children.clone();
+        children[index] = updated;
+        return new Branch(branch.bitmap, children);
+    }
+
+    private static int hash(Object key) {
+        int hash = key.hashCode();
+        return hash ^ (hash >>> 16);
+    }
+
+    private static int bit(int hash, int shift) {
+        return 1 << ((hash >>> shift) & MASK);
+    }
+}
@@ -0,0 +1,98 @@
+package br.ufal.ic.p2.jackut;
+
+import java.util.function.UnaryOperator;
+
+/**
+ * Estado do sistema visto pelas consultas em um instante, no estilo MVCC.
+ *
+ * Guarda a versão imutável de cada usuário e comunidade em mapas persistentes. Uma visão nunca
+ * muda: cada alteração cria uma visão nova, que compartilha com a anterior tudo o que não foi
+ * alterado, e a Facade troca a visão atual de forma atômica. Quem já leu a visão continua vendo o
+ * mesmo estado, sem locks, enquanto as escritas prosseguem.
+ *
+ * A visão pode não ter todos os registros: usuários e comunidades que ainda não foram lidos do
+ * snapshot só ganham uma versão quando são acessados pela primeira vez.
+ */
+public final class ReadView {
+    /**
+     * Visão sem nenhum registro.
+     */
+    public static final ReadView EMPTY = new ReadView(PersistentMap.empty(), PersistentMap.empty());
+
+    private final PersistentMap<String, UserVersion> users;
+    private final PersistentMap<String, CommunityVersion> communities;
+
+    private ReadView(PersistentMap<String, UserVersion> users, PersistentMap<String, CommunityVersion> communities) {
+        this.users = users;
+        this.communities = communities;
+    }
+
+    /**
+     * Retorna a versão de um usuário.
+     *
+     * @param login Login do usuário.
+     * @return A versão, ou {@code null} se o usuário não tiver versão nesta visão.
+     */
+    public UserVersion getUser(String login) {
+        return users.get(login);
+    }
+
+    /**
+     * Retorna a versão de uma comunidade.
+     *
+     * @param name Nome da comunidade.
+     * @return A versão, ou {@code null} se a comunidade não tiver versão nesta visão.
+     */
+    public CommunityVersion getCommunity(String name) {
+        return communities.get(name);
+    }
+
+    /**
+     * Retorna uma visão igual a esta, mas com a versão de um usuário substituída.
+     *
+     * @param login   Login do usuário.
+     * @param version Nova versão, ou {@code null} para remover o usuário.
+     * @return A nova visão.
+     */
+    public ReadView withUser(String login, UserVersion version) {
+        return new ReadView(version == null ? users.minus(login) : users.plus(login, version), communities);
+    }
+
+    /**
+     * Retorna uma visão igual a esta, mas com a versão de uma comunidade substituída.
+     *
+     * @param name    Nome da comunidade.
+     * @param version Nova versão, ou {@code null} para remover a comunidade.
+     * @return A nova visão.
+     */
+    public ReadView withCommunity(String name, CommunityVersion version) {
+        return new ReadView(users, version == null ? communities.minus(name) : communities.plus(name, version));
+    }
+
+    /**
+     * Retorna uma visão igual a esta, mas com a versão de um usuário derivada da atual. Se o
+     * usuário não tiver versão nesta visão, ela continua sem versão, que será criada a partir do
+     * registro quando ele for lido.
+     *
+     * @param login  Login do usuário.
+     * @param change Função que cria a nova versão a partir da atual.
+     * @return A nova visão, ou esta mesma se o usuário não tiver versão.
+     */
+    public ReadView updateUser(String login, UnaryOperator<UserVersion> change) {
+        UserVersion version = users.get(login);
+        return version == null ? this : withUser(login, change.apply(version));
+    }
+
+    /**
+     * Retorna uma visão igual a esta, mas com a versão de uma comunidade derivada da atual, como
+     * {@link #updateUser(String, UnaryOperator)}.
+     *
+     * @param name   Nome da comunidade.
+     * @param change Função que cria a nova versão a partir da atual.
+     * @return A nova visão, ou esta mesma se a comunidade não tiver versão.
+     */
+    public ReadView updateCommunity(String name, UnaryOperator<CommunityVersion> change) {
+        CommunityVersion version = communities.get(name);
+        return version == null ? this : withCommunity(name, change.apply(version));
+    }
+}
@@ -0,0 +1,281 @@
+package br.ufal.ic.p2.jackut;
+
+import java.security.SecureRandom;
+import java.util.ArrayDeque;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+import br.ufal.ic.p2.jackut.metrics.SessionExpiryEvent;
+import br.ufal.ic.p2.jackut.metrics.SessionOpenEvent;
+
+/**
+ * Gerenciador das sessões abertas no sistema Jackut.
+ *
+ * Cada sessão é identificada por um token aleatório e expira depois de ficar sem uso pelo tempo
+ * de inatividade, ou depois do tempo máximo desde a abertura, o que vier primeiro. As consultas
+ * não usam locks: elas apenas leem o mapa concorrente e atualizam o horário do último uso.
+ *
+ * A expiração usa uma roda de temporização: cada sessão fica no balde correspondente ao seu
+ * prazo e, a cada tique, apenas o balde atual é examinado. Sessões usadas depois de agendadas
+ * são reagendadas quando o seu balde é examinado. Quando a capacidade é atingida, as sessões
+ * agendadas para expirar primeiro são descartadas para dar lugar às novas.
+ */
+public class SessionManager {
+    private static final long DEFAULT_IDLE_TTL = TimeUnit.MINUTES.toMillis(30);
+    private static final long DEFAULT_ABSOLUTE_TTL = TimeUnit.HOURS.toMillis(24);
+    private static final int DEFAULT_CAPACITY = 100_000;
+    private static final int WHEEL_SIZE = 512;
+    private static final long TICK_MILLIS = 1000;
+    private static final int TOKEN_BYTES = 16;
+
+    private final long idleTtl;
+    private final long absoluteTtl;
+    private final int capacity;
+    private final LongSupplier clock;
+    private final SecureRandom random = new SecureRandom();
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    private final ReentrantLock wheelLock = new ReentrantLock();
+    private final ArrayDeque<Session>[] wheel;
+    private volatile long currentTick;
+
+    /**
+     * Sessão aberta por um usuário.
+     */
+    private static final class Session {
+        final String token;
+        final String login;
+        final long openedAt;
+        volatile long lastAccess;
+
+        Session(String token, String login, long now) {
+            this.token = token;
+            this.login = login;
+            this.openedAt = now;
+            this.lastAccess = now;
+        }
+    }
+
+    /**
+     * Construtor da classe SessionManager.
+     * Usa os tempos e a capacidade definidos pelas propriedades de sistema
+     * {@code jackut.session.idleTtl} e {@code jackut.session.absoluteTtl} (em milissegundos) e
+     * {@code jackut.session.capacity}, ou os valores padrão se elas não estiverem definidas.
+     */
+    public SessionManager() {
+        this(Long.getLong("jackut.session.idleTtl", DEFAULT_IDLE_TTL),
+                Long.getLong("jackut.session.absoluteTtl", DEFAULT_ABSOLUTE_TTL),
+                Integer.getInteger("jackut.session.capacity", DEFAULT_CAPACITY),
+                () -> TimeUnit.NANOSECONDS.toMillis(System.nanoTime()));
+    }
+
+    /**
+     * Construtor da classe SessionManager.
+     *
+     * @param idleTtl     Tempo máximo sem uso, em milissegundos.
+     * @param absoluteTtl Tempo máximo desde a abertura, em milissegundos.
+     * @param capacity    Quantidade máxima de sessões abertas.
+     * @param clock       Relógio monotônico em milissegundos.
+     */
+    @SuppressWarnings("unchecked")
+    public SessionManager(long idleTtl, long absoluteTtl, int capacity, LongSupplier clock) {
+        if (idleTtl <= 0 || absoluteTtl <= 0 || capacity <= 0) {
+            throw new IllegalArgumentException("Configuração de sessões inválida.");
+        }
+
+        this.idleTtl = idleTtl;
+        this.absoluteTtl = absoluteTtl;
+        this.capacity = capacity;
+        this.clock = clock;
+        this.wheel = (ArrayDeque<Session>[]) new ArrayDeque<?>[WHEEL_SIZE];
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            wheel[i] = new ArrayDeque<>();
+        }
+        this.currentTick = clock.getAsLong() / TICK_MILLIS;
+    }
+
+    /**
+     * Abre uma sessão para um usuário.
+     *
+     * @param login Login do usuário.
+     * @return Token da nova sessão.
+     */
+    public String open(String login) {
+        long now = clock.getAsLong();
+        byte[] bytes = new byte[TOKEN_BYTES];
+        random.nextBytes(bytes);
+        Session session = new Session(Base64.getUrlEncoder().withoutPadding().encodeToString(bytes), login, now);
+
+        wheelLock.lock();
+        try {
+            advance(now);
+            while (sessions.size() >= capacity && evictEarliest()) {
+                // Descarta as sessões com o prazo mais próximo até haver espaço
+            }
+            sessions.put(session.token, session);
+            schedule(session, deadline(session));
+        } finally {
+            wheelLock.unlock();
+        }
+
+        SessionOpenEvent event = new SessionOpenEvent();
+        if (event.shouldCommit()) {
+            event.login = login;
+            event.activeSessions = sessions.size();
+            event.commit();
+        }
+        return session.token;
+    }
+
+    /**
+     * Retorna o login do dono de uma sessão e renova o seu tempo de inatividade.
+     *
+     * @param token Token da sessão.
+     * @return Login do usuário, ou {@code null} se a sessão não existir ou tiver expirado.
+     */
+    public String get(String token) {
+        if (token == null) {
+            return null;
+        }
+
+        Session session = sessions.get(token);
+        if (session == null) {
+            return null;
+        }
+
+        long now = clock.getAsLong();
+        if (now >= deadline(session)) {
+            if (sessions.remove(token, session)) {
+                expired(session, SessionExpiryEvent.EXPIRED, now);
+            }
+            return null;
+        }
+        session.lastAccess = now;
+
+        // A roda só avança se nenhuma outra thread estiver fazendo isso
+        if (now / TICK_MILLIS > currentTick && wheelLock.tryLock()) {
+            try {
+                advance(now);
+            } finally {
+                wheelLock.unlock();
+            }
+        }
+        return session.login;
+    }
+
+    /**
+     * Encerra uma sessão.
+     *
+     * @param token Token da sessão.
+     */
+    public void remove(String token) {
+        if (token != null) {
+            sessions.remove(token);
+        }
+    }
+
+    /**
+     * Encerra todas as sessões.
+     */
+    public void clear() {
+        wheelLock.lock();
+        try {
+            sessions.clear();
+            for (ArrayDeque<Session> bucket : wheel) {
+                bucket.clear();
+            }
+        } finally {
+            wheelLock.unlock();
+        }
+    }
+
+    /**
+     * Retorna a quantidade de sessões abertas, incluindo as expiradas ainda não descartadas.
+     *
+     * @return Quantidade de sessões.
+     */
+    public int size() {
+        return sessions.size();
+    }
+
+    /**
+     * Emite o evento de expiração de uma sessão já descartada.
+     */
+    private static void expired(Session session, String reason, long now) {
+        SessionExpiryEvent event = new SessionExpiryEvent();
+        if (event.shouldCommit()) {
+            event.login = session.login;
+            event.reason = reason;
+            event.age = now - session.openedAt;
+            event.commit();
+        }
+    }
+
+    private long deadline(Session session) {
+        return Math.min(session.lastAccess + idleTtl, session.openedAt + absoluteTtl);
+    }
+
+    /**
+     * Examina os baldes dos tiques já passados, descartando as sessões expiradas e reagendando
+     * as que foram usadas depois de agendadas. Deve ser chamado com o lock da roda adquirido.
+     */
+    private void advance(long now) {
+        long target = now / TICK_MILLIS;
+        // Depois de uma volta inteira todos os baldes já foram examinados
+        long first = Math.max(currentTick, target - WHEEL_SIZE + 1);
+        for (long tick = first; tick <= target; tick++) {
+            currentTick = tick;
+            ArrayDeque<Session> bucket = bucket(tick);
+            for (int count = bucket.size(); count > 0; count--) {
+                Session session = bucket.poll();
+                if (sessions.get(session.token) != session) {
+                    continue;
+                }
+
+                long deadline = deadline(session);
+                if (now >= deadline) {
+                    if (sessions.remove(session.token, session)) {
+                        expired(session, SessionExpiryEvent.EXPIRED, now);
+                    }
+                } else {
+                    schedule(session, deadline);
+                }
+            }
+        }
+        currentTick = target;
+    }
+
+    private ArrayDeque<Session> bucket(long tick) {
+        return wheel[(int) Math.floorMod(tick, (long) WHEEL_SIZE)];
+    }
+
+    private void schedule(Session session, long deadline) {
+        long tick = Math.max(deadline / TICK_MILLIS, currentTick + 1);
+        // Prazos além de uma volta ficam no último balde alcançável e são reagendados ao chegar lá
+        tick = Math.min(tick, currentTick + WHEEL_SIZE - 1);
+        bucket(tick).add(session);
+    }
+
+    /**
+     * Descarta a sessão agendada para expirar primeiro, percorrendo a roda a partir do tique
+     * atual. Deve ser chamado com o lock da roda adquirido.
+     *
+     * @return {@code true} se alguma sessão foi descartada.
+     */
+    private boolean evictEarliest() {
+        for (long tick = currentTick; tick < currentTick + WHEEL_SIZE; tick++) {
+            ArrayDeque<Session> bucket = bucket(tick);
+            Session session;
+            while ((session = bucket.poll()) != null) {
+                if (sessions.remove(session.token, session)) {
+                    expired(session, SessionExpiryEvent.EVICTED, clock.getAsLong());
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
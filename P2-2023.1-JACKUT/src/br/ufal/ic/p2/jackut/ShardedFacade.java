@@ -0,0 +1,405 @@
+package br.ufal.ic.p2.jackut;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+
+import br.ufal.ic.p2.jackut.persistence.DurabilityPolicy;
+import br.ufal.ic.p2.jackut.persistence.Operation;
+
+/**
+ * Sistema Jackut dividido em partições independentes, com a mesma interface da {@link Facade}.
+ *
+ * Cada usuário pertence à partição dada pelo hash do seu login. Cada partição é uma Facade com
+ * os seus próprios mapas, snapshot e journal, em um subdiretório, e todas as alterações de uma
+ * partição são feitas por uma única thread. Assim, operações de usuários de partições diferentes
+ * são gravadas em paralelo. As consultas são feitas diretamente, na thread de quem chama.
+ *
+ * Um relacionamento entre usuários de partições diferentes é coordenado por mensagens entre as
+ * duas partições. A partição de quem inicia a operação recebe uma réplica do outro usuário,
+ * valida e aplica a operação. Se a operação foi registrada, ela é enviada à partição do outro
+ * usuário, que a aplica sobre uma réplica de quem a iniciou, sem validar de novo. Como toda
+ * operação entre dois usuários é aplicada nas duas partições, o estado da relação entre eles é
+ * o mesmo nas duas, e as validações feitas em uma delas valem para ambas.
+ *
+ * As comunidades ficam todas na primeira partição, que recebe réplicas dos usuários que as usam.
+ * As sessões são compartilhadas por todas as partições.
+ */
+public class ShardedFacade {
+    private static final int COMMUNITY_SHARD = 0;
+    private static final int LOCK_STRIPES = 256;
+
+    private final Facade[] shards;
+    private final ExecutorService[] writers;
+    private final SessionManager sessions;
+    private final LockStripes locks;
+
+    /**
+     * Construtor da classe ShardedFacade.
+     * Cada partição grava os seus dados no subdiretório {@code shard-<n>} do diretório informado.
+     *
+     * @param dataDirectory Diretório dos arquivos de dados.
+     * @param shardCount    Quantidade de partições.
+     * @param durability    Política de durabilidade dos journals.
+     */
+    public ShardedFacade(File dataDirectory, int shardCount, DurabilityPolicy durability) {
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException("Quantidade de partições inválida.");
+        }
+
+        sessions = new SessionManager();
+        locks = new LockStripes(LOCK_STRIPES);
+        shards = new Facade[shardCount];
+        writers = new ExecutorService[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            String name = "jackut-shard-" + i;
+            writers[i] = Executors.newSingleThreadExecutor(task -> {
+                Thread thread = new Thread(task, name);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        // Cada partição carrega o seu snapshot e reaplica o seu journal na própria thread
+        forEachShard(i -> shards[i] = new Facade(new File(dataDirectory, "shard-" + i), durability, sessions));
+    }
+
+    /**
+     * Retorna a quantidade de partições.
+     *
+     * @return Quantidade de partições.
+     */
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    /**
+     * Retorna a partição dona de um usuário.
+     *
+     * @param login Login do usuário.
+     * @return Índice da partição.
+     */
+    public int shardOf(String login) {
+        return login == null ? 0 : Math.floorMod(login.hashCode(), shards.length);
+    }
+
+    /**
+     * Reseta o sistema, limpando todas as partições.
+     */
+    public void resetSystem() {
+        LockStripes.Guard guard = locks.exclusive();
+        try (guard) {
+            forEachShard(i -> shards[i].resetSystem());
+        }
+    }
+
+    /**
+     * Encerra o sistema, garantindo que as operações de todas as partições estejam gravadas.
+     */
+    public void closeSystem() {
+        forEachShard(i -> shards[i].closeSystem());
+    }
+
+    /**
+     * Espera até que as operações de todas as partições estejam gravadas em disco.
+     */
+    public void flush() {
+        forEachShard(i -> shards[i].flush());
+    }
+
+    /**
+     * Salva um snapshot de cada partição.
+     */
+    public void saveSnapshot() {
+        forEachShard(i -> shards[i].saveSnapshot());
+    }
+
+    public void createUser(String login, String password, String name) {
+        int shard = shardOf(login);
+        execute(shard, () -> shards[shard].createUser(login, password, name));
+    }
+
+    public String openSession(String login, String password) {
+        return shards[shardOf(login)].openSession(login, password);
+    }
+
+    public void addFriend(String sessionId, String friendLogin) {
+        relate(sessionId, friendLogin, facade -> facade.addFriend(sessionId, friendLogin), Operation.ADD_FRIEND);
+    }
+
+    public boolean isFriend(String login, String friendLogin) {
+        return shards[shardOf(login)].isFriend(login, friendLogin);
+    }
+
+    public String getFriends(String login) {
+        return shards[shardOf(login)].getFriends(login);
+    }
+
+    public String getUserAttribute(String login, String attribute) {
+        return shards[shardOf(login)].getUserAttribute(login, attribute);
+    }
+
+    /**
+     * Edita o perfil do usuário. Uma mudança de nome também é aplicada às réplicas do usuário.
+     *
+     * @param sessionId ID da sessão do usuário.
+     * @param attribute Nome do atributo a ser editado.
+     * @param value     Novo valor do atributo.
+     */
+    public void editProfile(String sessionId, String attribute, String value) {
+        String login = sessions.get(sessionId);
+        int shard = shardOf(login);
+        execute(shard, () -> shards[shard].editProfile(sessionId, attribute, value));
+
+        if (attribute.equalsIgnoreCase("name")) {
+            forEachShard(i -> {
+                if (i != shard && shards[i].getUserName(login) != null) {
+                    shards[i].replicate(Operation.EDIT_PROFILE, login, attribute, value);
+                }
+            });
+        }
+    }
+
+    public void sendMessage(String sessionId, String recipientLogin, String message) {
+        relate(sessionId, recipientLogin, facade -> facade.sendMessage(sessionId, recipientLogin, message),
+                Operation.SEND_MESSAGE, message);
+    }
+
+    public void sendMessageToCommunity(String sessionId, String communityName, String message) {
+        inCommunities(sessionId, facade -> {
+            facade.sendMessageToCommunity(sessionId, communityName, message);
+            return null;
+        });
+    }
+
+    public String readMessage(String sessionId) {
+        return inCommunities(sessionId, facade -> facade.readMessage(sessionId));
+    }
+
+    /**
+     * Lê o próximo recado do usuário na partição dona dele, que recebe todos os recados
+     * enviados a ele.
+     *
+     * @param sessionId ID da sessão do usuário.
+     * @return Conteúdo do recado.
+     */
+    public String readDirectMessage(String sessionId) {
+        String login = sessions.get(sessionId);
+        int shard = shardOf(login);
+        return execute(shard, () -> shards[shard].readDirectMessage(sessionId));
+    }
+
+    public void createCommunity(String sessionId, String name, String description) {
+        inCommunities(sessionId, facade -> {
+            facade.createCommunity(sessionId, name, description);
+            return null;
+        });
+    }
+
+    public void addUserToCommunity(String sessionId, String communityName) {
+        inCommunities(sessionId, facade -> {
+            facade.addUserToCommunity(sessionId, communityName);
+            return null;
+        });
+    }
+
+    public String getFans(String login) {
+        return shards[shardOf(login)].getFans(login);
+    }
+
+    public String getUserCommunities(String login) {
+        Facade owner = shards[shardOf(login)];
+        if (owner.getUserName(login) == null || shards[COMMUNITY_SHARD].getUserName(login) == null) {
+            return owner.getUserCommunities(login);
+        }
+        return shards[COMMUNITY_SHARD].getUserCommunities(login);
+    }
+
+    public String getCommunityDescription(String name) {
+        return shards[COMMUNITY_SHARD].getCommunityDescription(name);
+    }
+
+    public String getCommunityOwner(String name) {
+        return shards[COMMUNITY_SHARD].getCommunityOwner(name);
+    }
+
+    public String getCommunityMembers(String name) {
+        return shards[COMMUNITY_SHARD].getCommunityMembers(name);
+    }
+
+    public void addIdol(String sessionId, String idolLogin) {
+        relate(sessionId, idolLogin, facade -> facade.addIdol(sessionId, idolLogin), Operation.ADD_IDOL);
+    }
+
+    public void addCrush(String sessionId, String crushLogin) {
+        relate(sessionId, crushLogin, facade -> facade.addCrush(sessionId, crushLogin), Operation.ADD_CRUSH);
+    }
+
+    public void addEnemy(String sessionId, String enemyLogin) {
+        relate(sessionId, enemyLogin, facade -> facade.addEnemy(sessionId, enemyLogin), Operation.ADD_ENEMY);
+    }
+
+    /**
+     * Remove um usuário da sua partição e as réplicas dele das demais partições.
+     *
+     * @param sessionId ID da sessão do usuário.
+     */
+    public void removeUser(String sessionId) {
+        String login = sessions.get(sessionId);
+        int shard = shardOf(login);
+
+        // Como na Facade, a remoção exclui qualquer outra operação
+        LockStripes.Guard guard = locks.exclusive();
+        try (guard) {
+            execute(shard, () -> shards[shard].removeUser(sessionId));
+            forEachShard(i -> {
+                if (i != shard) {
+                    shards[i].replicate(Operation.REMOVE_USER, login);
+                }
+            });
+        }
+    }
+
+    /**
+     * Executa uma operação entre o usuário de uma sessão e outro usuário.
+     *
+     * A operação é validada e aplicada na partição de quem a inicia, depois de criada ali a
+     * réplica do outro usuário. Se ela foi registrada, mesmo que tenha lançado uma exceção
+     * depois disso, é reaplicada na partição do outro usuário com os argumentos do journal.
+     *
+     * @param sessionId  ID da sessão de quem inicia a operação.
+     * @param otherLogin Login do outro usuário.
+     * @param operation  Operação, chamada na Facade de uma partição.
+     * @param type       Tipo da operação no journal.
+     * @param extra      Argumentos do journal além dos dois logins.
+     */
+    private void relate(String sessionId, String otherLogin, Consumer<Facade> operation, Operation type,
+                        String... extra) {
+        String login = sessions.get(sessionId);
+        int shard = shardOf(login);
+        int otherShard = shardOf(otherLogin);
+
+        // Sem sessão ou na mesma partição, a própria Facade valida e aplica a operação
+        if (login == null || otherLogin == null || shard == otherShard) {
+            int target = login == null ? otherShard : shard;
+            execute(target, () -> operation.accept(shards[target]));
+            return;
+        }
+
+        LockStripes.Guard guard = locks.lock(login, otherLogin);
+        try (guard) {
+            Facade primary = shards[shard];
+            Facade peer = shards[otherShard];
+            String otherName = peer.getUserName(otherLogin);
+            long[] sequences = new long[2];
+
+            try {
+                execute(shard, () -> {
+                    if (otherName != null) {
+                        primary.addReplica(otherLogin, otherName);
+                    }
+                    sequences[0] = primary.getLastSequence();
+                    try {
+                        operation.accept(primary);
+                    } finally {
+                        sequences[1] = primary.getLastSequence();
+                    }
+                });
+            } finally {
+                if (sequences[1] != sequences[0]) {
+                    String[] args = new String[2 + extra.length];
+                    args[0] = login;
+                    args[1] = otherLogin;
+                    System.arraycopy(extra, 0, args, 2, extra.length);
+
+                    String name = primary.getUserName(login);
+                    execute(otherShard, () -> {
+                        peer.addReplica(login, name);
+                        peer.replicate(type, args);
+                    });
+                }
+            }
+        }
+    }
+
+    /**
+     * Executa uma operação de comunidade na partição das comunidades, criando antes a réplica do
+     * usuário da sessão, se ele for de outra partição.
+     */
+    private <T> T inCommunities(String sessionId, Function<Facade, T> operation) {
+        String login = sessions.get(sessionId);
+        Facade communities = shards[COMMUNITY_SHARD];
+
+        return execute(COMMUNITY_SHARD, () -> {
+            if (login != null && communities.getUserName(login) == null) {
+                String name = shards[shardOf(login)].getUserName(login);
+                if (name != null) {
+                    communities.addReplica(login, name);
+                }
+            }
+            return operation.apply(communities);
+        });
+    }
+
+    /**
+     * Executa uma alteração na thread de uma partição e espera o resultado.
+     */
+    private <T> T execute(int shard, Callable<T> task) {
+        return await(writers[shard].submit(task));
+    }
+
+    private void execute(int shard, Runnable task) {
+        await(writers[shard].submit(task));
+    }
+
+    /**
+     * Envia uma alteração para todas as partições ao mesmo tempo e espera que todas terminem.
+     * Se alguma falhar, lança a exceção da primeira partição que falhou.
+     */
+    private void forEachShard(IntConsumer task) {
+        List<Future<?>> results = new ArrayList<>();
+        for (int i = 0; i < writers.length; i++) {
+            int shard = i;
+            results.add(writers[i].submit(() -> task.accept(shard)));
+        }
+
+        RuntimeException error = null;
+        for (Future<?> result : results) {
+            try {
+                await(result);
+            } catch (RuntimeException e) {
+                if (error == null) {
+                    error = e;
+                }
+            }
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    private static <T> T await(Future<T> result) {
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Operação interrompida.", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+}
@@ -7,12 +7,13 @@ public class UserFactory {
     /**
      * Cria um novo usuário.
      *
+     * @param id       Identificador numérico do usuário.
      * @param login    Login do usuário.
      * @param password Senha do usuário.
      * @param name     Nome do usuário.
      * @return Instância de `Users`.
      */
-    public static Users createUser(String login, String password, String name) {
-        return new Users(login, password, name);
+    public static Users createUser(int id, String login, String password, String name) {
+        return new Users(id, login, password, name);
     }
 }
\ No newline at end of file
@@ -0,0 +1,183 @@
+package br.ufal.ic.p2.jackut;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+
+import br.ufal.ic.p2.jackut.exceptions.AttributeNotFilledException;
+
+/**
+ * Versão imutável dos dados de um usuário lidos pelas consultas da {@link Facade}.
+ *
+ * A Facade cria uma versão nova a cada alteração do usuário e a publica em uma {@link ReadView}.
+ * Os relacionamentos guardam os logins, e não os identificadores, de forma que a versão não
+ * depende de nenhum outro registro para ser lida.
+ *
+ * Os atributos e os relacionamentos ficam em estruturas persistentes, então a versão nova é
+ * derivada da anterior pelos métodos {@code with}/{@code without}, que copiam O(log n) e
+ * compartilham o resto. Só a primeira versão de um usuário, criada a partir do registro, custa
+ * proporcional ao número de relacionamentos.
+ */
+public final class UserVersion {
+    /**
+     * Versão de um usuário recém-criado, sem atributos nem relacionamentos.
+     */
+    public static final UserVersion EMPTY = new UserVersion(PersistentMap.empty(), PersistentLinkedSet.empty(),
+            PersistentLinkedSet.empty(), PersistentLinkedSet.empty());
+
+    private final PersistentMap<String, String> attributes;
+    private final PersistentLinkedSet<String> friends;
+    private final PersistentLinkedSet<String> communities;
+    private final PersistentLinkedSet<String> fans;
+
+    /**
+     * Construtor da classe UserVersion. Os atributos e relacionamentos recebidos são copiados.
+     *
+     * @param attributes  Atributos preenchidos do perfil.
+     * @param friends     Logins dos amigos, na ordem de inserção.
+     * @param communities Nomes das comunidades do usuário, na ordem de inserção.
+     * @param fans        Logins dos fãs, na ordem de inserção.
+     */
+    public UserVersion(Map<String, String> attributes, Collection<String> friends, Collection<String> communities,
+                       Collection<String> fans) {
+        PersistentMap<String, String> copy = PersistentMap.empty();
+        for (Map.Entry<String, String> attribute : attributes.entrySet()) {
+            copy = copy.plus(attribute.getKey(), attribute.getValue());
+        }
+        this.attributes = copy;
+        this.friends = PersistentLinkedSet.of(friends);
+        this.communities = PersistentLinkedSet.of(communities);
+        this.fans = PersistentLinkedSet.of(fans);
+    }
+
+    private UserVersion(PersistentMap<String, String> attributes, PersistentLinkedSet<String> friends,
+                        PersistentLinkedSet<String> communities, PersistentLinkedSet<String> fans) {
+        this.attributes = attributes;
+        this.friends = friends;
+        this.communities = communities;
+        this.fans = fans;
+    }
+
+    /**
+     * Retorna o valor de um atributo do perfil.
+     *
+     * @param attribute Nome do atributo.
+     * @return Valor do atributo.
+     * @throws AttributeNotFilledException Se o atributo não estiver preenchido.
+     */
+    public String getAttribute(String attribute) {
+        String value = attributes.get(attribute);
+        if (value == null) {
+            throw new AttributeNotFilledException("Atributo não preenchido.");
+        }
+        return value;
+    }
+
+    /**
+     * Verifica se o usuário é amigo de outro usuário.
+     *
+     * @param friend Login do outro usuário.
+     * @return {@code true} se forem amigos.
+     */
+    public boolean isFriend(String friend) {
+        return friends.contains(friend);
+    }
+
+    /**
+     * Retorna os amigos do usuário.
+     *
+     * @return Logins dos amigos, na ordem de inserção.
+     */
+    public Set<String> getFriends() {
+        return friends;
+    }
+
+    /**
+     * Retorna as comunidades do usuário.
+     *
+     * @return Nomes das comunidades, na ordem de inserção.
+     */
+    public Set<String> getCommunities() {
+        return communities;
+    }
+
+    /**
+     * Retorna os fãs do usuário.
+     *
+     * @return Logins dos fãs, na ordem de inserção.
+     */
+    public Set<String> getFans() {
+        return fans;
+    }
+
+    /**
+     * Retorna uma versão igual a esta, mas com um atributo preenchido.
+     *
+     * @param attribute Nome do atributo.
+     * @param value     Valor do atributo.
+     * @return A nova versão.
+     */
+    public UserVersion withAttribute(String attribute, String value) {
+        return new UserVersion(attributes.plus(attribute, value), friends, communities, fans);
+    }
+
+    /**
+     * Retorna uma versão igual a esta, mas com um amigo a mais.
+     *
+     * @param friend Login do amigo.
+     * @return A nova versão.
+     */
+    public UserVersion withFriend(String friend) {
+        return new UserVersion(attributes, friends.plus(friend), communities, fans);
+    }
+
+    /**
+     * Retorna uma versão igual a esta, mas sem um amigo.
+     *
+     * @param friend Login do amigo.
+     * @return A nova versão.
+     */
+    public UserVersion withoutFriend(String friend) {
+        return new UserVersion(attributes, friends.minus(friend), communities, fans);
+    }
+
+    /**
+     * Retorna uma versão igual a esta, mas com uma comunidade a mais.
+     *
+     * @param community Nome da comunidade.
+     * @return A nova versão.
+     */
+    public UserVersion withCommunity(String community) {
+        return new UserVersion(attributes, friends, communities.plus(community), fans);
+    }
+
+    /**
+     * Retorna uma versão igual a esta, mas sem uma comunidade.
+     *
+     * @param community Nome da comunidade.
+     * @return A nova versão.
+     */
+    public UserVersion withoutCommunity(String community) {
+        return new UserVersion(attributes, friends, communities.minus(community), fans);
+    }
+
+    /**
+     * Retorna uma versão igual a esta, mas com um fã a mais.
+     *
+     * @param fan Login do fã.
+     * @return A nova versão.
+     */
+    public UserVersion withFan(String fan) {
+        return new UserVersion(attributes, friends, communities, fans.plus(fan));
+    }
+
+    /**
+     * Retorna uma versão igual a esta, mas sem um fã.
+     *
+     * @param fan Login do fã.
+     * @return A nova versão.
+     */
+    public UserVersion withoutFan(String fan) {
+        return new UserVersion(attributes, friends, communities, fans.minus(fan));
+    }
+}
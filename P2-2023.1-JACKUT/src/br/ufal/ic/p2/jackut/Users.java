@@ -1,119 +1,192 @@
 package br.ufal.ic.p2.jackut;
 
-import java.io.Serializable;
 import java.util.*;
 
 import br.ufal.ic.p2.jackut.exceptions.*;
+import br.ufal.ic.p2.jackut.persistence.InboxStore;
 
 /**
  * Classe que representa um usuário no sistema Jackut.
  * 
  * Gerencia informações do perfil, amigos, comunidades, mensagens, ídolos, paqueras e inimigos.
+ * Os relacionamentos são guardados em conjuntos que preservam a ordem de inserção, de forma que
+ * as consultas de pertinência custam O(1) e as listagens mantêm a ordem em que foram feitas.
+ * Relacionamentos com outros usuários guardam o identificador numérico deles, e não o login;
+ * a conversão entre os dois é feita pela {@link Facade}. Cada relacionamento tem também o índice
+ * inverso (fãs, quem tem o usuário como paquera ou inimigo, pedidos enviados e comunidades
+ * criadas), para que a remoção de uma conta visite apenas os registros afetados.
  */
-public class Users implements Serializable, Observer {
+public class Users {
+    private int id;
     private String login;
     private String password;
     private String name;
-    private List<String> friends;
-    private Queue<String> messages;
+    private IntSet friends;
+    private Inbox messages;
     private Map<String, String> attributes;
-    private List<String> pendingFriendRequests;
-    private List<String> communities;
-    private List<String> idols;
-    private List<String> crushes;
-    private List<String> enemies;
+    private IntSet pendingFriendRequests;
+    private Set<String> communities;
+    private Set<String> unreadCommunities;
+    private IntSet messagedUsers;
+    private IntSet idols;
+    private IntSet crushes;
+    private IntSet enemies;
+    private IntSet sentFriendRequests;
+    private IntSet fans;
+    private IntSet crushedBy;
+    private IntSet enemyOf;
+    private Set<String> ownedCommunities;
 
     /**
      * Construtor da classe Users.
      *
+     * @param id       Identificador numérico do usuário.
      * @param login    Login do usuário.
      * @param password Senha do usuário.
      * @param name     Nome do usuário.
      */
-    public Users(String login, String password, String name) {
+    public Users(int id, String login, String password, String name) {
+        this.id = id;
         this.login = login;
         this.password = password;
         this.name = name;
-        this.friends = new ArrayList<>();
-        this.messages = new LinkedList<>();
+        this.friends = new IntSet();
+        this.messages = new Inbox();
         this.attributes = new HashMap<>();
-        this.pendingFriendRequests = new ArrayList<>();
-        this.communities = new ArrayList<>();
-        this.idols = new ArrayList<>();
-        this.crushes = new ArrayList<>();
-        this.enemies = new ArrayList<>();
+        this.pendingFriendRequests = new IntSet();
+        this.communities = new LinkedHashSet<>();
+        this.unreadCommunities = new LinkedHashSet<>();
+        this.messagedUsers = new IntSet();
+        this.idols = new IntSet();
+        this.crushes = new IntSet();
+        this.enemies = new IntSet();
+        this.sentFriendRequests = new IntSet();
+        this.fans = new IntSet();
+        this.crushedBy = new IntSet();
+        this.enemyOf = new IntSet();
+        this.ownedCommunities = new LinkedHashSet<>();
     }
 
     /**
      * Adiciona um amigo à lista de amigos do usuário.
      *
-     * @param friend Login do amigo a ser adicionado.
+     * @param friend Identificador do amigo a ser adicionado.
      */
-    public void addFriend(String friend) {
-        if (!friends.contains(friend)) {
-            friends.add(friend);
-        }
+    public void addFriend(int friend) {
+        friends.add(friend);
     }
 
     /**
      * Verifica se o usuário é amigo de outro usuário.
      *
-     * @param friend Login do amigo a ser verificado.
+     * @param friend Identificador do amigo a ser verificado.
      * @return {@code true} se forem amigos, {@code false} caso contrário.
      */
-    public boolean isFriend(String friend) {
+    public boolean isFriend(int friend) {
         return friends.contains(friend);
     }
 
     /**
      * Adiciona um pedido de amizade pendente.
      *
-     * @param friend Login do amigo que enviou o pedido.
+     * @param friend Identificador do amigo que enviou o pedido.
      */
-    public void addFriendRequest(String friend) {
-        if (!pendingFriendRequests.contains(friend)) {
-            pendingFriendRequests.add(friend);
-        }
+    public void addFriendRequest(int friend) {
+        pendingFriendRequests.add(friend);
     }
 
     /**
      * Verifica se há um pedido de amizade pendente de um amigo específico.
      *
-     * @param friend Login do amigo a ser verificado.
+     * @param friend Identificador do amigo a ser verificado.
      * @return {@code true} se houver um pedido pendente, {@code false} caso
      *         contrário.
      */
-    public boolean hasPendingRequest(String friend) {
+    public boolean hasPendingRequest(int friend) {
         return pendingFriendRequests.contains(friend);
     }
 
     /**
      * Aceita um pedido de amizade pendente.
      *
-     * @param friend Login do amigo cujo pedido será aceito.
+     * @param friend Identificador do amigo cujo pedido será aceito.
      */
-    public void acceptFriendRequest(String friend) {
+    public void acceptFriendRequest(int friend) {
         if (pendingFriendRequests.remove(friend)) {
             addFriend(friend);
         }
     }
 
     /**
-     * Retorna a lista de amigos do usuário.
+     * Retorna o conjunto de amigos do usuário.
+     *
+     * @return Identificadores dos amigos, na ordem de inserção.
+     */
+    public int[] getFriends() {
+        return friends.toArray();
+    }
+
+    /**
+     * Retorna o conjunto de pedidos de amizade pendentes.
+     *
+     * @return Identificadores dos autores dos pedidos pendentes, na ordem de inserção.
+     */
+    public int[] getPendingFriendRequests() {
+        return pendingFriendRequests.toArray();
+    }
+
+    /**
+     * Remove um amigo do usuário.
+     *
+     * @param friend Identificador do amigo a ser removido.
+     */
+    public void removeFriend(int friend) {
+        friends.remove(friend);
+    }
+
+    /**
+     * Remove um pedido de amizade pendente recebido pelo usuário.
+     *
+     * @param friend Identificador do autor do pedido.
+     */
+    public void removeFriendRequest(int friend) {
+        pendingFriendRequests.remove(friend);
+    }
+
+    /**
+     * Registra um pedido de amizade enviado pelo usuário e ainda não aceito.
      *
-     * @return Lista de amigos.
+     * @param friend Identificador do destinatário do pedido.
      */
-    public List<String> getFriends() {
-        return friends;
+    public void addSentFriendRequest(int friend) {
+        sentFriendRequests.add(friend);
     }
 
     /**
-     * Retorna a lista de pedidos de amizade pendentes.
+     * Remove um pedido de amizade enviado pelo usuário.
      *
-     * @return Lista de pedidos de amizade pendentes.
+     * @param friend Identificador do destinatário do pedido.
      */
-    public List<String> getPendingFriendRequests() {
-        return pendingFriendRequests;
+    public void removeSentFriendRequest(int friend) {
+        sentFriendRequests.remove(friend);
+    }
+
+    /**
+     * Retorna os pedidos de amizade enviados pelo usuário e ainda não aceitos.
+     *
+     * @return Identificadores dos destinatários, na ordem de envio.
+     */
+    public int[] getSentFriendRequests() {
+        return sentFriendRequests.toArray();
+    }
+
+    /**
+     * Retorna o identificador numérico do usuário.
+     *
+     * @return Identificador do usuário.
+     */
+    public int getId() {
+        return id;
     }
 
     /**
@@ -166,6 +239,15 @@ public class Users implements Serializable, Observer {
         return attributes.get(attribute);
     }
 
+    /**
+     * Retorna todos os atributos preenchidos do perfil do usuário.
+     *
+     * @return Mapa de atributos.
+     */
+    public Map<String, String> getAttributes() {
+        return Collections.unmodifiableMap(attributes);
+    }
+
     /**
      * Define o valor de um atributo do perfil do usuário.
      *
@@ -179,23 +261,61 @@ public class Users implements Serializable, Observer {
     /**
      * Adiciona uma mensagem à fila de mensagens do usuário.
      *
-     * @param message Conteúdo da mensagem.
+     * @param message Mensagem recebida.
      */
-    public void addMessage(String message) {
+    public synchronized void addMessage(Message message) {
         messages.add(message);
     }
 
+    /**
+     * Retorna as mensagens ainda não lidas do usuário, na ordem de chegada, incluindo as que
+     * estão no segmento em disco.
+     *
+     * @return Fila de mensagens.
+     */
+    public synchronized List<Message> getMessages() {
+        return messages.toList();
+    }
+
+    /**
+     * Passa a manter em disco as mensagens excedentes da caixa de entrada.
+     *
+     * @param store Segmentos das caixas de entrada.
+     */
+    public synchronized void attachInbox(InboxStore store) {
+        messages.attach(store, id);
+    }
+
+    /**
+     * Retorna a caixa de entrada do usuário, para que o snapshot grave a parte em memória e a
+     * posição do segmento. Deve ser usada com acesso exclusivo ao usuário.
+     *
+     * @return A caixa de entrada.
+     */
+    public Inbox getInbox() {
+        return messages;
+    }
+
+    /**
+     * Aposenta o segmento em disco da caixa de entrada, que será apagado depois do próximo
+     * snapshot. Chamado na remoção da conta.
+     */
+    public synchronized void retireInbox() {
+        messages.retire();
+    }
+
     /**
      * Lê a próxima mensagem da fila de mensagens do usuário.
      *
      * @return Conteúdo da mensagem.
      * @throws MessageException Se não houver mensagens na fila.
      */
-    public String readMessage() {
-        if (messages.isEmpty()) {
+    public synchronized String readMessage() {
+        Message message = messages.poll();
+        if (message == null) {
             throw new MessageException("Não há recados.");
         }
-        return messages.poll();
+        return message.getBody();
     }
 
     /**
@@ -204,9 +324,7 @@ public class Users implements Serializable, Observer {
      * @param communityName Nome da comunidade a ser adicionada.
      */
     public void addCommunity(String communityName) {
-        if (!communities.contains(communityName)) {
-            communities.add(communityName);
-        }
+        communities.add(communityName);
     }
 
     /**
@@ -219,88 +337,284 @@ public class Users implements Serializable, Observer {
     }
 
     /**
-     * Retorna a lista de comunidades do usuário.
+     * Retorna o conjunto de comunidades do usuário.
+     *
+     * @return Conjunto de comunidades, na ordem de inserção.
+     */
+    public Set<String> getCommunities() {
+        return Collections.unmodifiableSet(communities);
+    }
+
+    /**
+     * Registra uma comunidade criada pelo usuário.
+     *
+     * @param communityName Nome da comunidade.
+     */
+    public void addOwnedCommunity(String communityName) {
+        ownedCommunities.add(communityName);
+    }
+
+    /**
+     * Retorna as comunidades criadas pelo usuário.
+     *
+     * @return Conjunto de comunidades, na ordem de criação.
+     */
+    public Set<String> getOwnedCommunities() {
+        return Collections.unmodifiableSet(ownedCommunities);
+    }
+
+    /**
+     * Marca uma comunidade como tendo mensagens não lidas pelo usuário.
+     *
+     * @param communityName Nome da comunidade.
+     */
+    public synchronized void markUnread(String communityName) {
+        unreadCommunities.add(communityName);
+    }
+
+    /**
+     * Marca uma comunidade como sem mensagens não lidas pelo usuário.
+     *
+     * @param communityName Nome da comunidade.
+     */
+    public synchronized void markRead(String communityName) {
+        unreadCommunities.remove(communityName);
+    }
+
+    /**
+     * Retorna a comunidade com mensagens não lidas marcada há mais tempo.
+     *
+     * @return Nome da comunidade, ou {@code null} se não houver mensagens não lidas.
+     */
+    public synchronized String nextUnreadCommunity() {
+        return unreadCommunities.isEmpty() ? null : unreadCommunities.iterator().next();
+    }
+
+    /**
+     * Retorna as comunidades com mensagens não lidas pelo usuário, na ordem em que foram marcadas.
      *
-     * @return Lista de comunidades.
+     * @return Conjunto de comunidades.
      */
-    public List<String> getCommunities() {
-        return Collections.unmodifiableList(communities);
+    public synchronized Set<String> getUnreadCommunities() {
+        return new LinkedHashSet<>(unreadCommunities);
     }
 
     /**
      * Remove mensagens enviadas por um usuário específico.
      *
-     * @param senderLogin Login do remetente das mensagens a serem removidas.
+     * @param senderId Identificador do remetente das mensagens a serem removidas.
      */
-    public void removeMessagesFrom(String senderLogin) {
-        messages.removeIf(message -> message.startsWith("Mensagem de " + senderLogin + ":"));
+    public synchronized void removeMessagesFrom(int senderId) {
+        messages.removeFrom(senderId);
+    }
+
+    /**
+     * Registra que o usuário enviou uma mensagem para a caixa de entrada de outro usuário.
+     *
+     * @param recipientId Identificador do destinatário.
+     */
+    public synchronized void addMessagedUser(int recipientId) {
+        messagedUsers.add(recipientId);
+    }
+
+    /**
+     * Retorna os usuários em cujas caixas de entrada podem existir mensagens deste usuário.
+     *
+     * @return Identificadores dos destinatários, na ordem do primeiro envio.
+     */
+    public synchronized int[] getMessagedUsers() {
+        return messagedUsers.toArray();
     }
 
     /**
      * Verifica se o usuário é fã de outro usuário.
      *
-     * @param idol Login do ídolo a ser verificado.
+     * @param idol Identificador do ídolo a ser verificado.
      * @return {@code true} se for fã, {@code false} caso contrário.
      */
-    public boolean isIdol(String idol) {
+    public boolean isIdol(int idol) {
         return idols.contains(idol);
     }
 
     /**
      * Adiciona um ídolo à lista de ídolos do usuário.
      *
-     * @param idol Login do ídolo a ser adicionado.
+     * @param idol Identificador do ídolo a ser adicionado.
      */
-    public void addIdol(String idol) {
-        if (!idols.contains(idol)) {
-            idols.add(idol);
-        }
+    public void addIdol(int idol) {
+        idols.add(idol);
+    }
+
+    /**
+     * Retorna o conjunto de ídolos do usuário.
+     *
+     * @return Identificadores dos ídolos, na ordem de inserção.
+     */
+    public int[] getIdols() {
+        return idols.toArray();
+    }
+
+    /**
+     * Remove um ídolo do usuário.
+     *
+     * @param idol Identificador do ídolo a ser removido.
+     */
+    public void removeIdol(int idol) {
+        idols.remove(idol);
+    }
+
+    /**
+     * Adiciona um fã do usuário.
+     *
+     * @param fan Identificador do fã.
+     */
+    public void addFan(int fan) {
+        fans.add(fan);
+    }
+
+    /**
+     * Remove um fã do usuário.
+     *
+     * @param fan Identificador do fã.
+     */
+    public void removeFan(int fan) {
+        fans.remove(fan);
+    }
+
+    /**
+     * Retorna os fãs do usuário.
+     *
+     * @return Identificadores dos fãs, na ordem em que adicionaram o usuário como ídolo.
+     */
+    public int[] getFans() {
+        return fans.toArray();
     }
 
     /**
      * Verifica se o usuário tem uma paixão por outro usuário.
      *
-     * @param crush Login da paixão a ser verificada.
+     * @param crush Identificador da paixão a ser verificada.
      * @return {@code true} se for paixão, {@code false} caso contrário.
      */
-    public boolean isCrush(String crush) {
+    public boolean isCrush(int crush) {
         return crushes.contains(crush);
     }
 
     /**
      * Adiciona uma paixão à lista de paixões do usuário.
      *
-     * @param crush Login da paixão a ser adicionada.
+     * @param crush Identificador da paixão a ser adicionada.
      */
-    public void addCrush(String crush) {
-        if (!crushes.contains(crush)) {
-            crushes.add(crush);
-        }
+    public void addCrush(int crush) {
+        crushes.add(crush);
+    }
+
+    /**
+     * Retorna o conjunto de paixões do usuário.
+     *
+     * @return Identificadores das paixões, na ordem de inserção.
+     */
+    public int[] getCrushes() {
+        return crushes.toArray();
+    }
+
+    /**
+     * Remove uma paixão do usuário.
+     *
+     * @param crush Identificador da paixão a ser removida.
+     */
+    public void removeCrush(int crush) {
+        crushes.remove(crush);
+    }
+
+    /**
+     * Registra um usuário que tem este usuário como paixão.
+     *
+     * @param admirer Identificador do usuário.
+     */
+    public void addCrushedBy(int admirer) {
+        crushedBy.add(admirer);
+    }
+
+    /**
+     * Remove um usuário que tinha este usuário como paixão.
+     *
+     * @param admirer Identificador do usuário.
+     */
+    public void removeCrushedBy(int admirer) {
+        crushedBy.remove(admirer);
+    }
+
+    /**
+     * Retorna os usuários que têm este usuário como paixão.
+     *
+     * @return Identificadores dos usuários, na ordem de inserção.
+     */
+    public int[] getCrushedBy() {
+        return crushedBy.toArray();
     }
 
     /**
      * Verifica se o usuário é inimigo de outro usuário.
      *
-     * @param enemy Login do inimigo a ser verificado.
+     * @param enemy Identificador do inimigo a ser verificado.
      * @return {@code true} se for inimigo, {@code false} caso contrário.
      */
-    public boolean isEnemy(String enemy) {
+    public boolean isEnemy(int enemy) {
         return enemies.contains(enemy);
     }
 
     /**
      * Adiciona um inimigo à lista de inimigos do usuário.
      *
-     * @param enemy Login do inimigo a ser adicionado.
+     * @param enemy Identificador do inimigo a ser adicionado.
      */
-    public void addEnemy(String enemy) {
-        if (!enemies.contains(enemy)) {
-            enemies.add(enemy);
-        }
+    public void addEnemy(int enemy) {
+        enemies.add(enemy);
     }
 
-    @Override
-    public void update(String message) {
-        addMessage(message);
+    /**
+     * Retorna o conjunto de inimigos do usuário.
+     *
+     * @return Identificadores dos inimigos, na ordem de inserção.
+     */
+    public int[] getEnemies() {
+        return enemies.toArray();
+    }
+
+    /**
+     * Remove um inimigo do usuário.
+     *
+     * @param enemy Identificador do inimigo a ser removido.
+     */
+    public void removeEnemy(int enemy) {
+        enemies.remove(enemy);
+    }
+
+    /**
+     * Registra um usuário que tem este usuário como inimigo.
+     *
+     * @param rival Identificador do usuário.
+     */
+    public void addEnemyOf(int rival) {
+        enemyOf.add(rival);
+    }
+
+    /**
+     * Remove um usuário que tinha este usuário como inimigo.
+     *
+     * @param rival Identificador do usuário.
+     */
+    public void removeEnemyOf(int rival) {
+        enemyOf.remove(rival);
+    }
+
+    /**
+     * Retorna os usuários que têm este usuário como inimigo.
+     *
+     * @return Identificadores dos usuários, na ordem de inserção.
+     */
+    public int[] getEnemyOf() {
+        return enemyOf.toArray();
     }
-}
\ No newline at end of file
+}
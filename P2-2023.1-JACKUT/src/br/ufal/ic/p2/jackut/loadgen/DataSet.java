@@ -0,0 +1,274 @@
+package br.ufal.ic.p2.jackut.loadgen;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+/**
+ * Conjunto de dados sintético com o formato de uma rede social real, gerado de forma
+ * determinística a partir de uma semente.
+ *
+ * Os convites de amizade têm como alvo usuários sorteados por uma distribuição de Zipf, de modo
+ * que poucos usuários concentram a maior parte dos convites. O tamanho das comunidades também
+ * segue uma lei de potência: a comunidade de posição {@code r} tem cerca de
+ * {@code usuários / (2 (r + 1))} membros, então há poucas comunidades enormes e muitas pequenas.
+ *
+ * O usuário de índice {@code i} tem login {@code user<i>} e senha {@code senha<i>}. Os convites e
+ * as participações em comunidades ficam agrupados por usuário, na ordem em que são carregados.
+ */
+public class DataSet {
+    private static final double POPULARITY_EXPONENT = 1.0;
+
+    private final long seed;
+    private final int users;
+    private final int[] friendOffsets;
+    private final int[] friendTargets;
+    private final int[] owners;
+    private final int[] membershipOffsets;
+    private final int[] memberships;
+
+    private DataSet(long seed, int users, int[] friendOffsets, int[] friendTargets, int[] owners,
+                    int[] membershipOffsets, int[] memberships) {
+        this.seed = seed;
+        this.users = users;
+        this.friendOffsets = friendOffsets;
+        this.friendTargets = friendTargets;
+        this.owners = owners;
+        this.membershipOffsets = membershipOffsets;
+        this.memberships = memberships;
+    }
+
+    /**
+     * Gera um conjunto de dados.
+     *
+     * @param seed        Semente do gerador; a mesma semente sempre gera os mesmos dados.
+     * @param users       Quantidade de usuários.
+     * @param friends     Quantidade média de convites de amizade enviados por usuário.
+     * @param communities Quantidade de comunidades.
+     * @return O conjunto de dados gerado.
+     */
+    public static DataSet generate(long seed, int users, int friends, int communities) {
+        if (users < 2 || friends < 0 || communities < 0) {
+            throw new IllegalArgumentException("Parâmetros do conjunto de dados inválidos.");
+        }
+
+        SplittableRandom random = new SplittableRandom(seed);
+        ZipfDistribution popularity = new ZipfDistribution(users, POPULARITY_EXPONENT);
+
+        // Convites: remetente uniforme, destinatário pela popularidade, sem repetições
+        long requests = Math.min((long) users * friends, (long) users * (users - 1) / 2);
+        Set<Long> edges = new HashSet<>();
+        int[] senders = new int[(int) requests];
+        int[] targets = new int[(int) requests];
+        int count = 0;
+        // Em bases muito pequenas os pares disponíveis se esgotam; desiste depois de muitas repetições
+        for (long attempts = 0; count < requests && attempts < requests * 20; attempts++) {
+            int from = random.nextInt(users);
+            int to = popularity.sample(random);
+            if (from == to || edges.contains(pair(to, from)) || !edges.add(pair(from, to))) {
+                continue;
+            }
+            senders[count] = from;
+            targets[count] = to;
+            count++;
+        }
+        int[] friendOffsets = new int[users + 1];
+        int[] friendTargets = group(users, senders, targets, count, friendOffsets);
+
+        // Comunidades: donos sorteados e membros sorteados sem repetição
+        int[] owners = new int[communities];
+        List<int[]> membersByCommunity = new ArrayList<>();
+        int totalMembers = 0;
+        for (int c = 0; c < communities; c++) {
+            owners[c] = random.nextInt(users);
+            int size = (int) Math.min(users - 1, Math.max(1, users / (2L * (c + 1))));
+            int[] members = sampleMembers(random, users, size, owners[c]);
+            membersByCommunity.add(members);
+            totalMembers += members.length;
+        }
+
+        int[] memberUsers = new int[totalMembers];
+        int[] memberCommunities = new int[totalMembers];
+        int position = 0;
+        for (int c = 0; c < communities; c++) {
+            for (int member : membersByCommunity.get(c)) {
+                memberUsers[position] = member;
+                memberCommunities[position] = c;
+                position++;
+            }
+        }
+        int[] membershipOffsets = new int[users + 1];
+        int[] memberships = group(users, memberUsers, memberCommunities, totalMembers, membershipOffsets);
+
+        return new DataSet(seed, users, friendOffsets, friendTargets, owners, membershipOffsets, memberships);
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public int getUsers() {
+        return users;
+    }
+
+    public int getCommunities() {
+        return owners.length;
+    }
+
+    /**
+     * Retorna o total de convites de amizade do conjunto.
+     *
+     * @return Quantidade de convites.
+     */
+    public int getFriendRequests() {
+        return friendTargets.length;
+    }
+
+    /**
+     * Retorna o total de participações em comunidades, sem contar os donos.
+     *
+     * @return Quantidade de participações.
+     */
+    public int getMemberships() {
+        return memberships.length;
+    }
+
+    public static String login(int user) {
+        return "user" + user;
+    }
+
+    public static String password(int user) {
+        return "senha" + user;
+    }
+
+    public static String name(int user) {
+        return "Usuário " + user;
+    }
+
+    public static String communityName(int community) {
+        return "comunidade" + community;
+    }
+
+    /**
+     * Retorna o dono de uma comunidade.
+     *
+     * @param community Índice da comunidade.
+     * @return Índice do usuário dono.
+     */
+    public int getOwner(int community) {
+        return owners[community];
+    }
+
+    /**
+     * Retorna os destinatários dos convites de amizade enviados por um usuário.
+     *
+     * @param user Índice do usuário.
+     * @return Índices dos destinatários.
+     */
+    public int[] getFriendRequests(int user) {
+        return Arrays.copyOfRange(friendTargets, friendOffsets[user], friendOffsets[user + 1]);
+    }
+
+    /**
+     * Retorna as comunidades em que um usuário entra, sem contar as que ele criou.
+     *
+     * @param user Índice do usuário.
+     * @return Índices das comunidades.
+     */
+    public int[] getMemberships(int user) {
+        return Arrays.copyOfRange(memberships, membershipOffsets[user], membershipOffsets[user + 1]);
+    }
+
+    /**
+     * Carrega o conjunto de dados por uma conexão: cria os usuários e as comunidades e depois,
+     * usuário por usuário, abre uma sessão, envia os convites e entra nas comunidades.
+     *
+     * @param client Conexão com o sistema, já sem dados.
+     * @return Quantidade de operações recusadas pelo sistema.
+     */
+    public int loadInto(LoadClient client) {
+        int rejected = 0;
+        for (int user = 0; user < users; user++) {
+            client.createUser(login(user), password(user), name(user));
+        }
+        for (int community = 0; community < owners.length; community++) {
+            int owner = owners[community];
+            String session = client.openSession(login(owner), password(owner));
+            client.createCommunity(session, communityName(community), "Comunidade " + community);
+        }
+
+        for (int user = 0; user < users; user++) {
+            if (friendOffsets[user] == friendOffsets[user + 1]
+                    && membershipOffsets[user] == membershipOffsets[user + 1]) {
+                continue;
+            }
+            String session = client.openSession(login(user), password(user));
+            for (int i = friendOffsets[user]; i < friendOffsets[user + 1]; i++) {
+                try {
+                    client.addFriend(session, login(friendTargets[i]));
+                } catch (RuntimeException e) {
+                    rejected++;
+                }
+            }
+            for (int i = membershipOffsets[user]; i < membershipOffsets[user + 1]; i++) {
+                try {
+                    client.addUserToCommunity(session, communityName(memberships[i]));
+                } catch (RuntimeException e) {
+                    rejected++;
+                }
+            }
+        }
+        return rejected;
+    }
+
+    private static long pair(int from, int to) {
+        return (long) from << 32 | to;
+    }
+
+    /**
+     * Agrupa os pares {@code (keys[i], values[i])} pela chave, preservando a ordem de geração.
+     * Preenche {@code offsets} de forma que os valores da chave {@code k} fiquem entre
+     * {@code offsets[k]} e {@code offsets[k + 1]}.
+     */
+    private static int[] group(int keyCount, int[] keys, int[] values, int length, int[] offsets) {
+        for (int i = 0; i < length; i++) {
+            offsets[keys[i] + 1]++;
+        }
+        for (int k = 0; k < keyCount; k++) {
+            offsets[k + 1] += offsets[k];
+        }
+
+        int[] grouped = new int[length];
+        int[] next = Arrays.copyOf(offsets, keyCount);
+        for (int i = 0; i < length; i++) {
+            grouped[next[keys[i]]++] = values[i];
+        }
+        return grouped;
+    }
+
+    private static int[] sampleMembers(SplittableRandom random, int users, int size, int owner) {
+        int[] members = new int[size];
+        int count = 0;
+        if ((long) size * 4 < users) {
+            Set<Integer> chosen = new HashSet<>();
+            while (count < size) {
+                int user = random.nextInt(users);
+                if (user != owner && chosen.add(user)) {
+                    members[count++] = user;
+                }
+            }
+        } else {
+            // Para comunidades grandes, percorre os usuários sorteando cada um com a mesma chance
+            for (int user = 0; user < users && count < size; user++) {
+                int remaining = users - user - (user < owner ? 1 : 0);
+                if (user != owner && random.nextInt(remaining) < size - count) {
+                    members[count++] = user;
+                }
+            }
+        }
+        return members;
+    }
+}
@@ -0,0 +1,303 @@
+package br.ufal.ic.p2.jackut.loadgen;
+
+import java.io.File;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import br.ufal.ic.p2.jackut.Facade;
+import br.ufal.ic.p2.jackut.ShardedFacade;
+import br.ufal.ic.p2.jackut.persistence.DurabilityPolicy;
+import br.ufal.ic.p2.jackut.server.CommandLine;
+
+/**
+ * Teste diferencial do {@link ShardedFacade} contra uma {@link Facade} comum.
+ *
+ * Executa a mesma sequência de operações aleatórias, gerada a partir de uma semente, sobre os
+ * dois sistemas e compara o resultado de cada operação, ou a classe e a mensagem da exceção
+ * lançada. A cada {@code check} passos compara também o estado completo visto pelas consultas,
+ * e em {@code reloads} pontos da execução fecha os dois sistemas e os abre de novo a partir do
+ * disco, verificando que cada um volta ao mesmo estado e que continuam iguais entre si.
+ *
+ * Como a Facade publica versões de leitura derivadas das anteriores e, depois de aberta, cria as
+ * versões a partir dos registros, a comparação antes e depois de cada recarga verifica também
+ * que os dois caminhos chegam ao mesmo estado.
+ *
+ * As opções usam o formato {@code chave=valor} do {@link LoadGenerator}: {@code steps},
+ * {@code users}, {@code communities}, {@code shards}, {@code seed}, {@code check} e
+ * {@code reloads} (padrão 9000, 40, 8, 4, 42, 500 e 2), e {@code dir}, o diretório dos dados
+ * (padrão {@code differential}). Termina com código 1 na primeira divergência.
+ */
+public class DifferentialCheck {
+    private static final String PASSWORD = "senha";
+    private static final String[] ATTRIBUTES = {"cidade", "idade", "name"};
+    private static final Map<String, Method> FACADE_METHODS = methods(Facade.class);
+    private static final Map<String, Method> SHARDED_METHODS = methods(ShardedFacade.class);
+
+    private final File directory;
+    private final int shardCount;
+    private final DurabilityPolicy durability;
+    private final Map<String, String> facadeSessions = new HashMap<>();
+    private final Map<String, String> shardedSessions = new HashMap<>();
+    private final List<String> logins = new ArrayList<>();
+    private final List<String> communities = new ArrayList<>();
+    private Facade facade;
+    private ShardedFacade sharded;
+    private int step;
+
+    private DifferentialCheck(File directory, int shardCount, DurabilityPolicy durability) {
+        this.directory = directory;
+        this.shardCount = shardCount;
+        this.durability = durability;
+    }
+
+    /**
+     * Executa o teste diferencial.
+     *
+     * @param args Opções no formato {@code chave=valor}.
+     */
+    public static void main(String[] args) {
+        CommandLine options = CommandLine.parse("differential " + String.join(" ", args));
+        int steps = Integer.parseInt(option(options, "steps", "9000"));
+        int users = Integer.parseInt(option(options, "users", "40"));
+        int communityCount = Integer.parseInt(option(options, "communities", "8"));
+        int shards = Integer.parseInt(option(options, "shards", "4"));
+        long seed = Long.parseLong(option(options, "seed", "42"));
+        int check = Integer.parseInt(option(options, "check", "500"));
+        int reloads = Integer.parseInt(option(options, "reloads", "2"));
+
+        DifferentialCheck differential = new DifferentialCheck(new File(option(options, "dir", "differential")), shards,
+                DurabilityPolicy.parse(System.getProperty("jackut.durability")));
+        for (int i = 0; i < users; i++) {
+            differential.logins.add("u" + i);
+        }
+        for (int i = 0; i < communityCount; i++) {
+            differential.communities.add("c" + i);
+        }
+
+        differential.open();
+        differential.facade.resetSystem();
+        differential.sharded.resetSystem();
+
+        Random random = new Random(seed);
+        int fullChecks = 0;
+        int reloadsDone = 0;
+        int reloadInterval = reloads > 0 ? Math.max(1, steps / (reloads + 1)) : Integer.MAX_VALUE;
+        for (differential.step = 1; differential.step <= steps; differential.step++) {
+            differential.randomOperation(random);
+            if (check > 0 && differential.step % check == 0) {
+                differential.compareState();
+                fullChecks++;
+            }
+            if (differential.step % reloadInterval == 0 && reloadsDone < reloads) {
+                differential.reload();
+                reloadsDone++;
+            }
+        }
+        differential.compareState();
+        differential.reload();
+        differential.facade.closeSystem();
+        differential.sharded.closeSystem();
+
+        System.out.printf("Nenhuma divergência em %d passos (%d partições, %d verificações completas, %d recargas)%n",
+                steps, shards, fullChecks + 1, reloadsDone + 1);
+    }
+
+    private void open() {
+        facade = new Facade(new File(directory, "facade"), durability);
+        sharded = new ShardedFacade(new File(directory, "sharded"), shardCount, durability);
+    }
+
+    /**
+     * Fecha os dois sistemas, abre-os de novo a partir do disco e compara o estado de cada um com
+     * o de antes, e dos dois entre si. As sessões são perdidas e abertas de novo.
+     */
+    private void reload() {
+        String before = state(facade, FACADE_METHODS);
+        facade.closeSystem();
+        sharded.closeSystem();
+        open();
+        facadeSessions.clear();
+        shardedSessions.clear();
+
+        String after = state(facade, FACADE_METHODS);
+        if (!before.equals(after)) {
+            fail("recarga da Facade", before, after);
+        }
+        compareState();
+        for (String login : logins) {
+            call("openSession", null, login, PASSWORD);
+        }
+    }
+
+    private void randomOperation(Random random) {
+        String login = pick(random, logins);
+        String other = pick(random, logins);
+        String community = pick(random, communities);
+        int choice = random.nextInt(100);
+
+        if (choice < 8) {
+            call("createUser", null, login, PASSWORD, "Usuário " + login);
+        } else if (choice < 12) {
+            call("openSession", null, login, random.nextInt(10) == 0 ? "errada" : PASSWORD);
+        } else if (choice < 24) {
+            call("addFriend", login, other);
+        } else if (choice < 30) {
+            call("addIdol", login, other);
+        } else if (choice < 34) {
+            call("addCrush", login, other);
+        } else if (choice < 37) {
+            call("addEnemy", login, other);
+        } else if (choice < 43) {
+            call("editProfile", login, pick(random, ATTRIBUTES), "v" + random.nextInt(5));
+        } else if (choice < 48) {
+            call("sendMessage", login, other, "recado " + step);
+        } else if (choice < 52) {
+            call("createCommunity", login, community, "descrição " + step);
+        } else if (choice < 60) {
+            call("addUserToCommunity", login, community);
+        } else if (choice < 66) {
+            call("sendMessageToCommunity", login, community, "mensagem " + step);
+        } else if (choice < 69) {
+            call("readMessage", login);
+        } else if (choice < 71) {
+            call("readDirectMessage", login);
+        } else if (choice < 72) {
+            call("removeUser", login);
+        } else if (choice < 78) {
+            call("getFriends", null, login);
+        } else if (choice < 82) {
+            call("isFriend", null, login, other);
+        } else if (choice < 86) {
+            call("getFans", null, login);
+        } else if (choice < 90) {
+            call("getUserCommunities", null, login);
+        } else if (choice < 94) {
+            call("getUserAttribute", null, login, pick(random, ATTRIBUTES));
+        } else {
+            call("getCommunityMembers", null, community);
+        }
+    }
+
+    /**
+     * Executa uma operação nos dois sistemas e compara os resultados. A sessão, se houver, é a
+     * do usuário informado em cada sistema; o identificador da sessão aberta não é comparado.
+     *
+     * @param method    Nome do método.
+     * @param sessionOf Login do usuário cuja sessão é o primeiro argumento, ou {@code null}.
+     * @param args      Demais argumentos.
+     */
+    private void call(String method, String sessionOf, String... args) {
+        String expected = invoke(facade, FACADE_METHODS, facadeSessions, method, sessionOf, args);
+        String actual = invoke(sharded, SHARDED_METHODS, shardedSessions, method, sessionOf, args);
+        if (method.equals("openSession")) {
+            expected = expected.startsWith("!") ? expected : "sessão";
+            actual = actual.startsWith("!") ? actual : "sessão";
+        }
+        if (!expected.equals(actual)) {
+            fail(method + (sessionOf == null ? "" : " " + sessionOf) + " " + Arrays.toString(args), expected, actual);
+        }
+    }
+
+    private String invoke(Object target, Map<String, Method> methods, Map<String, String> sessions, String method,
+                          String sessionOf, String[] args) {
+        Object[] arguments = args;
+        if (sessionOf != null) {
+            arguments = new Object[args.length + 1];
+            arguments[0] = sessions.getOrDefault(sessionOf, "");
+            System.arraycopy(args, 0, arguments, 1, args.length);
+        }
+
+        try {
+            Object result = methods.get(method).invoke(target, arguments);
+            if (method.equals("openSession")) {
+                sessions.put(args[0], (String) result);
+            }
+            return String.valueOf(result);
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            return "!" + cause.getClass().getSimpleName() + ": " + cause.getMessage();
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Compara o estado completo visto pelas consultas nos dois sistemas.
+     */
+    private void compareState() {
+        String expected = state(facade, FACADE_METHODS);
+        String actual = state(sharded, SHARDED_METHODS);
+        if (!expected.equals(actual)) {
+            fail("estado completo", expected, actual);
+        }
+    }
+
+    private String state(Object target, Map<String, Method> methods) {
+        Map<String, String> none = Map.of();
+        StringBuilder state = new StringBuilder();
+        for (String login : logins) {
+            state.append(login).append(':');
+            state.append(' ').append(invoke(target, methods, none, "getFriends", null, new String[] {login}));
+            state.append(' ').append(invoke(target, methods, none, "getFans", null, new String[] {login}));
+            state.append(' ').append(invoke(target, methods, none, "getUserCommunities", null, new String[] {login}));
+            for (String attribute : ATTRIBUTES) {
+                state.append(' ').append(invoke(target, methods, none, "getUserAttribute", null,
+                        new String[] {login, attribute}));
+            }
+            state.append('\n');
+        }
+        for (String community : communities) {
+            state.append(community).append(':');
+            for (String query : new String[] {"getCommunityDescription", "getCommunityOwner", "getCommunityMembers"}) {
+                state.append(' ').append(invoke(target, methods, none, query, null, new String[] {community}));
+            }
+            state.append('\n');
+        }
+        return state.toString();
+    }
+
+    private void fail(String operation, String expected, String actual) {
+        // No estado completo, mostra só a primeira linha diferente
+        String[] expectedLines = expected.split("\n");
+        String[] actualLines = actual.split("\n");
+        for (int i = 0; i < Math.min(expectedLines.length, actualLines.length); i++) {
+            if (!expectedLines[i].equals(actualLines[i])) {
+                expected = expectedLines[i];
+                actual = actualLines[i];
+                break;
+            }
+        }
+        System.out.printf("Passo %d: divergência em %s%n  Facade:      %s%n  particionado: %s%n",
+                step, operation, expected, actual);
+        System.exit(1);
+    }
+
+    private static Map<String, Method> methods(Class<?> type) {
+        Map<String, Method> methods = new HashMap<>();
+        for (Method method : type.getMethods()) {
+            if (Arrays.stream(method.getParameterTypes()).allMatch(String.class::equals)) {
+                methods.put(method.getName(), method);
+            }
+        }
+        return methods;
+    }
+
+    private static String pick(Random random, List<String> values) {
+        return values.get(random.nextInt(values.size()));
+    }
+
+    private static String pick(Random random, String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+
+    private static String option(CommandLine options, String key, String defaultValue) {
+        String value = options.get(key);
+        return value == null ? defaultValue : value;
+    }
+}
@@ -0,0 +1,144 @@
+package br.ufal.ic.p2.jackut.loadgen;
+
+import java.util.List;
+
+import br.ufal.ic.p2.jackut.Batch;
+import br.ufal.ic.p2.jackut.BatchResult;
+import br.ufal.ic.p2.jackut.Facade;
+
+/**
+ * Gera a carga diretamente sobre uma Facade no mesmo processo, compartilhada por todas as
+ * threads.
+ */
+public class FacadeTarget implements LoadTarget {
+    private static final int CHUNK = 10_000;
+
+    private final Facade facade;
+
+    /**
+     * Construtor da classe FacadeTarget.
+     *
+     * @param facade Facade que recebe a carga.
+     */
+    public FacadeTarget(Facade facade) {
+        this.facade = facade;
+    }
+
+    @Override
+    public LoadClient connect() {
+        return new LoadClient() {
+            @Override
+            public void createUser(String login, String password, String name) {
+                facade.createUser(login, password, name);
+            }
+
+            @Override
+            public String openSession(String login, String password) {
+                return facade.openSession(login, password);
+            }
+
+            @Override
+            public void addFriend(String sessionId, String friendLogin) {
+                facade.addFriend(sessionId, friendLogin);
+            }
+
+            @Override
+            public String getFriends(String login) {
+                return facade.getFriends(login);
+            }
+
+            @Override
+            public void sendMessage(String sessionId, String recipientLogin, String message) {
+                facade.sendMessage(sessionId, recipientLogin, message);
+            }
+
+            @Override
+            public void createCommunity(String sessionId, String name, String description) {
+                facade.createCommunity(sessionId, name, description);
+            }
+
+            @Override
+            public void addUserToCommunity(String sessionId, String communityName) {
+                facade.addUserToCommunity(sessionId, communityName);
+            }
+
+            @Override
+            public void sendMessageToCommunity(String sessionId, String communityName, String message) {
+                facade.sendMessageToCommunity(sessionId, communityName, message);
+            }
+
+            @Override
+            public String readMessage(String sessionId) {
+                return facade.readMessage(sessionId);
+            }
+
+            @Override
+            public String getCommunityMembers(String name) {
+                return facade.getCommunityMembers(name);
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    /**
+     * Carrega o conjunto de dados em lotes de {@value #CHUNK} usuários, cada lote gravado em disco
+     * uma única vez.
+     */
+    @Override
+    public int load(DataSet dataSet) {
+        facade.resetSystem();
+        int users = dataSet.getUsers();
+        int rejected = 0;
+
+        for (int start = 0; start < users; start += CHUNK) {
+            Batch batch = new Batch();
+            for (int user = start; user < Math.min(users, start + CHUNK); user++) {
+                batch.createUser(DataSet.login(user), DataSet.password(user), DataSet.name(user));
+            }
+            rejected += execute(batch);
+        }
+
+        Batch communities = new Batch();
+        for (int community = 0; community < dataSet.getCommunities(); community++) {
+            int owner = dataSet.getOwner(community);
+            String session = facade.openSession(DataSet.login(owner), DataSet.password(owner));
+            communities.createCommunity(session, DataSet.communityName(community), "Comunidade " + community);
+        }
+        rejected += execute(communities);
+
+        for (int start = 0; start < users; start += CHUNK) {
+            Batch batch = new Batch();
+            for (int user = start; user < Math.min(users, start + CHUNK); user++) {
+                int[] friends = dataSet.getFriendRequests(user);
+                int[] memberships = dataSet.getMemberships(user);
+                if (friends.length == 0 && memberships.length == 0) {
+                    continue;
+                }
+
+                String session = facade.openSession(DataSet.login(user), DataSet.password(user));
+                for (int friend : friends) {
+                    batch.addFriend(session, DataSet.login(friend));
+                }
+                for (int community : memberships) {
+                    batch.addUserToCommunity(session, DataSet.communityName(community));
+                }
+            }
+            rejected += execute(batch);
+        }
+        return rejected;
+    }
+
+    private int execute(Batch batch) {
+        List<BatchResult> results = facade.executeBatch(batch);
+        int rejected = 0;
+        for (BatchResult result : results) {
+            if (!result.isSuccess()) {
+                rejected++;
+            }
+        }
+        return rejected;
+    }
+}
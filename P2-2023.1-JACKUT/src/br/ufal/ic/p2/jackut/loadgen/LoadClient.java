@@ -0,0 +1,32 @@
+package br.ufal.ic.p2.jackut.loadgen;
+
+import java.io.Closeable;
+
+/**
+ * Conexão de uma thread do gerador de carga com o sistema testado.
+ *
+ * Os métodos têm os mesmos argumentos das operações da Facade e lançam uma
+ * {@link RuntimeException} com a mensagem de erro do sistema quando a operação falha.
+ * Cada instância é usada por uma única thread.
+ */
+public interface LoadClient extends Closeable {
+    void createUser(String login, String password, String name);
+
+    String openSession(String login, String password);
+
+    void addFriend(String sessionId, String friendLogin);
+
+    String getFriends(String login);
+
+    void sendMessage(String sessionId, String recipientLogin, String message);
+
+    void createCommunity(String sessionId, String name, String description);
+
+    void addUserToCommunity(String sessionId, String communityName);
+
+    void sendMessageToCommunity(String sessionId, String communityName, String message);
+
+    String readMessage(String sessionId);
+
+    String getCommunityMembers(String name);
+}
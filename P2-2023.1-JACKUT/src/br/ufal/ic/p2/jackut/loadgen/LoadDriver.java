@@ -0,0 +1,266 @@
+package br.ufal.ic.p2.jackut.loadgen;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Executa uma mistura de operações a partir de várias threads contra um {@link LoadTarget}
+ * já carregado com um {@link DataSet}, registrando a latência de cada operação.
+ *
+ * Os usuários que agem são sorteados pela mesma popularidade usada na geração dos dados, então
+ * poucos usuários fazem a maior parte das operações. Os recados e as mensagens de comunidade
+ * chegam em rajadas de tamanho médio configurável. Cada thread guarda as sessões dos usuários
+ * pelos quais já agiu e, com a probabilidade de rotatividade configurada, abre uma sessão nova
+ * antes de agir, simulando usuários que saem e voltam.
+ */
+public class LoadDriver {
+    private static final int SESSIONS_PER_THREAD = 1024;
+
+    private final LoadTarget target;
+    private final DataSet dataSet;
+    private final int threads;
+    private final OperationType[] mix;
+    private final int[] cumulativeWeights;
+    private final double churn;
+    private final double burst;
+    private final ZipfDistribution userPopularity;
+    private final ZipfDistribution communityPopularity;
+
+    /**
+     * Construtor da classe LoadDriver.
+     *
+     * @param target  Sistema que recebe a carga.
+     * @param dataSet Dados já carregados no sistema.
+     * @param threads Quantidade de threads.
+     * @param weights Peso relativo de cada operação na mistura.
+     * @param churn   Probabilidade de abrir uma sessão nova antes de cada operação.
+     * @param burst   Tamanho médio das rajadas de recados e mensagens, no mínimo 1.
+     */
+    public LoadDriver(LoadTarget target, DataSet dataSet, int threads, Map<OperationType, Integer> weights,
+                      double churn, double burst) {
+        if (threads <= 0 || churn < 0 || churn > 1 || burst < 1) {
+            throw new IllegalArgumentException("Configuração da carga inválida.");
+        }
+
+        this.target = target;
+        this.dataSet = dataSet;
+        this.threads = threads;
+        this.churn = churn;
+        this.burst = burst;
+
+        List<OperationType> types = new ArrayList<>();
+        List<Integer> cumulative = new ArrayList<>();
+        int total = 0;
+        for (Map.Entry<OperationType, Integer> entry : new EnumMap<>(weights).entrySet()) {
+            if (entry.getValue() > 0) {
+                total += entry.getValue();
+                types.add(entry.getKey());
+                cumulative.add(total);
+            }
+        }
+        if (types.isEmpty()) {
+            throw new IllegalArgumentException("A mistura de operações está vazia.");
+        }
+        this.mix = types.toArray(new OperationType[0]);
+        this.cumulativeWeights = cumulative.stream().mapToInt(Integer::intValue).toArray();
+
+        this.userPopularity = new ZipfDistribution(dataSet.getUsers(), 1.0);
+        this.communityPopularity = dataSet.getCommunities() == 0 ? null
+                : new ZipfDistribution(dataSet.getCommunities(), 1.0);
+    }
+
+    /**
+     * Retorna a mistura padrão, com os pesos de {@link OperationType#getDefaultWeight()}.
+     *
+     * @return Peso de cada operação.
+     */
+    public static Map<OperationType, Integer> defaultMix() {
+        Map<OperationType, Integer> weights = new EnumMap<>(OperationType.class);
+        for (OperationType type : OperationType.values()) {
+            weights.put(type, type.getDefaultWeight());
+        }
+        return weights;
+    }
+
+    /**
+     * Gera carga durante um intervalo de tempo.
+     *
+     * @param durationMillis Duração em milissegundos.
+     * @return As latências e a vazão medidas.
+     * @throws IOException Se não for possível conectar ao sistema.
+     */
+    public LoadReport run(long durationMillis) throws IOException {
+        LoadReport report = new LoadReport();
+        List<LoadClient> clients = new ArrayList<>();
+        try {
+            for (int i = 0; i < threads; i++) {
+                clients.add(target.connect());
+            }
+
+            long start = System.nanoTime();
+            long deadline = start + durationMillis * 1_000_000;
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            List<Future<?>> workers = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                Worker worker = new Worker(clients.get(i), new SplittableRandom(dataSet.getSeed() * 31 + i), report);
+                workers.add(executor.submit(() -> worker.run(deadline)));
+            }
+
+            executor.shutdown();
+            for (Future<?> future : workers) {
+                future.get();
+            }
+            report.setElapsedNanos(System.nanoTime() - start);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Erro ao gerar carga: " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            for (LoadClient client : clients) {
+                client.close();
+            }
+        }
+        return report;
+    }
+
+    /**
+     * Estado de uma thread do gerador: a sua conexão, o seu gerador de números aleatórios e as
+     * sessões já abertas.
+     */
+    private final class Worker {
+        private final LoadClient client;
+        private final SplittableRandom random;
+        private final LoadReport report;
+        private final Map<Integer, String> sessions = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, String> eldest) {
+                return size() > SESSIONS_PER_THREAD;
+            }
+        };
+        private int messages;
+
+        Worker(LoadClient client, SplittableRandom random, LoadReport report) {
+            this.client = client;
+            this.random = random;
+            this.report = report;
+        }
+
+        void run(long deadline) {
+            while (System.nanoTime() < deadline) {
+                OperationType type = nextOperation();
+                int repetitions = 1;
+                if (type == OperationType.SEND_MESSAGE || type == OperationType.SEND_MESSAGE_TO_COMMUNITY) {
+                    // Tamanho da rajada com distribuição geométrica de média burst
+                    while (random.nextDouble() >= 1 / burst) {
+                        repetitions++;
+                    }
+                }
+
+                int user = userPopularity.sample(random);
+                for (int i = 0; i < repetitions; i++) {
+                    execute(type, user);
+                }
+            }
+        }
+
+        private OperationType nextOperation() {
+            int value = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+            for (int i = 0; i < mix.length; i++) {
+                if (value < cumulativeWeights[i]) {
+                    return mix[i];
+                }
+            }
+            return mix[mix.length - 1];
+        }
+
+        private void execute(OperationType type, int user) {
+            String session = null;
+            if (type != OperationType.GET_FRIENDS && type != OperationType.GET_COMMUNITY_MEMBERS) {
+                session = session(user, type == OperationType.OPEN_SESSION || random.nextDouble() < churn);
+                if (session == null || type == OperationType.OPEN_SESSION) {
+                    return;
+                }
+            }
+
+            long start = System.nanoTime();
+            boolean success = true;
+            try {
+                switch (type) {
+                    case ADD_FRIEND:
+                        client.addFriend(session, DataSet.login(userPopularity.sample(random)));
+                        break;
+                    case GET_FRIENDS:
+                        client.getFriends(DataSet.login(user));
+                        break;
+                    case SEND_MESSAGE:
+                        client.sendMessage(session, DataSet.login(userPopularity.sample(random)), "Recado " + messages++);
+                        break;
+                    case ADD_USER_TO_COMMUNITY:
+                        client.addUserToCommunity(session, DataSet.communityName(community()));
+                        break;
+                    case SEND_MESSAGE_TO_COMMUNITY:
+                        client.sendMessageToCommunity(session, DataSet.communityName(community(user)), "Mensagem " + messages++);
+                        break;
+                    case READ_MESSAGE:
+                        client.readMessage(session);
+                        break;
+                    case GET_COMMUNITY_MEMBERS:
+                        client.getCommunityMembers(DataSet.communityName(community()));
+                        break;
+                    default:
+                        break;
+                }
+            } catch (RuntimeException e) {
+                success = false;
+            }
+            report.record(type, System.nanoTime() - start, success);
+        }
+
+        /**
+         * Retorna a sessão de um usuário, abrindo uma nova se ele ainda não tiver sessão nesta
+         * thread ou se {@code renew} for verdadeiro. A abertura é registrada como operação.
+         */
+        private String session(int user, boolean renew) {
+            String session = renew ? null : sessions.get(user);
+            if (session != null) {
+                return session;
+            }
+
+            long start = System.nanoTime();
+            try {
+                session = client.openSession(DataSet.login(user), DataSet.password(user));
+                report.record(OperationType.OPEN_SESSION, System.nanoTime() - start, true);
+                sessions.put(user, session);
+                return session;
+            } catch (RuntimeException e) {
+                report.record(OperationType.OPEN_SESSION, System.nanoTime() - start, false);
+                return null;
+            }
+        }
+
+        /**
+         * Sorteia uma comunidade pela popularidade, ou -1 se não houver comunidades.
+         */
+        private int community() {
+            return communityPopularity == null ? -1 : communityPopularity.sample(random);
+        }
+
+        /**
+         * Escolhe uma comunidade da qual o usuário participa, ou uma comunidade popular se ele
+         * não participar de nenhuma.
+         */
+        private int community(int user) {
+            int[] memberships = dataSet.getMemberships(user);
+            return memberships.length > 0 ? memberships[random.nextInt(memberships.length)] : community();
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package br.ufal.ic.p2.jackut.loadgen;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
+
+import br.ufal.ic.p2.jackut.Facade;
+import br.ufal.ic.p2.jackut.ShardedFacade;
+import br.ufal.ic.p2.jackut.persistence.DurabilityPolicy;
+import br.ufal.ic.p2.jackut.server.CommandLine;
+
+/**
+ * Ferramenta de linha de comando do gerador de carga.
+ *
+ * Gera um conjunto de dados, carrega-o no sistema e executa a carga, imprimindo o relatório ao
+ * final. As opções usam o formato {@code chave=valor} dos scripts do EasyAccept:
+ *
+ * <ul>
+ *     <li>{@code users}, {@code friends}, {@code communities} e {@code seed}: parâmetros do
+ *     {@link DataSet} (padrão 10000, 10, 100 e 42);</li>
+ *     <li>{@code threads} e {@code duration}: quantidade de threads e duração em segundos
+ *     (padrão 8 e 30);</li>
+ *     <li>{@code mix}: pesos das operações, como {@code sendMessage:30,readMessage:20}
+ *     (padrão ver {@link OperationType});</li>
+ *     <li>{@code churn} e {@code burst}: probabilidade de abrir uma sessão nova e tamanho médio
+ *     das rajadas de mensagens (padrão 0.01 e 4);</li>
+ *     <li>{@code target}: {@code local} para uma Facade no mesmo processo,
+ *     {@code sharded:<partições>} para um {@link ShardedFacade} no mesmo processo, gravado no
+ *     diretório {@code shards}, ou {@code host:porta} de um servidor (padrão local);</li>
+ *     <li>{@code load}: {@code false} para usar os dados já carregados no sistema.</li>
+ * </ul>
+ */
+public class LoadGenerator {
+    private LoadGenerator() {
+    }
+
+    /**
+     * Executa o gerador de carga.
+     *
+     * @param args Opções no formato {@code chave=valor}.
+     * @throws IOException Se não for possível conectar ao sistema.
+     */
+    public static void main(String[] args) throws IOException {
+        CommandLine options = CommandLine.parse("loadgen " + String.join(" ", args));
+
+        long seed = Long.parseLong(option(options, "seed", "42"));
+        int users = Integer.parseInt(option(options, "users", "10000"));
+        int friends = Integer.parseInt(option(options, "friends", "10"));
+        int communities = Integer.parseInt(option(options, "communities", "100"));
+        int threads = Integer.parseInt(option(options, "threads", "8"));
+        long duration = Long.parseLong(option(options, "duration", "30"));
+        double churn = Double.parseDouble(option(options, "churn", "0.01"));
+        double burst = Double.parseDouble(option(options, "burst", "4"));
+        Map<OperationType, Integer> mix = parseMix(options.get("mix"));
+
+        LoadTarget target;
+        Facade facade = null;
+        ShardedFacade sharded = null;
+        String targetSpec = option(options, "target", "local");
+        if (targetSpec.equals("local")) {
+            facade = new Facade();
+            target = new FacadeTarget(facade);
+        } else if (targetSpec.startsWith("sharded:")) {
+            sharded = new ShardedFacade(new File("shards"), Integer.parseInt(targetSpec.substring("sharded:".length())),
+                    DurabilityPolicy.parse(System.getProperty("jackut.durability")));
+            target = new ShardedTarget(sharded);
+        } else {
+            int separator = targetSpec.lastIndexOf(':');
+            target = new SocketTarget(targetSpec.substring(0, separator),
+                    Integer.parseInt(targetSpec.substring(separator + 1)));
+        }
+
+        long start = System.nanoTime();
+        DataSet dataSet = DataSet.generate(seed, users, friends, communities);
+        System.out.printf("Dados gerados: %d usuários, %d convites, %d comunidades, %d participações (%.1fs)%n",
+                dataSet.getUsers(), dataSet.getFriendRequests(), dataSet.getCommunities(),
+                dataSet.getMemberships(), (System.nanoTime() - start) / 1e9);
+
+        if (Boolean.parseBoolean(option(options, "load", "true"))) {
+            start = System.nanoTime();
+            int rejected = target.load(dataSet);
+            System.out.printf("Dados carregados: %d operações recusadas (%.1fs)%n",
+                    rejected, (System.nanoTime() - start) / 1e9);
+        }
+
+        LoadDriver driver = new LoadDriver(target, dataSet, threads, mix, churn, burst);
+        LoadReport report = driver.run(duration * 1000);
+        System.out.print(report);
+
+        if (facade != null) {
+            if (facade.getMetrics().isEnabled()) {
+                System.out.println();
+                System.out.print(facade.getMetrics().dump());
+            }
+            facade.closeSystem();
+        }
+        if (sharded != null) {
+            sharded.closeSystem();
+        }
+    }
+
+    private static String option(CommandLine options, String key, String defaultValue) {
+        String value = options.get(key);
+        return value == null ? defaultValue : value;
+    }
+
+    private static Map<OperationType, Integer> parseMix(String spec) {
+        if (spec == null) {
+            return LoadDriver.defaultMix();
+        }
+
+        Map<OperationType, Integer> mix = new EnumMap<>(OperationType.class);
+        for (String entry : spec.split(",")) {
+            String[] parts = entry.split(":", 2);
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Mistura de operações inválida: " + spec);
+            }
+            mix.put(OperationType.fromMethodName(parts[0].trim()), Integer.parseInt(parts[1].trim()));
+        }
+        return mix;
+    }
+}
@@ -0,0 +1,102 @@
+package br.ufal.ic.p2.jackut.loadgen;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import br.ufal.ic.p2.jackut.metrics.LatencyHistogram;
+
+/**
+ * Resultado de uma execução do gerador de carga: vazão e latências de cada operação.
+ *
+ * Os contadores podem ser atualizados por várias threads ao mesmo tempo.
+ */
+public class LoadReport {
+    private final Map<OperationType, LatencyHistogram> latencies = new EnumMap<>(OperationType.class);
+    private final Map<OperationType, LongAdder> errors = new EnumMap<>(OperationType.class);
+    private volatile long elapsedNanos;
+
+    /**
+     * Construtor da classe LoadReport.
+     */
+    public LoadReport() {
+        for (OperationType type : OperationType.values()) {
+            latencies.put(type, new LatencyHistogram());
+            errors.put(type, new LongAdder());
+        }
+    }
+
+    /**
+     * Registra uma operação executada.
+     *
+     * @param type    Operação.
+     * @param nanos   Latência em nanossegundos.
+     * @param success {@code false} se o sistema recusou a operação.
+     */
+    void record(OperationType type, long nanos, boolean success) {
+        latencies.get(type).record(nanos);
+        if (!success) {
+            errors.get(type).increment();
+        }
+    }
+
+    void setElapsedNanos(long elapsedNanos) {
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public LatencyHistogram getLatencies(OperationType type) {
+        return latencies.get(type);
+    }
+
+    public long getErrors(OperationType type) {
+        return errors.get(type).sum();
+    }
+
+    /**
+     * Retorna a quantidade total de operações executadas.
+     *
+     * @return Quantidade de operações.
+     */
+    public long getOperations() {
+        long total = 0;
+        for (LatencyHistogram histogram : latencies.values()) {
+            total += histogram.getCount();
+        }
+        return total;
+    }
+
+    /**
+     * Retorna a vazão média da execução.
+     *
+     * @return Operações por segundo.
+     */
+    public double getThroughput() {
+        return elapsedNanos == 0 ? 0 : getOperations() * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * Monta o relatório em texto, com uma linha por operação executada e o total.
+     *
+     * @return O relatório.
+     */
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        LatencyHistogram total = new LatencyHistogram();
+        long totalErrors = 0;
+
+        for (OperationType type : OperationType.values()) {
+            LatencyHistogram histogram = latencies.get(type);
+            if (histogram.getCount() == 0) {
+                continue;
+            }
+            total.add(histogram);
+            totalErrors += getErrors(type);
+            text.append(String.format("%-24s errors=%d %s%n", type.getMethodName(), getErrors(type), histogram));
+        }
+
+        text.append(String.format("%-24s errors=%d %s%n", "total", totalErrors, total));
+        text.append(String.format("elapsed=%.1fs throughput=%.0f ops/s%n", elapsedNanos / 1e9, getThroughput()));
+        return text.toString();
+    }
+}
@@ -0,0 +1,25 @@
+package br.ufal.ic.p2.jackut.loadgen;
+
+import java.io.IOException;
+
+/**
+ * Sistema contra o qual a carga é gerada: uma Facade no mesmo processo ou um servidor remoto.
+ */
+public interface LoadTarget {
+    /**
+     * Abre uma conexão para uma thread do gerador de carga.
+     *
+     * @return A nova conexão.
+     * @throws IOException Se a conexão falhar.
+     */
+    LoadClient connect() throws IOException;
+
+    /**
+     * Apaga todos os dados do sistema e carrega um conjunto de dados.
+     *
+     * @param dataSet Conjunto de dados.
+     * @return Quantidade de operações recusadas pelo sistema durante a carga.
+     * @throws IOException Se a conexão falhar.
+     */
+    int load(DataSet dataSet) throws IOException;
+}
@@ -0,0 +1,52 @@
+package br.ufal.ic.p2.jackut.loadgen;
+
+/**
+ * Operações que podem compor a carga gerada, identificadas pelo nome do método da Facade.
+ */
+public enum OperationType {
+    OPEN_SESSION("openSession", 5),
+    ADD_FRIEND("addFriend", 5),
+    GET_FRIENDS("getFriends", 15),
+    SEND_MESSAGE("sendMessage", 25),
+    ADD_USER_TO_COMMUNITY("addUserToCommunity", 3),
+    SEND_MESSAGE_TO_COMMUNITY("sendMessageToCommunity", 10),
+    READ_MESSAGE("readMessage", 30),
+    GET_COMMUNITY_MEMBERS("getCommunityMembers", 7);
+
+    private final String methodName;
+    private final int defaultWeight;
+
+    OperationType(String methodName, int defaultWeight) {
+        this.methodName = methodName;
+        this.defaultWeight = defaultWeight;
+    }
+
+    public String getMethodName() {
+        return methodName;
+    }
+
+    /**
+     * Retorna o peso da operação na mistura padrão.
+     *
+     * @return Peso relativo.
+     */
+    public int getDefaultWeight() {
+        return defaultWeight;
+    }
+
+    /**
+     * Retorna a operação correspondente a um método da Facade.
+     *
+     * @param methodName Nome do método.
+     * @return A operação.
+     * @throws IllegalArgumentException Se não houver operação com esse nome.
+     */
+    public static OperationType fromMethodName(String methodName) {
+        for (OperationType type : values()) {
+            if (type.methodName.equals(methodName)) {
+                return type;
+            }
+        }
+        throw new IllegalArgumentException("Operação desconhecida: " + methodName);
+    }
+}
@@ -0,0 +1,244 @@
+package br.ufal.ic.p2.jackut.loadgen;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+import br.ufal.ic.p2.jackut.Facade;
+import br.ufal.ic.p2.jackut.metrics.LatencyHistogram;
+import br.ufal.ic.p2.jackut.persistence.DurabilityPolicy;
+import br.ufal.ic.p2.jackut.server.CommandLine;
+
+/**
+ * Verifica as consultas sem locks da {@link Facade} sob escritas concorrentes e mede a latência
+ * delas.
+ *
+ * Carrega um {@link DataSet} e executa uma carga de escritas gerada a partir de uma semente
+ * (amizades, ídolos, entradas em comunidades e edições de perfil), dividida entre algumas
+ * threads, enquanto outras threads fazem consultas de amigos, fãs, comunidades e membros. Como
+ * nenhuma escrita desta carga desfaz um relacionamento, cada consulta deve ver as listas sem
+ * repetições e nunca menores do que na consulta anterior da mesma thread; uma versão publicada
+ * fora de ordem, ou uma escrita perdida entre duas publicações concorrentes, aparece como uma
+ * lista que encolhe.
+ *
+ * Ao final, o estado visto pelas consultas, formado pelas versões derivadas escrita a escrita, é
+ * comparado com o de uma Facade aberta de novo a partir do disco, cujas versões são criadas a
+ * partir dos registros, e as amizades são conferidas nos dois sentidos.
+ *
+ * As opções usam o formato {@code chave=valor} do {@link LoadGenerator}: {@code users},
+ * {@code friends}, {@code communities} e {@code seed}, do {@link DataSet} (padrão 2000, 10, 50 e
+ * 42), {@code steps}, o total de escritas (padrão 9000), {@code writers} e {@code readers}, as
+ * quantidades de threads (padrão 2 e 6), e {@code dir}, o diretório dos dados (padrão
+ * {@code readview}). Termina com código 1 se alguma verificação falhar.
+ */
+public class ReadViewCheck {
+    /**
+     * Consultas feitas pelas threads de leitura.
+     */
+    private enum Query {
+        GET_FRIENDS, GET_FANS, GET_USER_COMMUNITIES, GET_COMMUNITY_MEMBERS
+    }
+
+    private static final String ATTRIBUTE = "cidade";
+
+    private ReadViewCheck() {
+    }
+
+    /**
+     * Executa a verificação.
+     *
+     * @param args Opções no formato {@code chave=valor}.
+     * @throws Exception Se alguma thread falhar.
+     */
+    public static void main(String[] args) throws Exception {
+        CommandLine options = CommandLine.parse("readview " + String.join(" ", args));
+        long seed = Long.parseLong(option(options, "seed", "42"));
+        int users = Integer.parseInt(option(options, "users", "2000"));
+        int friends = Integer.parseInt(option(options, "friends", "10"));
+        int communities = Integer.parseInt(option(options, "communities", "50"));
+        int steps = Integer.parseInt(option(options, "steps", "9000"));
+        int writers = Integer.parseInt(option(options, "writers", "2"));
+        int readers = Integer.parseInt(option(options, "readers", "6"));
+        File directory = new File(option(options, "dir", "readview"));
+        DurabilityPolicy durability = DurabilityPolicy.parse(System.getProperty("jackut.durability"));
+
+        Facade facade = new Facade(directory, durability);
+        facade.resetSystem();
+        DataSet dataSet = DataSet.generate(seed, users, friends, communities);
+        new FacadeTarget(facade).load(dataSet);
+        String[] sessions = new String[users];
+        for (int user = 0; user < users; user++) {
+            sessions[user] = facade.openSession(DataSet.login(user), DataSet.password(user));
+        }
+
+        AtomicBoolean writing = new AtomicBoolean(true);
+        List<String> violations = Collections.synchronizedList(new ArrayList<>());
+        Map<Query, LatencyHistogram> latencies = new EnumMap<>(Query.class);
+        for (Query query : Query.values()) {
+            latencies.put(query, new LatencyHistogram());
+        }
+
+        long start = System.nanoTime();
+        try (ExecutorService threads = Executors.newFixedThreadPool(writers + readers)) {
+            List<Future<?>> writes = new ArrayList<>();
+            for (int writer = 0; writer < writers; writer++) {
+                Random random = new Random(seed + writer);
+                int count = steps / writers + (writer < steps % writers ? 1 : 0);
+                writes.add(threads.submit(() -> write(facade, sessions, communities, random, count)));
+            }
+            List<Future<?>> reads = new ArrayList<>();
+            for (int reader = 0; reader < readers; reader++) {
+                Random random = new Random(seed - reader - 1);
+                reads.add(threads.submit(() -> read(facade, users, communities, random, writing, latencies, violations)));
+            }
+
+            for (Future<?> write : writes) {
+                write.get();
+            }
+            writing.set(false);
+            for (Future<?> read : reads) {
+                read.get();
+            }
+        }
+        System.out.printf("%d escritas e consultas concorrentes (%.1fs)%n", steps, (System.nanoTime() - start) / 1e9);
+        for (Query query : Query.values()) {
+            System.out.printf("%-24s %s%n", query.name().toLowerCase(), latencies.get(query));
+        }
+
+        Map<String, Set<String>> friendships = new HashMap<>();
+        String published = state(facade, users, communities, friendships);
+        for (Map.Entry<String, Set<String>> entry : friendships.entrySet()) {
+            for (String friend : entry.getValue()) {
+                if (!friendships.getOrDefault(friend, Set.of()).contains(entry.getKey())) {
+                    violations.add("amizade em um só sentido: " + entry.getKey() + " -> " + friend);
+                }
+            }
+        }
+        facade.closeSystem();
+
+        Facade reopened = new Facade(directory, durability);
+        String rebuilt = state(reopened, users, communities, new HashMap<>());
+        reopened.closeSystem();
+        if (!published.equals(rebuilt)) {
+            violations.add("estado publicado difere do estado lido do disco");
+        }
+
+        if (!violations.isEmpty()) {
+            for (String violation : violations.subList(0, Math.min(10, violations.size()))) {
+                System.out.println(violation);
+            }
+            System.out.printf("%d falhas%n", violations.size());
+            System.exit(1);
+        }
+        System.out.println("Visões consistentes com os registros");
+    }
+
+    private static void write(Facade facade, String[] sessions, int communities, Random random, int count) {
+        for (int i = 0; i < count; i++) {
+            String session = sessions[random.nextInt(sessions.length)];
+            String other = DataSet.login(random.nextInt(sessions.length));
+            int choice = random.nextInt(10);
+            try {
+                if (choice < 4) {
+                    facade.addFriend(session, other);
+                } else if (choice < 6) {
+                    facade.addIdol(session, other);
+                } else if (choice < 8) {
+                    facade.addUserToCommunity(session, DataSet.communityName(random.nextInt(communities)));
+                } else {
+                    facade.editProfile(session, ATTRIBUTE, "v" + random.nextInt(100));
+                }
+            } catch (RuntimeException e) {
+                // Relacionamentos repetidos, consigo mesmo ou com inimigos são recusados
+            }
+        }
+    }
+
+    private static void read(Facade facade, int users, int communities, Random random, AtomicBoolean writing,
+                             Map<Query, LatencyHistogram> latencies, List<String> violations) {
+        Map<Query, LatencyHistogram> local = new EnumMap<>(Query.class);
+        Map<String, Integer> lastSizes = new HashMap<>();
+        Query[] queries = Query.values();
+        while (writing.get()) {
+            Query query = queries[random.nextInt(queries.length)];
+            String key = query == Query.GET_COMMUNITY_MEMBERS
+                    ? DataSet.communityName(random.nextInt(communities))
+                    : DataSet.login(random.nextInt(users));
+
+            long start = System.nanoTime();
+            String result = switch (query) {
+                case GET_FRIENDS -> facade.getFriends(key);
+                case GET_FANS -> facade.getFans(key);
+                case GET_USER_COMMUNITIES -> facade.getUserCommunities(key);
+                case GET_COMMUNITY_MEMBERS -> facade.getCommunityMembers(key);
+            };
+            local.computeIfAbsent(query, q -> new LatencyHistogram()).record(System.nanoTime() - start);
+
+            List<String> values = values(result);
+            if (new HashSet<>(values).size() != values.size()) {
+                violations.add(query + " " + key + " com repetições: " + result);
+            }
+            Integer last = lastSizes.put(query + " " + key, values.size());
+            if (last != null && values.size() < last) {
+                violations.add(query + " " + key + " encolheu de " + last + " para " + values.size());
+            }
+        }
+
+        synchronized (latencies) {
+            local.forEach((query, histogram) -> latencies.get(query).add(histogram));
+        }
+    }
+
+    /**
+     * Descreve o estado visto pelas consultas e guarda as amizades de cada usuário.
+     */
+    private static String state(Facade facade, int users, int communities, Map<String, Set<String>> friendships) {
+        StringBuilder state = new StringBuilder();
+        for (int user = 0; user < users; user++) {
+            String login = DataSet.login(user);
+            String friends = facade.getFriends(login);
+            friendships.put(login, new HashSet<>(values(friends)));
+            state.append(login).append(": ").append(friends).append(' ').append(facade.getFans(login))
+                    .append(' ').append(facade.getUserCommunities(login)).append(' ')
+                    .append(query(() -> facade.getUserAttribute(login, ATTRIBUTE))).append('\n');
+        }
+        for (int community = 0; community < communities; community++) {
+            String name = DataSet.communityName(community);
+            state.append(name).append(": ").append(facade.getCommunityMembers(name)).append('\n');
+        }
+        return state.toString();
+    }
+
+    private static String query(Supplier<String> query) {
+        try {
+            return query.get();
+        } catch (RuntimeException e) {
+            return "!" + e.getMessage();
+        }
+    }
+
+    /**
+     * Separa os valores de uma lista retornada pela Facade, com ou sem chaves.
+     */
+    private static List<String> values(String list) {
+        String content = list.startsWith("{") ? list.substring(1, list.length() - 1) : list;
+        return content.isEmpty() ? List.of() : List.of(content.split(","));
+    }
+
+    private static String option(CommandLine options, String key, String defaultValue) {
+        String value = options.get(key);
+        return value == null ? defaultValue : value;
+    }
+}
@@ -0,0 +1,85 @@
+package br.ufal.ic.p2.jackut.loadgen;
+
+import br.ufal.ic.p2.jackut.ShardedFacade;
+
+/**
+ * Gera a carga diretamente sobre um {@link ShardedFacade} no mesmo processo, compartilhado por
+ * todas as threads.
+ */
+public class ShardedTarget implements LoadTarget {
+    private final ShardedFacade facade;
+
+    /**
+     * Construtor da classe ShardedTarget.
+     *
+     * @param facade Sistema particionado que recebe a carga.
+     */
+    public ShardedTarget(ShardedFacade facade) {
+        this.facade = facade;
+    }
+
+    @Override
+    public LoadClient connect() {
+        return new LoadClient() {
+            @Override
+            public void createUser(String login, String password, String name) {
+                facade.createUser(login, password, name);
+            }
+
+            @Override
+            public String openSession(String login, String password) {
+                return facade.openSession(login, password);
+            }
+
+            @Override
+            public void addFriend(String sessionId, String friendLogin) {
+                facade.addFriend(sessionId, friendLogin);
+            }
+
+            @Override
+            public String getFriends(String login) {
+                return facade.getFriends(login);
+            }
+
+            @Override
+            public void sendMessage(String sessionId, String recipientLogin, String message) {
+                facade.sendMessage(sessionId, recipientLogin, message);
+            }
+
+            @Override
+            public void createCommunity(String sessionId, String name, String description) {
+                facade.createCommunity(sessionId, name, description);
+            }
+
+            @Override
+            public void addUserToCommunity(String sessionId, String communityName) {
+                facade.addUserToCommunity(sessionId, communityName);
+            }
+
+            @Override
+            public void sendMessageToCommunity(String sessionId, String communityName, String message) {
+                facade.sendMessageToCommunity(sessionId, communityName, message);
+            }
+
+            @Override
+            public String readMessage(String sessionId) {
+                return facade.readMessage(sessionId);
+            }
+
+            @Override
+            public String getCommunityMembers(String name) {
+                return facade.getCommunityMembers(name);
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    @Override
+    public int load(DataSet dataSet) {
+        facade.resetSystem();
+        return dataSet.loadInto(connect());
+    }
+}
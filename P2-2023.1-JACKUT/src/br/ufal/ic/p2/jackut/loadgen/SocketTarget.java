@@ -0,0 +1,116 @@
+package br.ufal.ic.p2.jackut.loadgen;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import br.ufal.ic.p2.jackut.server.JackutClient;
+
+/**
+ * Gera a carga sobre um {@link br.ufal.ic.p2.jackut.server.JackutServer} remoto, com uma conexão
+ * por thread. Antes de carregar os dados, o sistema é zerado com {@code zerarSistema}, por isso o
+ * servidor precisa ser iniciado com {@code -Djackut.admin=true}.
+ */
+public class SocketTarget implements LoadTarget {
+    private final String host;
+    private final int port;
+
+    /**
+     * Construtor da classe SocketTarget.
+     *
+     * @param host Endereço do servidor.
+     * @param port Porta do servidor.
+     */
+    public SocketTarget(String host, int port) {
+        this.host = host;
+        this.port = port;
+    }
+
+    @Override
+    public LoadClient connect() throws IOException {
+        JackutClient client = new JackutClient(host, port);
+
+        return new LoadClient() {
+            @Override
+            public void createUser(String login, String password, String name) {
+                send("criarUsuario login=" + login + " senha=" + password + " nome=" + quote(name));
+            }
+
+            @Override
+            public String openSession(String login, String password) {
+                return send("abrirSessao login=" + login + " senha=" + password);
+            }
+
+            @Override
+            public void addFriend(String sessionId, String friendLogin) {
+                send("adicionarAmigo id=" + sessionId + " amigo=" + friendLogin);
+            }
+
+            @Override
+            public String getFriends(String login) {
+                return send("getAmigos login=" + login);
+            }
+
+            @Override
+            public void sendMessage(String sessionId, String recipientLogin, String message) {
+                send("enviarRecado id=" + sessionId + " destinatario=" + recipientLogin + " recado=" + quote(message));
+            }
+
+            @Override
+            public void createCommunity(String sessionId, String name, String description) {
+                send("criarComunidade sessao=" + sessionId + " nome=" + quote(name) + " descricao=" + quote(description));
+            }
+
+            @Override
+            public void addUserToCommunity(String sessionId, String communityName) {
+                send("adicionarComunidade sessao=" + sessionId + " nome=" + quote(communityName));
+            }
+
+            @Override
+            public void sendMessageToCommunity(String sessionId, String communityName, String message) {
+                send("enviarMensagem id=" + sessionId + " comunidade=" + quote(communityName) + " mensagem=" + quote(message));
+            }
+
+            @Override
+            public String readMessage(String sessionId) {
+                return send("lerMensagem id=" + sessionId);
+            }
+
+            @Override
+            public String getCommunityMembers(String name) {
+                return send("getMembrosComunidade nome=" + quote(name));
+            }
+
+            @Override
+            public void close() throws IOException {
+                client.close();
+            }
+
+            private String send(String command) {
+                JackutClient.Response response;
+                try {
+                    response = client.send(command);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                if (!response.ok()) {
+                    throw new IllegalStateException(response.value());
+                }
+                return response.value();
+            }
+        };
+    }
+
+    @Override
+    public int load(DataSet dataSet) throws IOException {
+        try (JackutClient admin = new JackutClient(host, port)) {
+            admin.send("zerarSistema");
+        }
+        try (LoadClient client = connect()) {
+            return dataSet.loadInto(client);
+        }
+    }
+
+    private static String quote(String value) {
+        return '"' + value + '"';
+    }
+}
@@ -0,0 +1,58 @@
+package br.ufal.ic.p2.jackut.loadgen;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Distribuição de Zipf sobre as posições {@code 0} a {@code n - 1}.
+ *
+ * A posição {@code k} é sorteada com probabilidade proporcional a {@code 1 / (k + 1)^s}: poucas
+ * posições concentram a maior parte dos sorteios, como os usuários mais populares de uma rede
+ * social. A distribuição acumulada é calculada uma vez e cada sorteio é uma busca binária nela.
+ */
+public class ZipfDistribution {
+    private final double[] cumulative;
+
+    /**
+     * Construtor da classe ZipfDistribution.
+     *
+     * @param n        Quantidade de posições.
+     * @param exponent Expoente {@code s}; quanto maior, mais concentrados são os sorteios.
+     */
+    public ZipfDistribution(int n, double exponent) {
+        if (n <= 0 || exponent < 0) {
+            throw new IllegalArgumentException("Parâmetros da distribuição de Zipf inválidos.");
+        }
+
+        cumulative = new double[n];
+        double total = 0;
+        for (int k = 0; k < n; k++) {
+            total += 1 / Math.pow(k + 1, exponent);
+            cumulative[k] = total;
+        }
+        for (int k = 0; k < n; k++) {
+            cumulative[k] /= total;
+        }
+    }
+
+    /**
+     * Sorteia uma posição.
+     *
+     * @param random Gerador de números aleatórios.
+     * @return Posição sorteada, entre {@code 0} e {@code n - 1}.
+     */
+    public int sample(SplittableRandom random) {
+        int index = Arrays.binarySearch(cumulative, random.nextDouble());
+        index = index < 0 ? -index - 1 : index;
+        return Math.min(index, cumulative.length - 1);
+    }
+
+    /**
+     * Retorna a quantidade de posições da distribuição.
+     *
+     * @return Quantidade de posições.
+     */
+    public int size() {
+        return cumulative.length;
+    }
+}
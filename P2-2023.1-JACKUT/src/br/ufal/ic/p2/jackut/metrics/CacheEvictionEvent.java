@@ -0,0 +1,41 @@
+package br.ufal.ic.p2.jackut.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Evento do JDK Flight Recorder emitido a cada descarte de usuários e comunidades da memória,
+ * quando os registros materializados passam do limite configurado.
+ */
+@Name("br.ufal.ic.p2.jackut.CacheEviction")
+@Label("Descarte de registros")
+@Category({"Jackut", "Persistência"})
+@Description("Descarte dos usuários e comunidades acessados há mais tempo, que voltam a ser lidos do snapshot ou do transbordo.")
+public class CacheEvictionEvent extends Event {
+    @Label("Limite")
+    @DataAmount
+    public long budget;
+
+    @Label("Tamanho antes")
+    @DataAmount
+    public long bytesBefore;
+
+    @Label("Tamanho depois")
+    @DataAmount
+    public long bytesAfter;
+
+    @Label("Usuários descartados")
+    public int users;
+
+    @Label("Comunidades descartadas")
+    public int communities;
+
+    @Label("Tamanho do transbordo")
+    @Description("Registros alterados gravados no transbordo desde o último snapshot.")
+    @DataAmount
+    public long spilledBytes;
+}
@@ -0,0 +1,25 @@
+package br.ufal.ic.p2.jackut.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Evento do JDK Flight Recorder emitido a cada mensagem postada em uma comunidade, cobrindo a
+ * entrega da mensagem aos membros. Com entrega assíncrona, cobre apenas a publicação no
+ * {@link br.ufal.ic.p2.jackut.NotificationDispatcher}, incluindo a espera por espaço no buffer.
+ */
+@Name("br.ufal.ic.p2.jackut.CommunityFanout")
+@Label("Entrega de mensagem de comunidade")
+@Category({"Jackut", "Comunidades"})
+@Description("Entrega de uma mensagem postada em uma comunidade a todos os seus membros.")
+public class CommunityFanoutEvent extends Event {
+    @Label("Comunidade")
+    public String community;
+
+    @Label("Destinatários")
+    @Description("Quantidade de membros que receberam a mensagem.")
+    public int recipients;
+}
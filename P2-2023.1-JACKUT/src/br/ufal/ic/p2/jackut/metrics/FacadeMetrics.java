@@ -0,0 +1,218 @@
+package br.ufal.ic.p2.jackut.metrics;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Métricas das operações da Facade: quantidade de chamadas, erros por tipo de exceção e
+ * histograma de latências de cada operação, incluindo a gravação e a carga do snapshot.
+ *
+ * A coleta pode ser ligada e desligada a qualquer momento. Desligada, cada operação custa apenas
+ * a leitura de um campo volátil; nenhum relógio é consultado e nada é registrado.
+ */
+public class FacadeMetrics {
+    private static final long DISABLED = Long.MIN_VALUE;
+
+    /**
+     * Operações medidas, identificadas pelo nome do método correspondente.
+     */
+    public enum Method {
+        RESET_SYSTEM("resetSystem"),
+        CLOSE_SYSTEM("closeSystem"),
+        FLUSH("flush"),
+        SAVE_SNAPSHOT("saveSnapshot"),
+        EXECUTE_BATCH("executeBatch"),
+        CREATE_USER("createUser"),
+        OPEN_SESSION("openSession"),
+        ADD_FRIEND("addFriend"),
+        IS_FRIEND("isFriend"),
+        GET_FRIENDS("getFriends"),
+        GET_USER_ATTRIBUTE("getUserAttribute"),
+        EDIT_PROFILE("editProfile"),
+        SEND_MESSAGE("sendMessage"),
+        SEND_MESSAGE_TO_COMMUNITY("sendMessageToCommunity"),
+        READ_MESSAGE("readMessage"),
+        READ_DIRECT_MESSAGE("readDirectMessage"),
+        CREATE_COMMUNITY("createCommunity"),
+        ADD_USER_TO_COMMUNITY("addUserToCommunity"),
+        GET_FANS("getFans"),
+        GET_USER_COMMUNITIES("getUserCommunities"),
+        GET_COMMUNITY_DESCRIPTION("getCommunityDescription"),
+        GET_COMMUNITY_OWNER("getCommunityOwner"),
+        GET_COMMUNITY_MEMBERS("getCommunityMembers"),
+        ADD_IDOL("addIdol"),
+        ADD_CRUSH("addCrush"),
+        ADD_ENEMY("addEnemy"),
+        REMOVE_USER("removeUser"),
+        SAVE_DATA("saveData"),
+        LOAD_DATA("loadData");
+
+        private final String methodName;
+
+        Method(String methodName) {
+            this.methodName = methodName;
+        }
+
+        public String getMethodName() {
+            return methodName;
+        }
+    }
+
+    /**
+     * Métricas de uma operação.
+     */
+    private static final class MethodMetrics {
+        final LatencyHistogram latencies = new LatencyHistogram();
+        final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+    }
+
+    private final Map<Method, MethodMetrics> methods = new EnumMap<>(Method.class);
+    private volatile boolean enabled;
+
+    /**
+     * Construtor da classe FacadeMetrics.
+     *
+     * @param enabled Se a coleta começa ligada.
+     */
+    public FacadeMetrics(boolean enabled) {
+        this.enabled = enabled;
+        for (Method method : Method.values()) {
+            methods.put(method, new MethodMetrics());
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Liga ou desliga a coleta. As métricas já coletadas são mantidas.
+     *
+     * @param enabled Se a coleta deve ficar ligada.
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Marca o início de uma operação.
+     *
+     * @return Marca de tempo a ser passada para {@link #finish}.
+     */
+    public long start() {
+        return enabled ? System.nanoTime() : DISABLED;
+    }
+
+    /**
+     * Registra o fim de uma operação, com ou sem erro.
+     *
+     * @param method Operação.
+     * @param start  Marca de tempo retornada por {@link #start()}.
+     */
+    public void finish(Method method, long start) {
+        if (start != DISABLED) {
+            methods.get(method).latencies.record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Registra um erro lançado por uma operação.
+     *
+     * @param method Operação.
+     * @param error  Exceção lançada.
+     */
+    public void failed(Method method, Exception error) {
+        if (enabled) {
+            methods.get(method).errors
+                    .computeIfAbsent(error.getClass().getSimpleName(), key -> new LongAdder())
+                    .increment();
+        }
+    }
+
+    /**
+     * Retorna a quantidade de chamadas de uma operação, incluindo as que falharam.
+     *
+     * @param method Operação.
+     * @return Quantidade de chamadas.
+     */
+    public long getCalls(Method method) {
+        return methods.get(method).latencies.getCount();
+    }
+
+    /**
+     * Retorna a quantidade de chamadas de uma operação que lançaram exceção.
+     *
+     * @param method Operação.
+     * @return Quantidade de erros.
+     */
+    public long getErrors(Method method) {
+        long total = 0;
+        for (LongAdder count : methods.get(method).errors.values()) {
+            total += count.sum();
+        }
+        return total;
+    }
+
+    /**
+     * Retorna os erros de uma operação agrupados pelo nome simples da classe da exceção.
+     *
+     * @param method Operação.
+     * @return Quantidade de erros de cada tipo, em ordem alfabética.
+     */
+    public Map<String, Long> getErrorsByType(Method method) {
+        Map<String, Long> errors = new TreeMap<>();
+        methods.get(method).errors.forEach((type, count) -> errors.put(type, count.sum()));
+        return Collections.unmodifiableMap(errors);
+    }
+
+    /**
+     * Retorna o histograma de latências de uma operação.
+     *
+     * @param method Operação.
+     * @return Histograma, em nanossegundos.
+     */
+    public LatencyHistogram getLatencies(Method method) {
+        return methods.get(method).latencies;
+    }
+
+    /**
+     * Descarta todas as métricas coletadas.
+     */
+    public void reset() {
+        for (MethodMetrics metrics : methods.values()) {
+            metrics.latencies.reset();
+            metrics.errors.clear();
+        }
+    }
+
+    /**
+     * Monta um relatório em texto com uma linha para cada operação chamada ao menos uma vez.
+     *
+     * @return O relatório.
+     */
+    public String dump() {
+        StringBuilder text = new StringBuilder();
+        for (Method method : Method.values()) {
+            if (getCalls(method) == 0) {
+                continue;
+            }
+            text.append(String.format("%-24s errors=%d %s", method.getMethodName(), getErrors(method),
+                    getLatencies(method)));
+            Map<String, Long> errors = getErrorsByType(method);
+            if (!errors.isEmpty()) {
+                text.append(' ').append(errors);
+            }
+            text.append(System.lineSeparator());
+        }
+        return text.toString();
+    }
+
+    @Override
+    public String toString() {
+        return dump();
+    }
+}
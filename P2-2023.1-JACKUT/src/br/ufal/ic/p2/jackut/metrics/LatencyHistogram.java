@@ -0,0 +1,161 @@
+package br.ufal.ic.p2.jackut.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histograma de latências com precisão relativa fixa, no estilo do HdrHistogram.
+ *
+ * Os valores, em nanossegundos, são contados em baldes log-lineares: cada potência de dois é
+ * dividida em {@value #SUB_BUCKETS} baldes de mesma largura, o que limita o erro relativo de
+ * cada percentil a cerca de 3%, qualquer que seja a ordem de grandeza do valor. O registro não
+ * usa locks e pode ser feito por várias threads ao mesmo tempo.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int BUCKETS = (Long.SIZE - SUB_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Registra uma latência.
+     *
+     * @param nanos Latência em nanossegundos; valores negativos são contados como zero.
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(bucket(value));
+        count.increment();
+        sum.add(value);
+        max.accumulateAndGet(value, Math::max);
+    }
+
+    /**
+     * Retorna a quantidade de latências registradas.
+     *
+     * @return Quantidade de registros.
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * Retorna a maior latência registrada.
+     *
+     * @return Latência máxima em nanossegundos.
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Retorna a média das latências registradas.
+     *
+     * @return Latência média em nanossegundos, ou zero se não houver registros.
+     */
+    public double getMean() {
+        long total = count.sum();
+        return total == 0 ? 0 : (double) sum.sum() / total;
+    }
+
+    /**
+     * Retorna a latência abaixo da qual está uma fração dos registros.
+     *
+     * @param percentile Percentil, entre 0 e 100.
+     * @return Limite superior do balde que contém o percentil, em nanossegundos.
+     */
+    public long getPercentile(double percentile) {
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(total * Math.min(100, Math.max(0, percentile)) / 100));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(upperBound(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * Soma os registros de outro histograma a este.
+     *
+     * @param other Histograma a ser somado.
+     */
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            long value = other.counts.get(i);
+            if (value != 0) {
+                counts.addAndGet(i, value);
+            }
+        }
+        count.add(other.count.sum());
+        sum.add(other.sum.sum());
+        max.accumulateAndGet(other.max.get(), Math::max);
+    }
+
+    /**
+     * Descarta todos os registros.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        count.reset();
+        sum.reset();
+        max.set(0);
+    }
+
+    /**
+     * Resume o histograma em uma linha, com as latências em microssegundos.
+     *
+     * @return Quantidade, média, percentis 50, 90, 99 e 99,9 e máximo.
+     */
+    @Override
+    public String toString() {
+        return String.format("count=%d mean=%.1fus p50=%.1fus p90=%.1fus p99=%.1fus p99.9=%.1fus max=%.1fus",
+                getCount(), getMean() / 1000, micros(getPercentile(50)), micros(getPercentile(90)),
+                micros(getPercentile(99)), micros(getPercentile(99.9)), micros(getMax()));
+    }
+
+    private static double micros(long nanos) {
+        return nanos / (double) TimeUnit.MICROSECONDS.toNanos(1);
+    }
+
+    /**
+     * Calcula o balde de um valor: os valores menores que {@value #SUB_BUCKETS} têm um balde
+     * cada; os demais são agrupados pelos {@value #SUB_BITS} bits seguintes ao bit mais alto.
+     */
+    static int bucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = (Long.SIZE - 1 - Long.numberOfLeadingZeros(value)) - SUB_BITS;
+        int sub = (int) (value >>> shift) & (SUB_BUCKETS - 1);
+        return (shift + 1) * SUB_BUCKETS + sub;
+    }
+
+    static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lower = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return lower + (1L << shift) - 1;
+    }
+}
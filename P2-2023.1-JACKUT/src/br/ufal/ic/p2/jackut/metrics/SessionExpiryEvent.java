@@ -0,0 +1,38 @@
+package br.ufal.ic.p2.jackut.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Evento do JDK Flight Recorder emitido quando uma sessão é descartada por ter expirado ou para
+ * dar lugar a uma nova.
+ */
+@Name("br.ufal.ic.p2.jackut.SessionExpiry")
+@Label("Expiração de sessão")
+@Category({"Jackut", "Sessões"})
+public class SessionExpiryEvent extends Event {
+    /**
+     * Motivo usado quando a sessão passou do prazo.
+     */
+    public static final String EXPIRED = "expirada";
+
+    /**
+     * Motivo usado quando a sessão foi descartada porque a capacidade foi atingida.
+     */
+    public static final String EVICTED = "descartada";
+
+    @Label("Login")
+    public String login;
+
+    @Label("Motivo")
+    @Description("\"expirada\" se passou do prazo, ou \"descartada\" se deu lugar a uma nova sessão.")
+    public String reason;
+
+    @Label("Idade")
+    @Timespan(Timespan.MILLISECONDS)
+    public long age;
+}
@@ -0,0 +1,20 @@
+package br.ufal.ic.p2.jackut.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Evento do JDK Flight Recorder emitido a cada sessão aberta.
+ */
+@Name("br.ufal.ic.p2.jackut.SessionOpen")
+@Label("Abertura de sessão")
+@Category({"Jackut", "Sessões"})
+public class SessionOpenEvent extends Event {
+    @Label("Login")
+    public String login;
+
+    @Label("Sessões abertas")
+    public int activeSessions;
+}
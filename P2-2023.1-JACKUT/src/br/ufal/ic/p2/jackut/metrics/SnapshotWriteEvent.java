@@ -0,0 +1,28 @@
+package br.ufal.ic.p2.jackut.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Evento do JDK Flight Recorder emitido a cada gravação de um snapshot completo.
+ */
+@Name("br.ufal.ic.p2.jackut.SnapshotWrite")
+@Label("Gravação de snapshot")
+@Category({"Jackut", "Persistência"})
+@Description("Gravação de um snapshot completo do sistema, seguida da compactação do journal.")
+public class SnapshotWriteEvent extends Event {
+    @Label("Sequência")
+    @Description("Sequência do último registro do journal contido no snapshot.")
+    public long sequence;
+
+    @Label("Tamanho")
+    @DataAmount
+    public long bytes;
+
+    @Label("Sucesso")
+    public boolean success;
+}
@@ -0,0 +1,35 @@
+package br.ufal.ic.p2.jackut.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Evento do JDK Flight Recorder emitido a cada remoção de conta, com o tamanho da cascata de
+ * remoções que ela causou.
+ */
+@Name("br.ufal.ic.p2.jackut.UserRemoval")
+@Label("Remoção de conta")
+@Category({"Jackut", "Usuários"})
+@Description("Remoção de uma conta e de todas as suas comunidades, relacionamentos e recados.")
+public class UserRemovalEvent extends Event {
+    @Label("Login")
+    public String login;
+
+    @Label("Comunidades removidas")
+    @Description("Comunidades criadas pelo usuário, removidas junto com a conta.")
+    public int ownedCommunities;
+
+    @Label("Comunidades deixadas")
+    public int communities;
+
+    @Label("Relacionamentos desfeitos")
+    @Description("Amizades, convites, ídolos, fãs, paqueras e inimizades desfeitos nos dois sentidos.")
+    public int relationships;
+
+    @Label("Caixas de entrada limpas")
+    @Description("Usuários cujos recados enviados pelo usuário removido foram apagados.")
+    public int inboxes;
+}
@@ -0,0 +1,139 @@
+package br.ufal.ic.p2.jackut.persistence;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Escritor do formato binário compacto usado nos snapshots e no journal.
+ *
+ * Acumula os bytes em um buffer próprio, sem sincronização, e codifica inteiros como varints
+ * (7 bits por byte) e strings como UTF-8 precedido pelo tamanho.
+ */
+public class BinaryWriter {
+    private byte[] buffer;
+    private int size;
+
+    public BinaryWriter() {
+        this(256);
+    }
+
+    /**
+     * Construtor da classe BinaryWriter.
+     *
+     * @param capacity Capacidade inicial do buffer, em bytes.
+     */
+    public BinaryWriter(int capacity) {
+        this.buffer = new byte[Math.max(16, capacity)];
+    }
+
+    public void writeByte(int value) {
+        ensureCapacity(1);
+        buffer[size++] = (byte) value;
+    }
+
+    public void writeBytes(byte[] bytes) {
+        writeBytes(bytes, 0, bytes.length);
+    }
+
+    public void writeBytes(byte[] bytes, int offset, int length) {
+        ensureCapacity(length);
+        System.arraycopy(bytes, offset, buffer, size, length);
+        size += length;
+    }
+
+    /**
+     * Escreve um inteiro de 32 bits com tamanho fixo, em big-endian.
+     *
+     * @param value Valor a ser escrito.
+     */
+    public void writeFixedInt(int value) {
+        ensureCapacity(4);
+        buffer[size++] = (byte) (value >>> 24);
+        buffer[size++] = (byte) (value >>> 16);
+        buffer[size++] = (byte) (value >>> 8);
+        buffer[size++] = (byte) value;
+    }
+
+    /**
+     * Escreve um inteiro de 64 bits com tamanho fixo, em big-endian.
+     *
+     * @param value Valor a ser escrito.
+     */
+    public void writeFixedLong(long value) {
+        writeFixedInt((int) (value >>> 32));
+        writeFixedInt((int) value);
+    }
+
+    /**
+     * Escreve um inteiro não negativo como varint.
+     *
+     * @param value Valor a ser escrito.
+     */
+    public void writeVarInt(int value) {
+        writeVarLong(value & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Escreve um inteiro longo não negativo como varint.
+     *
+     * @param value Valor a ser escrito.
+     */
+    public void writeVarLong(long value) {
+        ensureCapacity(10);
+        while ((value & ~0x7FL) != 0) {
+            buffer[size++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[size++] = (byte) value;
+    }
+
+    /**
+     * Escreve uma string como UTF-8 precedido pelo tamanho em bytes. Strings nulas são
+     * gravadas como vazias.
+     *
+     * @param value String a ser escrita.
+     */
+    public void writeString(String value) {
+        byte[] bytes = (value == null ? "" : value).getBytes(StandardCharsets.UTF_8);
+        writeVarInt(bytes.length);
+        writeBytes(bytes);
+    }
+
+    /**
+     * Retorna a quantidade de bytes escritos.
+     *
+     * @return Tamanho em bytes.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Descarta os bytes escritos, mantendo o buffer alocado.
+     */
+    public void reset() {
+        size = 0;
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buffer, size);
+    }
+
+    /**
+     * Copia os bytes escritos para um fluxo de saída.
+     *
+     * @param out Fluxo de destino.
+     * @throws IOException Se ocorrer um erro de escrita.
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(buffer, 0, size);
+    }
+
+    private void ensureCapacity(int extra) {
+        if (size + extra > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + extra));
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package br.ufal.ic.p2.jackut.persistence;
+
+/**
+ * Política de durabilidade do journal.
+ *
+ * Define quando os registros acumulados são gravados e sincronizados com o disco:
+ * a cada operação, a cada intervalo de tempo ou a cada quantidade de operações.
+ * Nos dois últimos modos a gravação é feita por uma thread em segundo plano, que agrupa
+ * vários registros em uma única sincronização (group commit).
+ */
+public class DurabilityPolicy {
+    /**
+     * Modos de durabilidade suportados.
+     */
+    public enum Mode {
+        SYNC,
+        INTERVAL,
+        BATCH
+    }
+
+    private final Mode mode;
+    private final long value;
+
+    private DurabilityPolicy(Mode mode, long value) {
+        this.mode = mode;
+        this.value = value;
+    }
+
+    /**
+     * Grava e sincroniza cada registro antes de retornar ao chamador.
+     *
+     * @return A política criada.
+     */
+    public static DurabilityPolicy sync() {
+        return new DurabilityPolicy(Mode.SYNC, 0);
+    }
+
+    /**
+     * Grava os registros acumulados a cada intervalo de tempo.
+     *
+     * @param millis Intervalo em milissegundos.
+     * @return A política criada.
+     */
+    public static DurabilityPolicy everyMillis(long millis) {
+        if (millis <= 0) {
+            throw new IllegalArgumentException("Intervalo inválido: " + millis);
+        }
+        return new DurabilityPolicy(Mode.INTERVAL, millis);
+    }
+
+    /**
+     * Grava os registros acumulados a cada quantidade de operações.
+     *
+     * @param operations Quantidade de operações por gravação.
+     * @return A política criada.
+     */
+    public static DurabilityPolicy everyOperations(int operations) {
+        if (operations <= 0) {
+            throw new IllegalArgumentException("Quantidade de operações inválida: " + operations);
+        }
+        return new DurabilityPolicy(Mode.BATCH, operations);
+    }
+
+    /**
+     * Interpreta uma política escrita como {@code sync}, {@code interval:<ms>} ou {@code batch:<ops>}.
+     *
+     * @param spec Descrição da política.
+     * @return A política correspondente.
+     * @throws IllegalArgumentException Se a descrição for inválida.
+     */
+    public static DurabilityPolicy parse(String spec) {
+        if (spec == null || spec.trim().isEmpty() || spec.trim().equalsIgnoreCase("sync")) {
+            return sync();
+        }
+
+        String[] parts = spec.trim().split(":", 2);
+        if (parts.length != 2) {
+            throw new IllegalArgumentException("Política de durabilidade inválida: " + spec);
+        }
+
+        try {
+            switch (parts[0].toLowerCase()) {
+                case "interval":
+                    return everyMillis(Long.parseLong(parts[1]));
+                case "batch":
+                    return everyOperations(Integer.parseInt(parts[1]));
+                default:
+                    throw new IllegalArgumentException("Política de durabilidade inválida: " + spec);
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Política de durabilidade inválida: " + spec);
+        }
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * Retorna o intervalo em milissegundos, para o modo {@link Mode#INTERVAL}, ou a
+     * quantidade de operações, para o modo {@link Mode#BATCH}.
+     *
+     * @return Valor associado ao modo.
+     */
+    public long getValue() {
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return mode == Mode.SYNC ? "sync" : mode.name().toLowerCase() + ":" + value;
+    }
+}
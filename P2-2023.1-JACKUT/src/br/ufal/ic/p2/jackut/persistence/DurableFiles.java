@@ -0,0 +1,65 @@
+package br.ufal.ic.p2.jackut.persistence;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Operações de arquivo que precisam sobreviver a uma queda do sistema operacional.
+ *
+ * Um arquivo só está em disco depois de sincronizado, e uma renomeação só está em disco depois
+ * que o diretório que a contém for sincronizado. Antes de descartar o journal, o snapshot que o
+ * substitui precisa ter passado pelas duas etapas.
+ */
+public final class DurableFiles {
+    private DurableFiles() {
+    }
+
+    /**
+     * Sincroniza o conteúdo de um arquivo com o disco.
+     *
+     * @param file Arquivo.
+     * @throws IOException Se o arquivo não puder ser aberto ou sincronizado.
+     */
+    public static void sync(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Sincroniza as entradas de um diretório com o disco, tornando duráveis as criações e
+     * renomeações de arquivos feitas nele. Em sistemas que não permitem abrir um diretório, como
+     * o Windows, não faz nada.
+     *
+     * @param directory Diretório.
+     * @throws IOException Se o diretório não puder ser sincronizado.
+     */
+    public static void syncDirectory(File directory) throws IOException {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(directory.toPath(), StandardOpenOption.READ);
+        } catch (IOException e) {
+            return;
+        }
+        try (channel) {
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Substitui um arquivo por outro do mesmo diretório com uma renomeação atômica, e sincroniza
+     * o diretório. O arquivo de origem já deve estar sincronizado.
+     *
+     * @param source Arquivo completo, que passa a ocupar o lugar do destino.
+     * @param target Arquivo substituído.
+     * @throws IOException Se a renomeação atômica falhar ou não for suportada.
+     */
+    public static void replace(File source, File target) throws IOException {
+        Files.move(source.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        syncDirectory(target.getAbsoluteFile().getParentFile());
+    }
+}
@@ -0,0 +1,204 @@
+package br.ufal.ic.p2.jackut.persistence;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+import br.ufal.ic.p2.jackut.Message;
+
+/**
+ * Arquivos de segmento das caixas de entrada, para onde os recados mais antigos de um usuário
+ * são transferidos quando ele acumula muitos recados não lidos.
+ *
+ * Cada usuário escreve em um segmento por vez, identificado pelo identificador do usuário e por
+ * uma geração. O segmento é somente de acréscimo: cada recado ocupa o seu tamanho (inteiro de 4
+ * bytes) seguido do remetente + 1 (varint) e do texto. O snapshot guarda, para cada usuário, a
+ * geração e o trecho do segmento ainda não lido; um acréscimo sempre começa no fim desse trecho,
+ * descartando o que estiver depois dele, de forma que a reaplicação do journal sobre o snapshot
+ * reescreve os mesmos bytes.
+ *
+ * Um segmento lido até o fim é aposentado, e o usuário passa para a geração seguinte. Como o
+ * snapshot atual ainda pode apontar para ele, o arquivo só é apagado por
+ * {@link #deleteRetired()}, depois que um novo snapshot for salvo.
+ *
+ * Os acréscimos não são sincronizados com o disco, pois os recados também estão no journal. Antes
+ * de um snapshot substituir o journal, {@link #sync()} sincroniza os segmentos alterados desde o
+ * anterior.
+ */
+public class InboxStore {
+    private static final String SUFFIX = ".seg";
+
+    private final File directory;
+    private final int headLimit;
+    private final List<File> retired = new ArrayList<>();
+    private final Set<File> unsynced = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Construtor da classe InboxStore. O diretório só é criado no primeiro acréscimo.
+     *
+     * @param directory Diretório dos segmentos.
+     * @param headLimit Quantidade de recados não lidos mantidos em memória por usuário; os
+     *                  demais vão para o segmento.
+     */
+    public InboxStore(File directory, int headLimit) {
+        this.directory = directory;
+        this.headLimit = headLimit;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    public int getHeadLimit() {
+        return headLimit;
+    }
+
+    /**
+     * Acrescenta recados ao segmento de um usuário.
+     *
+     * @param owner      Identificador do usuário.
+     * @param generation Geração do segmento.
+     * @param offset     Fim do trecho já gravado; o que houver depois dele é descartado.
+     * @param messages   Recados, na ordem de chegada.
+     * @return Novo fim do trecho gravado.
+     * @throws IOException Se ocorrer um erro de escrita.
+     */
+    public long append(int owner, int generation, long offset, Collection<Message> messages) throws IOException {
+        BinaryWriter out = new BinaryWriter(64 * messages.size());
+        BinaryWriter record = new BinaryWriter(64);
+        for (Message message : messages) {
+            record.reset();
+            record.writeVarInt(message.getSenderId() + 1);
+            record.writeString(message.getBody());
+            out.writeFixedInt(record.size());
+            out.writeBytes(record.toByteArray());
+        }
+
+        directory.mkdirs();
+        File segment = segment(owner, generation);
+        unsynced.add(segment);
+        try (RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+            if (file.length() != offset) {
+                file.setLength(offset);
+            }
+            file.seek(offset);
+            file.write(out.toByteArray());
+        }
+        return offset + out.size();
+    }
+
+    /**
+     * Lê recados do segmento de um usuário, na ordem em que foram gravados.
+     *
+     * @param owner      Identificador do usuário.
+     * @param generation Geração do segmento.
+     * @param offset     Posição do primeiro recado a ser lido.
+     * @param end        Fim do trecho gravado.
+     * @param max        Quantidade máxima de recados lidos.
+     * @param action     Ação aplicada a cada recado lido.
+     * @return Posição do recado seguinte ao último lido.
+     * @throws IOException Se o segmento não puder ser lido ou estiver incompleto.
+     */
+    public long read(int owner, int generation, long offset, long end, int max, Consumer<Message> action)
+            throws IOException {
+        try (FileInputStream file = new FileInputStream(segment(owner, generation))) {
+            file.getChannel().position(offset);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(file));
+
+            long position = offset;
+            for (int count = 0; count < max && position < end; count++) {
+                int length = in.readInt();
+                BinaryReader record = new BinaryReader(in.readNBytes(length));
+                int senderId = record.readVarInt() - 1;
+                action.accept(new Message(senderId, record.readString()));
+                position += Integer.BYTES + length;
+            }
+            return position;
+        }
+    }
+
+    /**
+     * Sincroniza com o disco os segmentos alterados desde a última chamada, e o diretório em que
+     * foram criados. Deve ser chamado sem acréscimos em andamento, antes de salvar um snapshot
+     * que aponte para eles.
+     *
+     * @throws IOException Se algum segmento não puder ser sincronizado.
+     */
+    public void sync() throws IOException {
+        if (unsynced.isEmpty()) {
+            return;
+        }
+        for (File segment : unsynced) {
+            // Um segmento aposentado pode já ter sido apagado
+            if (segment.exists()) {
+                DurableFiles.sync(segment);
+            }
+        }
+        DurableFiles.syncDirectory(directory);
+        unsynced.clear();
+    }
+
+    /**
+     * Marca o segmento de um usuário para ser apagado depois do próximo snapshot.
+     *
+     * @param owner      Identificador do usuário.
+     * @param generation Geração do segmento.
+     */
+    public synchronized void retire(int owner, int generation) {
+        retired.add(segment(owner, generation));
+    }
+
+    /**
+     * Apaga os segmentos aposentados. Só pode ser chamado depois de salvo um snapshot que já
+     * não aponte para eles, e antes de qualquer nova alteração.
+     */
+    public synchronized void deleteRetired() {
+        for (File file : retired) {
+            file.delete();
+        }
+        retired.clear();
+    }
+
+    /**
+     * Esquece os segmentos aposentados sem apagá-los. Usado quando todo o estado é descartado,
+     * pois os identificadores dos usuários podem voltar a ser usados e os nomes dos segmentos
+     * aposentados passariam a ser de outros usuários.
+     */
+    public synchronized void discardRetired() {
+        retired.clear();
+    }
+
+    /**
+     * Apaga todos os segmentos, inclusive os aposentados.
+     */
+    public synchronized void clear() {
+        retired.clear();
+        unsynced.clear();
+        for (File file : list()) {
+            file.delete();
+        }
+    }
+
+    /**
+     * Retorna os arquivos de segmento existentes.
+     *
+     * @return Arquivos do diretório de segmentos.
+     */
+    public List<File> list() {
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(SUFFIX));
+        return files == null ? new ArrayList<>() : List.of(files);
+    }
+
+    private File segment(int owner, int generation) {
+        return new File(directory, owner + "-" + generation + SUFFIX);
+    }
+}
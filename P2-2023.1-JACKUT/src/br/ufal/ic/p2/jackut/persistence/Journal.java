@@ -0,0 +1,563 @@
+package br.ufal.ic.p2.jackut.persistence;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Journal de operações append-only do sistema Jackut.
+ *
+ * Cada mutação da Facade é gravada como um registro compacto no fim do arquivo, em vez de
+ * reescrever todo o estado a cada operação. Cada registro é precedido pelo seu tamanho, limitado
+ * a {@value #MAX_RECORD_SIZE} bytes, e por um CRC32 do seu conteúdo. Ao reaplicar o journal, o
+ * arquivo é cortado no primeiro registro incompleto ou corrompido, como o que fica no fim do
+ * arquivo após uma queda do processo, e os registros seguintes são descartados.
+ * O journal é truncado sempre que um novo snapshot é salvo.
+ *
+ * Quando a {@link DurabilityPolicy} não é síncrona, os registros são enfileirados e gravados
+ * em lote por uma thread em segundo plano, com uma única sincronização com o disco por lote.
+ * O método {@link #flush()} espera até que todos os registros já acrescentados estejam em disco.
+ *
+ * Ouvintes registrados com {@link #addListener(Consumer)} recebem cada registro acrescentado, na
+ * ordem das sequências, o que permite enviar o journal a outros processos.
+ *
+ * Se uma gravação falhar, o erro é guardado: os registros do lote não são considerados gravados,
+ * e {@link #append}, {@link #flush()} e {@link #truncate()} passam a lançá-lo, pois um registro
+ * gravado pela metade tornaria inválidos os registros acrescentados depois dele. O journal só
+ * volta a aceitar registros quando é truncado por {@link #truncate()}, depois de um snapshot que
+ * já contém o efeito de todos os registros acrescentados.
+ */
+public class Journal implements Closeable {
+    /**
+     * Tamanho máximo do conteúdo de um registro. Um tamanho maior lido do arquivo indica um
+     * registro corrompido.
+     */
+    public static final int MAX_RECORD_SIZE = 16 << 20;
+    private static final int FRAME_HEADER = 2 * Integer.BYTES;
+
+    private final File file;
+    private final DurabilityPolicy policy;
+    private final Object lock = new Object();
+    private final Object ioLock = new Object();
+    private FileOutputStream fileOut;
+    private DataOutputStream out;
+    private List<byte[]> queue = new ArrayList<>();
+    private final List<Consumer<JournalRecord>> listeners = new CopyOnWriteArrayList<>();
+    private Thread writer;
+    private boolean running;
+    private boolean flushRequested;
+    private long lastSequence;
+    private long durableSequence;
+    private int pendingRecords;
+    private IOException failure;
+
+    /**
+     * Construtor da classe Journal, com gravação síncrona a cada registro.
+     *
+     * @param file Arquivo do journal.
+     */
+    public Journal(File file) {
+        this(file, DurabilityPolicy.sync());
+    }
+
+    /**
+     * Construtor da classe Journal.
+     *
+     * @param file   Arquivo do journal.
+     * @param policy Política de durabilidade dos registros.
+     */
+    public Journal(File file, DurabilityPolicy policy) {
+        this.file = file;
+        this.policy = policy;
+    }
+
+    /**
+     * Reaplica os registros gravados após um número de sequência e prepara o journal para escrita.
+     * Deve ser chamado uma vez antes de qualquer {@link #append}. O arquivo é cortado no primeiro
+     * registro inválido, de forma que os próximos registros sejam gravados logo após o último
+     * registro válido.
+     *
+     * @param afterSequence Sequência do último registro já contido no snapshot.
+     * @param consumer      Função que aplica cada registro ao estado em memória.
+     * @throws IOException Se ocorrer um erro de leitura ou escrita. O journal não pode ser usado
+     *                     depois disso.
+     */
+    public void replay(long afterSequence, Consumer<JournalRecord> consumer) throws IOException {
+        lastSequence = afterSequence;
+        long validLength = 0;
+
+        if (file.exists()) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                while (true) {
+                    byte[] payload = readFrame(in);
+                    if (payload == null) {
+                        break;
+                    }
+                    JournalRecord record = decode(payload);
+                    if (record == null) {
+                        break;
+                    }
+                    validLength += FRAME_HEADER + payload.length;
+                    pendingRecords++;
+                    if (record.getSequence() > afterSequence) {
+                        consumer.accept(record);
+                        lastSequence = record.getSequence();
+                    }
+                }
+            }
+
+            // Descarta o registro inválido e tudo o que vem depois dele
+            if (file.length() > validLength) {
+                System.err.println("Journal " + file.getPath() + " cortado em " + validLength + " de "
+                        + file.length() + " bytes: registro incompleto ou corrompido");
+                try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                    raf.setLength(validLength);
+                    raf.getFD().sync();
+                }
+            }
+        }
+
+        durableSequence = lastSequence;
+        openOutput(true);
+
+        if (policy.getMode() != DurabilityPolicy.Mode.SYNC) {
+            running = true;
+            writer = new Thread(this::writeLoop, "jackut-journal-writer");
+            writer.setDaemon(true);
+            writer.start();
+        }
+    }
+
+    /**
+     * Acrescenta um registro ao fim do journal. No modo síncrono o registro já está em disco
+     * quando o método retorna; nos demais modos ele é gravado pela thread de escrita.
+     *
+     * @param operation Operação realizada.
+     * @param args      Argumentos da operação.
+     * @return Número de sequência atribuído ao registro.
+     * @throws IOException Se ocorrer um erro de escrita, ou se uma gravação anterior tiver falhado.
+     */
+    public long append(Operation operation, String... args) throws IOException {
+        return append(true, operation, args);
+    }
+
+    /**
+     * Acrescenta um registro ao fim do journal sem esperar que ele seja sincronizado com o disco,
+     * mesmo no modo síncrono. O registro só está garantido em disco depois de {@link #flush()};
+     * usado para gravar um lote de operações com uma única sincronização.
+     *
+     * @param operation Operação realizada.
+     * @param args      Argumentos da operação.
+     * @return Número de sequência atribuído ao registro.
+     * @throws IOException Se ocorrer um erro de escrita, ou se uma gravação anterior tiver falhado.
+     */
+    public long appendDeferred(Operation operation, String... args) throws IOException {
+        return append(false, operation, args);
+    }
+
+    private long append(boolean sync, Operation operation, String... args) throws IOException {
+        synchronized (lock) {
+            checkFailure();
+            long sequence = lastSequence + 1;
+            JournalRecord record = new JournalRecord(sequence, operation, args);
+            byte[] payload = encode(record);
+            if (payload.length > MAX_RECORD_SIZE) {
+                throw new IOException("Registro maior que " + MAX_RECORD_SIZE + " bytes.");
+            }
+            lastSequence = sequence;
+            pendingRecords++;
+
+            if (writer == null) {
+                synchronized (ioLock) {
+                    try {
+                        if (sync) {
+                            writeFrames(List.of(payload));
+                            durableSequence = sequence;
+                        } else {
+                            writeFrame(out, payload);
+                        }
+                    } catch (IOException e) {
+                        failure = e;
+                        throw e;
+                    }
+                }
+            } else {
+                queue.add(payload);
+                if (policy.getMode() == DurabilityPolicy.Mode.BATCH && queue.size() >= policy.getValue()) {
+                    lock.notifyAll();
+                }
+            }
+
+            for (Consumer<JournalRecord> listener : listeners) {
+                listener.accept(record);
+            }
+            return sequence;
+        }
+    }
+
+    /**
+     * Espera até que todos os registros acrescentados até o momento estejam gravados em disco.
+     *
+     * @throws IOException Se a espera for interrompida, ou se a gravação de algum registro falhar.
+     */
+    public void flush() throws IOException {
+        synchronized (lock) {
+            checkFailure();
+            long target = lastSequence;
+            if (writer == null && durableSequence < target) {
+                // Registros acrescentados sem sincronização no modo síncrono
+                synchronized (ioLock) {
+                    try {
+                        out.flush();
+                        fileOut.getFD().sync();
+                    } catch (IOException e) {
+                        failure = e;
+                        throw e;
+                    }
+                }
+                durableSequence = target;
+            }
+            while (durableSequence < target && writer != null) {
+                checkFailure();
+                flushRequested = true;
+                lock.notifyAll();
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Espera pela gravação do journal interrompida.");
+                }
+            }
+            checkFailure();
+        }
+    }
+
+    /**
+     * Descarta todos os registros do journal. Deve ser chamado logo após salvar um snapshot
+     * que já contém o efeito desses registros, inclusive dos que não chegaram ao disco por uma
+     * falha de gravação; depois disso o journal volta a aceitar registros.
+     *
+     * @throws IOException Se ocorrer um erro de escrita.
+     */
+    public void truncate() throws IOException {
+        synchronized (lock) {
+            if (failure == null) {
+                flush();
+            }
+            synchronized (ioLock) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    // O arquivo é recriado a seguir de qualquer forma
+                }
+                try {
+                    openOutput(false);
+                } catch (IOException e) {
+                    failure = e;
+                    throw e;
+                }
+            }
+            queue = new ArrayList<>();
+            durableSequence = lastSequence;
+            pendingRecords = 0;
+            failure = null;
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Retorna o erro da gravação que falhou, se houver.
+     *
+     * @return O erro, ou {@code null} se nenhuma gravação falhou.
+     */
+    public IOException getFailure() {
+        synchronized (lock) {
+            return failure;
+        }
+    }
+
+    /**
+     * Retorna a sequência do último registro acrescentado.
+     *
+     * @return Número de sequência.
+     */
+    public long getLastSequence() {
+        synchronized (lock) {
+            return lastSequence;
+        }
+    }
+
+    /**
+     * Retorna a sequência do último registro já gravado em disco.
+     *
+     * @return Número de sequência.
+     */
+    public long getDurableSequence() {
+        synchronized (lock) {
+            return durableSequence;
+        }
+    }
+
+    /**
+     * Retorna a quantidade de registros acumulados desde o último snapshot.
+     *
+     * @return Quantidade de registros.
+     */
+    public int getPendingRecords() {
+        synchronized (lock) {
+            return pendingRecords;
+        }
+    }
+
+    /**
+     * Registra um ouvinte que recebe cada registro acrescentado a partir de agora. O ouvinte é
+     * chamado com o journal bloqueado, então deve apenas enfileirar o registro.
+     *
+     * @param listener Ouvinte.
+     */
+    public void addListener(Consumer<JournalRecord> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Remove um ouvinte registrado com {@link #addListener(Consumer)}.
+     *
+     * @param listener Ouvinte.
+     */
+    public void removeListener(Consumer<JournalRecord> listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Grava um registro em um fluxo, no mesmo formato usado no arquivo do journal.
+     *
+     * @param out    Fluxo de saída.
+     * @param record Registro.
+     * @throws IOException Se ocorrer um erro de escrita.
+     */
+    public static void writeRecord(DataOutputStream out, JournalRecord record) throws IOException {
+        writeFrame(out, encode(record));
+    }
+
+    /**
+     * Lê um registro gravado por {@link #writeRecord(DataOutputStream, JournalRecord)}.
+     *
+     * @param in Fluxo de entrada.
+     * @return O registro, ou {@code null} se o fluxo terminar ou o registro for inválido.
+     * @throws IOException Se ocorrer um erro de leitura.
+     */
+    public static JournalRecord readRecord(DataInputStream in) throws IOException {
+        byte[] payload = readFrame(in);
+        return payload == null ? null : decode(payload);
+    }
+
+    public DurabilityPolicy getPolicy() {
+        return policy;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            stop();
+        }
+    }
+
+    private void stop() throws IOException {
+        Thread stopped;
+        synchronized (lock) {
+            running = false;
+            stopped = writer;
+            writer = null;
+            lock.notifyAll();
+        }
+
+        if (stopped != null) {
+            try {
+                stopped.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        synchronized (ioLock) {
+            if (out != null) {
+                out.close();
+                out = null;
+            }
+        }
+    }
+
+    /**
+     * Laço da thread de escrita: espera o lote ficar pronto segundo a política, grava todos os
+     * registros enfileirados e sincroniza o arquivo uma única vez.
+     */
+    private void writeLoop() {
+        while (true) {
+            List<byte[]> batch;
+            long target;
+
+            synchronized (lock) {
+                while (running && !batchReady()) {
+                    try {
+                        if (policy.getMode() == DurabilityPolicy.Mode.INTERVAL) {
+                            lock.wait(policy.getValue());
+                            if (!queue.isEmpty()) {
+                                break;
+                            }
+                        } else {
+                            lock.wait();
+                        }
+                    } catch (InterruptedException e) {
+                        running = false;
+                    }
+                }
+                if (!running && queue.isEmpty()) {
+                    return;
+                }
+                batch = queue;
+                queue = new ArrayList<>();
+                target = lastSequence;
+                flushRequested = false;
+                if (failure != null) {
+                    // Nada é gravado depois de um registro possivelmente incompleto
+                    lock.notifyAll();
+                    continue;
+                }
+            }
+
+            IOException error = null;
+            synchronized (ioLock) {
+                try {
+                    writeFrames(batch);
+                } catch (IOException e) {
+                    error = e;
+                }
+            }
+
+            synchronized (lock) {
+                if (error != null) {
+                    failure = error;
+                } else {
+                    durableSequence = Math.max(durableSequence, target);
+                }
+                lock.notifyAll();
+            }
+        }
+    }
+
+    private void checkFailure() throws IOException {
+        if (failure != null) {
+            throw new IOException("Falha anterior na gravação do journal: " + failure.getMessage(), failure);
+        }
+    }
+
+    private boolean batchReady() {
+        if (queue.isEmpty()) {
+            return false;
+        }
+        return flushRequested
+                || policy.getMode() == DurabilityPolicy.Mode.BATCH && queue.size() >= policy.getValue();
+    }
+
+    private void openOutput(boolean append) throws IOException {
+        fileOut = new FileOutputStream(file, append);
+        out = new DataOutputStream(new BufferedOutputStream(fileOut));
+    }
+
+    private void writeFrames(List<byte[]> payloads) throws IOException {
+        for (byte[] payload : payloads) {
+            writeFrame(out, payload);
+        }
+        out.flush();
+        fileOut.getFD().sync();
+    }
+
+    /**
+     * Grava um registro precedido pelo tamanho e pelo CRC32 do conteúdo.
+     */
+    private static void writeFrame(DataOutputStream out, byte[] payload) throws IOException {
+        out.writeInt(payload.length);
+        out.writeInt(checksum(payload));
+        out.write(payload);
+    }
+
+    /**
+     * Lê o conteúdo de um registro gravado por {@link #writeFrame}.
+     *
+     * @return O conteúdo, ou {@code null} se o fluxo terminar ou o tamanho ou o CRC32 forem
+     *         inválidos.
+     */
+    private static byte[] readFrame(DataInputStream in) throws IOException {
+        int length;
+        int checksum;
+        try {
+            length = in.readInt();
+            checksum = in.readInt();
+        } catch (EOFException e) {
+            return null;
+        }
+        if (length < 0 || length > MAX_RECORD_SIZE) {
+            return null;
+        }
+        byte[] payload = new byte[length];
+        try {
+            in.readFully(payload);
+        } catch (EOFException e) {
+            return null;
+        }
+        return checksum(payload) == checksum ? payload : null;
+    }
+
+    private static int checksum(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Codifica um registro: sequência (varlong), código da operação, quantidade de argumentos
+     * (varint) e os argumentos como strings UTF-8 precedidas pelo tamanho.
+     */
+    private static byte[] encode(JournalRecord record) {
+        BinaryWriter data = new BinaryWriter(64);
+        String[] args = record.getArgs();
+
+        data.writeVarLong(record.getSequence());
+        data.writeByte(record.getOperation().getCode());
+        data.writeVarInt(args.length);
+        for (String arg : args) {
+            data.writeString(arg);
+        }
+        return data.toByteArray();
+    }
+
+    /**
+     * Decodifica um registro.
+     *
+     * @return O registro, ou {@code null} se o conteúdo for malformado ou a operação desconhecida.
+     */
+    private static JournalRecord decode(byte[] payload) {
+        try {
+            BinaryReader data = new BinaryReader(payload);
+            long sequence = data.readVarLong();
+            Operation operation = Operation.fromCode(data.readByte());
+            if (operation == null) {
+                return null;
+            }
+
+            String[] args = new String[data.readVarInt()];
+            for (int i = 0; i < args.length; i++) {
+                args[i] = data.readString();
+            }
+            return new JournalRecord(sequence, operation, args);
+        } catch (IOException | RuntimeException e) {
+            // Tamanhos inválidos dentro do conteúdo
+            return null;
+        }
+    }
+}
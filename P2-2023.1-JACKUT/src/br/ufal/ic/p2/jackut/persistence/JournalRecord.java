@@ -0,0 +1,45 @@
+package br.ufal.ic.p2.jackut.persistence;
+
+/**
+ * Registro de uma única mutação gravada no journal.
+ */
+public class JournalRecord {
+    private final long sequence;
+    private final Operation operation;
+    private final String[] args;
+
+    /**
+     * Construtor da classe JournalRecord.
+     *
+     * @param sequence  Número de sequência do registro.
+     * @param operation Operação registrada.
+     * @param args      Argumentos da operação.
+     */
+    public JournalRecord(long sequence, Operation operation, String... args) {
+        this.sequence = sequence;
+        this.operation = operation;
+        this.args = args;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public Operation getOperation() {
+        return operation;
+    }
+
+    /**
+     * Retorna um argumento da operação.
+     *
+     * @param index Posição do argumento.
+     * @return Valor do argumento.
+     */
+    public String arg(int index) {
+        return args[index];
+    }
+
+    public String[] getArgs() {
+        return args.clone();
+    }
+}
@@ -0,0 +1,518 @@
+package br.ufal.ic.p2.jackut.persistence;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.IntConsumer;
+
+/**
+ * Mapa de registros (usuários ou comunidades) apoiado em um {@link RecordIndex} de um snapshot
+ * mapeado em memória.
+ *
+ * Um registro só é decodificado na primeira vez em que é acessado; a partir daí o objeto fica
+ * em memória e passa a ser a versão autoritativa. Registros nunca acessados continuam apenas no
+ * arquivo e são copiados byte a byte para o próximo snapshot. Iterar sobre o mapa materializa
+ * todos os registros.
+ *
+ * Leituras de registros já materializados não usam locks; a materialização, a inserção e a
+ * remoção são serializadas no próprio mapa.
+ *
+ * Para limitar a memória, registros materializados podem ser descartados com
+ * {@link #evict(long, List, BiConsumer)}; o próximo acesso os decodifica de novo. Cada registro
+ * guarda o tamanho que ocupa no snapshot e a última geração em que foi acessado, e o descarte
+ * mantém os acessados mais recentemente. O registro descartado é codificado e comparado com o
+ * que está no snapshot: se for igual, volta a ser lido do snapshot; se foi alterado, é gravado
+ * sozinho no {@link RecordSpill} e lido de lá no próximo acesso, até que o próximo snapshot o
+ * contenha. Assim o descarte custa O(registros descartados), e não a gravação de um snapshot
+ * completo. Sem transbordo, só os registros iguais aos do snapshot podem ser descartados.
+ *
+ * @param <V> Tipo do registro.
+ */
+public class LazyRecordMap<V> extends AbstractMap<String, V> {
+    /**
+     * Função que decodifica um registro lido do snapshot.
+     *
+     * @param <V> Tipo do registro.
+     */
+    public interface Decoder<V> {
+        V decode(String key, BinaryReader in, StringSource strings) throws IOException;
+    }
+
+    /**
+     * Registro materializado, com o tamanho no snapshot e a geração do último acesso.
+     */
+    private static final class Slot<V> {
+        final V value;
+        int bytes;
+        int generation;
+
+        Slot(V value, int bytes) {
+            this.value = value;
+            this.bytes = bytes;
+            this.generation = GENERATION.get();
+        }
+    }
+
+    /**
+     * Posição de um registro no arquivo de transbordo.
+     */
+    private static final class Spilled {
+        final long offset;
+        final int length;
+
+        Spilled(long offset, int length) {
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    /**
+     * Geração atual de acesso, compartilhada por todos os mapas e avançada a cada descarte.
+     */
+    private static final AtomicInteger GENERATION = new AtomicInteger();
+
+    private final Decoder<V> decoder;
+    private final SnapshotCodec.Encoder<V> encoder;
+    private final RecordSpill spill;
+    private final Map<String, Slot<V>> loaded = new ConcurrentHashMap<>();
+    private final Map<String, Spilled> spilled = new HashMap<>();
+    private BitSet touched = new BitSet();
+    private RecordIndex index;
+    private volatile int size;
+    private volatile long loadedBytes;
+
+    /**
+     * Construtor da classe LazyRecordMap.
+     *
+     * @param index   Índice do snapshot, ou {@code null} se ainda não houver snapshot.
+     * @param decoder Função que decodifica os registros.
+     */
+    public LazyRecordMap(RecordIndex index, Decoder<V> decoder) {
+        this(index, decoder, null, null);
+    }
+
+    /**
+     * Construtor da classe LazyRecordMap, com o transbordo dos registros alterados.
+     *
+     * @param index   Índice do snapshot, ou {@code null} se ainda não houver snapshot.
+     * @param decoder Função que decodifica os registros.
+     * @param encoder Função que codifica os registros, ou {@code null} se não houver transbordo.
+     * @param spill   Transbordo dos registros alterados, ou {@code null}.
+     */
+    LazyRecordMap(RecordIndex index, Decoder<V> decoder, SnapshotCodec.Encoder<V> encoder, RecordSpill spill) {
+        this.decoder = decoder;
+        this.encoder = encoder;
+        this.spill = encoder == null ? null : spill;
+        this.index = index;
+        this.size = index == null ? 0 : index.size();
+    }
+
+    @Override
+    public V get(Object key) {
+        if (!(key instanceof String)) {
+            return null;
+        }
+
+        Slot<V> loadedSlot = loaded.get(key);
+        if (loadedSlot != null) {
+            // Só escreve se a geração mudou, para não disputar a linha de cache entre leitores
+            int generation = GENERATION.get();
+            if (loadedSlot.generation != generation) {
+                loadedSlot.generation = generation;
+            }
+            return loadedSlot.value;
+        }
+        return load((String) key);
+    }
+
+    private synchronized V load(String key) {
+        Slot<V> loadedSlot = loaded.get(key);
+        if (loadedSlot != null) {
+            return loadedSlot.value;
+        }
+        Spilled entry = spilled.get(key);
+        if (entry != null) {
+            V value = decodeSpilled(key, entry);
+            loaded.put(key, new Slot<>(value, entry.length));
+            loadedBytes += entry.length;
+            return value;
+        }
+        if (index == null) {
+            return null;
+        }
+
+        // Uma posição já acessada que não está em memória pertence a um registro removido
+        int slot = find(key);
+        if (slot < 0 || touched.get(slot)) {
+            return null;
+        }
+        V value = decode(key, slot);
+        int bytes = index.recordLength(slot);
+        loaded.put(key, new Slot<>(value, bytes));
+        loadedBytes += bytes;
+        touched.set(slot);
+        return value;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        if (!(key instanceof String)) {
+            return false;
+        }
+        if (loaded.containsKey(key)) {
+            return true;
+        }
+        synchronized (this) {
+            if (spilled.containsKey(key)) {
+                return true;
+            }
+            if (index == null) {
+                return loaded.containsKey(key);
+            }
+            int slot = find((String) key);
+            return slot >= 0 && !touched.get(slot) || loaded.containsKey(key);
+        }
+    }
+
+    @Override
+    public synchronized V put(String key, V value) {
+        V previous = get(key);
+        // O tamanho de um registro novo só é conhecido no próximo snapshot
+        Slot<V> replaced = loaded.put(key, new Slot<>(value, 0));
+        if (replaced != null) {
+            loadedBytes -= replaced.bytes;
+        }
+        if (previous == null) {
+            size++;
+        }
+        return previous;
+    }
+
+    @Override
+    public synchronized V remove(Object key) {
+        V previous = get(key);
+        if (previous == null) {
+            return null;
+        }
+        loadedBytes -= loaded.remove(key).bytes;
+        spilled.remove(key);
+        size--;
+        return previous;
+    }
+
+    @Override
+    public synchronized void clear() {
+        loaded.clear();
+        spilled.clear();
+        touched = new BitSet();
+        index = null;
+        size = 0;
+        loadedBytes = 0;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Set<Entry<String, V>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<String, V>> iterator() {
+                loadAll();
+                Iterator<Entry<String, Slot<V>>> iterator = loaded.entrySet().iterator();
+
+                return new Iterator<>() {
+                    private Entry<String, V> current;
+
+                    @Override
+                    public boolean hasNext() {
+                        return iterator.hasNext();
+                    }
+
+                    @Override
+                    public Entry<String, V> next() {
+                        Entry<String, Slot<V>> next = iterator.next();
+                        current = new SimpleImmutableEntry<>(next.getKey(), next.getValue().value);
+                        return current;
+                    }
+
+                    @Override
+                    public void remove() {
+                        LazyRecordMap.this.remove(current.getKey());
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    /**
+     * Retorna o índice do snapshot que apoia o mapa.
+     *
+     * @return O índice, ou {@code null} se não houver snapshot.
+     */
+    public synchronized RecordIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * Percorre os registros já materializados em memória.
+     *
+     * @param action Ação aplicada a cada chave e registro.
+     */
+    public void forEachLoaded(BiConsumer<String, V> action) {
+        loaded.forEach((key, slot) -> action.accept(key, slot.value));
+    }
+
+    /**
+     * Percorre os registros que estão no transbordo e não estão materializados, decodificando
+     * cada um sem mantê-lo em memória.
+     *
+     * @param action Ação aplicada a cada chave e registro.
+     */
+    public synchronized void forEachSpilled(BiConsumer<String, V> action) {
+        spilled.forEach((key, entry) -> {
+            if (!loaded.containsKey(key)) {
+                action.accept(key, decodeSpilled(key, entry));
+            }
+        });
+    }
+
+    /**
+     * Retorna a quantidade de registros no transbordo.
+     *
+     * @return Quantidade de registros.
+     */
+    public synchronized int getSpilledCount() {
+        return spilled.size();
+    }
+
+    /**
+     * Retorna a soma dos tamanhos, no snapshot, dos registros materializados. Registros criados
+     * depois do último snapshot só são contados a partir do próximo.
+     *
+     * @return Tamanho em bytes.
+     */
+    public long getLoadedBytes() {
+        return loadedBytes;
+    }
+
+    /**
+     * Retorna a quantidade de registros materializados em memória.
+     *
+     * @return Quantidade de registros.
+     */
+    public int getLoadedCount() {
+        return loaded.size();
+    }
+
+    /**
+     * Percorre as posições do índice cujos registros nunca foram acessados nem removidos.
+     *
+     * @param action Ação aplicada a cada posição.
+     */
+    public synchronized void forEachUnloaded(IntConsumer action) {
+        if (index == null) {
+            return;
+        }
+        for (int slot = touched.nextClearBit(0); slot < index.capacity(); slot = touched.nextClearBit(slot + 1)) {
+            if (index.isUsed(slot)) {
+                action.accept(slot);
+            }
+        }
+    }
+
+    /**
+     * Percorre os registros que nunca foram acessados nem removidos, decodificando cada um sem
+     * mantê-lo em memória.
+     *
+     * @param action Ação aplicada a cada chave e registro.
+     */
+    public synchronized void forEachUnloadedRecord(BiConsumer<String, V> action) {
+        forEachUnloaded(slot -> {
+            try {
+                String key = index.key(slot);
+                action.accept(key, decode(key, slot));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * Passa a usar o índice de um novo snapshot que contém todos os registros deste mapa.
+     * Os registros já materializados continuam em memória, e os do transbordo passam a ser
+     * lidos do novo snapshot.
+     *
+     * @param newIndex Índice do novo snapshot.
+     */
+    public synchronized void rebase(RecordIndex newIndex) {
+        index = newIndex;
+        spilled.clear();
+        touched = new BitSet(newIndex.capacity());
+        long bytes = 0;
+        for (Map.Entry<String, Slot<V>> entry : loaded.entrySet()) {
+            int slot = find(entry.getKey());
+            if (slot >= 0) {
+                touched.set(slot);
+                entry.getValue().bytes = newIndex.recordLength(slot);
+            }
+            bytes += entry.getValue().bytes;
+        }
+        loadedBytes = bytes;
+    }
+
+    /**
+     * Descarta da memória os registros acessados há mais tempo, considerando vários mapas em
+     * conjunto, até que os materializados ocupem no máximo um limite. Os registros descartados
+     * continuam no mapa e são decodificados de novo, do snapshot ou do transbordo, no próximo
+     * acesso.
+     *
+     * Só pode ser chamado quando nenhuma outra thread guarda referências aos registros. Em um
+     * mapa sem transbordo, também só quando nenhum registro materializado foi alterado desde o
+     * último {@link #rebase(RecordIndex)}.
+     *
+     * @param budget  Limite, em bytes, da soma dos tamanhos no snapshot dos registros mantidos.
+     * @param maps    Mapas considerados.
+     * @param evicted Ação aplicada a cada registro descartado, com o mapa e a chave.
+     * @return Quantidade de registros descartados.
+     * @throws UncheckedIOException Se um registro não puder ser gravado no transbordo. Os
+     *                              registros descartados até então já foram informados.
+     */
+    public static int evict(long budget, List<LazyRecordMap<?>> maps, BiConsumer<LazyRecordMap<?>, String> evicted) {
+        List<Candidate> candidates = new ArrayList<>();
+        for (LazyRecordMap<?> map : maps) {
+            map.forEachSlot((key, slot) -> candidates.add(new Candidate(map, key, slot.generation, slot.bytes)));
+        }
+        candidates.sort(Comparator.comparingInt((Candidate candidate) -> candidate.generation).reversed());
+
+        int count = 0;
+        long kept = 0;
+        for (Candidate candidate : candidates) {
+            if (kept + candidate.bytes <= budget) {
+                kept += candidate.bytes;
+            } else if (candidate.map.unload(candidate.key)) {
+                evicted.accept(candidate.map, candidate.key);
+                count++;
+            }
+        }
+
+        // Os acessos a partir de agora contam como mais recentes que todos os anteriores
+        GENERATION.incrementAndGet();
+        return count;
+    }
+
+    /**
+     * Registro candidato ao descarte.
+     */
+    private static final class Candidate {
+        final LazyRecordMap<?> map;
+        final String key;
+        final int generation;
+        final int bytes;
+
+        Candidate(LazyRecordMap<?> map, String key, int generation, int bytes) {
+            this.map = map;
+            this.key = key;
+            this.generation = generation;
+            this.bytes = bytes;
+        }
+    }
+
+    private synchronized void forEachSlot(BiConsumer<String, Slot<V>> action) {
+        loaded.forEach(action);
+    }
+
+    /**
+     * Descarta da memória um registro materializado. Um registro igual ao do snapshot volta a
+     * ser lido dele; um registro alterado é gravado no transbordo, a menos que já esteja lá
+     * igual.
+     *
+     * @return {@code true} se o registro foi descartado.
+     */
+    private synchronized boolean unload(String key) {
+        Slot<V> current = loaded.get(key);
+        if (current == null) {
+            return false;
+        }
+        int slot = index == null ? -1 : find(key);
+
+        if (spill == null) {
+            // Sem transbordo, o registro é considerado igual ao do snapshot
+            if (slot < 0) {
+                return false;
+            }
+            touched.clear(slot);
+        } else {
+            try {
+                byte[] record = spill.encode(encoder, current.value);
+                Spilled previous = spilled.get(key);
+                if (previous == null && slot >= 0 && ByteBuffer.wrap(record).equals(index.record(slot))) {
+                    touched.clear(slot);
+                } else if (previous == null || !Arrays.equals(record, spill.read(previous.offset, previous.length))) {
+                    spilled.put(key, new Spilled(spill.write(record), record.length));
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        loaded.remove(key);
+        loadedBytes -= current.bytes;
+        return true;
+    }
+
+    private synchronized void loadAll() {
+        spilled.forEach((key, entry) -> {
+            if (!loaded.containsKey(key)) {
+                loaded.put(key, new Slot<>(decodeSpilled(key, entry), entry.length));
+                loadedBytes += entry.length;
+            }
+        });
+        forEachUnloaded(slot -> {
+            try {
+                String key = index.key(slot);
+                int bytes = index.recordLength(slot);
+                loaded.put(key, new Slot<>(decode(key, slot), bytes));
+                loadedBytes += bytes;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            touched.set(slot);
+        });
+    }
+
+    private int find(String key) {
+        try {
+            return index.find(key);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private V decode(String key, int slot) {
+        try {
+            return decoder.decode(key, new BinaryReader(index.record(slot)), index.getSnapshot());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private V decodeSpilled(String key, Spilled entry) {
+        try {
+            return decoder.decode(key, new BinaryReader(spill.read(entry.offset, entry.length)), spill);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
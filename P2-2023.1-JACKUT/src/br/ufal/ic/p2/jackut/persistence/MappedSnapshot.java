@@ -0,0 +1,227 @@
+package br.ufal.ic.p2.jackut.persistence;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Snapshot do sistema Jackut mapeado em memória.
+ *
+ * Abrir um snapshot custa apenas a leitura do cabeçalho: a tabela de strings e os índices de
+ * usuários e comunidades são tabelas hash de largura fixa consultadas diretamente no arquivo
+ * mapeado, e cada registro só é decodificado quando é acessado. O layout é descrito em
+ * {@link SnapshotCodec}.
+ */
+public class MappedSnapshot implements StringSource {
+    static final int MAGIC = 0x4A4B5554;
+    static final int VERSION = 8;
+    static final int HEADER_SIZE = 72;
+    static final int STRING_ENTRY_SIZE = 8;
+
+    private final File file;
+    private final ByteBuffer buffer;
+    private final long sequence;
+    private final int stringCount;
+    private final int stringEntriesOffset;
+    private final int stringHashOffset;
+    private final int stringHashCapacity;
+    private final int stringDataOffset;
+    private final int stringDataLength;
+    private final String[] strings;
+    private final RecordIndex users;
+    private final RecordIndex communities;
+    private final int userIdCount;
+    private final int userIdOffset;
+
+    private MappedSnapshot(File file, ByteBuffer buffer) throws IOException {
+        this.file = file;
+        this.buffer = buffer;
+
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Arquivo de snapshot inválido.");
+        }
+        int version = buffer.getInt(4);
+        if (version != VERSION) {
+            throw new IOException("Versão de snapshot não suportada: " + version);
+        }
+
+        sequence = buffer.getLong(8);
+        stringCount = buffer.getInt(16);
+        stringEntriesOffset = buffer.getInt(20);
+        stringHashOffset = buffer.getInt(24);
+        stringHashCapacity = buffer.getInt(28);
+        stringDataOffset = buffer.getInt(32);
+        stringDataLength = buffer.getInt(36);
+        users = new RecordIndex(this, buffer.getInt(40), buffer.getInt(44), buffer.getInt(48));
+        communities = new RecordIndex(this, buffer.getInt(52), buffer.getInt(56), buffer.getInt(60));
+        userIdCount = buffer.getInt(64);
+        userIdOffset = buffer.getInt(68);
+        strings = new String[stringCount];
+    }
+
+    /**
+     * Mapeia um arquivo de snapshot em memória.
+     *
+     * @param file Arquivo do snapshot.
+     * @return O snapshot mapeado.
+     * @throws IOException Se o arquivo não puder ser mapeado ou não estiver no formato esperado.
+     */
+    public static MappedSnapshot open(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot maior que o tamanho máximo suportado.");
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new MappedSnapshot(file, buffer);
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Retorna a sequência do último registro do journal contido no snapshot.
+     *
+     * @return Número de sequência.
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    public RecordIndex getUsers() {
+        return users;
+    }
+
+    public RecordIndex getCommunities() {
+        return communities;
+    }
+
+    public int getStringCount() {
+        return stringCount;
+    }
+
+    /**
+     * Retorna a quantidade de identificadores de usuário atribuídos até o snapshot.
+     *
+     * @return Próximo identificador livre.
+     */
+    public int getUserIdCount() {
+        return userIdCount;
+    }
+
+    /**
+     * Retorna o índice, na tabela de strings, do login associado a um identificador de usuário.
+     *
+     * @param id Identificador do usuário.
+     * @return Índice do login, ou -1 se a conta foi removida.
+     */
+    public int userLoginIndex(int id) {
+        return buffer.getInt(userIdOffset + id * Integer.BYTES) - 1;
+    }
+
+    /**
+     * Retorna uma string da tabela, decodificando-a no primeiro acesso.
+     *
+     * @param index Índice da string na tabela.
+     * @return A string correspondente.
+     * @throws IOException Se o índice for inválido.
+     */
+    @Override
+    public String string(int index) throws IOException {
+        if (index < 0 || index >= stringCount) {
+            throw new IOException("Referência inválida na tabela de strings: " + index);
+        }
+
+        String value = strings[index];
+        if (value == null) {
+            BinaryReader in = new BinaryReader(slice(stringDataOffset(index), stringDataEnd() - stringDataOffset(index)));
+            value = in.readString();
+            strings[index] = value;
+        }
+        return value;
+    }
+
+    /**
+     * Procura uma string na tabela.
+     *
+     * @param value String procurada.
+     * @return O índice da string, ou -1 se ela não estiver na tabela.
+     * @throws IOException Se a tabela estiver corrompida.
+     */
+    public int findString(String value) throws IOException {
+        if (stringHashCapacity == 0) {
+            return -1;
+        }
+
+        int hash = value.hashCode();
+        int mask = stringHashCapacity - 1;
+        for (int slot = spread(hash) & mask; ; slot = (slot + 1) & mask) {
+            int entry = buffer.getInt(stringHashOffset + slot * Integer.BYTES);
+            if (entry == 0) {
+                return -1;
+            }
+            int index = entry - 1;
+            if (stringHash(index) == hash && string(index).equals(value)) {
+                return index;
+            }
+        }
+    }
+
+    /**
+     * Compara uma chave com uma string da tabela sem decodificá-la quando os hashes diferem.
+     */
+    boolean stringEquals(int index, String value, int hash) throws IOException {
+        return stringHash(index) == hash && string(index).equals(value);
+    }
+
+    int stringHash(int index) {
+        return buffer.getInt(stringEntriesOffset + index * STRING_ENTRY_SIZE);
+    }
+
+    int stringDataOffset(int index) {
+        return buffer.getInt(stringEntriesOffset + index * STRING_ENTRY_SIZE + Integer.BYTES);
+    }
+
+    int stringDataStart() {
+        return stringDataOffset;
+    }
+
+    int stringDataEnd() {
+        return stringDataOffset + stringDataLength;
+    }
+
+    int getInt(int offset) {
+        return buffer.getInt(offset);
+    }
+
+    /**
+     * Retorna uma visão independente de um trecho do arquivo mapeado.
+     */
+    ByteBuffer slice(int offset, int length) {
+        ByteBuffer view = buffer.duplicate();
+        view.position(offset).limit(offset + length);
+        return view.slice();
+    }
+
+    /**
+     * Copia um trecho do arquivo mapeado para um escritor.
+     */
+    void copyTo(BinaryWriter out, int offset, int length) {
+        ByteBuffer view = slice(offset, length);
+        byte[] chunk = new byte[Math.min(length, 64 * 1024)];
+        while (view.hasRemaining()) {
+            int count = Math.min(chunk.length, view.remaining());
+            view.get(chunk, 0, count);
+            out.writeBytes(chunk, 0, count);
+        }
+    }
+
+    static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,54 @@
+package br.ufal.ic.p2.jackut.persistence;
+
+/**
+ * Tipos de operação registrados no journal do sistema Jackut.
+ *
+ * Cada operação possui um código fixo gravado no arquivo, de forma que a ordem das
+ * constantes pode mudar sem invalidar journals já existentes.
+ */
+public enum Operation {
+    CREATE_USER(1),
+    EDIT_PROFILE(2),
+    ADD_FRIEND(3),
+    SEND_MESSAGE(4),
+    SEND_COMMUNITY_MESSAGE(5),
+    READ_MESSAGE(6),
+    CREATE_COMMUNITY(7),
+    JOIN_COMMUNITY(8),
+    ADD_IDOL(9),
+    ADD_CRUSH(10),
+    ADD_ENEMY(11),
+    REMOVE_USER(12),
+    RESET_SYSTEM(13),
+    READ_DIRECT_MESSAGE(14);
+
+    private final int code;
+
+    Operation(int code) {
+        this.code = code;
+    }
+
+    /**
+     * Retorna o código da operação gravado no journal.
+     *
+     * @return Código da operação.
+     */
+    public int getCode() {
+        return code;
+    }
+
+    /**
+     * Obtém a operação correspondente a um código lido do journal.
+     *
+     * @param code Código da operação.
+     * @return A operação correspondente, ou {@code null} se o código for desconhecido.
+     */
+    public static Operation fromCode(int code) {
+        for (Operation operation : values()) {
+            if (operation.code == code) {
+                return operation;
+            }
+        }
+        return null;
+    }
+}
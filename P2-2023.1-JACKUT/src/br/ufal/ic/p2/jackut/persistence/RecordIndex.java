@@ -0,0 +1,121 @@
+package br.ufal.ic.p2.jackut.persistence;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Índice de registros de um {@link MappedSnapshot}, indexado pelo login do usuário ou pelo
+ * nome da comunidade.
+ *
+ * É uma tabela hash de endereçamento aberto gravada no próprio arquivo. Cada posição ocupa
+ * {@value #SLOT_SIZE} bytes: índice da chave na tabela de strings mais um (zero indica posição
+ * vazia), deslocamento e tamanho do registro.
+ */
+public class RecordIndex {
+    static final int SLOT_SIZE = 12;
+
+    private final MappedSnapshot snapshot;
+    private final int count;
+    private final int offset;
+    private final int capacity;
+
+    RecordIndex(MappedSnapshot snapshot, int count, int offset, int capacity) {
+        this.snapshot = snapshot;
+        this.count = count;
+        this.offset = offset;
+        this.capacity = capacity;
+    }
+
+    public MappedSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Retorna a quantidade de registros do índice.
+     *
+     * @return Quantidade de registros.
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Retorna a quantidade de posições da tabela hash, ocupadas ou não.
+     *
+     * @return Capacidade da tabela.
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Procura a posição do registro de uma chave.
+     *
+     * @param key Login ou nome da comunidade.
+     * @return A posição do registro, ou -1 se a chave não estiver no índice.
+     * @throws IOException Se o índice estiver corrompido.
+     */
+    public int find(String key) throws IOException {
+        if (capacity == 0) {
+            return -1;
+        }
+
+        int hash = key.hashCode();
+        int mask = capacity - 1;
+        for (int slot = MappedSnapshot.spread(hash) & mask; ; slot = (slot + 1) & mask) {
+            int entry = snapshot.getInt(slotOffset(slot));
+            if (entry == 0) {
+                return -1;
+            }
+            if (snapshot.stringEquals(entry - 1, key, hash)) {
+                return slot;
+            }
+        }
+    }
+
+    /**
+     * Verifica se uma posição da tabela está ocupada.
+     *
+     * @param slot Posição na tabela.
+     * @return {@code true} se a posição contiver um registro.
+     */
+    public boolean isUsed(int slot) {
+        return snapshot.getInt(slotOffset(slot)) != 0;
+    }
+
+    /**
+     * Retorna o índice, na tabela de strings, da chave de uma posição ocupada.
+     *
+     * @param slot Posição na tabela.
+     * @return Índice da chave.
+     */
+    public int keyIndex(int slot) {
+        return snapshot.getInt(slotOffset(slot)) - 1;
+    }
+
+    public String key(int slot) throws IOException {
+        return snapshot.string(keyIndex(slot));
+    }
+
+    int recordOffset(int slot) {
+        return snapshot.getInt(slotOffset(slot) + Integer.BYTES);
+    }
+
+    int recordLength(int slot) {
+        return snapshot.getInt(slotOffset(slot) + 2 * Integer.BYTES);
+    }
+
+    /**
+     * Retorna os bytes do registro de uma posição ocupada.
+     *
+     * @param slot Posição na tabela.
+     * @return Visão somente leitura do registro.
+     */
+    public ByteBuffer record(int slot) {
+        return snapshot.slice(recordOffset(slot), recordLength(slot));
+    }
+
+    private int slotOffset(int slot) {
+        return offset + slot * SLOT_SIZE;
+    }
+}
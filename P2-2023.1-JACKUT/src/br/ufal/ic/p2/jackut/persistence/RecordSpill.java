@@ -0,0 +1,99 @@
+package br.ufal.ic.p2.jackut.persistence;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/**
+ * Arquivo de transbordo dos usuários e comunidades alterados desde o último snapshot.
+ *
+ * Quando os registros em memória passam do limite, o {@link LazyRecordMap} descarta os acessados
+ * há mais tempo. Um registro igual ao do snapshot é só descartado; um registro alterado é
+ * codificado e acrescentado a este arquivo, de onde é lido de volta no próximo acesso, sem que
+ * seja preciso gravar um snapshot completo para descartá-lo. Os registros referenciam logins e
+ * nomes de comunidades pela tabela de strings do snapshot atual, estendida em memória com as
+ * strings que ainda não estão nele.
+ *
+ * O arquivo não é sincronizado com o disco e não é lido em uma nova inicialização: todas as
+ * alterações também estão no journal, que é reaplicado sobre o snapshot. Ele é esvaziado por
+ * {@link #reset(MappedSnapshot)} sempre que um novo snapshot passa a conter os registros
+ * transbordados.
+ */
+public final class RecordSpill implements StringSource {
+    private final File file;
+    private SnapshotCodec.StringTable strings;
+    private long size;
+
+    /**
+     * Construtor da classe RecordSpill. Um arquivo deixado por uma execução anterior é apagado.
+     *
+     * @param file     Arquivo de transbordo.
+     * @param snapshot Snapshot atual, ou {@code null} se ainda não houver snapshot.
+     */
+    public RecordSpill(File file, MappedSnapshot snapshot) {
+        this.file = file;
+        reset(snapshot);
+    }
+
+    /**
+     * Esvazia o arquivo e passa a referenciar a tabela de strings de um novo snapshot. Deve ser
+     * chamado depois que os mapas que usam o transbordo tiverem passado a usar esse snapshot.
+     *
+     * @param snapshot Snapshot atual, ou {@code null} se não houver snapshot.
+     */
+    public synchronized void reset(MappedSnapshot snapshot) {
+        strings = new SnapshotCodec.StringTable(snapshot);
+        size = 0;
+        file.delete();
+    }
+
+    /**
+     * Retorna o tamanho ocupado pelos registros transbordados desde o último snapshot.
+     *
+     * @return Tamanho em bytes.
+     */
+    public synchronized long size() {
+        return size;
+    }
+
+    @Override
+    public synchronized String string(int index) throws IOException {
+        return strings.string(index);
+    }
+
+    /**
+     * Codifica um registro com as referências da tabela de strings atual.
+     */
+    synchronized <V> byte[] encode(SnapshotCodec.Encoder<V> encoder, V value) {
+        BinaryWriter out = new BinaryWriter(256);
+        encoder.encode(out, strings, value);
+        return out.toByteArray();
+    }
+
+    /**
+     * Acrescenta um registro codificado ao fim do arquivo.
+     *
+     * @return Posição do registro no arquivo.
+     */
+    synchronized long write(byte[] record) throws IOException {
+        try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+            out.seek(size);
+            out.write(record);
+        }
+        long offset = size;
+        size += record.length;
+        return offset;
+    }
+
+    /**
+     * Lê um registro gravado por {@link #write(byte[])}.
+     */
+    synchronized byte[] read(long offset, int length) throws IOException {
+        byte[] record = new byte[length];
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            in.seek(offset);
+            in.readFully(record);
+        }
+        return record;
+    }
+}
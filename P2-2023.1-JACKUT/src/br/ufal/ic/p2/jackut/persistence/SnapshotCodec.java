@@ -0,0 +1,548 @@
+package br.ufal.ic.p2.jackut.persistence;
+
+import br.ufal.ic.p2.jackut.Community;
+import br.ufal.ic.p2.jackut.CommunityFactory;
+import br.ufal.ic.p2.jackut.Inbox;
+import br.ufal.ic.p2.jackut.Message;
+import br.ufal.ic.p2.jackut.UserFactory;
+import br.ufal.ic.p2.jackut.Users;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Codificador e decodificador do formato binário de snapshot do sistema Jackut.
+ *
+ * Layout da versão 8 (inteiros de tamanho fixo em big-endian, deslocamentos absolutos):
+ * <pre>
+ * cabeçalho (72 bytes): magic "JKUT", versão, sequência do journal, e a quantidade,
+ *     o deslocamento e a capacidade de cada região abaixo
+ * entradas da tabela de strings: (hash, deslocamento do dado) por string
+ * hash da tabela de strings: índice + 1 por posição
+ * índice de usuários: (índice do login + 1, deslocamento, tamanho) por posição
+ * índice de comunidades: (índice do nome + 1, deslocamento, tamanho) por posição
+ * logins dos usuários: índice do login + 1 por identificador de usuário
+ * dados da tabela de strings: strings UTF-8 precedidas pelo tamanho (varint)
+ * registros de usuários e comunidades
+ * </pre>
+ * Dentro dos registros, inteiros são varints, textos são UTF-8 precedidos pelo tamanho e
+ * logins e nomes de comunidades são referenciados pelo índice na tabela de strings. Os
+ * relacionamentos entre usuários guardam o identificador numérico do outro usuário. Os recados
+ * que um usuário mantém em disco ficam no seu segmento do {@link InboxStore}; o registro guarda só
+ * os recados em memória e o trecho não lido do segmento.
+ *
+ * Ao gravar um snapshot a partir de um anterior, a tabela de strings anterior é mantida como
+ * prefixo da nova, de forma que os registros nunca acessados podem ser copiados sem
+ * decodificação. Como os logins de contas removidas e os nomes de comunidades removidas
+ * continuariam nesse prefixo para sempre, a tabela é reconstruída só com as strings em uso
+ * quando mais da metade da anterior pode não ser mais referenciada; nesse caso todos os registros
+ * são codificados de novo, e os nunca acessados são decodificados sem serem mantidos em memória.
+ * Os índices hash são carregados por {@link MappedSnapshot}.
+ */
+public class SnapshotCodec {
+    /**
+     * Razão máxima entre o tamanho da tabela de strings anterior e a quantidade de usuários e
+     * comunidades, que limita as strings em uso, antes que a tabela seja reconstruída.
+     */
+    private static final int STRING_TABLE_SLACK = 2;
+
+    private SnapshotCodec() {
+    }
+
+    /**
+     * Cria o mapa de usuários apoiado em um snapshot.
+     *
+     * @param snapshot Snapshot mapeado, ou {@code null} se ainda não houver snapshot.
+     * @param inboxes  Segmentos das caixas de entrada, ou {@code null} para manter todos os
+     *                 recados em memória.
+     * @param spill    Transbordo dos usuários alterados descartados da memória, ou {@code null}
+     *                 para só descartar usuários iguais aos do snapshot.
+     * @return Mapa de usuários, decodificados sob demanda.
+     */
+    public static LazyRecordMap<Users> users(MappedSnapshot snapshot, InboxStore inboxes, RecordSpill spill) {
+        return new LazyRecordMap<>(snapshot == null ? null : snapshot.getUsers(),
+                (login, in, strings) -> decodeUser(login, in, strings, inboxes), SnapshotCodec::encodeUser, spill);
+    }
+
+    /**
+     * Cria o mapa de comunidades apoiado em um snapshot.
+     *
+     * @param snapshot Snapshot mapeado, ou {@code null} se ainda não houver snapshot.
+     * @param spill    Transbordo das comunidades alteradas descartadas da memória, ou
+     *                 {@code null} para só descartar comunidades iguais às do snapshot.
+     * @return Mapa de comunidades, decodificadas sob demanda.
+     */
+    public static LazyRecordMap<Community> communities(MappedSnapshot snapshot, RecordSpill spill) {
+        return new LazyRecordMap<>(snapshot == null ? null : snapshot.getCommunities(),
+                SnapshotCodec::decodeCommunity, SnapshotCodec::encodeCommunity, spill);
+    }
+
+    /**
+     * Grava o estado do sistema em um arquivo de snapshot, sincronizado com o disco antes de
+     * retornar.
+     *
+     * A tabela de strings de {@code previous} é reaproveitada como prefixo, a menos que mais da
+     * metade dela possa estar sem uso.
+     *
+     * @param file        Arquivo de destino.
+     * @param sequence    Sequência do último registro do journal contido no snapshot.
+     * @param users       Usuários do sistema.
+     * @param communities Comunidades do sistema.
+     * @param directory   Identificadores dos usuários.
+     * @param previous    Snapshot que apoia os mapas, ou {@code null} para gravar tudo do zero.
+     * @throws IOException Se ocorrer um erro de escrita.
+     */
+    public static void write(File file, long sequence, Map<String, Users> users,
+                             Map<String, Community> communities, UserDirectory directory,
+                             MappedSnapshot previous) throws IOException {
+        long live = (long) users.size() + communities.size();
+        boolean compact = previous != null && previous.getStringCount() > STRING_TABLE_SLACK * live;
+        StringTable table = new StringTable(compact ? null : previous);
+        BinaryWriter records = new BinaryWriter(64 * 1024);
+
+        List<int[]> userEntries = writeRecords(records, table, users, previous, SnapshotCodec::encodeUser);
+        List<int[]> communityEntries = writeRecords(records, table, communities, previous,
+                SnapshotCodec::encodeCommunity);
+
+        int userIdCount = directory.size();
+        int[] userLogins = new int[userIdCount];
+        for (int id = 0; id < userIdCount; id++) {
+            int login = directory.snapshotLoginIndex(id, table.previous);
+            if (login < 0) {
+                String value = directory.login(id);
+                // Snapshots anteriores mantêm os logins das contas removidas
+                if (value != null && compact && !users.containsKey(value)) {
+                    directory.release(id);
+                    value = null;
+                }
+                login = value == null ? -1 : table.ref(value);
+            }
+            userLogins[id] = login;
+        }
+
+        BinaryWriter stringData = new BinaryWriter(16 * 1024);
+        int previousDataStart = 0;
+        if (table.base > 0) {
+            previousDataStart = previous.stringDataStart();
+            previous.copyTo(stringData, previousDataStart, previous.stringDataEnd() - previousDataStart);
+        }
+        int[] newDataOffsets = new int[table.strings.size()];
+        for (int i = 0; i < newDataOffsets.length; i++) {
+            newDataOffsets[i] = stringData.size();
+            stringData.writeString(table.strings.get(i));
+        }
+
+        int stringCount = table.base + table.strings.size();
+        int stringHashCapacity = capacityFor(stringCount);
+        int userCapacity = capacityFor(userEntries.size());
+        int communityCapacity = capacityFor(communityEntries.size());
+
+        int stringEntriesOffset = MappedSnapshot.HEADER_SIZE;
+        int stringHashOffset = stringEntriesOffset + stringCount * MappedSnapshot.STRING_ENTRY_SIZE;
+        int userIndexOffset = stringHashOffset + stringHashCapacity * Integer.BYTES;
+        int communityIndexOffset = userIndexOffset + userCapacity * RecordIndex.SLOT_SIZE;
+        int userIdOffset = communityIndexOffset + communityCapacity * RecordIndex.SLOT_SIZE;
+        int stringDataOffset = userIdOffset + userIdCount * Integer.BYTES;
+        long recordsOffset = (long) stringDataOffset + stringData.size();
+        if (recordsOffset + records.size() > Integer.MAX_VALUE) {
+            throw new IOException("Snapshot maior que o tamanho máximo suportado.");
+        }
+
+        BinaryWriter index = new BinaryWriter(stringDataOffset);
+        index.writeFixedInt(MappedSnapshot.MAGIC);
+        index.writeFixedInt(MappedSnapshot.VERSION);
+        index.writeFixedLong(sequence);
+        index.writeFixedInt(stringCount);
+        index.writeFixedInt(stringEntriesOffset);
+        index.writeFixedInt(stringHashOffset);
+        index.writeFixedInt(stringHashCapacity);
+        index.writeFixedInt(stringDataOffset);
+        index.writeFixedInt(stringData.size());
+        index.writeFixedInt(userEntries.size());
+        index.writeFixedInt(userIndexOffset);
+        index.writeFixedInt(userCapacity);
+        index.writeFixedInt(communityEntries.size());
+        index.writeFixedInt(communityIndexOffset);
+        index.writeFixedInt(communityCapacity);
+        index.writeFixedInt(userIdCount);
+        index.writeFixedInt(userIdOffset);
+
+        int[] hashes = new int[stringCount];
+        for (int i = 0; i < table.base; i++) {
+            hashes[i] = previous.stringHash(i);
+            index.writeFixedInt(hashes[i]);
+            index.writeFixedInt(stringDataOffset + previous.stringDataOffset(i) - previousDataStart);
+        }
+        for (int i = 0; i < table.strings.size(); i++) {
+            hashes[table.base + i] = table.strings.get(i).hashCode();
+            index.writeFixedInt(hashes[table.base + i]);
+            index.writeFixedInt(stringDataOffset + newDataOffsets[i]);
+        }
+
+        int[] stringSlots = new int[stringHashCapacity];
+        for (int i = 0; i < stringCount; i++) {
+            stringSlots[freeSlot(stringSlots, hashes[i])] = i + 1;
+        }
+        for (int slot : stringSlots) {
+            index.writeFixedInt(slot);
+        }
+
+        writeIndex(index, userEntries, userCapacity, hashes, (int) recordsOffset);
+        writeIndex(index, communityEntries, communityCapacity, hashes, (int) recordsOffset);
+        for (int login : userLogins) {
+            index.writeFixedInt(login + 1);
+        }
+
+        try (FileOutputStream fileOut = new FileOutputStream(file);
+             OutputStream out = new BufferedOutputStream(fileOut, 64 * 1024)) {
+            index.writeTo(out);
+            stringData.writeTo(out);
+            records.writeTo(out);
+            out.flush();
+            fileOut.getChannel().force(true);
+        }
+    }
+
+    /**
+     * Escreve os registros de um mapa. Registros nunca materializados de um mapa apoiado no
+     * snapshot anterior são copiados sem decodificação, ou decodificados e codificados de novo
+     * se a tabela de strings estiver sendo reconstruída; os demais, inclusive os que estão no
+     * transbordo, são codificados.
+     *
+     * @return Entradas (índice da chave, deslocamento relativo, tamanho) dos registros escritos.
+     */
+    @SuppressWarnings("unchecked")
+    private static <V> List<int[]> writeRecords(BinaryWriter out, StringTable table, Map<String, V> map,
+                                                MappedSnapshot previous, Encoder<V> encoder) {
+        List<int[]> entries = new ArrayList<>(map.size());
+
+        if (map instanceof LazyRecordMap && previous != null
+                && ((LazyRecordMap<V>) map).getIndex() != null
+                && ((LazyRecordMap<V>) map).getIndex().getSnapshot() == previous) {
+            LazyRecordMap<V> lazy = (LazyRecordMap<V>) map;
+            RecordIndex source = lazy.getIndex();
+
+            if (table.previous == previous) {
+                lazy.forEachUnloaded(slot -> {
+                    int start = out.size();
+                    previous.copyTo(out, source.recordOffset(slot), source.recordLength(slot));
+                    entries.add(new int[]{source.keyIndex(slot), start, out.size() - start});
+                });
+            } else {
+                lazy.forEachUnloadedRecord((key, value) -> entries.add(encode(out, table, key, value, encoder)));
+            }
+            lazy.forEachLoaded((key, value) -> entries.add(encode(out, table, key, value, encoder)));
+            lazy.forEachSpilled((key, value) -> entries.add(encode(out, table, key, value, encoder)));
+        } else {
+            for (Map.Entry<String, V> entry : map.entrySet()) {
+                entries.add(encode(out, table, entry.getKey(), entry.getValue(), encoder));
+            }
+        }
+        return entries;
+    }
+
+    private static <V> int[] encode(BinaryWriter out, StringTable table, String key, V value, Encoder<V> encoder) {
+        int start = out.size();
+        encoder.encode(out, table, value);
+        return new int[]{table.ref(key), start, out.size() - start};
+    }
+
+    private static void writeIndex(BinaryWriter out, List<int[]> entries, int capacity, int[] hashes,
+                                   int recordsOffset) {
+        int[] slots = new int[capacity];
+        for (int i = 0; i < entries.size(); i++) {
+            slots[freeSlot(slots, hashes[entries.get(i)[0]])] = i + 1;
+        }
+
+        for (int slot : slots) {
+            if (slot == 0) {
+                out.writeFixedInt(0);
+                out.writeFixedInt(0);
+                out.writeFixedInt(0);
+            } else {
+                int[] entry = entries.get(slot - 1);
+                out.writeFixedInt(entry[0] + 1);
+                out.writeFixedInt(recordsOffset + entry[1]);
+                out.writeFixedInt(entry[2]);
+            }
+        }
+    }
+
+    private static int freeSlot(int[] slots, int hash) {
+        int mask = slots.length - 1;
+        int slot = MappedSnapshot.spread(hash) & mask;
+        while (slots[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Calcula a capacidade da tabela hash: a menor potência de dois com ocupação de no máximo 50%.
+     */
+    private static int capacityFor(int count) {
+        if (count == 0) {
+            return 0;
+        }
+        return Integer.highestOneBit(Math.max(1, count * 2 - 1)) << 1;
+    }
+
+    private static void encodeUser(BinaryWriter out, StringTable table, Users user) {
+        out.writeVarInt(user.getId());
+        out.writeString(user.getPassword());
+        out.writeString(user.getName());
+
+        Map<String, String> attributes = user.getAttributes();
+        out.writeVarInt(attributes.size());
+        for (Map.Entry<String, String> attribute : attributes.entrySet()) {
+            out.writeString(attribute.getKey());
+            out.writeString(attribute.getValue());
+        }
+
+        writeIds(out, user.getFriends());
+        writeIds(out, user.getPendingFriendRequests());
+        writeRefs(out, table, user.getCommunities());
+        writeIds(out, user.getIdols());
+        writeIds(out, user.getCrushes());
+        writeIds(out, user.getEnemies());
+        writeIds(out, user.getSentFriendRequests());
+        writeIds(out, user.getFans());
+        writeIds(out, user.getCrushedBy());
+        writeIds(out, user.getEnemyOf());
+        writeRefs(out, table, user.getOwnedCommunities());
+        Inbox inbox = user.getInbox();
+        writeMessages(out, inbox.getHead());
+        out.writeVarInt(inbox.getGeneration());
+        out.writeVarLong(inbox.getReadOffset());
+        out.writeVarLong(inbox.getSpilledEnd());
+        writeIds(out, inbox.getPurgedSenders());
+        writeMessages(out, inbox.getTail());
+        writeIds(out, user.getMessagedUsers());
+        writeRefs(out, table, user.getUnreadCommunities());
+    }
+
+    private static Users decodeUser(String login, BinaryReader in, StringSource strings, InboxStore inboxes)
+            throws IOException {
+        int id = in.readVarInt();
+        String password = in.readString();
+        String name = in.readString();
+        Users user = UserFactory.createUser(id, login, password, name);
+
+        int attributeCount = in.readVarInt();
+        for (int i = 0; i < attributeCount; i++) {
+            user.setAttribute(in.readString(), in.readString());
+        }
+
+        for (int friend : readIds(in)) {
+            user.addFriend(friend);
+        }
+        for (int requester : readIds(in)) {
+            user.addFriendRequest(requester);
+        }
+        for (String community : readRefs(in, strings)) {
+            user.addCommunity(community);
+        }
+        for (int idol : readIds(in)) {
+            user.addIdol(idol);
+        }
+        for (int crush : readIds(in)) {
+            user.addCrush(crush);
+        }
+        for (int enemy : readIds(in)) {
+            user.addEnemy(enemy);
+        }
+        for (int requested : readIds(in)) {
+            user.addSentFriendRequest(requested);
+        }
+        for (int fan : readIds(in)) {
+            user.addFan(fan);
+        }
+        for (int admirer : readIds(in)) {
+            user.addCrushedBy(admirer);
+        }
+        for (int rival : readIds(in)) {
+            user.addEnemyOf(rival);
+        }
+        for (String community : readRefs(in, strings)) {
+            user.addOwnedCommunity(community);
+        }
+        List<Message> head = readMessages(in);
+        int generation = in.readVarInt();
+        long readOffset = in.readVarLong();
+        long spilledEnd = in.readVarLong();
+        int[] purgedSenders = readIds(in);
+        user.getInbox().restore(head, generation, readOffset, spilledEnd, purgedSenders, readMessages(in));
+        if (inboxes != null) {
+            user.attachInbox(inboxes);
+        }
+        for (int recipient : readIds(in)) {
+            user.addMessagedUser(recipient);
+        }
+        for (String community : readRefs(in, strings)) {
+            user.markUnread(community);
+        }
+        return user;
+    }
+
+    private static void encodeCommunity(BinaryWriter out, StringTable table, Community community) {
+        out.writeString(community.getDescription());
+        out.writeVarInt(table.ref(community.getOwner()));
+
+        // Só as mensagens que algum membro ainda não leu, seguidas do cursor de cada membro
+        long start = community.getOldestUnread();
+        long end = community.getLogEnd();
+        out.writeVarLong(start);
+        out.writeVarInt((int) (end - start));
+        for (long position = start; position < end; position++) {
+            out.writeString(community.getLoggedMessage(position));
+        }
+
+        Set<String> members = community.getMembers();
+        writeRefs(out, table, members);
+        for (String member : members) {
+            out.writeVarLong(community.getCursor(member) - start);
+        }
+
+        // Lista de membros notificados na caixa de entrada, que não existem mais
+        writeRefs(out, table, Collections.emptyList());
+    }
+
+    private static Community decodeCommunity(String name, BinaryReader in, StringSource strings)
+            throws IOException {
+        String description = in.readString();
+        String owner = strings.string(in.readVarInt());
+        Community community = CommunityFactory.createCommunity(name, description, owner);
+
+        long start = in.readVarLong();
+        community.restoreLog(start, readStrings(in));
+
+        for (String member : readRefs(in, strings)) {
+            community.restoreMember(member, start + in.readVarLong());
+        }
+
+        // Snapshots anteriores listam os membros que recebiam as mensagens na caixa de entrada
+        readRefs(in, strings);
+        return community;
+    }
+
+    private static void writeMessages(BinaryWriter out, List<Message> messages) {
+        out.writeVarInt(messages.size());
+        for (Message message : messages) {
+            out.writeVarInt(message.getSenderId() + 1);
+            out.writeString(message.getBody());
+        }
+    }
+
+    private static List<Message> readMessages(BinaryReader in) throws IOException {
+        int count = in.readVarInt();
+        List<Message> messages = new ArrayList<>(Math.min(count, 1024));
+        for (int i = 0; i < count; i++) {
+            int senderId = in.readVarInt() - 1;
+            messages.add(new Message(senderId, in.readString()));
+        }
+        return messages;
+    }
+
+    private static void writeRefs(BinaryWriter out, StringTable table, Collection<String> values) {
+        out.writeVarInt(values.size());
+        for (String value : values) {
+            out.writeVarInt(table.ref(value));
+        }
+    }
+
+    private static List<String> readRefs(BinaryReader in, StringSource strings) throws IOException {
+        int count = in.readVarInt();
+        List<String> values = new ArrayList<>(Math.min(count, 1024));
+        for (int i = 0; i < count; i++) {
+            values.add(strings.string(in.readVarInt()));
+        }
+        return values;
+    }
+
+    private static void writeIds(BinaryWriter out, int[] ids) {
+        out.writeVarInt(ids.length);
+        for (int id : ids) {
+            out.writeVarInt(id);
+        }
+    }
+
+    private static int[] readIds(BinaryReader in) throws IOException {
+        int count = in.readVarInt();
+        if (count < 0 || count > in.remaining()) {
+            throw new IOException("Quantidade inválida de identificadores: " + count);
+        }
+        int[] ids = new int[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = in.readVarInt();
+        }
+        return ids;
+    }
+
+    private static List<String> readStrings(BinaryReader in) throws IOException {
+        int count = in.readVarInt();
+        List<String> values = new ArrayList<>(Math.min(count, 1024));
+        for (int i = 0; i < count; i++) {
+            values.add(in.readString());
+        }
+        return values;
+    }
+
+    /**
+     * Função que codifica um registro.
+     */
+    interface Encoder<V> {
+        void encode(BinaryWriter out, StringTable table, V value);
+    }
+
+    /**
+     * Tabela de strings de um snapshot em construção, ou do {@link RecordSpill}. As strings do
+     * snapshot anterior são mantidas, com os mesmos índices, e as novas são acrescentadas depois
+     * delas.
+     */
+    static class StringTable implements StringSource {
+        private final MappedSnapshot previous;
+        private final int base;
+        private final Map<String, Integer> indexes = new HashMap<>();
+        private final List<String> strings = new ArrayList<>();
+
+        StringTable(MappedSnapshot previous) {
+            this.previous = previous;
+            this.base = previous == null ? 0 : previous.getStringCount();
+        }
+
+        int ref(String value) {
+            Integer index = indexes.get(value);
+            if (index != null) {
+                return index;
+            }
+
+            if (previous != null) {
+                try {
+                    int existing = previous.findString(value);
+                    if (existing >= 0) {
+                        indexes.put(value, existing);
+                        return existing;
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+
+            index = base + strings.size();
+            indexes.put(value, index);
+            strings.add(value);
+            return index;
+        }
+
+        @Override
+        public String string(int index) throws IOException {
+            if (index < base) {
+                return previous.string(index);
+            }
+            if (index - base >= strings.size()) {
+                throw new IOException("Referência inválida na tabela de strings: " + index);
+            }
+            return strings.get(index - base);
+        }
+    }
+}
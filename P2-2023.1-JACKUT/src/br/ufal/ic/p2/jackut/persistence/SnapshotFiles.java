@@ -0,0 +1,61 @@
+package br.ufal.ic.p2.jackut.persistence;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Arquivos de um snapshot abertos para envio a outro processo: o próprio snapshot e os segmentos
+ * das caixas de entrada para os quais ele aponta.
+ *
+ * Os arquivos são abertos juntos, com o sistema bloqueado, de forma que continuam legíveis mesmo
+ * que um segmento seja apagado antes do fim do envio. Um segmento pode crescer depois de aberto;
+ * só os bytes existentes na abertura pertencem ao snapshot.
+ */
+public final class SnapshotFiles implements Closeable {
+    private final FileInputStream snapshot;
+    private final Map<String, FileInputStream> segments = new LinkedHashMap<>();
+
+    /**
+     * Construtor da classe SnapshotFiles. Abre o snapshot e todos os segmentos existentes.
+     *
+     * @param snapshotFile Arquivo do snapshot.
+     * @param inboxes      Segmentos das caixas de entrada.
+     * @throws IOException Se algum arquivo não puder ser aberto.
+     */
+    public SnapshotFiles(File snapshotFile, InboxStore inboxes) throws IOException {
+        snapshot = new FileInputStream(snapshotFile);
+        try {
+            for (File segment : inboxes.list()) {
+                segments.put(segment.getName(), new FileInputStream(segment));
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    public FileInputStream getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Retorna os segmentos das caixas de entrada.
+     *
+     * @return Conteúdo de cada segmento, pelo nome do arquivo.
+     */
+    public Map<String, FileInputStream> getSegments() {
+        return segments;
+    }
+
+    @Override
+    public void close() throws IOException {
+        snapshot.close();
+        for (FileInputStream segment : segments.values()) {
+            segment.close();
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package br.ufal.ic.p2.jackut.persistence;
+
+import java.io.IOException;
+
+/**
+ * Tabela de strings referenciadas pelos registros codificados: logins e nomes de comunidades
+ * são gravados como o índice da string na tabela.
+ */
+public interface StringSource {
+    /**
+     * Retorna a string de um índice da tabela.
+     *
+     * @param index Índice da string.
+     * @return A string correspondente.
+     * @throws IOException Se o índice for inválido.
+     */
+    String string(int index) throws IOException;
+}
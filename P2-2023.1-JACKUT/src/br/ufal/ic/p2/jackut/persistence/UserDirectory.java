@@ -0,0 +1,141 @@
+package br.ufal.ic.p2.jackut.persistence;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Tabela que associa os identificadores numéricos dos usuários aos seus logins.
+ *
+ * Os identificadores são densos e atribuídos em ordem crescente na criação das contas. Um
+ * identificador nunca é reaproveitado, nem depois da remoção da conta, para que uma conta nova
+ * com o mesmo login não seja confundida com a antiga; o login de uma conta removida, porém, é
+ * esquecido, para que não fique na tabela de strings dos próximos snapshots. Os logins de
+ * usuários gravados no snapshot são lidos da tabela mapeada no primeiro acesso.
+ */
+public class UserDirectory {
+    private MappedSnapshot snapshot;
+    private String[] logins;
+    private BitSet released = new BitSet();
+    private int count;
+
+    /**
+     * Construtor da classe UserDirectory.
+     *
+     * @param snapshot Snapshot mapeado, ou {@code null} se ainda não houver snapshot.
+     */
+    public UserDirectory(MappedSnapshot snapshot) {
+        this.snapshot = snapshot;
+        this.count = snapshot == null ? 0 : snapshot.getUserIdCount();
+        this.logins = new String[Math.max(16, count)];
+    }
+
+    /**
+     * Reserva o próximo identificador para um novo usuário.
+     *
+     * @param login Login do novo usuário.
+     * @return Identificador atribuído.
+     */
+    public synchronized int register(String login) {
+        register(count, login);
+        return count - 1;
+    }
+
+    /**
+     * Associa um identificador já atribuído a um login, ao reaplicar o journal.
+     *
+     * @param id    Identificador do usuário.
+     * @param login Login do usuário.
+     */
+    public synchronized void register(int id, String login) {
+        if (id >= logins.length) {
+            logins = Arrays.copyOf(logins, Math.max(logins.length * 2, id + 1));
+        }
+        logins[id] = login;
+        count = Math.max(count, id + 1);
+    }
+
+    /**
+     * Esquece o login de uma conta removida. O identificador continua atribuído.
+     *
+     * @param id Identificador do usuário.
+     */
+    public synchronized void release(int id) {
+        logins[id] = null;
+        released.set(id);
+    }
+
+    /**
+     * Retorna o login associado a um identificador.
+     *
+     * @param id Identificador do usuário.
+     * @return Login do usuário, ou {@code null} se a conta foi removida.
+     */
+    public synchronized String login(int id) {
+        if (id < 0 || id >= count) {
+            throw new IllegalArgumentException("Identificador de usuário inválido: " + id);
+        }
+
+        String login = logins[id];
+        if (login == null && !released.get(id)) {
+            int index = snapshot.userLoginIndex(id);
+            if (index < 0) {
+                released.set(id);
+                return null;
+            }
+            try {
+                login = snapshot.string(index);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            logins[id] = login;
+        }
+        return login;
+    }
+
+    /**
+     * Retorna a quantidade de identificadores já atribuídos.
+     *
+     * @return Próximo identificador livre.
+     */
+    public synchronized int size() {
+        return count;
+    }
+
+    /**
+     * Descarta todos os identificadores, recomeçando a contagem do zero.
+     */
+    public synchronized void clear() {
+        snapshot = null;
+        logins = new String[16];
+        released = new BitSet();
+        count = 0;
+    }
+
+    /**
+     * Passa a usar a tabela de um novo snapshot que contém todos os identificadores atribuídos.
+     *
+     * @param newSnapshot Novo snapshot.
+     */
+    public synchronized void rebase(MappedSnapshot newSnapshot) {
+        snapshot = newSnapshot;
+    }
+
+    /**
+     * Retorna, para gravação de um novo snapshot, o índice do login de um identificador na tabela
+     * de strings do snapshot que apoia o diretório, sem decodificá-lo.
+     *
+     * @param id     Identificador do usuário.
+     * @param source Snapshot cuja tabela de strings será usada como prefixo do novo, ou
+     *               {@code null} se a tabela for reconstruída.
+     * @return O índice, ou -1 se o login não estiver na tabela de {@code source} ou se a conta
+     *         foi removida.
+     */
+    synchronized int snapshotLoginIndex(int id, MappedSnapshot source) {
+        if (logins[id] != null || released.get(id) || source == null || snapshot != source) {
+            return -1;
+        }
+        return snapshot.userLoginIndex(id);
+    }
+}
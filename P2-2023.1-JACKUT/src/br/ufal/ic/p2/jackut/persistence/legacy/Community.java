@@ -0,0 +1,46 @@
+package br.ufal.ic.p2.jackut.persistence.legacy;
+
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * Comunidade no formato antigo, lida por {@link LegacySnapshot}. Tem o mesmo nome simples, os
+ * mesmos campos e o mesmo {@code serialVersionUID} da classe gravada. Cada membro tem a sua
+ * própria fila com as mensagens ainda não lidas, já formatadas.
+ */
+public final class Community implements Serializable {
+    private static final long serialVersionUID = 8815622670863747119L;
+
+    private String name;
+    private String description;
+    private String owner;
+    private List<String> members;
+    private Map<String, Queue<String>> messages;
+
+    public String getName() {
+        return name;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public List<String> getMembers() {
+        return LegacySnapshot.orEmpty(members);
+    }
+
+    /**
+     * Retorna as mensagens ainda não lidas por um membro, na ordem de chegada.
+     *
+     * @param member Login do membro.
+     * @return Mensagens não lidas.
+     */
+    public Collection<String> getMessages(String member) {
+        Queue<String> queue = messages == null ? null : messages.get(member);
+        return queue == null ? Collections.emptyList() : queue;
+    }
+}
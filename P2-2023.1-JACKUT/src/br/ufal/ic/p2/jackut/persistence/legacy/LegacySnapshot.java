@@ -0,0 +1,113 @@
+package br.ufal.ic.p2.jackut.persistence.legacy;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Leitor dos arquivos de dados gravados pelas versões do sistema Jackut anteriores ao formato
+ * binário de {@link br.ufal.ic.p2.jackut.persistence.SnapshotCodec}.
+ *
+ * Essas versões gravavam o mapa de usuários em {@code users.dat} e o de comunidades em
+ * {@code communities.dat} com {@link ObjectOutputStream}. As classes gravadas não existem mais
+ * nessa forma, então cada uma é lida em uma classe espelho deste pacote, com o mesmo nome simples
+ * e os mesmos campos. Só são aceitas as classes espelho e as coleções da biblioteca padrão; os
+ * campos que não existem nas classes espelho, como os observadores das comunidades, são
+ * descartados.
+ */
+public class LegacySnapshot {
+    private static final short STREAM_MAGIC = (short) 0xACED;
+    private static final String USER_CLASS = "br.ufal.ic.p2.jackut.Users";
+    private static final String COMMUNITY_CLASS = "br.ufal.ic.p2.jackut.Community";
+    private static final String FILTER = "java.lang.*;java.util.*;" + LegacySnapshot.class.getPackageName() + ".*;!*";
+
+    private final Collection<Users> users;
+    private final Collection<Community> communities;
+
+    private LegacySnapshot(Collection<Users> users, Collection<Community> communities) {
+        this.users = users;
+        this.communities = communities;
+    }
+
+    /**
+     * Verifica se um arquivo de dados foi gravado com {@link ObjectOutputStream}.
+     *
+     * @param file Arquivo de dados.
+     * @return {@code true} se o arquivo estiver no formato antigo.
+     * @throws IOException Se o arquivo não puder ser lido.
+     */
+    public static boolean isLegacy(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            return file.length() >= Short.BYTES && in.readShort() == STREAM_MAGIC;
+        }
+    }
+
+    /**
+     * Lê os usuários e as comunidades dos arquivos no formato antigo.
+     *
+     * @param usersFile       Arquivo dos usuários.
+     * @param communitiesFile Arquivo das comunidades, que pode não existir.
+     * @return Os dados lidos.
+     * @throws IOException Se algum dos arquivos não puder ser lido ou tiver conteúdo inesperado.
+     */
+    public static LegacySnapshot read(File usersFile, File communitiesFile) throws IOException {
+        Map<String, Users> users = readMap(usersFile, Users.class);
+        Map<String, Community> communities = communitiesFile.exists()
+                ? readMap(communitiesFile, Community.class)
+                : Collections.emptyMap();
+        return new LegacySnapshot(users.values(), communities.values());
+    }
+
+    public Collection<Users> getUsers() {
+        return users;
+    }
+
+    public Collection<Community> getCommunities() {
+        return communities;
+    }
+
+    private static <T> Map<String, T> readMap(File file, Class<T> type) throws IOException {
+        try (ObjectInputStream in = new LegacyInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            Object read = in.readObject();
+            if (!(read instanceof Map)) {
+                throw new IOException("Conteúdo inesperado em " + file.getName());
+            }
+
+            Map<String, T> values = new LinkedHashMap<>();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) read).entrySet()) {
+                if (!(entry.getKey() instanceof String) || !type.isInstance(entry.getValue())) {
+                    throw new IOException("Conteúdo inesperado em " + file.getName());
+                }
+                values.put((String) entry.getKey(), type.cast(entry.getValue()));
+            }
+            return values;
+        } catch (ClassNotFoundException | ClassCastException | InvalidClassException e) {
+            throw new IOException("Conteúdo inesperado em " + file.getName() + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Fluxo que lê as classes antigas de usuário e comunidade nas classes espelho.
+     */
+    private static final class LegacyInputStream extends ObjectInputStream {
+        LegacyInputStream(InputStream in) throws IOException {
+            super(in);
+            setObjectInputFilter(ObjectInputFilter.Config.createFilter(FILTER));
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+            switch (desc.getName()) {
+                case USER_CLASS:
+                    return Users.class;
+                case COMMUNITY_CLASS:
+                    return Community.class;
+                default:
+                    return super.resolveClass(desc);
+            }
+        }
+    }
+
+    static List<String> orEmpty(List<String> values) {
+        return values == null ? Collections.emptyList() : values;
+    }
+}
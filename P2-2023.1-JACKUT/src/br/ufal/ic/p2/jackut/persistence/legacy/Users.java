@@ -0,0 +1,69 @@
+package br.ufal.ic.p2.jackut.persistence.legacy;
+
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * Usuário no formato antigo, lido por {@link LegacySnapshot}. Tem o mesmo nome simples, os mesmos
+ * campos e o mesmo {@code serialVersionUID} da classe gravada. Os relacionamentos guardam os
+ * logins dos outros usuários, e os recados não guardam o remetente.
+ */
+public final class Users implements Serializable {
+    private static final long serialVersionUID = -7995705488907816750L;
+
+    private String login;
+    private String password;
+    private String name;
+    private List<String> friends;
+    private Queue<String> messages;
+    private Map<String, String> attributes;
+    private List<String> pendingFriendRequests;
+    private List<String> communities;
+    private List<String> idols;
+    private List<String> crushes;
+    private List<String> enemies;
+
+    public String getLogin() {
+        return login;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public List<String> getFriends() {
+        return LegacySnapshot.orEmpty(friends);
+    }
+
+    public Collection<String> getMessages() {
+        return messages == null ? Collections.emptyList() : messages;
+    }
+
+    public Map<String, String> getAttributes() {
+        return attributes == null ? Collections.emptyMap() : attributes;
+    }
+
+    public List<String> getPendingFriendRequests() {
+        return LegacySnapshot.orEmpty(pendingFriendRequests);
+    }
+
+    public List<String> getCommunities() {
+        return LegacySnapshot.orEmpty(communities);
+    }
+
+    public List<String> getIdols() {
+        return LegacySnapshot.orEmpty(idols);
+    }
+
+    public List<String> getCrushes() {
+        return LegacySnapshot.orEmpty(crushes);
+    }
+
+    public List<String> getEnemies() {
+        return LegacySnapshot.orEmpty(enemies);
+    }
+}
@@ -0,0 +1,300 @@
+package br.ufal.ic.p2.jackut.replication;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.concurrent.TimeUnit;
+
+import br.ufal.ic.p2.jackut.Facade;
+import br.ufal.ic.p2.jackut.metrics.LatencyHistogram;
+import br.ufal.ic.p2.jackut.persistence.DurabilityPolicy;
+import br.ufal.ic.p2.jackut.persistence.Journal;
+import br.ufal.ic.p2.jackut.persistence.JournalRecord;
+import br.ufal.ic.p2.jackut.server.CommandDispatcher;
+import br.ufal.ic.p2.jackut.server.JackutServer;
+
+/**
+ * Lado seguidor da replicação: reproduz em uma {@link Facade} local as operações enviadas por
+ * um {@link ReplicationPrimary}.
+ *
+ * A cada conexão o seguidor recebe um snapshot do primário, com os segmentos das caixas de
+ * entrada, que substitui todo o seu estado, e depois aplica as operações na ordem em que
+ * chegam. A replicação é assíncrona: o primário não espera os seguidores, de forma que uma
+ * leitura no seguidor pode não ver as últimas escritas. O atraso é medido em operações
+ * ({@link #getLag()}) e em tempo, do envio pelo primário até a aplicação ({@link #getDelays()}).
+ * Se a conexão cair, o seguidor se reconecta e recebe um novo snapshot.
+ */
+public class ReplicationFollower implements AutoCloseable {
+    private static final long RETRY_MILLIS = 1000;
+
+    private final Facade facade;
+    private final File dataDirectory;
+    private final String host;
+    private final int port;
+    private final LatencyHistogram delays = new LatencyHistogram();
+    private volatile Socket socket;
+    private volatile boolean running = true;
+    private volatile boolean connected;
+    private volatile long appliedSequence;
+    private volatile long primarySequence;
+    private Thread thread;
+
+    /**
+     * Construtor da classe ReplicationFollower.
+     * Só se conecta ao primário ao chamar {@link #start()}.
+     *
+     * @param facade        Facade que recebe as operações; seu estado é substituído pelo do
+     *                      primário.
+     * @param dataDirectory Diretório de dados da Facade, onde o snapshot é recebido.
+     * @param host          Endereço do primário.
+     * @param port          Porta de replicação do primário.
+     */
+    public ReplicationFollower(Facade facade, File dataDirectory, String host, int port) {
+        this.facade = facade;
+        this.dataDirectory = dataDirectory;
+        this.host = host;
+        this.port = port;
+    }
+
+    /**
+     * Inicia a replicação em uma thread própria.
+     */
+    public synchronized void start() {
+        if (thread == null) {
+            thread = new Thread(this::run, "jackut-replication");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Verifica se o seguidor está conectado ao primário e já aplicou o snapshot.
+     *
+     * @return {@code true} se estiver conectado.
+     */
+    public boolean isConnected() {
+        return connected;
+    }
+
+    /**
+     * Retorna a sequência, no journal do primário, da última operação aplicada.
+     *
+     * @return Número de sequência.
+     */
+    public long getAppliedSequence() {
+        return appliedSequence;
+    }
+
+    /**
+     * Retorna a maior sequência do journal do primário conhecida pelo seguidor.
+     *
+     * @return Número de sequência.
+     */
+    public long getPrimarySequence() {
+        return primarySequence;
+    }
+
+    /**
+     * Retorna quantas operações do primário ainda não foram aplicadas, até onde o seguidor sabe.
+     *
+     * @return Quantidade de operações.
+     */
+    public long getLag() {
+        return Math.max(0, primarySequence - appliedSequence);
+    }
+
+    /**
+     * Retorna o tempo entre o envio de cada operação pelo primário e a sua aplicação.
+     *
+     * @return Histograma dos atrasos, em nanossegundos.
+     */
+    public LatencyHistogram getDelays() {
+        return delays;
+    }
+
+    /**
+     * Descreve o estado da replicação em uma linha.
+     *
+     * @return Conexão, sequências, atraso em operações e percentis do atraso em milissegundos.
+     */
+    public String getStatus() {
+        return "conectado=" + connected + " aplicada=" + appliedSequence + " primario=" + primarySequence
+                + " atraso=" + getLag()
+                + " p50=" + TimeUnit.NANOSECONDS.toMillis(delays.getPercentile(50)) + "ms"
+                + " p99=" + TimeUnit.NANOSECONDS.toMillis(delays.getPercentile(99)) + "ms";
+    }
+
+    /**
+     * Encerra a replicação. A Facade continua com o estado já aplicado.
+     */
+    @Override
+    public void close() {
+        running = false;
+        Socket current = socket;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (IOException e) {
+                // A conexão já foi fechada pelo primário
+            }
+        }
+        if (thread != null) {
+            thread.interrupt();
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Laço da thread de replicação: conecta, segue o primário e, se a conexão cair, tenta de novo.
+     */
+    private void run() {
+        while (running) {
+            try (Socket current = new Socket(host, port)) {
+                socket = current;
+                follow(new DataInputStream(new BufferedInputStream(current.getInputStream())));
+            } catch (EOFException e) {
+                if (running) {
+                    System.err.println("Erro na replicação: conexão encerrada pelo primário.");
+                }
+            } catch (IOException e) {
+                if (running) {
+                    System.err.println("Erro na replicação: " + e.getMessage());
+                }
+            } finally {
+                connected = false;
+                socket = null;
+            }
+
+            try {
+                Thread.sleep(RETRY_MILLIS);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Recebe o snapshot e aplica as operações até o fim da conexão.
+     */
+    private void follow(DataInputStream in) throws IOException {
+        long length = in.readLong();
+        File received = File.createTempFile("replica", ".tmp", dataDirectory);
+        File segments = new File(dataDirectory, "replica-inboxes.tmp");
+        try {
+            try (OutputStream out = new FileOutputStream(received)) {
+                copy(in, out, length);
+            }
+
+            deleteAll(segments);
+            segments.mkdirs();
+            int segmentCount = in.readInt();
+            for (int i = 0; i < segmentCount; i++) {
+                // Só o nome, para que o primário não escreva fora do diretório
+                File segment = new File(segments, new File(in.readUTF()).getName());
+                try (OutputStream out = new FileOutputStream(segment)) {
+                    copy(in, out, in.readLong());
+                }
+            }
+
+            appliedSequence = facade.restoreSnapshot(received, segments);
+            primarySequence = Math.max(primarySequence, appliedSequence);
+        } finally {
+            received.delete();
+            deleteAll(segments);
+        }
+        connected = true;
+
+        while (running) {
+            byte type = in.readByte();
+            if (type == ReplicationPrimary.RECORD) {
+                long sentMillis = in.readLong();
+                JournalRecord record = Journal.readRecord(in);
+                if (record == null) {
+                    throw new IOException("Registro inválido recebido do primário.");
+                }
+                facade.replicate(record.getOperation(), record.getArgs());
+                appliedSequence = record.getSequence();
+                primarySequence = Math.max(primarySequence, appliedSequence);
+                delays.record(TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis() - sentMillis));
+            } else if (type == ReplicationPrimary.HEARTBEAT) {
+                long lastSent = in.readLong();
+                long head = in.readLong();
+                in.readLong();
+                appliedSequence = Math.max(appliedSequence, lastSent);
+                primarySequence = Math.max(primarySequence, head);
+            } else {
+                throw new IOException("Mensagem de replicação inválida: " + type);
+            }
+        }
+    }
+
+    private static void deleteAll(File directory) {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    /**
+     * Copia uma quantidade exata de bytes de um fluxo para outro.
+     *
+     * @throws EOFException Se o fluxo de entrada terminar antes.
+     */
+    static void copy(InputStream in, OutputStream out, long length) throws IOException {
+        byte[] buffer = new byte[8192];
+        long remaining = length;
+        while (remaining > 0) {
+            int read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+            if (read < 0) {
+                throw new EOFException();
+            }
+            out.write(buffer, 0, read);
+            remaining -= read;
+        }
+    }
+
+    /**
+     * Inicia um servidor Jackut somente leitura que segue um primário, escutando no endereço dado
+     * por {@value JackutServer#BIND_PROPERTY}.
+     *
+     * @param args Endereço {@code host:porta} da replicação do primário, porta do servidor
+     *             (padrão {@value JackutServer#DEFAULT_PORT}) e diretório de dados (padrão
+     *             {@code replica}).
+     * @throws IOException Se a porta do servidor não puder ser aberta.
+     */
+    public static void main(String[] args) throws IOException {
+        String primary = args.length > 0 ? args[0] : "localhost:" + ReplicationPrimary.DEFAULT_PORT;
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : JackutServer.DEFAULT_PORT;
+        File dataDirectory = new File(args.length > 2 ? args[2] : "replica");
+
+        int separator = primary.lastIndexOf(':');
+        Facade facade = new Facade(dataDirectory, DurabilityPolicy.parse(System.getProperty("jackut.durability")));
+        ReplicationFollower follower = new ReplicationFollower(facade, dataDirectory,
+                primary.substring(0, separator), Integer.parseInt(primary.substring(separator + 1)));
+        CommandDispatcher dispatcher = CommandDispatcher.readOnly(facade);
+        dispatcher.register("getReplicacao", line -> follower.getStatus());
+        JackutServer server = new JackutServer(facade, dispatcher, JackutServer.bindAddress(), port);
+
+        follower.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            follower.close();
+            server.close();
+        }));
+
+        System.out.println("Réplica Jackut escutando na porta " + server.getPort() + ", seguindo " + primary);
+        server.serve();
+    }
+}
@@ -0,0 +1,297 @@
+package br.ufal.ic.p2.jackut.replication;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import br.ufal.ic.p2.jackut.Facade;
+import br.ufal.ic.p2.jackut.persistence.Journal;
+import br.ufal.ic.p2.jackut.persistence.JournalRecord;
+import br.ufal.ic.p2.jackut.persistence.SnapshotFiles;
+import br.ufal.ic.p2.jackut.server.CommandDispatcher;
+import br.ufal.ic.p2.jackut.server.JackutServer;
+
+/**
+ * Lado primário da replicação: envia o journal da {@link Facade} a processos seguidores.
+ *
+ * Cada seguidor que se conecta recebe um snapshot recém-salvo e, em seguida, cada operação
+ * registrada depois dele, na ordem do journal. O protocolo é binário:
+ *
+ * <ul>
+ *     <li>o tamanho do snapshot ({@code long}), seguido dos seus bytes;</li>
+ *     <li>a quantidade de segmentos das caixas de entrada ({@code int}) e, para cada um, o nome
+ *     do arquivo (UTF), o tamanho ({@code long}) e os bytes;</li>
+ *     <li>para cada operação, {@value #RECORD}, o instante do envio em milissegundos
+ *     ({@code long}) e o registro no formato do arquivo do journal;</li>
+ *     <li>quando não há operações por {@value #HEARTBEAT_MILLIS} ms, {@value #HEARTBEAT}, a
+ *     sequência da última operação enviada, a da última registrada e o instante do envio
+ *     ({@code long}s).</li>
+ * </ul>
+ *
+ * As operações de cada seguidor aguardam envio em uma fila própria, de forma que um seguidor
+ * lento não atrasa as operações da Facade nem os outros seguidores. A fila tem capacidade
+ * limitada ({@value #QUEUE_PROPERTY}, {@value #DEFAULT_QUEUE_CAPACITY} operações por padrão), para
+ * que um seguidor parado não esgote a memória do primário: se ela encher, o seguidor é
+ * desconectado e, ao se reconectar, recebe um snapshot novo em vez das operações perdidas.
+ */
+public class ReplicationPrimary implements AutoCloseable {
+    /**
+     * Porta usada quando nenhuma outra é informada.
+     */
+    public static final int DEFAULT_PORT = 7071;
+    static final byte RECORD = 1;
+    static final byte HEARTBEAT = 2;
+    static final long HEARTBEAT_MILLIS = 1000;
+    /**
+     * Propriedade de sistema com a capacidade da fila de cada seguidor.
+     */
+    public static final String QUEUE_PROPERTY = "jackut.replication.queue";
+    /**
+     * Capacidade da fila de cada seguidor quando nenhuma outra é informada.
+     */
+    public static final int DEFAULT_QUEUE_CAPACITY = 65536;
+
+    private final Facade facade;
+    private final ServerSocket serverSocket;
+    private final int queueCapacity;
+    private final ExecutorService connections = Executors.newVirtualThreadPerTaskExecutor();
+    private final Map<Socket, BlockingQueue<JournalRecord>> followers = new ConcurrentHashMap<>();
+
+    /**
+     * Construtor da classe ReplicationPrimary.
+     * Abre a porta de replicação no endereço de loopback, mas só passa a aceitar seguidores ao
+     * chamar {@link #serve()}.
+     *
+     * @param facade Facade cujo journal é enviado.
+     * @param port   Porta TCP, ou 0 para usar qualquer porta livre.
+     * @throws IOException Se a porta não puder ser aberta.
+     */
+    public ReplicationPrimary(Facade facade, int port) throws IOException {
+        this(facade, InetAddress.getLoopbackAddress(), port);
+    }
+
+    /**
+     * Construtor da classe ReplicationPrimary, escutando em um endereço escolhido.
+     *
+     * @param facade  Facade cujo journal é enviado.
+     * @param address Endereço local em que os seguidores se conectam.
+     * @param port    Porta TCP, ou 0 para usar qualquer porta livre.
+     * @throws IOException Se a porta não puder ser aberta.
+     */
+    public ReplicationPrimary(Facade facade, InetAddress address, int port) throws IOException {
+        this(facade, address, port, Integer.getInteger(QUEUE_PROPERTY, DEFAULT_QUEUE_CAPACITY));
+    }
+
+    /**
+     * Construtor da classe ReplicationPrimary, com a capacidade da fila de cada seguidor.
+     *
+     * @param facade        Facade cujo journal é enviado.
+     * @param address       Endereço local em que os seguidores se conectam.
+     * @param port          Porta TCP, ou 0 para usar qualquer porta livre.
+     * @param queueCapacity Quantidade máxima de operações aguardando envio para um seguidor.
+     * @throws IOException Se a porta não puder ser aberta.
+     */
+    public ReplicationPrimary(Facade facade, InetAddress address, int port, int queueCapacity) throws IOException {
+        if (queueCapacity <= 0) {
+            throw new IllegalArgumentException("Capacidade da fila de replicação inválida.");
+        }
+        this.facade = facade;
+        this.queueCapacity = queueCapacity;
+        this.serverSocket = new ServerSocket(port, 0, address);
+    }
+
+    /**
+     * Retorna a porta em que os seguidores se conectam.
+     *
+     * @return Porta TCP.
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Retorna a quantidade de seguidores conectados.
+     *
+     * @return Quantidade de seguidores.
+     */
+    public int getFollowerCount() {
+        return followers.size();
+    }
+
+    /**
+     * Retorna a quantidade de operações que aguardam envio, somando todos os seguidores.
+     *
+     * @return Quantidade de operações.
+     */
+    public long getPendingRecords() {
+        long pending = 0;
+        for (BlockingQueue<JournalRecord> queue : followers.values()) {
+            pending += queue.size();
+        }
+        return pending;
+    }
+
+    /**
+     * Descreve o estado da replicação em uma linha.
+     *
+     * @return Sequência atual, seguidores e operações pendentes.
+     */
+    public String getStatus() {
+        return "sequencia=" + facade.getLastSequence() + " seguidores=" + getFollowerCount()
+                + " pendentes=" + getPendingRecords();
+    }
+
+    /**
+     * Aceita seguidores até que a replicação seja fechada. Bloqueia a thread que o chamar.
+     */
+    public void serve() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                connections.execute(() -> ship(socket));
+            } catch (SocketException e) {
+                // A replicação foi fechada enquanto esperava uma conexão
+            } catch (IOException e) {
+                System.err.println("Erro ao aceitar seguidor: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Para de aceitar seguidores e encerra as conexões abertas.
+     */
+    @Override
+    public void close() {
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            System.err.println("Erro ao fechar a replicação: " + e.getMessage());
+        }
+        for (Socket socket : followers.keySet()) {
+            disconnect(socket);
+        }
+        connections.close();
+    }
+
+    private static void disconnect(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // A conexão já foi fechada pelo seguidor
+        }
+    }
+
+    /**
+     * Envia o snapshot e, em seguida, as operações da fila do seguidor até a conexão terminar.
+     * Se a fila encher, a conexão é fechada pela thread que registrou a operação, o que também
+     * interrompe um envio bloqueado pelo seguidor.
+     */
+    private void ship(Socket socket) {
+        BlockingQueue<JournalRecord> queue = new LinkedBlockingQueue<>(queueCapacity);
+        AtomicBoolean overflowed = new AtomicBoolean();
+        Consumer<JournalRecord> listener = record -> {
+            if (!queue.offer(record) && overflowed.compareAndSet(false, true)) {
+                disconnect(socket);
+            }
+        };
+        followers.put(socket, queue);
+
+        try (socket;
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()))) {
+            try (SnapshotFiles files = facade.subscribe(listener)) {
+                FileInputStream snapshot = files.getSnapshot();
+                out.writeLong(snapshot.getChannel().size());
+                snapshot.transferTo(out);
+
+                out.writeInt(files.getSegments().size());
+                for (Map.Entry<String, FileInputStream> segment : files.getSegments().entrySet()) {
+                    long length = segment.getValue().getChannel().size();
+                    out.writeUTF(segment.getKey());
+                    out.writeLong(length);
+                    ReplicationFollower.copy(segment.getValue(), out, length);
+                }
+            }
+            out.flush();
+
+            long lastSent = 0;
+            while (!serverSocket.isClosed()) {
+                JournalRecord record = queue.poll(HEARTBEAT_MILLIS, TimeUnit.MILLISECONDS);
+                if (record == null) {
+                    out.writeByte(HEARTBEAT);
+                    out.writeLong(lastSent);
+                    out.writeLong(facade.getLastSequence());
+                    out.writeLong(System.currentTimeMillis());
+                } else {
+                    // Envia tudo o que já está na fila antes de esvaziar o buffer
+                    do {
+                        out.writeByte(RECORD);
+                        out.writeLong(System.currentTimeMillis());
+                        Journal.writeRecord(out, record);
+                        lastSent = record.getSequence();
+                    } while ((record = queue.poll()) != null);
+                }
+                out.flush();
+            }
+        } catch (IOException e) {
+            if (overflowed.get()) {
+                System.err.println("Seguidor " + socket.getRemoteSocketAddress()
+                        + " desconectado: mais de " + queueCapacity + " operações aguardando envio");
+            } else if (!serverSocket.isClosed()) {
+                System.err.println("Erro na replicação para " + socket.getRemoteSocketAddress() + ": " + e.getMessage());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            facade.unsubscribe(listener);
+            followers.remove(socket);
+        }
+    }
+
+    /**
+     * Inicia um servidor Jackut com replicação. As duas portas são abertas no endereço dado por
+     * {@value JackutServer#BIND_PROPERTY}, e os comandos administrativos só são aceitos se
+     * {@value JackutServer#ADMIN_PROPERTY} for {@code true}.
+     *
+     * @param args Porta do servidor e porta da replicação, opcionais; se omitidas, usa
+     *             {@value JackutServer#DEFAULT_PORT} e {@value #DEFAULT_PORT}.
+     * @throws IOException Se alguma das portas não puder ser aberta.
+     */
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : JackutServer.DEFAULT_PORT;
+        int replicationPort = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_PORT;
+
+        InetAddress address = JackutServer.bindAddress();
+
+        Facade facade = new Facade();
+        ReplicationPrimary primary = new ReplicationPrimary(facade, address, replicationPort);
+        CommandDispatcher dispatcher = new CommandDispatcher(facade, Boolean.getBoolean(JackutServer.ADMIN_PROPERTY));
+        dispatcher.register("getReplicacao", line -> primary.getStatus());
+        JackutServer server = new JackutServer(facade, dispatcher, address, port);
+
+        Thread replication = new Thread(primary::serve, "jackut-replication");
+        replication.setDaemon(true);
+        replication.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            primary.close();
+            server.close();
+        }));
+
+        System.out.println("Servidor Jackut escutando na porta " + server.getPort()
+                + ", replicação na porta " + primary.getPort());
+        server.serve();
+    }
+}
@@ -0,0 +1,163 @@
+package br.ufal.ic.p2.jackut.server;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+import br.ufal.ic.p2.jackut.Facade;
+
+/**
+ * Traduz os comandos recebidos pela rede para as operações da {@link Facade}.
+ *
+ * Os comandos e os nomes dos argumentos são os mesmos usados nos scripts do EasyAccept. Cada
+ * comando produz uma única linha de resposta: {@code OK}, seguido do resultado quando a operação
+ * retorna algum valor, ou {@code ERRO} seguido da mensagem da exceção lançada pela Facade.
+ *
+ * Os comandos administrativos ({@code zerarSistema} e {@code encerrarSistema}) apagam ou encerram
+ * o sistema para todos os clientes, e por isso só são registrados quando habilitados na criação
+ * do dispatcher. Um dispatcher criado com {@link #readOnly(Facade)} aceita apenas as consultas,
+ * para servir leituras a partir de uma réplica.
+ */
+public class CommandDispatcher {
+    static final String OK = "OK";
+    static final String ERROR = "ERRO";
+    private static final Set<String> QUERIES = Set.of("getAtributoUsuario", "ehAmigo", "getAmigos",
+            "getDescricaoComunidade", "getDonoComunidade", "getMembrosComunidade", "getComunidades", "getFas");
+    private static final Set<String> ADMIN = Set.of("zerarSistema", "encerrarSistema");
+
+    /**
+     * Operação executada por um comando.
+     */
+    @FunctionalInterface
+    private interface Command {
+        /**
+         * Executa o comando.
+         *
+         * @return Resultado do comando, ou {@code null} se ele não retornar valor.
+         */
+        Object execute(Facade facade, CommandLine line);
+    }
+
+    private final Facade facade;
+    private final Map<String, Command> commands = new HashMap<>();
+    private final Set<String> rejected = new HashSet<>();
+
+    /**
+     * Construtor da classe CommandDispatcher, sem os comandos administrativos.
+     *
+     * @param facade Facade que executa as operações.
+     */
+    public CommandDispatcher(Facade facade) {
+        this(facade, false);
+    }
+
+    /**
+     * Construtor da classe CommandDispatcher.
+     *
+     * @param facade Facade que executa as operações.
+     * @param admin  Se os comandos administrativos devem ser aceitos.
+     */
+    public CommandDispatcher(Facade facade, boolean admin) {
+        this.facade = facade;
+
+        if (admin) {
+            commands.put("zerarSistema", (f, c) -> run(f::resetSystem));
+            commands.put("encerrarSistema", (f, c) -> run(f::closeSystem));
+        }
+        commands.put("criarUsuario", (f, c) -> run(() -> f.createUser(c.get("login"), c.get("senha"), c.get("nome"))));
+        commands.put("abrirSessao", (f, c) -> f.openSession(c.get("login"), c.get("senha")));
+        commands.put("getAtributoUsuario", (f, c) -> f.getUserAttribute(c.get("login"), c.get("atributo")));
+        commands.put("editarPerfil", (f, c) -> run(() -> f.editProfile(c.get("id"), c.get("atributo"), c.get("valor"))));
+        commands.put("adicionarAmigo", (f, c) -> run(() -> f.addFriend(c.get("id"), c.get("amigo"))));
+        commands.put("ehAmigo", (f, c) -> f.isFriend(c.get("login"), c.get("amigo")));
+        commands.put("getAmigos", (f, c) -> f.getFriends(c.get("login")));
+        commands.put("enviarRecado", (f, c) -> run(() -> f.sendMessage(c.get("id"), c.get("destinatario"), c.get("recado"))));
+        commands.put("lerRecado", (f, c) -> f.readDirectMessage(c.get("id")));
+        commands.put("criarComunidade", (f, c) -> run(() -> f.createCommunity(c.get("sessao"), c.get("nome"), c.get("descricao"))));
+        commands.put("getDescricaoComunidade", (f, c) -> f.getCommunityDescription(c.get("nome")));
+        commands.put("getDonoComunidade", (f, c) -> f.getCommunityOwner(c.get("nome")));
+        commands.put("getMembrosComunidade", (f, c) -> f.getCommunityMembers(c.get("nome")));
+        commands.put("adicionarComunidade", (f, c) -> run(() -> f.addUserToCommunity(c.get("sessao"), c.get("nome"))));
+        commands.put("getComunidades", (f, c) -> f.getUserCommunities(c.get("login")));
+        commands.put("enviarMensagem", (f, c) -> run(() -> f.sendMessageToCommunity(c.get("id"), c.get("comunidade"), c.get("mensagem"))));
+        commands.put("lerMensagem", (f, c) -> f.readMessage(c.get("id")));
+        commands.put("adicionarIdolo", (f, c) -> run(() -> f.addIdol(c.get("id"), c.get("idolo"))));
+        commands.put("getFas", (f, c) -> f.getFans(c.get("login")));
+        commands.put("adicionarPaquera", (f, c) -> run(() -> f.addCrush(c.get("id"), c.get("paquera"))));
+        commands.put("adicionarInimigo", (f, c) -> run(() -> f.addEnemy(c.get("id"), c.get("inimigo"))));
+        commands.put("removerUsuario", (f, c) -> run(() -> f.removeUser(c.get("id"))));
+    }
+
+    /**
+     * Cria um dispatcher que aceita apenas as consultas. Os demais comandos da Facade são
+     * recusados com uma mensagem de erro.
+     *
+     * @param facade Facade que executa as consultas.
+     * @return O dispatcher.
+     */
+    public static CommandDispatcher readOnly(Facade facade) {
+        CommandDispatcher dispatcher = new CommandDispatcher(facade);
+        for (String name : dispatcher.commands.keySet()) {
+            if (!QUERIES.contains(name)) {
+                dispatcher.rejected.add(name);
+            }
+        }
+        dispatcher.commands.keySet().retainAll(QUERIES);
+        return dispatcher;
+    }
+
+    /**
+     * Registra um comando adicional, que não depende da Facade.
+     *
+     * @param name    Nome do comando.
+     * @param command Função que recebe a linha de comando e retorna o resultado, ou {@code null}.
+     */
+    public void register(String name, Function<CommandLine, Object> command) {
+        commands.put(name, (f, c) -> command.apply(c));
+        rejected.remove(name);
+    }
+
+    /**
+     * Executa uma linha de comando e monta a linha de resposta.
+     *
+     * @param line Linha recebida.
+     * @return Linha de resposta, sem a quebra de linha.
+     */
+    public String dispatch(String line) {
+        try {
+            CommandLine commandLine = CommandLine.parse(line);
+            Command command = commands.get(commandLine.getName());
+            if (command == null && rejected.contains(commandLine.getName())) {
+                return ERROR + " Comando não permitido em uma réplica somente leitura: " + commandLine.getName();
+            }
+            if (command == null && ADMIN.contains(commandLine.getName())) {
+                return ERROR + " Comando administrativo desabilitado neste servidor: " + commandLine.getName();
+            }
+            if (command == null) {
+                return ERROR + " Comando desconhecido: " + commandLine.getName();
+            }
+
+            Object result = command.execute(facade, commandLine);
+            return result == null ? OK : OK + " " + result;
+        } catch (RuntimeException e) {
+            return ERROR + " " + e.getMessage();
+        }
+    }
+
+    /**
+     * Retorna os nomes dos comandos aceitos.
+     *
+     * @return Conjunto com os nomes dos comandos.
+     */
+    public Set<String> getCommandNames() {
+        return Collections.unmodifiableSet(commands.keySet());
+    }
+
+    private static Object run(Runnable operation) {
+        operation.run();
+        return null;
+    }
+}
@@ -0,0 +1,100 @@
+package br.ufal.ic.p2.jackut.server;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Comando recebido pela rede, no mesmo formato dos scripts do EasyAccept.
+ *
+ * Uma linha de comando é formada pelo nome do comando seguido de argumentos
+ * {@code nome=valor}, separados por espaços. Valores com espaços devem ficar entre aspas,
+ * como em {@code criarUsuario login=jpsauve senha=sauvejp nome="Jacques Sauve"}.
+ */
+public class CommandLine {
+    private final String name;
+    private final Map<String, String> arguments;
+
+    private CommandLine(String name, Map<String, String> arguments) {
+        this.name = name;
+        this.arguments = Collections.unmodifiableMap(arguments);
+    }
+
+    /**
+     * Interpreta uma linha de comando.
+     *
+     * @param line Linha recebida.
+     * @return O comando interpretado.
+     * @throws IllegalArgumentException Se a linha estiver vazia ou mal formada.
+     */
+    public static CommandLine parse(String line) {
+        String text = line == null ? "" : line.strip();
+        if (text.isEmpty()) {
+            throw new IllegalArgumentException("Comando vazio.");
+        }
+
+        int position = text.indexOf(' ');
+        String name = position < 0 ? text : text.substring(0, position);
+        Map<String, String> arguments = new LinkedHashMap<>();
+
+        while (position >= 0 && position < text.length()) {
+            while (position < text.length() && text.charAt(position) == ' ') {
+                position++;
+            }
+            if (position == text.length()) {
+                break;
+            }
+
+            int equals = text.indexOf('=', position);
+            if (equals < 0) {
+                throw new IllegalArgumentException("Argumento sem valor: " + text.substring(position));
+            }
+            String key = text.substring(position, equals);
+
+            String value;
+            if (equals + 1 < text.length() && text.charAt(equals + 1) == '"') {
+                int closing = text.indexOf('"', equals + 2);
+                if (closing < 0) {
+                    throw new IllegalArgumentException("Aspas não fechadas no argumento " + key + ".");
+                }
+                value = text.substring(equals + 2, closing);
+                position = closing + 1;
+            } else {
+                int end = text.indexOf(' ', equals);
+                end = end < 0 ? text.length() : end;
+                value = text.substring(equals + 1, end);
+                position = end;
+            }
+            arguments.put(key, value);
+        }
+        return new CommandLine(name, arguments);
+    }
+
+    /**
+     * Retorna o nome do comando.
+     *
+     * @return Nome do comando.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Retorna o valor de um argumento.
+     *
+     * @param key Nome do argumento.
+     * @return Valor do argumento, ou {@code null} se ele não tiver sido informado.
+     */
+    public String get(String key) {
+        return arguments.get(key);
+    }
+
+    /**
+     * Retorna todos os argumentos, na ordem em que foram informados.
+     *
+     * @return Mapa de argumentos.
+     */
+    public Map<String, String> getArguments() {
+        return arguments;
+    }
+}
@@ -0,0 +1,199 @@
+package br.ufal.ic.p2.jackut.server;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.Socket;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Cliente do {@link JackutServer}.
+ *
+ * Pode ser usado como biblioteca, enviando um comando por vez com {@link #send(String)}, ou
+ * executado diretamente para rodar um script do EasyAccept (ou os comandos digitados no terminal)
+ * contra um servidor. Na execução de scripts são aceitas as construções {@code var=comando},
+ * {@code ${var}}, {@code expect} e {@code expectError}; linhas vazias e comentários são ignorados.
+ */
+public class JackutClient implements AutoCloseable {
+    private static final Pattern VARIABLE = Pattern.compile("\\$\\{(\\w+)}");
+    private static final Pattern ASSIGNMENT = Pattern.compile("^(\\w+)=(\\w+)(\\s.*)?$");
+
+    private final Socket socket;
+    private final BufferedReader in;
+    private final BufferedWriter out;
+
+    /**
+     * Resposta do servidor a um comando.
+     *
+     * @param ok    {@code true} se o comando foi executado sem erros.
+     * @param value Resultado do comando ou mensagem de erro; vazio se não houver.
+     */
+    public record Response(boolean ok, String value) {
+        static Response parse(String line) {
+            if (line == null) {
+                throw new IllegalStateException("Conexão encerrada pelo servidor.");
+            }
+
+            String status = line.startsWith(CommandDispatcher.ERROR) ? CommandDispatcher.ERROR : CommandDispatcher.OK;
+            String value = line.length() > status.length() ? line.substring(status.length() + 1) : "";
+            return new Response(status.equals(CommandDispatcher.OK), value);
+        }
+    }
+
+    /**
+     * Construtor da classe JackutClient.
+     * Conecta ao servidor.
+     *
+     * @param host Endereço do servidor.
+     * @param port Porta do servidor.
+     * @throws IOException Se a conexão falhar.
+     */
+    public JackutClient(String host, int port) throws IOException {
+        this.socket = new Socket(host, port);
+        this.in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        this.out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Envia um comando e espera a resposta.
+     *
+     * @param command Linha de comando, no formato dos scripts do EasyAccept.
+     * @return Resposta do servidor.
+     * @throws IOException Se a comunicação falhar.
+     */
+    public Response send(String command) throws IOException {
+        out.write(command);
+        out.write('\n');
+        out.flush();
+        return Response.parse(in.readLine());
+    }
+
+    /**
+     * Encerra a conexão.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            out.write("quit\n");
+            out.flush();
+        } finally {
+            socket.close();
+        }
+    }
+
+    /**
+     * Executa um script contra o servidor, mostrando o resultado de cada comando.
+     *
+     * @param script Script a ser executado.
+     * @return Quantidade de verificações {@code expect} e {@code expectError} que falharam.
+     * @throws IOException Se a leitura do script ou a comunicação falhar.
+     */
+    public int run(BufferedReader script) throws IOException {
+        Map<String, String> variables = new HashMap<>();
+        int failures = 0;
+        int lineNumber = 0;
+
+        String line;
+        while ((line = script.readLine()) != null) {
+            lineNumber++;
+            line = line.strip();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            if (line.equals("quit")) {
+                break;
+            }
+            line = substitute(line, variables);
+
+            String expected = null;
+            boolean expectError = false;
+            if (line.startsWith("expectError ") || line.startsWith("expect ")) {
+                expectError = line.startsWith("expectError ");
+                String rest = line.substring(line.indexOf(' ') + 1).stripLeading();
+                int end = rest.startsWith("\"") ? rest.indexOf('"', 1) + 1 : rest.indexOf(' ');
+                if (end <= 0) {
+                    System.out.println(lineNumber + ": verificação mal formada");
+                    failures++;
+                    continue;
+                }
+                expected = unquote(rest.substring(0, end));
+                line = rest.substring(end).strip();
+            }
+
+            String variable = null;
+            Matcher assignment = ASSIGNMENT.matcher(line);
+            if (assignment.matches()) {
+                variable = assignment.group(1);
+                line = line.substring(variable.length() + 1);
+            }
+
+            Response response = send(line);
+            if (variable != null && response.ok()) {
+                variables.put(variable, response.value());
+            }
+
+            if (expected == null) {
+                System.out.println(lineNumber + ": " + (response.ok() ? "" : "ERRO ") + response.value());
+            } else if (response.ok() == !expectError && response.value().equals(expected)) {
+                System.out.println(lineNumber + ": ok");
+            } else {
+                System.out.println(lineNumber + ": esperava " + (expectError ? "erro " : "") + "<" + expected
+                        + ">, mas recebeu " + (response.ok() ? "" : "erro ") + "<" + response.value() + ">");
+                failures++;
+            }
+        }
+        return failures;
+    }
+
+    private static String substitute(String line, Map<String, String> variables) {
+        Matcher matcher = VARIABLE.matcher(line);
+        StringBuilder result = new StringBuilder();
+        while (matcher.find()) {
+            String value = variables.getOrDefault(matcher.group(1), matcher.group());
+            matcher.appendReplacement(result, Matcher.quoteReplacement(value));
+        }
+        matcher.appendTail(result);
+        return result.toString();
+    }
+
+    private static String unquote(String value) {
+        if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+            return value.substring(1, value.length() - 1);
+        }
+        return value;
+    }
+
+    /**
+     * Conecta a um servidor e executa um script, ou os comandos digitados no terminal.
+     *
+     * @param args Endereço e porta do servidor, o caminho opcional de um script e a codificação
+     *             opcional do script (padrão ISO-8859-1, a dos scripts do EasyAccept).
+     * @throws IOException Se a conexão ou a leitura do script falhar.
+     */
+    public static void main(String[] args) throws IOException {
+        String host = args.length > 0 ? args[0] : "localhost";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : JackutServer.DEFAULT_PORT;
+        Charset charset = args.length > 3 ? Charset.forName(args[3]) : StandardCharsets.ISO_8859_1;
+
+        int failures;
+        try (InputStream input = args.length > 2 ? new FileInputStream(args[2]) : System.in;
+             BufferedReader script = new BufferedReader(new InputStreamReader(input, args.length > 2 ? charset : Charset.defaultCharset()));
+             JackutClient client = new JackutClient(host, port)) {
+            failures = client.run(script);
+        }
+
+        if (failures > 0) {
+            System.out.println(failures + " verificação(ões) falharam.");
+            System.exit(1);
+        }
+    }
+}
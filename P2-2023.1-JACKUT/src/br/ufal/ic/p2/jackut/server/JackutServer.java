@@ -0,0 +1,204 @@
+package br.ufal.ic.p2.jackut.server;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import br.ufal.ic.p2.jackut.Facade;
+
+/**
+ * Servidor TCP que expõe as operações da {@link Facade} pela rede.
+ *
+ * O protocolo é baseado em linhas de texto UTF-8: o cliente envia um comando por linha, no
+ * formato dos scripts do EasyAccept, e recebe uma linha de resposta para cada comando (ver
+ * {@link CommandDispatcher}). O comando {@code quit} encerra a conexão.
+ *
+ * Cada conexão é atendida por uma virtual thread, de forma que o servidor suporta muitos clientes
+ * simultâneos sem manter uma thread de plataforma por conexão. Todas as conexões compartilham a
+ * mesma Facade, que já controla o acesso concorrente às suas operações.
+ *
+ * O protocolo não tem autenticação, por isso o servidor escuta apenas no endereço de loopback, a
+ * menos que outro endereço seja informado explicitamente pela propriedade {@value #BIND_PROPERTY}
+ * (por exemplo {@code -Djackut.bind=0.0.0.0}). Os comandos administrativos, que apagam ou encerram
+ * o sistema, só são aceitos se o servidor for iniciado com {@code -Djackut.admin=true}.
+ */
+public class JackutServer implements AutoCloseable {
+    /**
+     * Porta usada quando nenhuma outra é informada.
+     */
+    public static final int DEFAULT_PORT = 7070;
+    /**
+     * Propriedade de sistema com o endereço em que o servidor escuta.
+     */
+    public static final String BIND_PROPERTY = "jackut.bind";
+    /**
+     * Propriedade de sistema que habilita os comandos administrativos pela rede.
+     */
+    public static final String ADMIN_PROPERTY = "jackut.admin";
+    private static final String QUIT = "quit";
+
+    private final Facade facade;
+    private final CommandDispatcher dispatcher;
+    private final ServerSocket serverSocket;
+    private final ExecutorService connections = Executors.newVirtualThreadPerTaskExecutor();
+    private final Set<Socket> clients = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Construtor da classe JackutServer.
+     * Abre a porta do servidor no endereço de loopback, mas só passa a aceitar conexões ao chamar
+     * {@link #serve()}. Os comandos administrativos não são aceitos.
+     *
+     * @param facade Facade que executa as operações.
+     * @param port   Porta TCP, ou 0 para usar qualquer porta livre.
+     * @throws IOException Se a porta não puder ser aberta.
+     */
+    public JackutServer(Facade facade, int port) throws IOException {
+        this(facade, new CommandDispatcher(facade), port);
+    }
+
+    /**
+     * Construtor da classe JackutServer, com um dispatcher próprio, como o de uma réplica
+     * somente leitura.
+     *
+     * @param facade     Facade que executa as operações.
+     * @param dispatcher Dispatcher que traduz os comandos recebidos.
+     * @param port       Porta TCP, ou 0 para usar qualquer porta livre.
+     * @throws IOException Se a porta não puder ser aberta.
+     */
+    public JackutServer(Facade facade, CommandDispatcher dispatcher, int port) throws IOException {
+        this(facade, dispatcher, InetAddress.getLoopbackAddress(), port);
+    }
+
+    /**
+     * Construtor da classe JackutServer, escutando em um endereço escolhido.
+     *
+     * @param facade     Facade que executa as operações.
+     * @param dispatcher Dispatcher que traduz os comandos recebidos.
+     * @param address    Endereço local em que o servidor escuta.
+     * @param port       Porta TCP, ou 0 para usar qualquer porta livre.
+     * @throws IOException Se a porta não puder ser aberta.
+     */
+    public JackutServer(Facade facade, CommandDispatcher dispatcher, InetAddress address, int port)
+            throws IOException {
+        this.facade = facade;
+        this.dispatcher = dispatcher;
+        this.serverSocket = new ServerSocket(port, 0, address);
+    }
+
+    /**
+     * Retorna o endereço informado pela propriedade {@value #BIND_PROPERTY}, ou o endereço de
+     * loopback se ela não estiver definida.
+     *
+     * @return Endereço em que os servidores devem escutar.
+     * @throws IOException Se o endereço informado não puder ser resolvido.
+     */
+    public static InetAddress bindAddress() throws IOException {
+        String address = System.getProperty(BIND_PROPERTY);
+        return address == null || address.isBlank()
+                ? InetAddress.getLoopbackAddress()
+                : InetAddress.getByName(address.strip());
+    }
+
+    /**
+     * Retorna o endereço em que o servidor está escutando.
+     *
+     * @return Endereço local.
+     */
+    public InetAddress getAddress() {
+        return serverSocket.getInetAddress();
+    }
+
+    /**
+     * Retorna a porta em que o servidor está escutando.
+     *
+     * @return Porta TCP.
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Aceita conexões até que o servidor seja fechado. Bloqueia a thread que o chamar.
+     */
+    public void serve() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                connections.execute(() -> handle(socket));
+            } catch (SocketException e) {
+                // O servidor foi fechado enquanto esperava uma conexão
+            } catch (IOException e) {
+                System.err.println("Erro ao aceitar conexão: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Para de aceitar conexões, fecha as conexões abertas depois que terminarem o comando em
+     * andamento e grava os dados em disco.
+     */
+    @Override
+    public void close() {
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            System.err.println("Erro ao fechar o servidor: " + e.getMessage());
+        }
+        for (Socket socket : clients) {
+            try {
+                socket.shutdownInput();
+            } catch (IOException e) {
+                // A conexão já foi fechada pelo cliente
+            }
+        }
+        connections.close();
+        facade.closeSystem();
+    }
+
+    private void handle(Socket socket) {
+        clients.add(socket);
+        try (socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             BufferedWriter out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = in.readLine()) != null && !line.strip().equals(QUIT)) {
+                out.write(dispatcher.dispatch(line));
+                out.write('\n');
+                out.flush();
+            }
+        } catch (IOException e) {
+            System.err.println("Erro na conexão com " + socket.getRemoteSocketAddress() + ": " + e.getMessage());
+        } finally {
+            clients.remove(socket);
+        }
+    }
+
+    /**
+     * Inicia o servidor com uma nova Facade, no endereço dado por {@value #BIND_PROPERTY} e com os
+     * comandos administrativos habilitados apenas se {@value #ADMIN_PROPERTY} for {@code true}.
+     *
+     * @param args Porta opcional; se omitida, usa {@value #DEFAULT_PORT}.
+     * @throws IOException Se a porta não puder ser aberta.
+     */
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        Facade facade = new Facade();
+        CommandDispatcher dispatcher = new CommandDispatcher(facade, Boolean.getBoolean(ADMIN_PROPERTY));
+        JackutServer server = new JackutServer(facade, dispatcher, bindAddress(), port);
+        Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+        System.out.println("Servidor Jackut escutando em " + server.getAddress().getHostAddress()
+                + ":" + server.getPort());
+        server.serve();
+    }
+}